@@ -33,6 +33,9 @@ classdef Game < handle
         stompClient             % Reference to StompClient singleton
         app                     % Reference to the App Designer app
         dev_mode = false
+        stateVersion = []       % Room version our state matches, empty until we have one
+        roomStream = ''         % room-stream header of the last room frame we got
+        roomSeq = 0             % room-seq header of the last room frame we got
 
         % Liquidation/debt payment properties
         pendingDebtAmount       % Amount player owes
@@ -164,6 +167,24 @@ classdef Game < handle
             % Create reverse reference so StompClient can access the
             % GameInstance
             stompClient.setGameInstance(obj);
+            % Events meant only for us don't go to the room topic
+            if ~isempty(obj.myPlayerId)
+                stompClient.subscribeToPlayer(obj.myPlayerId);
+            end
+            % a new connection after a dropped one, catch up on what we missed
+            if ~isempty(obj.roomStream)
+                stompClient.stompSubscribe(sprintf("/room/%s", obj.roomId));
+                stompClient.resumeRoom(obj.roomId, obj.roomStream, obj.roomSeq);
+            end
+        end
+
+        function accepted = acceptRoomFrame(obj, roomStream, roomSeq)
+            % False for a room frame we already have, e.g. one sent again when resuming
+            accepted = ~(strcmp(roomStream, obj.roomStream) && roomSeq <= obj.roomSeq);
+            if accepted
+                obj.roomStream = roomStream;
+                obj.roomSeq = roomSeq;
+            end
         end
 
         function updateFromServerData(obj, gameRoomData)
@@ -180,6 +201,9 @@ classdef Game < handle
             if isfield(gameRoomData, 'roomId')
                 obj.roomId = gameRoomData.roomId;
             end
+            if isfield(gameRoomData, 'version')
+                obj.stateVersion = gameRoomData.version;
+            end
             if isfield(gameRoomData, 'roomName')
                 obj.roomName = gameRoomData.roomName;
                 % TODO: Update UI with room name display
@@ -367,8 +391,22 @@ classdef Game < handle
                 messageType = msgJson.messageType;
                 disp(messageType);
 
-                if strcmp(messageType, 'CHAT_MESSAGE')
+                if strcmp(messageType, 'EVENT_BATCH')
+                    % everything one action produced, in the order it happened
+                    events = msgJson.data.events;
+                    for i = 1:length(events)
+                        if iscell(events)
+                            obj.processWebsocketMessage(events{i});
+                        else
+                            obj.processWebsocketMessage(events(i));
+                        end
+                    end
+                elseif strcmp(messageType, 'CHAT_MESSAGE')
                     obj.handleChatMessage(msgJson);
+                elseif strcmp(messageType, 'CHAT_HISTORY')
+                    obj.handleChatHistory(msgJson.data);
+                elseif strcmp(messageType, 'STATE_DELTA') || strcmp(messageType, 'STATE_KEYFRAME')
+                    obj.handleStateUpdate(msgJson);
                 else
                     % All other message types are game events
                     obj.handleGameEvent(msgJson);
@@ -376,9 +414,159 @@ classdef Game < handle
             end
         end
 
+        function refreshFromServer(obj)
+            % Fetch the whole room over REST and update game state from it
+            if(obj.dev_mode == true)
+                response = webRequest(sprintf("http://localhost:8000/menu/room/%s", obj.roomId));
+            else
+                response = webRequest(sprintf("https://monopolyinmatlabserver-production.up.railway.app/menu/room/%s", obj.roomId));
+            end
+            if ~isempty(response.Body.Data)
+                obj.updateFromServerData(response.Body.Data);
+            end
+        end
+
+        function handleStateUpdate(obj, msgJson)
+            % Apply a STATE_KEYFRAME (whole room) or STATE_DELTA (changes since baseVersion)
+            data = msgJson.data;
+
+            if strcmp(msgJson.messageType, 'STATE_KEYFRAME')
+                obj.updateFromServerData(data.room);
+                obj.stateVersion = data.version;
+                return;
+            end
+
+            if isempty(obj.stateVersion) || data.baseVersion ~= obj.stateVersion
+                % we missed a frame, the delta doesn't apply to what we have
+                obj.refreshFromServer();
+                return;
+            end
+
+            if isfield(data, 'players')
+                obj.applyPlayerChanges(data.players);
+            end
+            if isfield(data, 'playerOrder')
+                obj.applyPlayerOrder(data.playerOrder);
+            end
+            if isfield(data, 'spaces')
+                obj.applySpaceChanges(data.spaces);
+            end
+            if isfield(data, 'room')
+                % room fields are named as in the full room, so the usual update handles them
+                obj.updateFromServerData(data.room);
+            end
+            obj.stateVersion = data.version;
+        end
+
+        function applyPlayerChanges(obj, players)
+            % Apply changed player fields, players we don't know yet come in full
+            for i = 1:length(players)
+                if iscell(players)
+                    playerData = players{i};
+                else
+                    playerData = players(i);
+                end
+
+                player = obj.getPlayerById(playerData.playerId);
+                if isempty(player)
+                    player = Player.fromServerData(playerData);
+                    if ~isempty(obj.myPlayerId) && strcmp(player.playerId, obj.myPlayerId)
+                        player.isClient = true;
+                    end
+                    obj.gamePlayers{end+1} = player;
+                    obj.app.(['Player' num2str(length(obj.gamePlayers)) 'Label']).Text = player.playerName;
+                else
+                    oldPosition = player.position;
+                    player.updateFromServerData(playerData);
+                    if obj.isStarted == true && (isfield(playerData, 'position') || isfield(playerData, 'inJail'))
+                        obj.moveToken(obj.getPlayerIndexById(player.playerId), oldPosition, player);
+                    end
+                end
+
+                if player.isClient
+                    propertiesText = "";
+                    for j = 1 : length(player.ownedPropertyPositions)
+                        % +1 for MATLAB 1-indexing
+                        propertiesText = sprintf("%s\n%s", propertiesText, obj.boardSpaces{player.ownedPropertyPositions(j) + 1}.name);
+                    end
+                    obj.app.propertiesLabel.Text = propertiesText;
+                    obj.app.YourFunds100Label.Text = sprintf("Your Funds: $%d", player.money);
+                end
+            end
+
+            obj.Players = obj.gamePlayers;  % Update alias
+            obj.app.PlayersConnectedLabel.Text = sprintf("Players Connected(%d): ", length(obj.gamePlayers));
+        end
+
+        function applyPlayerOrder(obj, playerOrder)
+            % Reorder players to match the server, players missing from it have left
+            orderedPlayers = {};
+            for i = 1:length(playerOrder)
+                player = obj.getPlayerById(playerOrder{i});
+                if ~isempty(player)
+                    orderedPlayers{end+1} = player;
+                    obj.app.(['Player' num2str(length(orderedPlayers)) 'Label']).Text = player.playerName;
+                end
+            end
+            obj.gamePlayers = orderedPlayers;
+            obj.Players = obj.gamePlayers;  % Update alias
+            obj.app.PlayersConnectedLabel.Text = sprintf("Players Connected(%d): ", length(obj.gamePlayers));
+        end
+
+        function applySpaceChanges(obj, spaces)
+            % Apply owner, mortgage and building changes to board spaces
+            for i = 1:length(spaces)
+                if iscell(spaces)
+                    spaceData = spaces{i};
+                else
+                    spaceData = spaces(i);
+                end
+
+                % +1 for MATLAB 1-indexing
+                space = obj.boardSpaces{spaceData.position + 1};
+                if ~isa(space, 'Property')
+                    continue;
+                end
+                if isfield(spaceData, 'ownerId')
+                    if isempty(spaceData.ownerId)
+                        space.owner = [];
+                    else
+                        space.owner = obj.getPlayerById(spaceData.ownerId);
+                    end
+                end
+                if isfield(spaceData, 'mortgaged')
+                    space.isMortgaged = spaceData.mortgaged;
+                end
+                if isfield(spaceData, 'housesBuilt')
+                    space.housesBuilt = spaceData.housesBuilt;
+                end
+                if isfield(spaceData, 'hasHotel')
+                    space.hasHotel = spaceData.hasHotel;
+                end
+            end
+        end
+
+        function moveToken(obj, playerIndex, oldPosition, player)
+            % Move a player's token, players in jail sit on the jail token of square 10
+            tokens = {'dog', 'battleship', 'hat', 'car'};
+            if isempty(playerIndex) || playerIndex < 1 || playerIndex > length(tokens)
+                return;
+            end
+            token = tokens{playerIndex};
+            obj.app.([token '_' num2str(oldPosition)]).Visible = "off";
+            obj.app.([token '_jail_10']).Visible = "off";
+            if(player.position == 10 && player.inJail == true)
+                obj.app.([token '_jail_10']).Visible = "on";
+            else
+                obj.app.([token '_' num2str(player.position)]).Visible = "on";
+            end
+        end
+
         function handleChatMessage(obj, msgJson)
             % Handle incoming chat message
             chatMsg = struct(...
+                'seq', msgJson.seq, ...
+                'timestamp', msgJson.timestamp, ...
                 'playerId', msgJson.playerId, ...
                 'playerName', msgJson.playerName, ...
                 'message', msgJson.message);
@@ -403,15 +591,10 @@ classdef Game < handle
             messageType = msgJson.messageType;
             data = msgJson.data;
 
-            % Fetch and update game state from server
-            
-            if(obj.dev_mode == true)
-                response = webRequest(sprintf("http://localhost:8000/menu/room/%s", obj.roomId));
-            else
-                response = webRequest(sprintf("https://monopolyinmatlabserver-production.up.railway.app/menu/room/%s", obj.roomId));
-            end
-            if ~isempty(response.Body.Data)
-                obj.updateFromServerData(response.Body.Data);
+            % The server streams state deltas ahead of every event, so our state is
+            % already current unless we never got a version to apply them to
+            if isempty(obj.stateVersion)
+                obj.refreshFromServer();
             end
 
             % perform actions on updated data
@@ -784,6 +967,31 @@ classdef Game < handle
             obj.stompClient.stompSend(sprintf('/monopoly/room/%s/chat', obj.roomId), payload);
         end
 
+        function requestOlderChatMessages(obj, limit)
+            % Asks for the messages before the oldest one we have, the server
+            % answers on our player queue with a CHAT_HISTORY page
+            if isempty(obj.stompClient), warning('StompClient not connected'); return; end
+            if nargin < 2, limit = 50; end
+
+            payload = struct('limit', limit);
+            if iscell(obj.chatHistory) && ~isempty(obj.chatHistory) && isfield(obj.chatHistory{1}, 'seq')
+                payload.before = obj.chatHistory{1}.seq;
+            end
+            obj.stompClient.stompSend(sprintf('/monopoly/room/%s/chat/history', obj.roomId), payload);
+        end
+
+        function handleChatHistory(obj, page)
+            % Puts a page of older messages in front of the ones we have
+            if isempty(page.messages), return; end
+            older = page.messages;
+            if ~iscell(older), older = num2cell(older); end
+            if isempty(obj.chatHistory) || ~iscell(obj.chatHistory)
+                obj.chatHistory = {};
+            end
+            obj.chatHistory = [reshape(older, 1, []), obj.chatHistory];
+            obj.chatMessages = obj.chatHistory;  % Update alias
+        end
+
         function messages = getChatMessages(obj)
             % Get all chat messages
             messages = obj.chatHistory;
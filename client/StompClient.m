@@ -24,6 +24,8 @@ classdef StompClient < WebSocketClient
                         % websocket connection already closed
                     end
                 end
+                % forget the old connection so its game isn't picked up again
+                websocketConnection = [];
                 return;
             end
 
@@ -31,7 +33,16 @@ classdef StompClient < WebSocketClient
             % and check to see if the instance has already been created
             if(~connectionExist)
                 if(nargin > 0)
+                    % a dropped connection hands its game over to the new one, which
+                    % then asks the server for the room frames it missed
+                    previousGame = [];
+                    if ~isempty(websocketConnection)
+                        previousGame = websocketConnection.gameInstance;
+                    end
                     websocketConnection = StompClient(connectionUrl);
+                    if ~isempty(previousGame)
+                        previousGame.setStompClient(websocketConnection);
+                    end
                 else
                     error("On the first call to get instance, you must provide a websocket server url to connect to!");
                 end
@@ -88,6 +99,26 @@ classdef StompClient < WebSocketClient
             obj.send(subscribeFrame);
         end
 
+        function subscribeToPlayer(obj, playerId)
+            % Subscribes to the events the server sends only to this player
+            % (errors caused by our requests, liquidation prompts, trade offers).
+            % The player-id header tells the server which player this connection is
+            subscribeFrame = sprintf(['SUBSCRIBE\n'...
+                'id:player-sub\n'...
+                'destination:/player/queue/events\n'...
+                'player-id:%s\n'...
+                '\n%c'], ...
+                playerId, 0);
+            obj.send(subscribeFrame);
+        end
+
+        function resumeRoom(obj, roomId, roomStream, lastSeq)
+            % Asks for the room frames we missed since lastSeq, the server sends
+            % them to our player queue, or a STATE_KEYFRAME if it no longer has them
+            resumeDestination = sprintf("/monopoly/room/%s/resume", roomId);
+            obj.stompSend(resumeDestination, struct("stream", roomStream, "lastSeq", lastSeq));
+        end
+
         function stompSend(obj, destination, body)
             if(isstruct(body) || isobject(body))
                 body = jsonencode(body);
@@ -139,11 +170,23 @@ classdef StompClient < WebSocketClient
                     if strcmp(frameType, 'MESSAGE')
                         % Find the empty line that separates headers from body
                         bodyStartIdx = 0;
+                        roomStream = '';
+                        roomSeq = [];
                         for i = 1:length(lines)
                             if isempty(strtrim(lines{i}))
                                 bodyStartIdx = i + 1;
                                 break;
                             end
+                            % room frames are numbered so we can skip ones we already have
+                            if startsWith(lines{i}, 'room-stream:')
+                                roomStream = extractAfter(lines{i}, 'room-stream:');
+                            elseif startsWith(lines{i}, 'room-seq:')
+                                roomSeq = str2double(extractAfter(lines{i}, 'room-seq:'));
+                            end
+                        end
+
+                        if ~isempty(roomSeq) && ~obj.gameInstance.acceptRoomFrame(roomStream, roomSeq)
+                            return;
                         end
 
                         % Extract JSON body (everything after the empty line)
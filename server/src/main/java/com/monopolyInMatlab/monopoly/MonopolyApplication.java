@@ -3,8 +3,10 @@ package com.monopolyInMatlab.monopoly;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class MonopolyApplication implements CommandLineRunner {
 
 	public static void main(String[] args) {
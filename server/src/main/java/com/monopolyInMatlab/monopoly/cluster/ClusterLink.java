@@ -0,0 +1,538 @@
+package com.monopolyInMatlab.monopoly.cluster;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.monopolyInMatlab.monopoly.config.PlayerQueueEvent;
+import com.monopolyInMatlab.monopoly.config.PlayerSessionRegistry;
+import com.monopolyInMatlab.monopoly.domain.GamePhase;
+import com.monopolyInMatlab.monopoly.dto.RoomSummary;
+import com.monopolyInMatlab.monopoly.persistence.RoomCommittedEvent;
+import com.monopolyInMatlab.monopoly.persistence.RoomRemovedEvent;
+import com.monopolyInMatlab.monopoly.persistence.RoomSnapshot;
+import com.monopolyInMatlab.monopoly.persistence.RoomSnapshots;
+import com.monopolyInMatlab.monopoly.persistence.RoomSummaries;
+import com.monopolyInMatlab.monopoly.presentation.PlayerDisconnects;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.messaging.tcp.FixedIntervalReconnectStrategy;
+import org.springframework.messaging.tcp.TcpConnection;
+import org.springframework.messaging.tcp.TcpConnectionHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This node's own connection to the STOMP broker in cluster mode, separate from the relay's connections.
+ *
+ * Every node listens on /queue/monopoly.node.{nodeId} for room actions other nodes forward to it and for
+ * rooms handed over to it (ROOM_HANDOFF), players whose grace period ran out on another node (PLAYER_GONE), and on /topic/monopoly.cluster for notices every node sends about itself:
+ *   HELLO           a node (re)connected, the others drop what they knew about it and announce themselves
+ *   PING            sent every heartbeat interval, a node missing three in a row is taken off the ring
+ *   BYE             a node is shutting down and has handed its rooms over
+ *   SESSION_ADD     a session subscribed to its player queue, SESSION_REMOVE when that is gone
+ *   ROOM_SUMMARY    a room's lobby entry changed, ROOM_REMOVED when the room is deleted or handed over
+ * so every node can address any player, list every room and agree on the ring. Notices a node sends while
+ * it is disconnected are lost, the HELLO it sends on reconnecting makes everyone resend theirs.
+ */
+@Component
+public class ClusterLink implements TcpConnectionHandler<byte[]>, SmartLifecycle {
+    public static final String FORWARDED_HEADER = "monopoly-forwarded";
+    private static final String NODE_HEADER = "monopoly-node";
+    private static final String OP_HEADER = "monopoly-op";
+    private static final String DESTINATION_HEADER = "monopoly-destination";
+    private static final String SESSION_HEADER = "monopoly-session";
+    private static final String PLAYER_HEADER = "monopoly-player";
+    private static final String ROOM_HEADER = "monopoly-room";
+    private static final String NODE_QUEUE_PREFIX = "/queue/monopoly.node.";
+    private static final String CLUSTER_TOPIC = "/topic/monopoly.cluster";
+    private static final String NODE_SUBSCRIPTION = "node";
+    private static final String CLUSTER_SUBSCRIPTION = "cluster";
+    private static final long RECONNECT_INTERVAL_MS = 5000;
+    private static final int MISSED_HEARTBEATS = 3;
+    private static final long HANDOFF_TIMEOUT_MS = 5000;
+
+    private final RoomOwnership roomOwnership;
+    private final PlayerSessionRegistry playerSessionRegistry;
+    private final RoomSummaries roomSummaries;
+    private final RoomSnapshots roomSnapshots;
+    private final ObjectMapper objectMapper;
+    // needs this class to send rooms, so it is looked up once it is used
+    private final RoomRebalancer roomRebalancer;
+    private final PlayerDisconnects playerDisconnects;
+    // the broker configuration needs this class, so the channel is looked up once it is used
+    private final MessageChannel clientInboundChannel;
+    private final String host;
+    private final int port;
+    private final String login;
+    private final String passcode;
+    private final String virtualHost;
+    private final long heartbeatIntervalMs;
+    // when each other node was last heard from, the ring is made of these and this node
+    private final ConcurrentMap<String, Long> lastSeen = new ConcurrentHashMap<>();
+    // the node each remote lobby entry came from, rooms move between nodes so this is not always the owner
+    private final ConcurrentMap<UUID, String> remoteRoomOrigins = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CompletableFuture<Void>> receipts = new ConcurrentHashMap<>();
+    private final AtomicLong receiptIds = new AtomicLong();
+    // what was last announced for each local room, so only changes the lobby shows are sent
+    private final ConcurrentMap<UUID, String> announcedSummaries = new ConcurrentHashMap<>();
+
+    private volatile SocketTcpClient tcpClient;
+    private volatile ScheduledExecutorService heartbeats;
+    private volatile boolean leaving;
+    // open but not yet CONNECTED, then connected
+    private volatile TcpConnection<byte[]> pendingConnection;
+    private volatile TcpConnection<byte[]> connection;
+    private volatile boolean running;
+
+    public ClusterLink(RoomOwnership roomOwnership, PlayerSessionRegistry playerSessionRegistry,
+                       RoomSummaries roomSummaries, RoomSnapshots roomSnapshots, ObjectMapper objectMapper,
+                       @Lazy RoomRebalancer roomRebalancer, @Lazy PlayerDisconnects playerDisconnects,
+                       @Lazy @Qualifier("clientInboundChannel") MessageChannel clientInboundChannel,
+                       @Value("${monopoly.broker.relay.host:localhost}") String host,
+                       @Value("${monopoly.broker.relay.port:61613}") int port,
+                       @Value("${monopoly.broker.relay.login:guest}") String login,
+                       @Value("${monopoly.broker.relay.passcode:guest}") String passcode,
+                       @Value("${monopoly.broker.relay.virtual-host:}") String virtualHost,
+                       @Value("${monopoly.cluster.heartbeat-interval-ms:2000}") long heartbeatIntervalMs) {
+        this.roomOwnership = roomOwnership;
+        this.playerSessionRegistry = playerSessionRegistry;
+        this.roomSummaries = roomSummaries;
+        this.roomSnapshots = roomSnapshots;
+        this.objectMapper = objectMapper;
+        this.roomRebalancer = roomRebalancer;
+        this.playerDisconnects = playerDisconnects;
+        this.clientInboundChannel = clientInboundChannel;
+        this.host = host;
+        this.port = port;
+        this.login = login;
+        this.passcode = passcode;
+        this.virtualHost = virtualHost;
+        this.heartbeatIntervalMs = heartbeatIntervalMs;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (!roomOwnership.isClustered()) {
+            return;
+        }
+        tcpClient = new SocketTcpClient(host, port);
+        tcpClient.connectAsync(this, new FixedIntervalReconnectStrategy(RECONNECT_INTERVAL_MS));
+        heartbeats = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("cluster-heartbeat").factory());
+        heartbeats.scheduleAtFixedRate(this::heartbeat, heartbeatIntervalMs, heartbeatIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Leaves the cluster: takes this node off the ring, hands its rooms to the remaining nodes and says BYE.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        if (tcpClient == null) {
+            return;
+        }
+        leaving = true;
+        heartbeats.shutdownNow();
+        // BYE goes first, so the others already place rooms without this node when they receive them
+        send(notice("BYE"), new byte[0]);
+        if (connection != null && roomOwnership.leave()) {
+            roomRebalancer.handOffForeignRooms();
+        }
+        tcpClient.shutdownAsync();
+        tcpClient = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Hands a room action to the room's owner. The session id is sent as its cluster session id,
+     * so the owner's replies find their way back to this node.
+     */
+    public void forward(String owner, String destination, String sessionId, MimeType contentType, byte[] payload) {
+        StompHeaderAccessor frame = StompHeaderAccessor.create(StompCommand.SEND);
+        frame.setDestination(NODE_QUEUE_PREFIX + owner);
+        frame.setNativeHeader(NODE_HEADER, roomOwnership.getNodeId());
+        frame.setNativeHeader(DESTINATION_HEADER, destination);
+        if (sessionId != null) {
+            frame.setNativeHeader(SESSION_HEADER, roomOwnership.clusterSessionId(sessionId));
+        }
+        if (contentType != null) {
+            frame.setContentType(contentType);
+        }
+        if (!send(frame, payload)) {
+            System.out.println("Dropped action for " + destination + ", not connected to the broker");
+        }
+    }
+
+    /**
+     * Sends an encoded room to its new owner without waiting. The future completes with true once the broker has
+     * taken it, and with false if it couldn't be sent or no receipt came in time, the room then stays here.
+     */
+    public CompletableFuture<Boolean> handOff(String owner, byte[] encodedRoom) {
+        StompHeaderAccessor frame = StompHeaderAccessor.create(StompCommand.SEND);
+        frame.setDestination(NODE_QUEUE_PREFIX + owner);
+        frame.setNativeHeader(NODE_HEADER, roomOwnership.getNodeId());
+        frame.setNativeHeader(OP_HEADER, "ROOM_HANDOFF");
+        frame.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        String receipt = "handoff-" + receiptIds.incrementAndGet();
+        frame.setReceipt(receipt);
+
+        CompletableFuture<Void> received = new CompletableFuture<>();
+        receipts.put(receipt, received);
+        if (!send(frame, encodedRoom)) {
+            receipts.remove(receipt);
+            return CompletableFuture.completedFuture(false);
+        }
+        return received.orTimeout(HANDOFF_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .handle((ignored, failure) -> {
+                    receipts.remove(receipt);
+                    return failure == null;
+                });
+    }
+
+    /**
+     * Tells a room's owner that one of its players has been gone for the whole grace period.
+     */
+    public void playerGone(String owner, UUID roomId, UUID playerId) {
+        StompHeaderAccessor frame = StompHeaderAccessor.create(StompCommand.SEND);
+        frame.setDestination(NODE_QUEUE_PREFIX + owner);
+        frame.setNativeHeader(NODE_HEADER, roomOwnership.getNodeId());
+        frame.setNativeHeader(OP_HEADER, "PLAYER_GONE");
+        frame.setNativeHeader(ROOM_HEADER, roomId.toString());
+        frame.setNativeHeader(PLAYER_HEADER, playerId.toString());
+        if (!send(frame, new byte[0])) {
+            System.out.println("Dropped disconnect of player " + playerId + ", not connected to the broker");
+        }
+    }
+
+    @EventListener
+    public void onPlayerQueue(PlayerQueueEvent event) {
+        if (roomOwnership.isClustered()) {
+            announceSession(event.sessionId(), event.playerId(), event.subscribed());
+        }
+    }
+
+    @EventListener
+    public void onRoomCommitted(RoomCommittedEvent event) {
+        // rooms loaded after a restart are announced all at once when the link connects
+        if (roomOwnership.isClustered() && !event.replayed()) {
+            // a room handed over to this node is local from now on
+            remoteRoomOrigins.remove(event.room().getRoomId());
+            RoomSummary summary = roomSummaries.get(event.room().getRoomId());
+            // game actions commit all the time, the lobby only changes when players come and go or the phase moves
+            if (summary != null && !shownOf(summary).equals(announcedSummaries.get(summary.getRoomId()))) {
+                announceSummary(summary);
+            }
+        }
+    }
+
+    @EventListener
+    public void onRoomRemoved(RoomRemovedEvent event) {
+        if (roomOwnership.isClustered() && announcedSummaries.remove(event.roomId()) != null) {
+            StompHeaderAccessor frame = notice("ROOM_REMOVED");
+            frame.setNativeHeader(ROOM_HEADER, event.roomId().toString());
+            send(frame, new byte[0]);
+        }
+    }
+
+    @Override
+    public void afterConnected(TcpConnection<byte[]> connection) {
+        pendingConnection = connection;
+        StompHeaderAccessor frame = StompHeaderAccessor.create(StompCommand.CONNECT);
+        frame.setAcceptVersion("1.1,1.2");
+        frame.setLogin(login);
+        frame.setPasscode(passcode);
+        frame.setHost(virtualHost.isEmpty() ? null : virtualHost);
+        frame.setHeartbeat(0, 0);
+        connection.sendAsync(MessageBuilder.createMessage(new byte[0], frame.getMessageHeaders()));
+    }
+
+    @Override
+    public void afterConnectFailure(Throwable ex) {
+        System.out.println("Could not connect node " + roomOwnership.getNodeId() + " to the broker at " + host + ":" + port + ": " + ex.getMessage());
+    }
+
+    @Override
+    public void handleMessage(Message<byte[]> message) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return;
+        }
+        switch (accessor.getCommand()) {
+            case CONNECTED -> onConnected();
+            case MESSAGE -> {
+                if (NODE_SUBSCRIPTION.equals(accessor.getSubscriptionId())) {
+                    String op = accessor.getFirstNativeHeader(OP_HEADER);
+                    if ("ROOM_HANDOFF".equals(op)) {
+                        roomRebalancer.accept(message.getPayload());
+                    } else if ("PLAYER_GONE".equals(op)) {
+                        playerDisconnects.expire(UUID.fromString(accessor.getFirstNativeHeader(ROOM_HEADER)),
+                                UUID.fromString(accessor.getFirstNativeHeader(PLAYER_HEADER)), true);
+                    } else {
+                        deliverAction(accessor, message.getPayload());
+                    }
+                } else if (CLUSTER_SUBSCRIPTION.equals(accessor.getSubscriptionId())) {
+                    handleNotice(accessor, message.getPayload());
+                }
+            }
+            case RECEIPT -> {
+                CompletableFuture<Void> received = receipts.get(accessor.getReceiptId());
+                if (received != null) {
+                    received.complete(null);
+                }
+            }
+            case ERROR -> System.out.println("Broker error on the cluster link: " + accessor.getMessage());
+            default -> {
+            }
+        }
+    }
+
+    @Override
+    public void handleFailure(Throwable ex) {
+        System.out.println("Cluster link of node " + roomOwnership.getNodeId() + " failed: " + ex.getMessage());
+    }
+
+    @Override
+    public void afterConnectionClosed() {
+        pendingConnection = null;
+        connection = null;
+        System.out.println("Cluster link of node " + roomOwnership.getNodeId() + " closed, reconnecting");
+    }
+
+    private void onConnected() {
+        connection = pendingConnection;
+        // nobody could be heard while disconnected, give everyone a fresh chance to ping
+        long now = System.currentTimeMillis();
+        lastSeen.replaceAll((node, seen) -> now);
+        subscribe(NODE_SUBSCRIPTION, NODE_QUEUE_PREFIX + roomOwnership.getNodeId());
+        subscribe(CLUSTER_SUBSCRIPTION, CLUSTER_TOPIC);
+        send(notice("HELLO"), new byte[0]);
+        announceAll();
+        System.out.println("Node " + roomOwnership.getNodeId() + " connected to the broker at " + host + ":" + port);
+    }
+
+    private void subscribe(String id, String destination) {
+        StompHeaderAccessor frame = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        frame.setSubscriptionId(id);
+        frame.setDestination(destination);
+        send(frame, new byte[0]);
+    }
+
+    // a forwarded action is handled as if the session had sent it to this node
+    private void deliverAction(StompHeaderAccessor frame, byte[] payload) {
+        String destination = frame.getFirstNativeHeader(DESTINATION_HEADER);
+        if (destination == null) {
+            return;
+        }
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setDestination(destination);
+        headers.setSessionId(frame.getFirstNativeHeader(SESSION_HEADER));
+        headers.setSessionAttributes(new ConcurrentHashMap<>());
+        headers.setContentType(frame.getContentType());
+        headers.setHeader(FORWARDED_HEADER, frame.getFirstNativeHeader(NODE_HEADER));
+        clientInboundChannel.send(MessageBuilder.createMessage(payload, headers.getMessageHeaders()));
+    }
+
+    private void handleNotice(StompHeaderAccessor frame, byte[] payload) {
+        String node = frame.getFirstNativeHeader(NODE_HEADER);
+        String op = frame.getFirstNativeHeader(OP_HEADER);
+        if (node == null || op == null || node.equals(roomOwnership.getNodeId())) {
+            return;
+        }
+        if (!roomOwnership.isKnownNode(node)) {
+            System.out.println("Ignoring cluster notice from node " + node + ", it is not in monopoly.cluster.nodes");
+            return;
+        }
+        // only these say the node is up, a node that said BYE may still send notices while it hands rooms over
+        if (op.equals("PING") || op.equals("HELLO")) {
+            seen(node);
+        }
+        switch (op) {
+            case "PING" -> {
+            }
+            case "HELLO" -> {
+                // the node starts over, what it still has it announces again
+                forget(node);
+                announceAll();
+            }
+            case "BYE" -> {
+                System.out.println("Node " + node + " left the cluster");
+                lastSeen.remove(node);
+                forget(node);
+                updateMembers();
+            }
+            case "SESSION_ADD" -> {
+                String player = frame.getFirstNativeHeader(PLAYER_HEADER);
+                playerSessionRegistry.putRemote(frame.getFirstNativeHeader(SESSION_HEADER), player != null ? UUID.fromString(player) : null);
+            }
+            case "SESSION_REMOVE" -> playerSessionRegistry.removeRemote(frame.getFirstNativeHeader(SESSION_HEADER));
+            case "ROOM_SUMMARY" -> {
+                RoomSummary summary = readSummary(payload);
+                if (roomSnapshots.get(summary.getRoomId()) == null) {
+                    remoteRoomOrigins.put(summary.getRoomId(), node);
+                    roomSummaries.put(summary);
+                }
+            }
+            case "ROOM_REMOVED" -> {
+                UUID roomId = UUID.fromString(frame.getFirstNativeHeader(ROOM_HEADER));
+                // a room handed over has a newer entry from its new owner by now, or will have soon
+                if (remoteRoomOrigins.remove(roomId, node)) {
+                    roomSummaries.remove(roomId);
+                }
+            }
+            default -> System.out.println("Unknown cluster notice " + op + " from node " + node);
+        }
+    }
+
+    private void heartbeat() {
+        // while this node can't hear anyone it can't tell who is gone either
+        if (connection == null || leaving) {
+            return;
+        }
+        send(notice("PING"), new byte[0]);
+        long deadline = System.currentTimeMillis() - MISSED_HEARTBEATS * heartbeatIntervalMs;
+        for (Map.Entry<String, Long> node : lastSeen.entrySet()) {
+            if (node.getValue() < deadline && lastSeen.remove(node.getKey(), node.getValue())) {
+                System.out.println("Node " + node.getKey() + " stopped answering, taking it off the ring");
+                forget(node.getKey());
+            }
+        }
+        updateMembers();
+        // picks up rooms an earlier pass couldn't hand over
+        roomRebalancer.rebalance();
+    }
+
+    private void seen(String node) {
+        if (lastSeen.put(node, System.currentTimeMillis()) == null) {
+            System.out.println("Node " + node + " joined the cluster");
+            updateMembers();
+            // lets the new node hear about this one straight away instead of at the next heartbeat
+            if (!leaving) {
+                send(notice("PING"), new byte[0]);
+            }
+        }
+    }
+
+    private void updateMembers() {
+        if (!leaving && roomOwnership.setMembers(lastSeen.keySet())) {
+            System.out.println("Rooms are now placed on " + roomOwnership.getMembers());
+            roomRebalancer.rebalance();
+        }
+    }
+
+    // drops the sessions and lobby entries a node announced
+    private void forget(String node) {
+        playerSessionRegistry.removeRemoteNode(node);
+        remoteRoomOrigins.forEach((roomId, origin) -> {
+            if (origin.equals(node) && remoteRoomOrigins.remove(roomId, node)) {
+                roomSummaries.remove(roomId);
+            }
+        });
+    }
+
+    private void announceAll() {
+        playerSessionRegistry.forEachLocal((sessionId, playerId) -> announceSession(sessionId, playerId, true));
+        announcedSummaries.clear();
+        for (RoomSnapshot snapshot : roomSnapshots.getAll()) {
+            RoomSummary summary = roomSummaries.get(snapshot.getRoomId());
+            if (summary != null) {
+                announceSummary(summary);
+            }
+        }
+    }
+
+    private void announceSession(String sessionId, UUID playerId, boolean subscribed) {
+        StompHeaderAccessor frame = notice(subscribed ? "SESSION_ADD" : "SESSION_REMOVE");
+        frame.setNativeHeader(SESSION_HEADER, roomOwnership.clusterSessionId(sessionId));
+        if (playerId != null) {
+            frame.setNativeHeader(PLAYER_HEADER, playerId.toString());
+        }
+        send(frame, new byte[0]);
+    }
+
+    private void announceSummary(RoomSummary summary) {
+        announcedSummaries.put(summary.getRoomId(), shownOf(summary));
+        try {
+            StompHeaderAccessor frame = notice("ROOM_SUMMARY");
+            frame.setContentType(MimeTypeUtils.APPLICATION_JSON);
+            send(frame, objectMapper.writeValueAsBytes(Map.of(
+                    "roomId", summary.getRoomId(),
+                    "roomName", summary.getRoomName() != null ? summary.getRoomName() : "",
+                    "playerNames", summary.getPlayerNames(),
+                    "gamePhase", summary.getGamePhase(),
+                    "started", summary.isStarted(),
+                    "lastActivity", summary.getLastActivity().toEpochMilli())));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not render the summary of room " + summary.getRoomId(), e);
+        }
+    }
+
+    private RoomSummary readSummary(byte[] payload) {
+        try {
+            JsonNode json = objectMapper.readTree(payload);
+            List<String> playerNames = new ArrayList<>();
+            json.path("playerNames").forEach(name -> playerNames.add(name.asText()));
+            return RoomSummary.builder()
+                    .roomId(UUID.fromString(json.path("roomId").asText()))
+                    .roomName(json.path("roomName").asText())
+                    .playerNames(List.copyOf(playerNames))
+                    .gamePhase(GamePhase.valueOf(json.path("gamePhase").asText()))
+                    .isStarted(json.path("started").asBoolean())
+                    .lastActivity(Instant.ofEpochMilli(json.path("lastActivity").asLong()))
+                    .build();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid room summary from the cluster", e);
+        }
+    }
+
+    // what the lobby shows of a room, lastActivity aside
+    private static String shownOf(RoomSummary summary) {
+        return summary.getRoomName() + '\u0000' + summary.getPlayerNames() + '\u0000' + summary.getGamePhase() + '\u0000' + summary.isStarted();
+    }
+
+    private StompHeaderAccessor notice(String op) {
+        StompHeaderAccessor frame = StompHeaderAccessor.create(StompCommand.SEND);
+        frame.setDestination(CLUSTER_TOPIC);
+        frame.setNativeHeader(NODE_HEADER, roomOwnership.getNodeId());
+        frame.setNativeHeader(OP_HEADER, op);
+        return frame;
+    }
+
+    private boolean send(StompHeaderAccessor frame, byte[] payload) {
+        TcpConnection<byte[]> current = connection;
+        if (current == null) {
+            return false;
+        }
+        current.sendAsync(MessageBuilder.createMessage(payload, frame.getMessageHeaders()));
+        return true;
+    }
+}
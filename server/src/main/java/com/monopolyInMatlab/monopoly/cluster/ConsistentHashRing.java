@@ -0,0 +1,72 @@
+package com.monopolyInMatlab.monopoly.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Immutable consistent-hash ring of node ids. A room belongs to the first node point at or after its hash,
+ * wrapping around at the end.
+ *
+ * Each node is placed at many points (virtual nodes), so rooms spread evenly and when a node joins or leaves
+ * only the rooms between its points and their neighbours move, about 1/n of them, instead of nearly all of
+ * them like with hash modulo n. Hashes only depend on the ids, so every node builds the same ring.
+ */
+final class ConsistentHashRing {
+    static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private final NavigableMap<Long, String> points = new TreeMap<>();
+    private final List<String> nodes;
+
+    ConsistentHashRing(Collection<String> nodes, int virtualNodes) {
+        this.nodes = List.copyOf(new TreeSet<>(nodes));
+        for (String node : this.nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                // on the rare collision the smaller id wins, on every node alike
+                points.merge(hash(node + "#" + i), node, (a, b) -> a.compareTo(b) <= 0 ? a : b);
+            }
+        }
+    }
+
+    List<String> nodes() {
+        return nodes;
+    }
+
+    boolean isEmpty() {
+        return nodes.isEmpty();
+    }
+
+    String ownerOf(UUID roomId) {
+        if (points.isEmpty()) {
+            throw new IllegalStateException("The ring has no nodes");
+        }
+        Map.Entry<Long, String> point = points.ceilingEntry(hash(roomId));
+        return point != null ? point.getValue() : points.firstEntry().getValue();
+    }
+
+    private static long hash(UUID roomId) {
+        return mix(roomId.getMostSignificantBits() ^ mix(roomId.getLeastSignificantBits()));
+    }
+
+    // FNV-1a over the UTF-8 bytes, then mixed so similar ids land far apart
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    // splitmix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
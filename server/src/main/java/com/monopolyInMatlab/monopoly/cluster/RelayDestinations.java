@@ -0,0 +1,122 @@
+package com.monopolyInMatlab.monopoly.cluster;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Maps the destinations clients use onto ones every common STOMP broker accepts, and back, in relay mode.
+ *
+ *   /room/{roomId}                  <->  /topic/room.{roomId}
+ *   /player/queue/{name}            <->  /queue/{name}-user{clusterSessionId}   (subscriptions)
+ *   /player/{sessionId}/queue/{name} -> /queue/{name}-user{clusterSessionId}   (messages)
+ *
+ * Player queues are resolved here instead of by Spring's user destination handler, whose queue names only
+ * carry the node-local session id, so two nodes' sessions would share a queue on the broker. Messages to a
+ * player queue go out on the relay's shared connection, the session they are for may live on another node.
+ *
+ * Registered on the client inbound channel (after PlayerSessionRegistry, which needs the client's destination),
+ * on the broker channel and on the client outbound channel.
+ */
+@Component
+public class RelayDestinations implements ChannelInterceptor {
+    public static final String ROOM_PREFIX = "/room/";
+    public static final String BROKER_ROOM_PREFIX = "/topic/room.";
+    private static final String PLAYER_QUEUE_PREFIX = "/player/queue/";
+    private static final String PLAYER_PREFIX = "/player/";
+    private static final String BROKER_QUEUE_PREFIX = "/queue/";
+    private static final String USER_SUFFIX = "-user";
+
+    private final RoomOwnership roomOwnership;
+
+    public RelayDestinations(RoomOwnership roomOwnership) {
+        this.roomOwnership = roomOwnership;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(headers);
+        String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        if (type == null || destination == null) {
+            return message;
+        }
+
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        if (destination.startsWith(ROOM_PREFIX)) {
+            // application messages go out on the relay's shared connection
+            return withDestination(message, BROKER_ROOM_PREFIX + destination.substring(ROOM_PREFIX.length()),
+                    type == SimpMessageType.MESSAGE && sessionId == null);
+        }
+        if (type == SimpMessageType.SUBSCRIBE && destination.startsWith(PLAYER_QUEUE_PREFIX) && sessionId != null) {
+            String queue = destination.substring(PLAYER_QUEUE_PREFIX.length());
+            return withDestination(message, BROKER_QUEUE_PREFIX + queue + USER_SUFFIX + roomOwnership.clusterSessionId(sessionId), false);
+        }
+        if (type == SimpMessageType.MESSAGE && destination.startsWith(PLAYER_PREFIX)) {
+            int queueStart = destination.indexOf(BROKER_QUEUE_PREFIX, PLAYER_PREFIX.length());
+            if (queueStart > 0) {
+                String target = destination.substring(PLAYER_PREFIX.length(), queueStart);
+                String queue = destination.substring(queueStart + BROKER_QUEUE_PREFIX.length());
+                return withDestination(message, BROKER_QUEUE_PREFIX + queue + USER_SUFFIX + roomOwnership.clusterSessionId(target), true);
+            }
+        }
+        return message;
+    }
+
+    /**
+     * The destination a client subscribed to, for a MESSAGE frame the broker delivered to it.
+     */
+    public Message<?> toClient(Message<?> message) {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+            return message;
+        }
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination == null) {
+            return message;
+        }
+        if (destination.startsWith(BROKER_ROOM_PREFIX)) {
+            return withDestination(message, ROOM_PREFIX + destination.substring(BROKER_ROOM_PREFIX.length()), false);
+        }
+        int user = destination.lastIndexOf(USER_SUFFIX);
+        if (destination.startsWith(BROKER_QUEUE_PREFIX) && user > BROKER_QUEUE_PREFIX.length()) {
+            return withDestination(message, PLAYER_QUEUE_PREFIX + destination.substring(BROKER_QUEUE_PREFIX.length(), user), false);
+        }
+        return message;
+    }
+
+    /**
+     * Outbound counterpart of preSend, registered on the client outbound channel.
+     */
+    public ChannelInterceptor outbound() {
+        return new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                return toClient(message);
+            }
+        };
+    }
+
+    private static Message<?> withDestination(Message<?> message, String destination, boolean dropSession) {
+        MessageHeaderAccessor accessor = MessageHeaderAccessor.getMutableAccessor(message);
+        if (accessor instanceof SimpMessageHeaderAccessor simpAccessor) {
+            simpAccessor.setDestination(destination);
+            if (dropSession) {
+                simpAccessor.setSessionId(null);
+            }
+        } else {
+            accessor.setHeader(SimpMessageHeaderAccessor.DESTINATION_HEADER, destination);
+        }
+        // STOMP frames carry the destination twice, the relay writes the native one
+        if (accessor instanceof NativeMessageHeaderAccessor nativeAccessor && nativeAccessor.getFirstNativeHeader("destination") != null) {
+            nativeAccessor.setNativeHeader("destination", destination);
+        }
+        return MessageBuilder.createMessage(message.getPayload(), accessor.getMessageHeaders());
+    }
+}
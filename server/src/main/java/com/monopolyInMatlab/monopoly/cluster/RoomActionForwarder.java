@@ -0,0 +1,69 @@
+package com.monopolyInMatlab.monopoly.cluster;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * Sends room actions for rooms this node doesn't own to their owner instead of handling them here,
+ * so a player can stay connected to whichever node their websocket landed on.
+ * Registered on the client inbound channel, does nothing unless the server runs in a cluster.
+ */
+@Component
+public class RoomActionForwarder implements ChannelInterceptor {
+    private static final String ROOM_ACTION_PREFIX = "/monopoly/room/";
+
+    private final RoomOwnership roomOwnership;
+    private final ClusterLink clusterLink;
+
+    public RoomActionForwarder(RoomOwnership roomOwnership, ClusterLink clusterLink) {
+        this.roomOwnership = roomOwnership;
+        this.clusterLink = clusterLink;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        if (!roomOwnership.isClustered() || SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE) {
+            return message;
+        }
+        UUID roomId = roomIdOf(SimpMessageHeaderAccessor.getDestination(headers));
+        if (roomId == null || roomOwnership.isLocal(roomId)) {
+            return message;
+        }
+        if (headers.containsKey(ClusterLink.FORWARDED_HEADER)) {
+            // only happens while nodes disagree about the node list, forwarding again could loop
+            System.out.println("Dropped action for room " + roomId + " forwarded by node " + headers.get(ClusterLink.FORWARDED_HEADER)
+                    + ", it belongs to node " + roomOwnership.ownerOf(roomId));
+            return null;
+        }
+        if (!(message.getPayload() instanceof byte[] payload)) {
+            return message;
+        }
+
+        MessageHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, MessageHeaderAccessor.class);
+        clusterLink.forward(roomOwnership.ownerOf(roomId), SimpMessageHeaderAccessor.getDestination(headers),
+                SimpMessageHeaderAccessor.getSessionId(headers), accessor != null ? accessor.getContentType() : null, payload);
+        return null;
+    }
+
+    // the room id of /monopoly/room/{roomId}/..., null for anything else, including malformed ids the controller reports
+    private static UUID roomIdOf(String destination) {
+        if (destination == null || !destination.startsWith(ROOM_ACTION_PREFIX)) {
+            return null;
+        }
+        int end = destination.indexOf('/', ROOM_ACTION_PREFIX.length());
+        try {
+            return UUID.fromString(destination.substring(ROOM_ACTION_PREFIX.length(), end < 0 ? destination.length() : end));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.monopolyInMatlab.monopoly.cluster;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Redirects REST requests about one room (/menu/room/{roomId}/..., /menu/rooms/{roomId}/...) to the node that
+ * owns it, with a 307 so POSTs are repeated as POSTs. Reads are redirected too, only the owner's snapshot and
+ * long-poll waiters are up to date.
+ */
+@Component
+public class RoomOwnerRedirect implements HandlerInterceptor {
+    private final RoomOwnership roomOwnership;
+
+    public RoomOwnerRedirect(RoomOwnership roomOwnership) {
+        this.roomOwnership = roomOwnership;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!roomOwnership.isClustered()) {
+            return true;
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, String> pathVariables = (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        String roomId = pathVariables != null ? pathVariables.get("roomId") : null;
+        if (roomId == null) {
+            return true;
+        }
+
+        UUID id;
+        try {
+            id = UUID.fromString(roomId);
+        } catch (IllegalArgumentException e) {
+            // the controller rejects it
+            return true;
+        }
+        if (roomOwnership.isLocal(id)) {
+            return true;
+        }
+
+        String location = roomOwnership.urlOf(roomOwnership.ownerOf(id)) + request.getRequestURI()
+                + (request.getQueryString() != null ? "?" + request.getQueryString() : "");
+        response.setStatus(HttpStatus.TEMPORARY_REDIRECT.value());
+        response.setHeader(HttpHeaders.LOCATION, location);
+        return false;
+    }
+}
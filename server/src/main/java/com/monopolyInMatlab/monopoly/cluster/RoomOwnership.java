@@ -0,0 +1,158 @@
+package com.monopolyInMatlab.monopoly.cluster;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Decides which server node owns a room. Only the owner ever mutates a GameRoom, other nodes forward
+ * the room's actions to it (RoomActionForwarder) and redirect its REST requests (RoomOwnerRedirect).
+ *
+ * Rooms are placed on a consistent-hash ring of the nodes that are currently up. ClusterLink keeps the
+ * membership up to date, and RoomRebalancer hands rooms over whenever it changes.
+ *
+ * Nodes are configured as monopoly.cluster.nodes, "id=baseUrl" pairs separated by commas, every node
+ * that may ever join must be listed there and every node must be given the same list. Without
+ * monopoly.cluster.node-id the server runs alone and owns every room.
+ */
+@Component
+public class RoomOwnership {
+    private final String nodeId;
+    private final Map<String, String> nodeUrls;
+    private final int virtualNodes;
+    private volatile ConsistentHashRing ring;
+
+    public RoomOwnership(@Value("${monopoly.cluster.node-id:}") String nodeId,
+                         @Value("${monopoly.cluster.nodes:}") String nodes,
+                         @Value("${monopoly.cluster.virtual-nodes:" + ConsistentHashRing.DEFAULT_VIRTUAL_NODES + "}") int virtualNodes) {
+        this.nodeId = nodeId.trim();
+        this.nodeUrls = parseNodes(nodes);
+        this.virtualNodes = virtualNodes;
+
+        if (!this.nodeId.isEmpty() && !nodeUrls.containsKey(this.nodeId)) {
+            throw new IllegalStateException("monopoly.cluster.nodes does not list this node's id " + this.nodeId);
+        }
+        if (this.nodeId.isEmpty() && !nodeUrls.isEmpty()) {
+            throw new IllegalStateException("monopoly.cluster.nodes is set but monopoly.cluster.node-id is not");
+        }
+        if (virtualNodes < 1) {
+            throw new IllegalStateException("monopoly.cluster.virtual-nodes must be at least 1");
+        }
+        // until other nodes are heard from, this one owns everything
+        this.ring = new ConsistentHashRing(Set.of(this.nodeId), virtualNodes);
+    }
+
+    public boolean isClustered() {
+        return !nodeId.isEmpty();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Whether the id is one of the configured nodes.
+     */
+    public boolean isKnownNode(String node) {
+        return nodeUrls.containsKey(node);
+    }
+
+    /**
+     * The nodes rooms are currently placed on.
+     */
+    public List<String> getMembers() {
+        return ring.nodes();
+    }
+
+    /**
+     * Places rooms on these nodes from now on, this node always included. Returns whether that changed anything.
+     */
+    public synchronized boolean setMembers(Collection<String> members) {
+        Set<String> nodes = new TreeSet<>(members);
+        nodes.add(nodeId);
+        nodes.retainAll(nodeUrls.isEmpty() ? Set.of(nodeId) : nodeUrls.keySet());
+        if (nodes.equals(new TreeSet<>(ring.nodes()))) {
+            return false;
+        }
+        ring = new ConsistentHashRing(nodes, virtualNodes);
+        return true;
+    }
+
+    /**
+     * Takes this node off the ring before it shuts down, so its rooms are placed on the others.
+     * Returns false if there are no others.
+     */
+    public synchronized boolean leave() {
+        Set<String> others = new TreeSet<>(ring.nodes());
+        others.remove(nodeId);
+        if (others.isEmpty()) {
+            return false;
+        }
+        ring = new ConsistentHashRing(others, virtualNodes);
+        return true;
+    }
+
+    public String ownerOf(UUID roomId) {
+        return ring.ownerOf(roomId);
+    }
+
+    public boolean isLocal(UUID roomId) {
+        return !isClustered() || nodeId.equals(ownerOf(roomId));
+    }
+
+    /**
+     * Base URL of a node, e.g. http://monopoly-b:8000.
+     */
+    public String urlOf(String node) {
+        return nodeUrls.get(node);
+    }
+
+    /**
+     * A fresh room id owned by this node, so the room is created where the request landed.
+     */
+    public UUID newRoomId() {
+        UUID roomId = UUID.randomUUID();
+        while (!isLocal(roomId)) {
+            roomId = UUID.randomUUID();
+        }
+        return roomId;
+    }
+
+    /**
+     * STOMP session ids are only unique within one node, across the cluster they are prefixed with the node id.
+     * Ids that already carry a node id are returned as they are.
+     */
+    public String clusterSessionId(String sessionId) {
+        if (!isClustered() || sessionId.indexOf('.') >= 0) {
+            return sessionId;
+        }
+        return nodeId + "." + sessionId;
+    }
+
+    private static Map<String, String> parseNodes(String nodes) {
+        Map<String, String> urls = new TreeMap<>();
+        for (String node : nodes.split(",")) {
+            if (node.isBlank()) {
+                continue;
+            }
+            int separator = node.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalStateException("Invalid monopoly.cluster.nodes entry, expected id=baseUrl: " + node.trim());
+            }
+            String id = node.substring(0, separator).trim();
+            if (id.indexOf('.') >= 0) {
+                throw new IllegalStateException("Cluster node ids must not contain '.': " + id);
+            }
+            String url = node.substring(separator + 1).trim();
+            urls.put(id, url.endsWith("/") ? url.substring(0, url.length() - 1) : url);
+        }
+        return urls;
+    }
+}
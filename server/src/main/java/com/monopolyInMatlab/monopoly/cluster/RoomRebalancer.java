@@ -0,0 +1,154 @@
+package com.monopolyInMatlab.monopoly.cluster;
+
+import com.monopolyInMatlab.monopoly.concurrency.RoomExecutor;
+import com.monopolyInMatlab.monopoly.domain.GameRoom;
+import com.monopolyInMatlab.monopoly.persistence.RoomRepository;
+import com.monopolyInMatlab.monopoly.persistence.RoomSerializer;
+import com.monopolyInMatlab.monopoly.persistence.RoomSnapshot;
+import com.monopolyInMatlab.monopoly.persistence.RoomSnapshots;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Moves rooms to their owner whenever the ring changes. The old owner encodes the room on its writer and
+ * sends it to the new owner. Once the broker has taken it, the old owner deletes its own copy on the writer
+ * again, so the room is never mutated on two nodes. The writer runs the room's other actions in between,
+ * if one of them changed the room the newer copy is sent after it.
+ * Clients don't notice beyond a STATE_KEYFRAME: room topics live on the broker, and their actions and
+ * REST requests follow the ring to the new owner.
+ *
+ * Actions that reach a node in the short window where it has already given a room away, or hasn't received
+ * it yet, fail like actions for a missing room.
+ */
+@Component
+public class RoomRebalancer {
+    private final RoomOwnership roomOwnership;
+    private final RoomRepository roomRepository;
+    private final RoomExecutor roomExecutor;
+    private final RoomSnapshots roomSnapshots;
+    private final ClusterLink clusterLink;
+    // one pass at a time, ring changes during a pass are picked up by one more pass
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("room-rebalancer").factory());
+    private final AtomicBoolean passQueued = new AtomicBoolean();
+
+    public RoomRebalancer(RoomOwnership roomOwnership, RoomRepository roomRepository, RoomExecutor roomExecutor,
+                          RoomSnapshots roomSnapshots, ClusterLink clusterLink) {
+        this.roomOwnership = roomOwnership;
+        this.roomRepository = roomRepository;
+        this.roomExecutor = roomExecutor;
+        this.roomSnapshots = roomSnapshots;
+        this.clusterLink = clusterLink;
+    }
+
+    /**
+     * Hands over every room this node no longer owns, in the background.
+     */
+    public void rebalance() {
+        if (passQueued.compareAndSet(false, true)) {
+            worker.execute(() -> {
+                passQueued.set(false);
+                handOffForeignRooms();
+            });
+        }
+    }
+
+    /**
+     * Hands over every room this node no longer owns and returns once they are all gone, used when leaving.
+     */
+    public int handOffForeignRooms() {
+        List<UUID> roomIds = new ArrayList<>();
+        List<CompletableFuture<Boolean>> handOffs = new ArrayList<>();
+        for (RoomSnapshot snapshot : roomSnapshots.getAll()) {
+            UUID roomId = snapshot.getRoomId();
+            if (!roomOwnership.isLocal(roomId)) {
+                roomIds.add(roomId);
+                handOffs.add(handOff(roomId));
+            }
+        }
+        int moved = 0;
+        for (int i = 0; i < handOffs.size(); i++) {
+            if (handOffs.get(i).join()) {
+                roomExecutor.release(roomIds.get(i));
+                moved++;
+            }
+        }
+        if (moved > 0) {
+            System.out.println("Handed " + moved + " rooms over to their new owners, " + roomOwnership.getMembers() + " are up");
+        }
+        return moved;
+    }
+
+    /**
+     * Takes over a room another node handed to this one. If this node doesn't think it owns the room, the two
+     * nodes don't agree on the ring yet. It is kept until the next pass rather than bounced straight back,
+     * by then the ring has usually settled.
+     */
+    public void accept(byte[] encodedRoom) {
+        GameRoom room = RoomSerializer.fromBytes(encodedRoom);
+        UUID roomId = room.getRoomId();
+        // queued rather than waited for, the caller is the thread that reads the broker's receipts
+        roomExecutor.execute(roomId, () -> {
+            GameRoom current = roomRepository.findGameRoomById(roomId);
+            // a copy sent again after a lost receipt must not roll back what happened here since
+            if (current != null && current.getVersion() >= room.getVersion()) {
+                return;
+            }
+            roomRepository.importRoom(room);
+        });
+    }
+
+    // encodes the room on its writer and sends it without waiting there, the receipt finishes it on the writer
+    private CompletableFuture<Boolean> handOff(UUID roomId) {
+        CompletableFuture<Boolean> moved = new CompletableFuture<>();
+        roomExecutor.execute(roomId, () -> {
+            // the owner may have changed back while this room was waiting for its turn
+            String owner = roomOwnership.ownerOf(roomId);
+            GameRoom room = roomRepository.findGameRoomById(roomId);
+            if (room == null || roomOwnership.isLocal(roomId)) {
+                moved.complete(false);
+                return;
+            }
+            long version = room.getVersion();
+            byte[] encodedRoom;
+            try {
+                encodedRoom = RoomSerializer.toBytes(room);
+            } catch (RuntimeException e) {
+                System.out.println("Could not encode room " + roomId + " to hand it over: " + e.getMessage());
+                moved.complete(false);
+                return;
+            }
+            clusterLink.handOff(owner, encodedRoom).thenAccept(received ->
+                    roomExecutor.execute(roomId, () -> finishHandOff(roomId, version, received, moved)));
+        });
+        return moved;
+    }
+
+    private void finishHandOff(UUID roomId, long version, boolean received, CompletableFuture<Boolean> moved) {
+        GameRoom room = roomRepository.findGameRoomById(roomId);
+        // keep the room if it couldn't be sent, or is ours again, the next pass tries again
+        if (!received || room == null || roomOwnership.isLocal(roomId)) {
+            moved.complete(false);
+            return;
+        }
+        if (room.getVersion() != version) {
+            // changed here while the copy was on its way, the new owner takes a newer copy over the one it got
+            handOff(roomId).thenAccept(moved::complete);
+            return;
+        }
+        roomRepository.deleteRoom(roomId);
+        moved.complete(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+}
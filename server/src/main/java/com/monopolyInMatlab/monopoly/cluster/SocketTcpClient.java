@@ -0,0 +1,231 @@
+package com.monopolyInMatlab.monopoly.cluster;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompDecoder;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.tcp.ReconnectStrategy;
+import org.springframework.messaging.tcp.TcpConnection;
+import org.springframework.messaging.tcp.TcpConnectionHandler;
+import org.springframework.messaging.tcp.TcpOperations;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * STOMP over plain TCP sockets, one virtual thread reading each connection.
+ *
+ * Spring's broker relay and ClusterLink talk to the broker through this instead of the Reactor Netty client
+ * the relay defaults to, so relay mode needs no extra dependencies. Frames are encoded and decoded with
+ * Spring's own STOMP codec, the same one the relay would use.
+ */
+public class SocketTcpClient implements TcpOperations<byte[]> {
+    private static final int CONNECT_TIMEOUT_MS = 10000;
+    private static final int READ_CHUNK_SIZE = 8192;
+    // a broker frame bigger than this is treated as a broken connection rather than buffered forever
+    private static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+    private final String host;
+    private final int port;
+    private final StompDecoder decoder = new StompDecoder();
+    private final StompEncoder encoder = new StompEncoder();
+    private final Set<SocketConnection> connections = ConcurrentHashMap.newKeySet();
+    // runs inactivity checks and reconnect attempts, never blocks
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "stomp-tcp-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean shutdown;
+
+    public SocketTcpClient(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    @Override
+    public CompletableFuture<Void> connectAsync(TcpConnectionHandler<byte[]> handler) {
+        return connect(handler, null, 0);
+    }
+
+    /**
+     * Like connectAsync(handler), but keeps reconnecting after failed attempts and after the connection closes.
+     */
+    @Override
+    public CompletableFuture<Void> connectAsync(TcpConnectionHandler<byte[]> handler, ReconnectStrategy reconnectStrategy) {
+        return connect(handler, reconnectStrategy, 0);
+    }
+
+    @Override
+    public CompletableFuture<Void> shutdownAsync() {
+        shutdown = true;
+        for (SocketConnection connection : connections) {
+            connection.close();
+        }
+        scheduler.shutdownNow();
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private CompletableFuture<Void> connect(TcpConnectionHandler<byte[]> handler, ReconnectStrategy reconnectStrategy, int attempt) {
+        CompletableFuture<Void> connected = new CompletableFuture<>();
+        if (shutdown) {
+            connected.completeExceptionally(new IllegalStateException("TCP client is shut down"));
+            return connected;
+        }
+
+        Thread.ofVirtual().name("stomp-tcp-" + host + ":" + port).start(() -> {
+            Socket socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+                socket.setTcpNoDelay(true);
+            } catch (IOException e) {
+                closeQuietly(socket);
+                handler.afterConnectFailure(e);
+                connected.completeExceptionally(e);
+                reconnect(handler, reconnectStrategy, attempt + 1);
+                return;
+            }
+
+            SocketConnection connection = new SocketConnection(socket, handler);
+            connections.add(connection);
+            connected.complete(null);
+            handler.afterConnected(connection);
+            connection.readUntilClosed();
+            connections.remove(connection);
+            handler.afterConnectionClosed();
+            reconnect(handler, reconnectStrategy, 1);
+        });
+        return connected;
+    }
+
+    private void reconnect(TcpConnectionHandler<byte[]> handler, ReconnectStrategy reconnectStrategy, int attempt) {
+        if (reconnectStrategy == null || shutdown) {
+            return;
+        }
+        Long delay = reconnectStrategy.getTimeToNextAttempt(attempt);
+        if (delay != null) {
+            scheduler.schedule(() -> connect(handler, reconnectStrategy, attempt), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // already closed
+        }
+    }
+
+    private final class SocketConnection implements TcpConnection<byte[]> {
+        private final Socket socket;
+        private final TcpConnectionHandler<byte[]> handler;
+        private final Set<ScheduledFuture<?>> inactivityChecks = ConcurrentHashMap.newKeySet();
+        private volatile long lastRead = System.currentTimeMillis();
+        private volatile long lastWrite = System.currentTimeMillis();
+        private volatile boolean closed;
+
+        SocketConnection(Socket socket, TcpConnectionHandler<byte[]> handler) {
+            this.socket = socket;
+            this.handler = handler;
+        }
+
+        @Override
+        public CompletableFuture<Void> sendAsync(Message<byte[]> message) {
+            byte[] frame = encoder.encode(message);
+            try {
+                OutputStream out = socket.getOutputStream();
+                // the relay sends from several threads, frames must not interleave
+                synchronized (this) {
+                    out.write(frame);
+                    out.flush();
+                }
+                lastWrite = System.currentTimeMillis();
+                return CompletableFuture.completedFuture(null);
+            } catch (IOException e) {
+                close();
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        @Override
+        public void onReadInactivity(Runnable runnable, long duration) {
+            watch(runnable, duration, () -> System.currentTimeMillis() - lastRead >= duration);
+        }
+
+        // checked at half the interval, so something is written at least once per duration
+        @Override
+        public void onWriteInactivity(Runnable runnable, long duration) {
+            watch(runnable, duration, () -> System.currentTimeMillis() - lastWrite >= duration / 2);
+        }
+
+        private void watch(Runnable runnable, long duration, BooleanSupplier inactive) {
+            long period = Math.max(duration / 4, 10);
+            inactivityChecks.add(scheduler.scheduleAtFixedRate(() -> {
+                if (!closed && inactive.getAsBoolean()) {
+                    runnable.run();
+                }
+            }, period, period, TimeUnit.MILLISECONDS));
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            for (ScheduledFuture<?> check : inactivityChecks) {
+                check.cancel(false);
+            }
+            closeQuietly(socket);
+        }
+
+        void readUntilClosed() {
+            ByteBuffer buffer = ByteBuffer.allocate(READ_CHUNK_SIZE * 4);
+            byte[] chunk = new byte[READ_CHUNK_SIZE];
+            try {
+                InputStream in = socket.getInputStream();
+                int read;
+                while ((read = in.read(chunk)) != -1) {
+                    lastRead = System.currentTimeMillis();
+                    if (buffer.remaining() < read) {
+                        buffer = grow(buffer, read);
+                    }
+                    buffer.put(chunk, 0, read);
+                    buffer.flip();
+                    // decodes every complete frame and leaves a partial one in the buffer for the next read
+                    List<Message<byte[]>> messages = decoder.decode(buffer);
+                    buffer.compact();
+                    for (Message<byte[]> message : messages) {
+                        handler.handleMessage(message);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                if (!closed) {
+                    handler.handleFailure(e);
+                }
+            } finally {
+                close();
+            }
+        }
+
+        private ByteBuffer grow(ByteBuffer buffer, int needed) throws IOException {
+            int size = Math.max(buffer.capacity() * 2, buffer.position() + needed);
+            if (size > MAX_FRAME_SIZE) {
+                throw new IOException("STOMP frame from " + host + ":" + port + " exceeds " + MAX_FRAME_SIZE + " bytes");
+            }
+            ByteBuffer bigger = ByteBuffer.allocate(size);
+            buffer.flip();
+            bigger.put(buffer);
+            return bigger;
+        }
+    }
+}
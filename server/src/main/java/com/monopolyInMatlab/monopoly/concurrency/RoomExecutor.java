@@ -0,0 +1,171 @@
+package com.monopolyInMatlab.monopoly.concurrency;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs every action for a room on a single logical writer.
+ * Each room gets its own mailbox, actions for the same room run one at a time in submission order,
+ * and different rooms are drained in parallel by a shared pool of worker threads.
+ */
+@Component
+public class RoomExecutor {
+    // how many actions one mailbox may run before giving its worker back to other rooms
+    private static final int MAX_ACTIONS_PER_DRAIN = 64;
+
+    // the room whose mailbox the current thread is draining, used to run nested calls inline
+    private static final ThreadLocal<UUID> currentRoom = new ThreadLocal<>();
+
+    private final ConcurrentMap<UUID, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final ExecutorService workers;
+
+    public RoomExecutor(@Value("${monopoly.rooms.writer-threads:0}") int writerThreads) {
+        int threads = writerThreads > 0 ? writerThreads : Runtime.getRuntime().availableProcessors();
+        this.workers = Executors.newFixedThreadPool(threads, new WriterThreadFactory());
+    }
+
+    /**
+     * Queues an action on the room's mailbox and returns straight away.
+     */
+    public void execute(UUID roomId, Runnable action) {
+        // queued inside compute, so release can't drop the mailbox between finding it and queueing on it
+        Mailbox mailbox = mailboxes.compute(roomId, (id, current) -> {
+            Mailbox target = current != null ? current : new Mailbox(id);
+            target.actions.add(action);
+            return target;
+        });
+        mailbox.schedule();
+    }
+
+    /**
+     * Runs an action on the room's writer and waits for its result.
+     * If the calling thread is already the writer for this room the action runs inline,
+     * so service methods can call each other without deadlocking on their own mailbox.
+     */
+    public <T> T call(UUID roomId, Supplier<T> action) {
+        if (isWriterFor(roomId)) {
+            return action.get();
+        }
+
+        try {
+            return submit(roomId, action).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Queues an action on the room's mailbox and returns a future for its result.
+     */
+    public <T> CompletableFuture<T> submit(UUID roomId, Supplier<T> action) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        execute(roomId, () -> {
+            try {
+                result.complete(action.get());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        return result;
+    }
+
+    public void run(UUID roomId, Runnable action) {
+        call(roomId, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public boolean isWriterFor(UUID roomId) {
+        return roomId.equals(currentRoom.get());
+    }
+
+    /**
+     * Drops the mailbox of a room that no longer exists, as long as nothing is queued on it.
+     */
+    public void release(UUID roomId) {
+        mailboxes.computeIfPresent(roomId, (id, mailbox) -> mailbox.isIdle() ? null : mailbox);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    private final class Mailbox {
+        private final UUID roomId;
+        private final Queue<Runnable> actions = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        private Mailbox(UUID roomId) {
+            this.roomId = roomId;
+        }
+
+        boolean isIdle() {
+            return !scheduled.get() && actions.isEmpty();
+        }
+
+        private void schedule() {
+            // only one worker may drain a mailbox at a time, that is what keeps the room single-writer
+            if (scheduled.compareAndSet(false, true)) {
+                workers.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            currentRoom.set(roomId);
+            try {
+                Runnable action;
+                int ran = 0;
+                while (ran < MAX_ACTIONS_PER_DRAIN && (action = actions.poll()) != null) {
+                    try {
+                        action.run();
+                    } catch (Throwable t) {
+                        System.out.println("Room " + roomId + " action failed: " + t);
+                    }
+                    ran++;
+                }
+            } finally {
+                currentRoom.remove();
+                scheduled.set(false);
+            }
+
+            // something may have been queued between our last poll and releasing the flag
+            if (!actions.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    private static final class WriterThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "room-writer-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
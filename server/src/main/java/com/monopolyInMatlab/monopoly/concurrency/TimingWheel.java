@@ -0,0 +1,218 @@
+package com.monopolyInMatlab.monopoly.concurrency;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One hashed timing wheel for the deadlines of every room, instead of a scheduled task or a thread each.
+ *
+ * The wheel is a ring of monopoly.rooms.timers.wheel-size buckets and one thread that moves on to the next
+ * bucket every monopoly.rooms.timers.tick-ms. A timeout goes into the bucket of the tick it falls in, with the
+ * number of whole turns of the wheel left before that, so scheduling and cancelling are O(1) however many
+ * timeouts there are. A timeout never fires early and at most about one tick late.
+ *
+ * Tasks run on the wheel's thread and must only hand their work off, e.g. to the room's RoomExecutor.
+ */
+@Component
+public class TimingWheel {
+    // timeouts moved from the queue into buckets per tick, the rest wait for the next one
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long startNanos = System.nanoTime();
+    // scheduled and cancelled by any thread, only the wheel's thread touches the buckets
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    public TimingWheel(@Value("${monopoly.rooms.timers.tick-ms:100}") long tickMs,
+                       @Value("${monopoly.rooms.timers.wheel-size:512}") int wheelSize) {
+        if (tickMs < 1 || wheelSize < 1 || wheelSize > 1 << 30) {
+            throw new IllegalStateException("monopoly.rooms.timers needs tick-ms >= 1 and wheel-size between 1 and 2^30");
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMs);
+        // a power of two, so a tick finds its bucket with a mask
+        int size = Integer.highestOneBit(wheelSize - 1) << 1;
+        this.wheel = new Bucket[Math.max(size, 1)];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = wheel.length - 1;
+
+        this.thread = new Thread(this::run, "timing-wheel");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Runs the task on the wheel's thread once delayMs have passed, unless the returned timeout is cancelled first.
+     */
+    public Timeout schedule(Runnable task, long delayMs) {
+        Timeout timeout = new Timeout(task, System.nanoTime() - startNanos + TimeUnit.MILLISECONDS.toNanos(Math.max(delayMs, 0)));
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    @PreDestroy
+    public void close() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        long tick = 0;
+        while (running) {
+            // a bucket is only worked on once its tick is over, so nothing in it fires before its deadline
+            long tickEnd = tickNanos * (tick + 1);
+            long wait;
+            while (running && (wait = tickEnd - (System.nanoTime() - startNanos)) > 0) {
+                LockSupport.parkNanos(this, wait);
+            }
+            if (!running) {
+                break;
+            }
+            unlinkCancelled();
+            transferScheduled(tick);
+            wheel[(int) (tick & mask)].expire(tickEnd);
+            tick++;
+        }
+    }
+
+    private void transferScheduled(long tick) {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout timeout = scheduled.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.state.get() != Timeout.PENDING) {
+                continue;
+            }
+            long deadlineTick = timeout.deadlineNanos / tickNanos;
+            timeout.remainingTurns = (deadlineTick - tick) / wheel.length;
+            // one that is already due goes into the current bucket and fires at the end of this tick
+            wheel[(int) (Math.max(deadlineTick, tick) & mask)].add(timeout);
+        }
+    }
+
+    private void unlinkCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    /**
+     * A task waiting on the wheel.
+     */
+    public final class Timeout {
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final Runnable task;
+        private final long deadlineNanos;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        // only touched by the wheel's thread
+        private long remainingTurns;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(Runnable task, long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * Returns false if the task has already run, or is running, or was cancelled before.
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(PENDING, CANCELLED)) {
+                return false;
+            }
+            // the wheel's thread takes it out of its bucket on its next tick
+            cancelled.add(this);
+            return true;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(PENDING, EXPIRED)) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.out.println("Timing wheel task failed: " + e.getMessage());
+            }
+        }
+    }
+
+    // the timeouts of one slot of the wheel, whatever turn they are due in
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void expire(long tickEnd) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingTurns <= 0 && timeout.deadlineNanos <= tickEnd) {
+                    remove(timeout);
+                    timeout.expire();
+                } else if (timeout.state.get() == Timeout.CANCELLED) {
+                    remove(timeout);
+                } else {
+                    timeout.remainingTurns--;
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
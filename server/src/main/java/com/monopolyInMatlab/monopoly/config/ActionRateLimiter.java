@@ -0,0 +1,175 @@
+package com.monopolyInMatlab.monopoly.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throttles room actions per session, so a flooding client can't make the room's writer and every
+ * subscriber pay for each frame it sends. Frames over the limit are dropped here, before they are
+ * forwarded to another node or reach GameWebsocketController.
+ *
+ * Actions fall into classes with their own limit, monopoly.rate-limit.{class}.per-second with bursts of
+ * up to monopoly.rate-limit.{class}.burst:
+ *   chat    /room/{roomId}/chat
+ *   bid     /room/{roomId}/game/placeBid
+ *   turn    every other /room/{roomId}/game/... action
+ *   other   everything else sent to /monopoly, e.g. join and resume
+ *
+ * Each session has one bucket per class, kept as its theoretical arrival time (GCRA), a single long that is
+ * updated with compare-and-set, so sessions never wait on each other or on a lock. It behaves exactly like a
+ * token bucket that refills per-second tokens a second and holds burst of them.
+ *
+ * Only frames a client sent count. Actions forwarded from another node were counted there, and ones the server
+ * sends itself aren't STOMP frames. Allowed and rejected frames per class
+ * are served at /stats/rate-limits.
+ */
+@Component
+public class ActionRateLimiter implements ChannelInterceptor {
+    private static final String ROOM_PREFIX = "/monopoly/room/";
+    private static final String APPLICATION_PREFIX = "/monopoly/";
+
+    private final Limit[] limits;
+    // one entry per class, in ActionClass order
+    private final ConcurrentMap<String, AtomicLongArray> buckets = new ConcurrentHashMap<>();
+
+    public ActionRateLimiter(@Value("${monopoly.rate-limit.chat.per-second:2}") double chatPerSecond,
+                             @Value("${monopoly.rate-limit.chat.burst:5}") int chatBurst,
+                             @Value("${monopoly.rate-limit.bid.per-second:5}") double bidPerSecond,
+                             @Value("${monopoly.rate-limit.bid.burst:10}") int bidBurst,
+                             @Value("${monopoly.rate-limit.turn.per-second:5}") double turnPerSecond,
+                             @Value("${monopoly.rate-limit.turn.burst:10}") int turnBurst,
+                             @Value("${monopoly.rate-limit.other.per-second:5}") double otherPerSecond,
+                             @Value("${monopoly.rate-limit.other.burst:20}") int otherBurst) {
+        limits = new Limit[]{
+                new Limit(ActionClass.CHAT, chatPerSecond, chatBurst),
+                new Limit(ActionClass.BID, bidPerSecond, bidBurst),
+                new Limit(ActionClass.TURN, turnPerSecond, turnBurst),
+                new Limit(ActionClass.OTHER, otherPerSecond, otherBurst)
+        };
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        if (sessionId == null || destination == null || !destination.startsWith(APPLICATION_PREFIX)) {
+            return message;
+        }
+        StompHeaderAccessor frame = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (frame == null || frame.getCommand() != StompCommand.SEND) {
+            return message;
+        }
+
+        Limit limit = limits[classify(destination).ordinal()];
+        AtomicLongArray sessionBuckets = buckets.computeIfAbsent(sessionId, id -> newBuckets());
+        if (tryAcquire(sessionBuckets, limit, System.nanoTime())) {
+            limit.allowed.increment();
+            return message;
+        }
+        limit.rejected.increment();
+        return null;
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        buckets.remove(event.getSessionId());
+    }
+
+    /**
+     * The limit of every action class and how many frames it let through or rejected since startup.
+     */
+    public List<ActionStats> getStats() {
+        List<ActionStats> stats = new ArrayList<>(limits.length);
+        for (Limit limit : limits) {
+            stats.add(new ActionStats(limit.actionClass.name().toLowerCase(), limit.perSecond, limit.burst,
+                    limit.allowed.sum(), limit.rejected.sum()));
+        }
+        return stats;
+    }
+
+    private static ActionClass classify(String destination) {
+        if (!destination.startsWith(ROOM_PREFIX)) {
+            return ActionClass.OTHER;
+        }
+        int action = destination.indexOf('/', ROOM_PREFIX.length());
+        String path = action > 0 ? destination.substring(action) : "";
+        if (path.equals("/chat")) {
+            return ActionClass.CHAT;
+        }
+        if (path.equals("/game/placeBid")) {
+            return ActionClass.BID;
+        }
+        return path.startsWith("/game/") ? ActionClass.TURN : ActionClass.OTHER;
+    }
+
+    private static boolean tryAcquire(AtomicLongArray sessionBuckets, Limit limit, long now) {
+        int index = limit.actionClass.ordinal();
+        while (true) {
+            long arrival = sessionBuckets.get(index);
+            // a bucket that has been idle is full, it doesn't keep refilling past that
+            long next = Math.max(arrival, now) + limit.intervalNanos;
+            if (next - now > limit.toleranceNanos) {
+                return false;
+            }
+            if (sessionBuckets.compareAndSet(index, arrival, next)) {
+                return true;
+            }
+        }
+    }
+
+    private AtomicLongArray newBuckets() {
+        AtomicLongArray sessionBuckets = new AtomicLongArray(limits.length);
+        for (int i = 0; i < limits.length; i++) {
+            // nanoTime can be negative, so the start has to be before any of it
+            sessionBuckets.set(i, Long.MIN_VALUE);
+        }
+        return sessionBuckets;
+    }
+
+    private enum ActionClass {
+        CHAT, BID, TURN, OTHER
+    }
+
+    public record ActionStats(String action, double perSecond, int burst, long allowed, long rejected) {
+    }
+
+    private static final class Limit {
+        private final ActionClass actionClass;
+        private final double perSecond;
+        private final int burst;
+        private final long intervalNanos;
+        private final long toleranceNanos;
+        private final LongAdder allowed = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+
+        Limit(ActionClass actionClass, double perSecond, int burst) {
+            String name = actionClass.name().toLowerCase();
+            if (perSecond <= 0 || burst < 1) {
+                throw new IllegalStateException("monopoly.rate-limit." + name + " needs per-second > 0 and burst >= 1");
+            }
+            this.actionClass = actionClass;
+            this.perSecond = perSecond;
+            this.burst = burst;
+            this.intervalNanos = (long) (1_000_000_000L / perSecond);
+            this.toleranceNanos = intervalNanos * burst;
+        }
+    }
+}
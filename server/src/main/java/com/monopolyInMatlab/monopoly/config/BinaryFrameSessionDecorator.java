@@ -0,0 +1,33 @@
+package com.monopolyInMatlab.monopoly.config;
+
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+
+/**
+ * Spring's STOMP handler only uses binary WebSocket frames for application/octet-stream bodies, anything else goes
+ * out as a text frame, which can't carry CBOR. Sessions that negotiated a binary format get every frame as binary
+ * instead, STOMP itself doesn't care which kind of frame it travels in.
+ */
+public class BinaryFrameSessionDecorator extends WebSocketSessionDecorator {
+    private final StompWireFormatInterceptor wireFormats;
+
+    public BinaryFrameSessionDecorator(WebSocketSession session, StompWireFormatInterceptor wireFormats) {
+        super(session);
+        this.wireFormats = wireFormats;
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        if (message instanceof TextMessage text && wireFormats.usesBinaryFormat(getId())) {
+            // asBytes hands back the encoded frame as is, without going through a String
+            super.sendMessage(new BinaryMessage(text.asBytes(), text.isLast()));
+        } else {
+            super.sendMessage(message);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.monopolyInMatlab.monopoly.config;
+
+import java.util.UUID;
+
+/**
+ * A local session has subscribed to its player queue, or its subscription is gone.
+ * The player id is null for a subscription without a player-id header.
+ */
+public record PlayerQueueEvent(String sessionId, UUID playerId, boolean subscribed) {
+}
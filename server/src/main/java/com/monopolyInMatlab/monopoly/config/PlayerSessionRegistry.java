@@ -0,0 +1,179 @@
+package com.monopolyInMatlab.monopoly.config;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps track of which STOMP sessions belong to which player, so events meant for one player
+ * can go to that player's sessions instead of the whole room.
+ *
+ * Sessions have no Principal, a client opts in by subscribing to /player/queue/events with a
+ * "player-id" header holding the id it got back when it joined its room. The subscription works
+ * without the header too, the session then only gets replies to its own requests (e.g. errors).
+ *
+ * In a cluster, ClusterLink also registers the player queues of other nodes' sessions here, under their
+ * cluster session ids, so a room's owner can reach its players wherever they are connected.
+ */
+@Component
+public class PlayerSessionRegistry implements ChannelInterceptor {
+    public static final String PLAYER_ID_HEADER = "player-id";
+    // relative to the /player user destination prefix
+    public static final String PLAYER_QUEUE = "/queue/events";
+    private static final String PLAYER_QUEUE_SUBSCRIPTION = "/player" + PLAYER_QUEUE;
+
+    private final ConcurrentMap<String, QueueSubscription> subscriptions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<UUID, Set<String>> playerSessions = new ConcurrentHashMap<>();
+    private final ApplicationEventPublisher eventPublisher;
+
+    public PlayerSessionRegistry(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(headers);
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        if (type == null || sessionId == null) {
+            return message;
+        }
+
+        switch (type) {
+            case SUBSCRIBE -> {
+                if (PLAYER_QUEUE_SUBSCRIPTION.equals(SimpMessageHeaderAccessor.getDestination(headers))) {
+                    subscribe(sessionId, SimpMessageHeaderAccessor.getSubscriptionId(headers), playerIdHeader(message));
+                }
+            }
+            case UNSUBSCRIBE -> {
+                QueueSubscription subscription = subscriptions.get(sessionId);
+                if (subscription != null && subscription.subscriptionId().equals(SimpMessageHeaderAccessor.getSubscriptionId(headers))) {
+                    removeLocal(sessionId);
+                }
+            }
+            case DISCONNECT -> removeLocal(sessionId);
+            default -> {
+            }
+        }
+        return message;
+    }
+
+    /**
+     * The sessions of a player that are subscribed to their player queue, empty if there are none.
+     */
+    public Set<String> sessionsOf(UUID playerId) {
+        Set<String> sessions = playerSessions.get(playerId);
+        return sessions != null ? Collections.unmodifiableSet(sessions) : Set.of();
+    }
+
+    /**
+     * Whether the session is subscribed to its player queue, with or without a player id.
+     */
+    public boolean hasPlayerQueue(String sessionId) {
+        return subscriptions.containsKey(sessionId);
+    }
+
+    /**
+     * Registers the player queue of a session on another node, sessionId is its cluster session id.
+     */
+    public void putRemote(String sessionId, UUID playerId) {
+        put(sessionId, new QueueSubscription(null, playerId));
+    }
+
+    public void removeRemote(String sessionId) {
+        remove(sessionId);
+    }
+
+    /**
+     * Forgets the sessions of a node that has (re)joined the cluster, it announces the ones it still has.
+     */
+    public void removeRemoteNode(String nodeId) {
+        String prefix = nodeId + ".";
+        for (String sessionId : subscriptions.keySet()) {
+            if (sessionId.startsWith(prefix)) {
+                remove(sessionId);
+            }
+        }
+    }
+
+    /**
+     * Calls back with every player queue subscription of this node's own sessions.
+     */
+    public void forEachLocal(BiConsumer<String, UUID> action) {
+        subscriptions.forEach((sessionId, subscription) -> {
+            if (subscription.isLocal()) {
+                action.accept(sessionId, subscription.playerId());
+            }
+        });
+    }
+
+    private void subscribe(String sessionId, String subscriptionId, UUID playerId) {
+        // a session has one player queue, subscribing again replaces it
+        removeLocal(sessionId);
+        put(sessionId, new QueueSubscription(subscriptionId, playerId));
+        if (playerId != null) {
+            System.out.println("Session " + sessionId + " subscribed to the player queue of " + playerId);
+        }
+        eventPublisher.publishEvent(new PlayerQueueEvent(sessionId, playerId, true));
+    }
+
+    private void removeLocal(String sessionId) {
+        QueueSubscription subscription = remove(sessionId);
+        if (subscription != null) {
+            eventPublisher.publishEvent(new PlayerQueueEvent(sessionId, subscription.playerId(), false));
+        }
+    }
+
+    private void put(String sessionId, QueueSubscription subscription) {
+        remove(sessionId);
+        subscriptions.put(sessionId, subscription);
+        if (subscription.playerId() != null) {
+            playerSessions.computeIfAbsent(subscription.playerId(), id -> ConcurrentHashMap.newKeySet()).add(sessionId);
+        }
+    }
+
+    private QueueSubscription remove(String sessionId) {
+        QueueSubscription subscription = subscriptions.remove(sessionId);
+        if (subscription == null || subscription.playerId() == null) {
+            return subscription;
+        }
+        playerSessions.computeIfPresent(subscription.playerId(), (id, sessions) -> {
+            sessions.remove(sessionId);
+            return sessions.isEmpty() ? null : sessions;
+        });
+        return subscription;
+    }
+
+    private static UUID playerIdHeader(Message<?> message) {
+        SimpMessageHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, SimpMessageHeaderAccessor.class);
+        String playerId = accessor != null ? accessor.getFirstNativeHeader(PLAYER_ID_HEADER) : null;
+        if (playerId == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(playerId);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid " + PLAYER_ID_HEADER + " header: " + playerId, e);
+        }
+    }
+
+    // sessions on other nodes have no subscription id here
+    private record QueueSubscription(String subscriptionId, UUID playerId) {
+        boolean isLocal() {
+            return subscriptionId != null;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.monopolyInMatlab.monopoly.config;
+
+import com.monopolyInMatlab.monopoly.concurrency.RoomExecutor;
+import com.monopolyInMatlab.monopoly.domain.GameRoom;
+import com.monopolyInMatlab.monopoly.persistence.RoomRepository;
+import com.monopolyInMatlab.monopoly.presentation.RoomOutbox;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps one slow client from backing up the outbound channel for everyone else on the node.
+ *
+ * Every MESSAGE frame handed to a session on the client outbound channel is counted until the session has actually
+ * written it, which is the session's outbound queue depth (see getStats). Other frames, such as heartbeats and
+ * receipts, are neither counted nor taken off the count. When a session has more than
+ * monopoly.session.outbound.conflate-after frames queued it is lagging: room frames for it are dropped from then
+ * on, only player queue frames still go out. Once it has caught up to half of that, it is sent one STATE_KEYFRAME
+ * per room it missed frames of, to that session alone (RoomOutbox.sendKeyframe). A session that gets past
+ * monopoly.session.outbound.disconnect-after queued frames anyway is closed.
+ *
+ * Spring's own per-session limits (send-time-limit-ms, send-buffer-limit-bytes) still apply underneath and
+ * close a session whose socket stops taking data altogether.
+ *
+ * Registered last on the client outbound channel, after destinations have been mapped back to the client's.
+ */
+@Component
+public class SlowConsumerPolicy implements ChannelInterceptor {
+    private static final String ROOM_PREFIX = "/room/";
+    private static final byte[] MESSAGE_COMMAND = "MESSAGE".getBytes(StandardCharsets.US_ASCII);
+
+    private final ConcurrentMap<String, OutboundQueue> queues = new ConcurrentHashMap<>();
+    // the broker configuration needs this class, so the outbox is looked up once it is used
+    private final RoomOutbox roomOutbox;
+    private final RoomExecutor roomExecutor;
+    private final RoomRepository roomRepository;
+    private final int conflateAfter;
+    private final int disconnectAfter;
+
+    public SlowConsumerPolicy(@Lazy RoomOutbox roomOutbox, RoomExecutor roomExecutor, RoomRepository roomRepository,
+                              @Value("${monopoly.session.outbound.conflate-after:64}") int conflateAfter,
+                              @Value("${monopoly.session.outbound.disconnect-after:1024}") int disconnectAfter) {
+        if (conflateAfter < 2 || disconnectAfter <= conflateAfter) {
+            throw new IllegalStateException("monopoly.session.outbound needs 2 <= conflate-after < disconnect-after");
+        }
+        this.roomOutbox = roomOutbox;
+        this.roomExecutor = roomExecutor;
+        this.roomRepository = roomRepository;
+        this.conflateAfter = conflateAfter;
+        this.disconnectAfter = disconnectAfter;
+    }
+
+    /**
+     * Starts counting what a new session writes, the returned session must be the one frames are written to.
+     */
+    public WebSocketSession track(WebSocketSession session) {
+        OutboundQueue queue = new OutboundQueue(session);
+        queues.put(session.getId(), queue);
+        return new WebSocketSessionDecorator(session) {
+            @Override
+            public void sendMessage(WebSocketMessage<?> message) throws IOException {
+                try {
+                    super.sendMessage(message);
+                } finally {
+                    if (isMessageFrame(message)) {
+                        written(queue);
+                    }
+                }
+            }
+        };
+    }
+
+    public void untrack(String sessionId) {
+        queues.remove(sessionId);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        OutboundQueue queue = sessionId != null ? queues.get(sessionId) : null;
+        if (queue == null || SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE) {
+            return message;
+        }
+
+        if (queue.lagging) {
+            UUID roomId = roomOf(SimpMessageHeaderAccessor.getDestination(headers));
+            String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(headers);
+            if (roomId != null && subscriptionId != null) {
+                // the keyframe sent once the session has caught up replaces everything dropped here
+                queue.missedRooms.put(roomId, subscriptionId);
+                queue.dropped.incrementAndGet();
+                return null;
+            }
+        }
+
+        int depth = queue.depth.incrementAndGet();
+        if (depth > disconnectAfter) {
+            disconnect(queue, depth);
+        } else if (depth > conflateAfter && !queue.lagging) {
+            queue.lagging = true;
+            System.out.println("Session " + sessionId + " has " + depth + " frames queued, holding back its room frames until it catches up");
+        }
+        return message;
+    }
+
+    /**
+     * The outbound queue of every session that has anything queued or is lagging.
+     */
+    public List<SessionStats> getStats() {
+        List<SessionStats> stats = new ArrayList<>();
+        queues.forEach((sessionId, queue) -> {
+            if (queue.depth.get() > 0 || queue.lagging) {
+                stats.add(new SessionStats(sessionId, queue.depth.get(), queue.lagging, queue.dropped.get()));
+            }
+        });
+        return stats;
+    }
+
+    private void written(OutboundQueue queue) {
+        int depth = queue.depth.decrementAndGet();
+        if (queue.lagging && depth <= conflateAfter / 2) {
+            queue.lagging = false;
+            List<Map.Entry<UUID, String>> rooms = new ArrayList<>(queue.missedRooms.entrySet());
+            System.out.println("Session " + queue.session.getId() + " caught up, sending it the latest state of " + rooms.size() + " rooms");
+            for (Map.Entry<UUID, String> room : rooms) {
+                queue.missedRooms.remove(room.getKey(), room.getValue());
+                sendKeyframe(queue.session.getId(), room.getKey(), room.getValue());
+            }
+        }
+    }
+
+    // on the room's writer, so the keyframe is the state after the last frame the room sent before it
+    private void sendKeyframe(String sessionId, UUID roomId, String subscriptionId) {
+        roomExecutor.execute(roomId, () -> {
+            GameRoom room = roomRepository.findGameRoomById(roomId);
+            if (room == null) {
+                roomExecutor.release(roomId);
+                return;
+            }
+            roomOutbox.sendKeyframe(room, sessionId, subscriptionId);
+        });
+    }
+
+    // what the STOMP handler writes by itself (heartbeats, errors) never went through the channel
+    private static boolean isMessageFrame(WebSocketMessage<?> message) {
+        ByteBuffer frame;
+        if (message instanceof TextMessage text) {
+            frame = ByteBuffer.wrap(text.asBytes());
+        } else if (message instanceof BinaryMessage binary) {
+            frame = binary.getPayload().duplicate();
+        } else {
+            return false;
+        }
+        if (frame.remaining() < MESSAGE_COMMAND.length) {
+            return false;
+        }
+        return frame.slice(frame.position(), MESSAGE_COMMAND.length).equals(ByteBuffer.wrap(MESSAGE_COMMAND));
+    }
+
+    private void disconnect(OutboundQueue queue, int depth) {
+        if (queues.remove(queue.session.getId()) == null) {
+            return;
+        }
+        System.out.println("Closing session " + queue.session.getId() + ", it has " + depth + " frames queued");
+        try {
+            queue.session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException e) {
+            System.out.println("Could not close session " + queue.session.getId() + ": " + e.getMessage());
+        }
+    }
+
+    private static UUID roomOf(String destination) {
+        if (destination == null || !destination.startsWith(ROOM_PREFIX)) {
+            return null;
+        }
+        try {
+            return UUID.fromString(destination.substring(ROOM_PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public record SessionStats(String sessionId, int queuedFrames, boolean lagging, long droppedRoomFrames) {
+    }
+
+    private static final class OutboundQueue {
+        private final WebSocketSession session;
+        private final AtomicInteger depth = new AtomicInteger();
+        private final AtomicLong dropped = new AtomicLong();
+        // room frames dropped for the session, by room, with the subscription they were for
+        private final ConcurrentMap<UUID, String> missedRooms = new ConcurrentHashMap<>();
+        private volatile boolean lagging;
+
+        OutboundQueue(WebSocketSession session) {
+            this.session = session;
+        }
+    }
+}
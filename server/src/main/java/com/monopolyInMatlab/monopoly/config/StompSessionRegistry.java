@@ -0,0 +1,79 @@
+package com.monopolyInMatlab.monopoly.config;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Knows which room and which player every STOMP session of this node belongs to, so a session that goes away
+ * can be turned into a player disconnect (WebsocketEventListener, PlayerDisconnects).
+ *
+ * The room is the one the session subscribed to at /room/{roomId}, the player the one named in the player-id
+ * header of its player queue subscription (see PlayerSessionRegistry). A session with only a room is a spectator.
+ *
+ * Registered on the client inbound channel before RelayDestinations, which rewrites room destinations.
+ */
+@Component
+public class StompSessionRegistry implements ChannelInterceptor {
+    private static final String ROOM_PREFIX = "/room/";
+
+    private final ConcurrentMap<String, SessionBinding> sessions = new ConcurrentHashMap<>();
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        if (SimpMessageHeaderAccessor.getMessageType(headers) == SimpMessageType.SUBSCRIBE
+                && sessionId != null && destination != null && destination.startsWith(ROOM_PREFIX)) {
+            UUID roomId = parseRoomId(destination.substring(ROOM_PREFIX.length()));
+            if (roomId != null) {
+                sessions.merge(sessionId, new SessionBinding(roomId, null),
+                        (bound, added) -> new SessionBinding(roomId, bound.playerId()));
+            }
+        }
+        return message;
+    }
+
+    @EventListener
+    public void onPlayerQueue(PlayerQueueEvent event) {
+        // the binding outlives the subscription, a session that sent DISCONNECT still left as that player
+        if (event.subscribed() && event.playerId() != null) {
+            sessions.merge(event.sessionId(), new SessionBinding(null, event.playerId()),
+                    (bound, added) -> new SessionBinding(bound.roomId(), event.playerId()));
+        }
+    }
+
+    /**
+     * Forgets a session that has ended and returns what it was bound to, null if nothing.
+     */
+    public SessionBinding remove(String sessionId) {
+        return sessions.remove(sessionId);
+    }
+
+    private static UUID parseRoomId(String roomId) {
+        try {
+            return UUID.fromString(roomId);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Either id may be null until the session has subscribed to the room and to its player queue.
+     */
+    public record SessionBinding(UUID roomId, UUID playerId) {
+        public boolean isPlayerInRoom() {
+            return roomId != null && playerId != null;
+        }
+    }
+}
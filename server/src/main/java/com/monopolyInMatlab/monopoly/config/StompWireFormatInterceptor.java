@@ -0,0 +1,130 @@
+package com.monopolyInMatlab.monopoly.config;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Lets STOMP clients pick their payload format with an accept header, e.g. "accept:application/cbor".
+ * On CONNECT it applies to the whole session, on SUBSCRIBE to that subscription only. Without one, frames stay JSON.
+ *
+ * Registered on both client channels: inbound it records what each session asked for, outbound it re-encodes
+ * the JSON of every MESSAGE frame headed for a session that asked for something else.
+ */
+@Component
+public class StompWireFormatInterceptor implements ChannelInterceptor {
+    public static final String ACCEPT_HEADER = "accept";
+
+    private final WireFormats wireFormats;
+    private final ConcurrentMap<String, SessionFormats> sessions = new ConcurrentHashMap<>();
+    // the broker hands the same payload array to every subscriber of a destination, so it is converted once, not once
+    // per subscriber. Keyed by array identity and dropped with it. CBOR is the only format that is ever converted to
+    private final Map<byte[], byte[]> converted = Collections.synchronizedMap(new WeakHashMap<>());
+
+    public StompWireFormatInterceptor(WireFormats wireFormats) {
+        this.wireFormats = wireFormats;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(headers);
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        if (type == null || sessionId == null) {
+            return message;
+        }
+
+        switch (type) {
+            case CONNECT -> {
+                String accept = acceptHeader(message);
+                if (accept != null) {
+                    sessions.computeIfAbsent(sessionId, id -> new SessionFormats()).sessionFormat = WireFormat.negotiate(accept);
+                }
+            }
+            case SUBSCRIBE -> {
+                String accept = acceptHeader(message);
+                String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(headers);
+                if (accept != null && subscriptionId != null) {
+                    sessions.computeIfAbsent(sessionId, id -> new SessionFormats())
+                            .subscriptionFormats.put(subscriptionId, WireFormat.negotiate(accept));
+                }
+            }
+            case UNSUBSCRIBE -> {
+                SessionFormats formats = sessions.get(sessionId);
+                String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(headers);
+                if (formats != null && subscriptionId != null) {
+                    formats.subscriptionFormats.remove(subscriptionId);
+                }
+            }
+            case DISCONNECT -> sessions.remove(sessionId);
+            case MESSAGE -> {
+                return encodeFor(message, sessionId, SimpMessageHeaderAccessor.getSubscriptionId(headers));
+            }
+            default -> {
+            }
+        }
+        return message;
+    }
+
+    /**
+     * Whether anything sent to the session may be in a format other than JSON.
+     */
+    public boolean usesBinaryFormat(String sessionId) {
+        SessionFormats formats = sessions.get(sessionId);
+        return formats != null && (formats.sessionFormat != WireFormat.JSON
+                || formats.subscriptionFormats.containsValue(WireFormat.CBOR));
+    }
+
+    private Message<?> encodeFor(Message<?> message, String sessionId, String subscriptionId) {
+        SessionFormats formats = sessions.get(sessionId);
+        if (formats == null || !(message.getPayload() instanceof byte[] json)) {
+            return message;
+        }
+        WireFormat format = formats.formatOf(subscriptionId);
+        if (format == WireFormat.JSON) {
+            return message;
+        }
+        MessageHeaderAccessor accessor = MessageHeaderAccessor.getMutableAccessor(message);
+        MimeType contentType = accessor.getContentType();
+        if (contentType == null || !contentType.isCompatibleWith(WireFormat.JSON.getMediaType())) {
+            return message;
+        }
+
+        byte[] body = converted.get(json);
+        if (body == null) {
+            body = wireFormats.fromJson(json, format);
+            converted.put(json, body);
+        }
+
+        accessor.setContentType(format.getMediaType());
+        return MessageBuilder.createMessage(body, accessor.getMessageHeaders());
+    }
+
+    private static String acceptHeader(Message<?> message) {
+        SimpMessageHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, SimpMessageHeaderAccessor.class);
+        return accessor != null ? accessor.getFirstNativeHeader(ACCEPT_HEADER) : null;
+    }
+
+    private static final class SessionFormats {
+        private volatile WireFormat sessionFormat = WireFormat.JSON;
+        private final ConcurrentMap<String, WireFormat> subscriptionFormats = new ConcurrentHashMap<>();
+
+        WireFormat formatOf(String subscriptionId) {
+            WireFormat format = subscriptionId != null ? subscriptionFormats.get(subscriptionId) : null;
+            return format != null ? format : sessionFormat;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.monopolyInMatlab.monopoly.config;
+
+import com.monopolyInMatlab.monopoly.cluster.RoomOwnerRedirect;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+@RequiredArgsConstructor
+public class WebMvcConfig implements WebMvcConfigurer {
+    private final RoomOwnerRedirect roomOwnerRedirect;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(roomOwnerRedirect).addPathPatterns("/menu/room/**", "/menu/rooms/**");
+    }
+}
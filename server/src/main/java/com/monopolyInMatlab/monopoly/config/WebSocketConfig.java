@@ -1,16 +1,100 @@
 package com.monopolyInMatlab.monopoly.config;
 
-import lombok.RequiredArgsConstructor;
+import com.monopolyInMatlab.monopoly.cluster.RelayDestinations;
+import com.monopolyInMatlab.monopoly.cluster.RoomActionForwarder;
+import com.monopolyInMatlab.monopoly.cluster.RoomOwnership;
+import com.monopolyInMatlab.monopoly.cluster.SocketTcpClient;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
 
+import java.util.List;
+
+/**
+ * STOMP over /ws. monopoly.broker.mode picks the broker: "simple" keeps subscriptions in this process,
+ * "relay" hands them to an external STOMP broker (RabbitMQ, ActiveMQ, Artemis, ...) so several nodes can
+ * serve the same rooms, see RelayDestinations for how destinations are mapped and RoomOwnership for clusters.
+ *
+ * STOMP heartbeats (monopoly.session.heartbeat-ms) let a dead client be noticed within a few intervals instead of
+ * whenever TCP gives up on it. With the simple broker this process sends and checks them, with the relay the
+ * client's heartbeats go through to the broker, which closes the client's session when they stop.
+ */
 @Configuration
 @EnableWebSocketMessageBroker
-@RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+    private final StompWireFormatInterceptor stompWireFormatInterceptor;
+    private final PlayerSessionRegistry playerSessionRegistry;
+    private final StompSessionRegistry stompSessionRegistry;
+    private final SlowConsumerPolicy slowConsumerPolicy;
+    private final ActionRateLimiter actionRateLimiter;
+    private final WireFormats wireFormats;
+    private final RelayDestinations relayDestinations;
+    private final RoomActionForwarder roomActionForwarder;
+    private final boolean relay;
+    private final String relayHost;
+    private final int relayPort;
+    private final String relayLogin;
+    private final String relayPasscode;
+    private final String relayVirtualHost;
+    private final long heartbeatMs;
+    private final int sendTimeLimitMs;
+    private final int sendBufferLimitBytes;
+    // defined by the broker configuration this class is part of, so it is looked up once it is used
+    private final TaskScheduler messageBrokerTaskScheduler;
+
+    public WebSocketConfig(StompWireFormatInterceptor stompWireFormatInterceptor, PlayerSessionRegistry playerSessionRegistry,
+                           StompSessionRegistry stompSessionRegistry, SlowConsumerPolicy slowConsumerPolicy,
+                           ActionRateLimiter actionRateLimiter, WireFormats wireFormats, RelayDestinations relayDestinations,
+                           RoomActionForwarder roomActionForwarder, RoomOwnership roomOwnership,
+                           @Value("${monopoly.broker.mode:simple}") String mode,
+                           @Value("${monopoly.broker.relay.host:localhost}") String relayHost,
+                           @Value("${monopoly.broker.relay.port:61613}") int relayPort,
+                           @Value("${monopoly.broker.relay.login:guest}") String relayLogin,
+                           @Value("${monopoly.broker.relay.passcode:guest}") String relayPasscode,
+                           @Value("${monopoly.broker.relay.virtual-host:}") String relayVirtualHost,
+                           @Value("${monopoly.session.heartbeat-ms:5000}") long heartbeatMs,
+                           @Value("${monopoly.session.outbound.send-time-limit-ms:10000}") int sendTimeLimitMs,
+                           @Value("${monopoly.session.outbound.send-buffer-limit-bytes:524288}") int sendBufferLimitBytes,
+                           @Lazy @Qualifier("messageBrokerTaskScheduler") TaskScheduler messageBrokerTaskScheduler) {
+        this.stompWireFormatInterceptor = stompWireFormatInterceptor;
+        this.playerSessionRegistry = playerSessionRegistry;
+        this.stompSessionRegistry = stompSessionRegistry;
+        this.slowConsumerPolicy = slowConsumerPolicy;
+        this.actionRateLimiter = actionRateLimiter;
+        this.wireFormats = wireFormats;
+        this.relayDestinations = relayDestinations;
+        this.roomActionForwarder = roomActionForwarder;
+        this.relay = switch (mode) {
+            case "simple" -> false;
+            case "relay" -> true;
+            default -> throw new IllegalStateException("Unknown monopoly.broker.mode " + mode + ", expected simple or relay");
+        };
+        if (roomOwnership.isClustered() && !relay) {
+            throw new IllegalStateException("A cluster needs monopoly.broker.mode relay, nodes only meet on the broker");
+        }
+        this.relayHost = relayHost;
+        this.relayPort = relayPort;
+        this.relayLogin = relayLogin;
+        this.relayPasscode = relayPasscode;
+        this.relayVirtualHost = relayVirtualHost;
+        this.heartbeatMs = heartbeatMs;
+        this.sendTimeLimitMs = sendTimeLimitMs;
+        this.sendBufferLimitBytes = sendBufferLimitBytes;
+        this.messageBrokerTaskScheduler = messageBrokerTaskScheduler;
+    }
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
@@ -19,8 +103,77 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/room", "/player");
+        if (relay) {
+            // RelayDestinations maps /room and /player onto these
+            config.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayLogin)
+                    .setClientPasscode(relayPasscode)
+                    .setSystemLogin(relayLogin)
+                    .setSystemPasscode(relayPasscode)
+                    .setVirtualHost(relayVirtualHost.isEmpty() ? null : relayVirtualHost)
+                    .setSystemHeartbeatSendInterval(heartbeatMs)
+                    .setSystemHeartbeatReceiveInterval(heartbeatMs)
+                    .setTcpClient(new SocketTcpClient(relayHost, relayPort));
+            config.configureBrokerChannel().interceptors(relayDestinations);
+        } else {
+            // /player/queue/... subscriptions are resolved to /queue/...-user{sessionId}, so the broker serves /queue.
+            // /player itself must not be a broker prefix, the broker would also take the unresolved subscription
+            config.enableSimpleBroker("/room", "/queue")
+                    .setHeartbeatValue(new long[]{heartbeatMs, heartbeatMs})
+                    .setTaskScheduler(messageBrokerTaskScheduler);
+        }
         config.setApplicationDestinationPrefixes("/monopoly");
         config.setUserDestinationPrefix("/player");
+        // state deltas only apply on top of the frame before them, so every session must get frames in send order
+        config.setPreservePublishOrder(true);
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(stompWireFormatInterceptor, playerSessionRegistry, stompSessionRegistry,
+                actionRateLimiter, roomActionForwarder);
+        if (relay) {
+            registration.interceptors(relayDestinations);
+        }
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        if (relay) {
+            registration.interceptors(relayDestinations.outbound());
+        }
+        registration.interceptors(stompWireFormatInterceptor, slowConsumerPolicy);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // a session that can't write a frame within the time limit, or has more than the buffer limit waiting, is closed
+        registration.setSendTimeLimit(sendTimeLimitMs);
+        registration.setSendBufferSizeLimit(sendBufferLimitBytes);
+        registration.addDecoratorFactory(handler -> new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                // frames count as written once they are on the socket, so the tracking session goes innermost
+                super.afterConnectionEstablished(new BinaryFrameSessionDecorator(slowConsumerPolicy.track(session), stompWireFormatInterceptor));
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                slowConsumerPolicy.untrack(session.getId());
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        });
+    }
+
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        // lets clients send CBOR too, only for frames that say so, everything else keeps the default JSON handling
+        MappingJackson2MessageConverter cborConverter = new MappingJackson2MessageConverter(WireFormat.CBOR.getMediaType());
+        cborConverter.setObjectMapper(wireFormats.mapper(WireFormat.CBOR));
+        cborConverter.setStrictContentTypeMatch(true);
+        messageConverters.add(cborConverter);
+        return true;
     }
 }
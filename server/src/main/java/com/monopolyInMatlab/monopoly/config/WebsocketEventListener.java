@@ -1,8 +1,8 @@
 package com.monopolyInMatlab.monopoly.config;
 
+import com.monopolyInMatlab.monopoly.presentation.PlayerDisconnects;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.event.EventListener;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.messaging.SessionConnectEvent;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
@@ -11,16 +11,22 @@ import org.springframework.web.socket.messaging.SessionSubscribeEvent;
 @Component
 @RequiredArgsConstructor
 public class WebsocketEventListener {
-    private final SimpMessagingTemplate simpMessagingTemplate;
+    private final StompSessionRegistry stompSessionRegistry;
+    private final PlayerDisconnects playerDisconnects;
 
     @EventListener
     public void handleWebSocketConnectListener(SessionConnectEvent session) {
         System.out.println("Received a new web socket connection: " + session);
     }
 
+    // published once per session, whether the client sent DISCONNECT, closed the socket or stopped sending heartbeats
     @EventListener
     public void handleWebSocketDisconnectListener(SessionDisconnectEvent session) {
-        System.out.println("Socket disconnected: " + session);
+        System.out.println("Socket disconnected: " + session.getSessionId() + ", " + session.getCloseStatus());
+        StompSessionRegistry.SessionBinding binding = stompSessionRegistry.remove(session.getSessionId());
+        if (binding != null && binding.isPlayerInRoom()) {
+            playerDisconnects.sessionEnded(binding.roomId(), binding.playerId());
+        }
     }
 
     @EventListener
@@ -0,0 +1,55 @@
+package com.monopolyInMatlab.monopoly.config;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.util.List;
+
+/**
+ * Payload encodings a client can ask for, through Accept on REST and the accept header of a STOMP CONNECT or SUBSCRIBE.
+ * JSON is the default, CBOR is the same data model in a compact binary form.
+ */
+public enum WireFormat {
+    JSON(MediaType.APPLICATION_JSON),
+    CBOR(MediaType.APPLICATION_CBOR);
+
+    private final MediaType mediaType;
+
+    WireFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * The first of our formats the header lists, JSON if it lists none of them or can't be parsed.
+     */
+    public static WireFormat negotiate(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return JSON;
+        }
+        List<MediaType> mediaTypes;
+        try {
+            mediaTypes = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return JSON;
+        }
+        for (MediaType mediaType : mediaTypes) {
+            if (mediaType.getQualityValue() == 0) {
+                continue;
+            }
+            for (WireFormat format : values()) {
+                // wildcards don't count as asking for CBOR, only JSON is handed out to */*
+                if (format.mediaType.equalsTypeAndSubtype(mediaType)) {
+                    return format;
+                }
+            }
+            if (mediaType.includes(JSON.mediaType)) {
+                return JSON;
+            }
+        }
+        return JSON;
+    }
+}
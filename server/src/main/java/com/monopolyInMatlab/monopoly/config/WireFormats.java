@@ -0,0 +1,58 @@
+package com.monopolyInMatlab.monopoly.config;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * One ObjectMapper per WireFormat, all configured like the application's JSON mapper,
+ * so a CBOR payload carries exactly the fields and names its JSON counterpart does.
+ */
+@Component
+public class WireFormats {
+    private final ObjectMapper jsonMapper;
+    private final ObjectMapper cborMapper;
+
+    // not an ObjectMapper bean on purpose, a second one would make Spring Boot back off its own JSON mapper
+    public WireFormats(ObjectMapper jsonMapper, Jackson2ObjectMapperBuilder mapperBuilder) {
+        this.jsonMapper = jsonMapper;
+        this.cborMapper = mapperBuilder.factory(new CBORFactory()).build();
+    }
+
+    public ObjectMapper mapper(WireFormat format) {
+        return format == WireFormat.CBOR ? cborMapper : jsonMapper;
+    }
+
+    public byte[] write(Object value, WireFormat format) {
+        try {
+            return mapper(format).writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write " + format, e);
+        }
+    }
+
+    /**
+     * Re-encodes a JSON document token by token, without building objects or a tree in between.
+     */
+    public byte[] fromJson(byte[] json, WireFormat format) {
+        if (format == WireFormat.JSON) {
+            return json;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length);
+        try (JsonParser parser = jsonMapper.getFactory().createParser(json);
+             JsonGenerator generator = mapper(format).getFactory().createGenerator(out)) {
+            parser.nextToken();
+            generator.copyCurrentStructure(parser);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not convert JSON to " + format, e);
+        }
+        return out.toByteArray();
+    }
+}
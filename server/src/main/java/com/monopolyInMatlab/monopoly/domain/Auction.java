@@ -1,28 +1,186 @@
 package com.monopolyInMatlab.monopoly.domain;
 
 import lombok.Builder;
-import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
-@Data
-@Builder
-public class Auction {
-    private final int propertyPosition;
-    private UUID highestBidderId;
-    private int highestBid;
+/**
+ * The auction of a property its player declined to buy.
+ *
+ * The highest bid, its bidder and whether the auction is still open are packed into one word that only ever
+ * changes by compare-and-set, so a bid only lands on the exact state it was checked against: a lower bid can't
+ * overwrite a higher one that got in first, and no bid gets in after the auction ended.
+ *
+ * Word layout: [bit 63 ended][bits 32-62 highest bid][bits 0-31 bidder, 0 for none, else index + 1 in bidders]
+ */
+public class Auction implements Serializable {
+    private static final long serialVersionUID = 1L;
 
-    @Builder.Default
-    private boolean isActive = true;
+    private static final long ENDED = 1L << 63;
+    private static final long BIDDER_MASK = 0xFFFFFFFFL;
+    private static final AtomicLongFieldUpdater<Auction> WORD = AtomicLongFieldUpdater.newUpdater(Auction.class, "word");
 
-    public void placeBid(UUID playerId, int amount) {
-        if (isActive && amount > highestBid) {
-            highestBidderId = playerId;
-            highestBid = amount;
+    // serialized with the fields Auction always had, so rooms serialized by earlier builds still load
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("propertyPosition", int.class),
+            new ObjectStreamField("highestBidderId", UUID.class),
+            new ObjectStreamField("highestBid", int.class),
+            new ObjectStreamField("isActive", boolean.class),
+            new ObjectStreamField("closesAt", Instant.class)
+    };
+
+    @Getter
+    private int propertyPosition;
+
+    // when the auction closes unless someone bids higher before, every new high bid moves it
+    @Getter
+    @Setter
+    private volatile Instant closesAt;
+
+    // players in the order of their first bid, the word refers to them by position
+    private CopyOnWriteArrayList<UUID> bidders = new CopyOnWriteArrayList<>();
+    private volatile long word;
+
+    @Builder
+    private Auction(int propertyPosition, UUID highestBidderId, int highestBid, Boolean active, Instant closesAt) {
+        if (highestBid < 0) {
+            throw new IllegalArgumentException("Bids can't be negative");
+        }
+        this.propertyPosition = propertyPosition;
+        this.closesAt = closesAt;
+        this.word = pack(active == null || active, highestBid, highestBidderId != null ? bidder(highestBidderId) : 0);
+    }
+
+    public UUID getHighestBidderId() {
+        long bidder = word & BIDDER_MASK;
+        return bidder == 0 ? null : bidders.get((int) bidder - 1);
+    }
+
+    public int getHighestBid() {
+        return amountOf(word);
+    }
+
+    public boolean isActive() {
+        return (word & ENDED) == 0;
+    }
+
+    /**
+     * Makes amount the highest bid if the auction is still open and amount is more than the highest bid so far.
+     * Returns false when it isn't, which leaves the auction as it was.
+     */
+    public boolean placeBid(UUID playerId, int amount) {
+        int index = bidders.indexOf(playerId);
+        if (index >= 0) {
+            return placeBid(index + 1, amount);
+        }
+        // a player's first bid, new bidders are numbered one at a time and only keep their number if the bid got in
+        synchronized (bidders) {
+            index = bidders.indexOf(playerId);
+            if (index >= 0) {
+                return placeBid(index + 1, amount);
+            }
+            if (!outbids(word, amount)) {
+                return false;
+            }
+            bidders.add(playerId);
+            if (placeBid(bidders.size(), amount)) {
+                return true;
+            }
+            // the word never referred to the number, nobody else can have taken one after it
+            bidders.remove(bidders.size() - 1);
+            return false;
         }
     }
 
     public void end() {
-        isActive = false;
+        WORD.getAndUpdate(this, current -> current | ENDED);
+    }
+
+    private boolean placeBid(long bidder, int amount) {
+        long current = word;
+        long bid = pack(true, amount, bidder);
+        while (outbids(current, amount)) {
+            if (WORD.compareAndSet(this, current, bid)) {
+                return true;
+            }
+            // someone else got in first, only a bid that still beats theirs may replace it
+            current = word;
+        }
+        return false;
+    }
+
+    private static boolean outbids(long word, int amount) {
+        return (word & ENDED) == 0 && amount > amountOf(word);
+    }
+
+    // the highest bidder's number when an auction is built or read back, before anyone can bid on it
+    private long bidder(UUID playerId) {
+        bidders.addIfAbsent(playerId);
+        return bidders.indexOf(playerId) + 1;
+    }
+
+    private static int amountOf(long word) {
+        return (int) ((word & ~ENDED) >>> 32);
+    }
+
+    private static long pack(boolean active, int amount, long bidder) {
+        return (active ? 0 : ENDED) | ((long) amount << 32) | bidder;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("propertyPosition", propertyPosition);
+        fields.put("highestBidderId", getHighestBidderId());
+        fields.put("highestBid", getHighestBid());
+        fields.put("isActive", isActive());
+        fields.put("closesAt", closesAt);
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        UUID highestBidderId = (UUID) fields.get("highestBidderId", null);
+        propertyPosition = fields.get("propertyPosition", 0);
+        closesAt = (Instant) fields.get("closesAt", null);
+        bidders = new CopyOnWriteArrayList<>();
+        word = pack(fields.get("isActive", true), fields.get("highestBid", 0),
+                highestBidderId != null ? bidder(highestBidderId) : 0);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Auction other)) {
+            return false;
+        }
+        return propertyPosition == other.propertyPosition
+                && getHighestBid() == other.getHighestBid()
+                && isActive() == other.isActive()
+                && Objects.equals(getHighestBidderId(), other.getHighestBidderId())
+                && Objects.equals(closesAt, other.closesAt);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(propertyPosition, getHighestBidderId(), getHighestBid(), isActive(), closesAt);
+    }
+
+    @Override
+    public String toString() {
+        return "Auction(propertyPosition=" + propertyPosition + ", highestBidderId=" + getHighestBidderId()
+                + ", highestBid=" + getHighestBid() + ", isActive=" + isActive() + ", closesAt=" + closesAt + ")";
     }
 }
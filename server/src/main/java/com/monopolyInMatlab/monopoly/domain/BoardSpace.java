@@ -3,9 +3,13 @@ package com.monopolyInMatlab.monopoly.domain;
 import lombok.Data;
 import lombok.experimental.SuperBuilder;
 
+import java.io.Serializable;
+
 @Data
 @SuperBuilder
-public abstract class BoardSpace {
+public abstract class BoardSpace implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private final int position;  // 0-39
     private final String name;
     private final SpaceType spaceType;
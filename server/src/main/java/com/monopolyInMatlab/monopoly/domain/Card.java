@@ -3,9 +3,13 @@ package com.monopolyInMatlab.monopoly.domain;
 import lombok.Builder;
 import lombok.Data;
 
+import java.io.Serializable;
+
 @Data
 @Builder
-public class Card {
+public class Card implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private final String cardType;  // "CHANCE" or "COMMUNITY_CHEST"
     private final String description;
     private final CardActionType actionType;
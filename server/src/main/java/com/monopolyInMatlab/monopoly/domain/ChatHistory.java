@@ -0,0 +1,162 @@
+package com.monopolyInMatlab.monopoly.domain;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A room's chat, the last CAPACITY messages of it in a fixed array, so a chatty room never grows.
+ *
+ * Messages are numbered from 1 in the order they are appended and the numbers keep counting after older
+ * messages have dropped out, so a client can page from any number it has seen (before, after). As a List it
+ * holds the messages that are still kept, oldest first, which is also how it is rendered in the room's JSON.
+ *
+ * Only the room's writer touches it, like the rest of the room.
+ */
+public class ChatHistory extends AbstractList<ChatMessage> implements RandomAccess, Serializable {
+    private static final long serialVersionUID = 1L;
+    // messages a room keeps
+    public static final int CAPACITY = 200;
+
+    // messages firstSeq()..lastSeq live at seq % capacity, the rest of the slots are empty
+    private final ChatMessage[] messages;
+    private int size;
+    private long lastSeq;
+
+    public ChatHistory() {
+        this(CAPACITY);
+    }
+
+    public ChatHistory(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Chat history needs room for at least one message");
+        }
+        messages = new ChatMessage[capacity];
+    }
+
+    /**
+     * The given messages as a chat history, a list that isn't one yet is numbered from 1 where its messages aren't.
+     */
+    public static ChatHistory of(List<ChatMessage> messages) {
+        if (messages instanceof ChatHistory history) {
+            return history;
+        }
+        ChatHistory history = new ChatHistory();
+        for (ChatMessage message : messages) {
+            if (message.getSeq() > history.lastSeq) {
+                history.add(message);
+            } else {
+                history.append(message);
+            }
+        }
+        return history;
+    }
+
+    /**
+     * Numbers the message as the room's next one and keeps it, dropping the oldest if the history is full.
+     */
+    public ChatMessage append(ChatMessage message) {
+        ChatMessage numbered = message.toBuilder().seq(lastSeq + 1).build();
+        add(numbered);
+        return numbered;
+    }
+
+    /**
+     * Keeps a message that is already numbered, e.g. when a room is decoded. Its number has to be after the last one.
+     */
+    @Override
+    public boolean add(ChatMessage message) {
+        long seq = message.getSeq();
+        if (seq <= lastSeq) {
+            throw new IllegalArgumentException("Chat message " + seq + " is not after message " + lastSeq);
+        }
+        if (seq - lastSeq > 1) {
+            // the history only ever holds consecutive numbers, a gap drops everything before it
+            Arrays.fill(messages, null);
+            size = 0;
+        }
+        // once the history is full this is the oldest message's slot
+        messages[slot(seq)] = message;
+        lastSeq = seq;
+        size = Math.min(size + 1, messages.length);
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Numbers the next message after seq, dropping what the history keeps, e.g. for a room restored from a
+     * snapshot that is older than its chat log. A seq at or below lastSeq() changes nothing.
+     */
+    public void continueAfter(long seq) {
+        if (seq <= lastSeq) {
+            return;
+        }
+        Arrays.fill(messages, null);
+        size = 0;
+        lastSeq = seq;
+        modCount++;
+    }
+
+    @Override
+    public ChatMessage get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for chat history of " + size);
+        }
+        return messages[slot(firstSeq() + index)];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The number of the oldest message still kept, lastSeq() + 1 while there is none.
+     */
+    public long firstSeq() {
+        return lastSeq - size + 1;
+    }
+
+    /**
+     * The number of the newest message, 0 before the first one.
+     */
+    public long lastSeq() {
+        return lastSeq;
+    }
+
+    /**
+     * Up to limit of the kept messages numbered below seq, the newest of them, oldest first.
+     */
+    public List<ChatMessage> before(long seq, int limit) {
+        long to = Math.min(seq - 1, lastSeq);
+        long from = Math.max(firstSeq(), to - limit + 1);
+        return range(from, to);
+    }
+
+    /**
+     * Up to limit of the kept messages numbered above seq, the oldest of them, oldest first.
+     */
+    public List<ChatMessage> after(long seq, int limit) {
+        long from = Math.max(seq + 1, firstSeq());
+        long to = Math.min(lastSeq, from + limit - 1);
+        return range(from, to);
+    }
+
+    private List<ChatMessage> range(long from, long to) {
+        if (from > to) {
+            return List.of();
+        }
+        List<ChatMessage> result = new ArrayList<>((int) (to - from + 1));
+        for (long seq = from; seq <= to; seq++) {
+            result.add(messages[slot(seq)]);
+        }
+        return result;
+    }
+
+    private int slot(long seq) {
+        return (int) (seq % messages.length);
+    }
+}
@@ -3,12 +3,18 @@ package com.monopolyInMatlab.monopoly.domain;
 import lombok.Builder;
 import lombok.Data;
 
+import java.io.Serializable;
 import java.time.Instant;
 import java.util.UUID;
 
 @Data
-@Builder
-public class ChatMessage {
+@Builder(toBuilder = true)
+public class ChatMessage implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // Numbered by the room's ChatHistory, from 1 up, never reused within a room
+    private final long seq;
+    private final Instant timestamp;
     private final UUID playerId;
     private final String playerName;
     private final String message;
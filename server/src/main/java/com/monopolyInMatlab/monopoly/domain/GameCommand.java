@@ -0,0 +1,54 @@
+package com.monopolyInMatlab.monopoly.domain;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * One applied action against a room, with everything needed to apply it again.
+ * Random outcomes (dice, generated ids) are recorded here rather than re-rolled,
+ * so replaying the same commands in order rebuilds exactly the same room.
+ */
+@Data
+@Builder
+public class GameCommand {
+    private final GameCommandType type;
+    private final UUID playerId;
+    private final String playerName;     // For joins
+    private final Integer position;      // For property-related actions
+    private final Integer amount;        // For bids and debt payments
+    private final Instant closesAt;      // For auctions, when the bid window closes
+    private final int[] dice;            // For rolls
+    private final String deckType;       // For card draws
+
+    // Trading
+    private final UUID tradeId;
+    private final UUID toPlayerId;
+    private final List<Integer> fromPlayerProperties;
+    private final Integer fromPlayerMoney;
+    private final List<Integer> toPlayerProperties;
+    private final Integer toPlayerMoney;
+    private final Boolean accept;
+
+    // Debt payment
+    private final List<Integer> housesToSell;
+    private final List<Integer> hotelsToSell;
+    private final List<Integer> propertiesToMortgage;
+    private final UUID creditorId;
+
+    // Chat
+    private final String message;
+    private final Instant timestamp;     // When it was sent
+    private final Long seq;              // The number the room gave it
+
+    public static GameCommand of(GameCommandType type, UUID playerId) {
+        return GameCommand.builder().type(type).playerId(playerId).build();
+    }
+
+    public static GameCommand of(GameCommandType type, UUID playerId, int position) {
+        return GameCommand.builder().type(type).playerId(playerId).position(position).build();
+    }
+}
@@ -0,0 +1,51 @@
+package com.monopolyInMatlab.monopoly.domain;
+
+public enum GameCommandType {
+    // Room membership
+    PLAYER_JOINED,
+    PLAYER_LEFT,
+    PLAYER_DISCONNECTED,
+
+    // Game lifecycle
+    INITIALIZE_GAME,
+    START_GAME,
+
+    // Turn actions
+    ROLL_DICE,
+    END_TURN,
+
+    // Property actions
+    BUY_PROPERTY,
+    DECLINE_PROPERTY,
+
+    // Building actions
+    BUILD_HOUSE,
+    BUILD_HOTEL,
+    SELL_HOUSE,
+    SELL_HOTEL,
+
+    // Mortgage actions
+    MORTGAGE_PROPERTY,
+    UNMORTGAGE_PROPERTY,
+
+    // Jail actions
+    PAY_JAIL_FINE,
+    USE_JAIL_CARD,
+    ROLL_FOR_JAIL,
+
+    // Trading
+    PROPOSE_TRADE,
+    RESPOND_TO_TRADE,
+
+    // Auction
+    START_AUCTION,
+    PLACE_BID,
+    END_AUCTION,
+
+    // Cards and debt
+    DRAW_CARD,
+    PAY_OFF_DEBT,
+
+    // Chat
+    CHAT_MESSAGE
+}
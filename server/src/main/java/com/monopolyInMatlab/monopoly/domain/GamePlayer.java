@@ -3,11 +3,14 @@ package com.monopolyInMatlab.monopoly.domain;
 import lombok.Builder;
 import lombok.Data;
 
+import java.io.Serializable;
 import java.util.*;
 
 @Data
 @Builder
-public class GamePlayer {
+public class GamePlayer implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     // Player fields
     @Builder.Default
     private UUID playerId = UUID.randomUUID();
@@ -3,15 +3,22 @@ package com.monopolyInMatlab.monopoly.domain;
 import lombok.Builder;
 import lombok.Data;
 
+import java.io.Serializable;
 import java.util.*;
 
 @Data
 @Builder
-public class GameRoom {
+public class GameRoom implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     // Room fields
     private UUID roomId;
     private String roomName;
 
+    // Bumped by the repository on every committed save, used for optimistic concurrency
+    @Builder.Default
+    private long version = 0;
+
     @Builder.Default
     private boolean isStarted = false;
 
@@ -52,8 +59,9 @@ public class GameRoom {
     @Builder.Default
     private Trade currentTrade = null;
 
+    // always a ChatHistory, except in rooms Java-serialized before chat was numbered (see chat())
     @Builder.Default
-    private List<ChatMessage> chatHistory = new ArrayList<>();
+    private List<ChatMessage> chatHistory = new ChatHistory();
 
     @Builder.Default
     private UUID winnerId = null;
@@ -107,8 +115,18 @@ public class GameRoom {
         communityChestCardIndex = 0;
     }
 
-    public void addChatMessage(ChatMessage message) {
-        chatHistory.add(message);
+    /**
+     * Numbers the message as the room's next one and keeps it, returns the numbered message.
+     */
+    public ChatMessage addChatMessage(ChatMessage message) {
+        return chat().append(message);
+    }
+
+    public ChatHistory chat() {
+        if (!(chatHistory instanceof ChatHistory)) {
+            chatHistory = ChatHistory.of(chatHistory);
+        }
+        return (ChatHistory) chatHistory;
     }
 
     public GamePlayer getPlayerById(UUID playerId) {
@@ -3,12 +3,15 @@ package com.monopolyInMatlab.monopoly.domain;
 import lombok.Builder;
 import lombok.Data;
 
+import java.io.Serializable;
 import java.util.List;
 import java.util.UUID;
 
 @Data
 @Builder
-public class Trade {
+public class Trade implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private final UUID tradeId;
     private final UUID fromPlayerId;
     private final UUID toPlayerId;
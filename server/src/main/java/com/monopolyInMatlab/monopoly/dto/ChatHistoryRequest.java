@@ -0,0 +1,19 @@
+package com.monopolyInMatlab.monopoly.dto;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * A page of a room's chat: the newest messages before seq before, or the oldest after seq after.
+ * Neither is the latest page, which is what a client that just joined or reconnected asks for.
+ * With from and/or to it is the oldest messages sent in that time range instead.
+ */
+@Data
+public class ChatHistoryRequest {
+    private Long before;
+    private Long after;
+    private Instant from;
+    private Instant to;
+    private int limit = 50;
+}
@@ -10,6 +10,8 @@ import java.util.UUID;
 @Builder
 public class ChatMessageDTO {
     private String messageType;  // Always "CHAT_MESSAGE"
+    private long seq;            // the message's number in the room's chat, see ChatHistoryRequest
+    private Instant timestamp;
     private UUID playerId;
     private String playerName;
     private String message;
@@ -0,0 +1,16 @@
+package com.monopolyInMatlab.monopoly.dto;
+
+import com.monopolyInMatlab.monopoly.domain.ChatMessage;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class ChatPage {
+    private List<ChatMessage> messages;  // oldest first
+    private long firstSeq;               // the oldest message the room still has, older ones are gone
+    private long lastSeq;                // the room's newest message, 0 if there is none yet
+    private boolean hasMore;             // more messages in the direction paged, pass the first or last seq back for them
+}
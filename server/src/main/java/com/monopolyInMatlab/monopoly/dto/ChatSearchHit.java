@@ -0,0 +1,18 @@
+package com.monopolyInMatlab.monopoly.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Data
+@Builder
+public class ChatSearchHit {
+    private UUID roomId;
+    private long seq;  // the message's number in its room, page around it with /menu/room/{roomId}/chat
+    private Instant timestamp;
+    private UUID playerId;
+    private String playerName;
+    private String message;
+}
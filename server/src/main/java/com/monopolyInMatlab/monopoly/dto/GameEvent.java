@@ -0,0 +1,298 @@
+package com.monopolyInMatlab.monopoly.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.monopolyInMatlab.monopoly.domain.ChatMessage;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The events GameWebsocketController broadcasts to /room/{roomId}.
+ *
+ * Each event writes its own data object straight into a JsonGenerator, no map, no boxing and no reflection.
+ * The bytes are the ones a GameEventMessage holding a HashMap of the same data used to produce, with fields
+ * included in the same order, which is the HashMap's iteration order and not the order they are declared in.
+ * The wire format is {"messageType":"...","data":{...}}.
+ */
+public sealed interface GameEvent {
+
+    String messageType();
+
+    void writeData(JsonGenerator json) throws IOException;
+
+    record PlayerJoined(String playerName) implements GameEvent {
+        public String messageType() { return "PLAYER_JOINED"; }
+
+        public void writeData(JsonGenerator json) throws IOException {
+            json.writeStringField("playerName", playerName);
+        }
+    }
+
+    record GameStarted(UUID currentPlayerId, int currentPlayerIndex) implements GameEvent {
+        public String messageType() { return "GAME_STARTED"; }
+
+        public void writeData(JsonGenerator json) throws IOException {
+            writeUuidField(json, "currentPlayerId", currentPlayerId);
+            json.writeNumberField("currentPlayerIndex", currentPlayerIndex);
+        }
+    }
+
+    record DiceRolled(UUID playerId, int firstDie, int secondDie) implements GameEvent {
+        public String messageType() { return "DICE_ROLLED"; }
+
+        public void writeData(JsonGenerator json) throws IOException {
+            json.writeBooleanField("isDoubles", firstDie == secondDie);
+            json.writeFieldName("dice");
+            json.writeStartArray();
+            json.writeNumber(firstDie);
+            json.writeNumber(secondDie);
+            json.writeEndArray();
+            writeUuidField(json, "playerId", playerId);
+        }
+    }
+
+    record PlayerMoved(UUID playerId, int newPosition, int money) implements GameEvent {
+        public String messageType() { return "PLAYER_MOVED"; }
+
+        public void writeData(JsonGenerator json) throws IOException {
+            json.writeNumberField("newPosition", newPosition);
+            json.writeNumberField("money", money);
+            writeUuidField(json, "playerId", playerId);
+        }
+    }
+
+    record TurnChanged(UUID currentPlayerId) implements GameEvent {
+        public String messageType() { return "TURN_CHANGED"; }
+
+        public void writeData(JsonGenerator json) throws IOException {
+            writeUuidField(json, "currentPlayerId", currentPlayerId);
+        }
+    }
+
+    record GameOver(UUID winnerId) implements GameEvent {
+        public String messageType() { return "GAME_OVER"; }
+
+        public void writeData(JsonGenerator json) throws IOException {
+            writeUuidField(json, "winnerId", winnerId);
+        }
+    }
+
+    record PropertyBought(UUID playerId, Integer position, int money) implements GameEvent {
+        public String messageType() { return "PROPERTY_BOUGHT"; }
+
+        public void writeData(JsonGenerator json) throws IOException {
+            json.writeNumberField("money", money);
+            writeIntegerField(json, "position", position);
+            writeUuidField(json, "playerId", playerId);
+        }
+    }
+
+    record AuctionStarted(Integer position) implements GameEvent {
+        public String messageType() { return "AUCTION_STARTED"; }
+
+        public void writeData(JsonGenerator json) throws IOException {
+            writeIntegerField(json, "position", position);
+        }
+    }
+
+    record HouseBuilt(UUID playerId, Integer position, int housesBuilt) implements GameEvent {
+        public String messageType() { return "HOUSE_BUILT"; }
+
+        public void writeData(JsonGenerator json) throws IOException {
+            json.writeNumberField("housesBuilt", housesBuilt);
+            writeIntegerField(json, "position", position);
+            writeUuidField(json, "playerId", playerId);
+        }
+    }
+
+    // HOTEL_BUILT, PROPERTY_MORTGAGED and PROPERTY_UNMORTGAGED all carry just the player and the property
+    record PropertyChanged(String messageType, UUID playerId, Integer position) implements GameEvent {
+        public static PropertyChanged hotelBuilt(UUID playerId, Integer position) {
+            return new PropertyChanged("HOTEL_BUILT", playerId, position);
+        }
+
+        public static PropertyChanged mortgaged(UUID playerId, Integer position) {
+            return new PropertyChanged("PROPERTY_MORTGAGED", playerId, position);
+        }
+
+        public static PropertyChanged unmortgaged(UUID playerId, Integer position) {
+            return new PropertyChanged("PROPERTY_UNMORTGAGED", playerId, position);
+        }
+
+        public void writeData(JsonGenerator json) throws IOException {
+            writeIntegerField(json, "position", position);
+            writeUuidField(json, "playerId", playerId);
+        }
+    }
+
+    record PlayerReleasedJail(UUID playerId, boolean released) implements GameEvent {
+        public String messageType() { return "PLAYER_RELEASED_JAIL"; }
+
+        public void writeData(JsonGenerator json) throws IOException {
+            json.writeBooleanField("released", released);
+            writeUuidField(json, "playerId", playerId);
+        }
+    }
+
+    record TradeProposed(UUID tradeId, UUID fromPlayerId, UUID toPlayerId) implements GameEvent {
+        public String messageType() { return "TRADE_PROPOSED"; }
+
+        public void writeData(JsonGenerator json) throws IOException {
+            writeUuidField(json, "toPlayerId", toPlayerId);
+            writeUuidField(json, "tradeId", tradeId);
+            writeUuidField(json, "fromPlayerId", fromPlayerId);
+        }
+    }
+
+    record TradeAnswered(UUID tradeId, boolean accepted) implements GameEvent {
+        public String messageType() { return accepted ? "TRADE_COMPLETED" : "TRADE_DECLINED"; }
+
+        public void writeData(JsonGenerator json) throws IOException {
+            json.writeBooleanField("accepted", accepted);
+            writeUuidField(json, "tradeId", tradeId);
+        }
+    }
+
+    record BidPlaced(UUID playerId, Integer amount) implements GameEvent {
+        public String messageType() { return "BID_PLACED"; }
+
+        public void writeData(JsonGenerator json) throws IOException {
+            writeIntegerField(json, "amount", amount);
+            writeUuidField(json, "playerId", playerId);
+        }
+    }
+
+    record AuctionEnded() implements GameEvent {
+        public String messageType() { return "AUCTION_ENDED"; }
+
+        public void writeData(JsonGenerator json) {
+        }
+    }
+
+    record CardDrawn(UUID playerId, String cardType, String description) implements GameEvent {
+        public String messageType() { return "CARD_DRAWN"; }
+
+        public void writeData(JsonGenerator json) throws IOException {
+            json.writeStringField("cardType", cardType);
+            json.writeStringField("description", description);
+            writeUuidField(json, "playerId", playerId);
+        }
+    }
+
+    // the creditor fields are left out entirely when the debt was owed to the bank
+    record DebtPaid(UUID playerId, int playerMoney, Integer amountPaid, UUID creditorId, int creditorMoney) implements GameEvent {
+        public String messageType() { return "DEBT_PAID"; }
+
+        public void writeData(JsonGenerator json) throws IOException {
+            writeIntegerField(json, "amountPaid", amountPaid);
+            json.writeNumberField("playerMoney", playerMoney);
+            if (creditorId != null) {
+                json.writeNumberField("creditorMoney", creditorMoney);
+                writeUuidField(json, "creditorId", creditorId);
+            }
+            writeUuidField(json, "playerId", playerId);
+        }
+    }
+
+    record LiquidationRequired(UUID playerId, Integer amountOwed, int currentMoney, String reason,
+                               UUID creditorId, String creditorName, List<LiquidationAsset> assets) implements GameEvent {
+        public String messageType() { return "LIQUIDATION_REQUIRED"; }
+
+        public void writeData(JsonGenerator json) throws IOException {
+            json.writeStringField("reason", reason);
+            json.writeFieldName("assets");
+            json.writeStartArray();
+            for (LiquidationAsset asset : assets) {
+                json.writeStartObject();
+                json.writeStringField("type", asset.getType());
+                writeIntegerField(json, "position", asset.getPosition());
+                json.writeStringField("propertyName", asset.getPropertyName());
+                writeIntegerField(json, "value", asset.getValue());
+                writeIntegerField(json, "count", asset.getCount());
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            if (creditorId != null) {
+                json.writeStringField("creditorName", creditorName);
+            }
+            json.writeNumberField("currentMoney", currentMoney);
+            if (creditorId != null) {
+                writeUuidField(json, "creditorId", creditorId);
+            }
+            writeUuidField(json, "playerId", playerId);
+            writeIntegerField(json, "amountOwed", amountOwed);
+        }
+    }
+
+    // a page of the room's chat, sent to the player who asked for it
+    record ChatHistoryPage(ChatPage page) implements GameEvent {
+        public String messageType() { return "CHAT_HISTORY"; }
+
+        public void writeData(JsonGenerator json) throws IOException {
+            json.writeFieldName("messages");
+            json.writeStartArray();
+            for (ChatMessage message : page.getMessages()) {
+                json.writeStartObject();
+                json.writeNumberField("seq", message.getSeq());
+                // ISO-8601, as the ObjectMapper writes it in the room
+                if (message.getTimestamp() == null) {
+                    json.writeNullField("timestamp");
+                } else {
+                    json.writeStringField("timestamp", message.getTimestamp().toString());
+                }
+                writeUuidField(json, "playerId", message.getPlayerId());
+                json.writeStringField("playerName", message.getPlayerName());
+                json.writeStringField("message", message.getMessage());
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeNumberField("firstSeq", page.getFirstSeq());
+            json.writeNumberField("lastSeq", page.getLastSeq());
+            json.writeBooleanField("hasMore", page.isHasMore());
+        }
+    }
+
+    record Error(String error) implements GameEvent {
+        public String messageType() { return "ERROR"; }
+
+        public void writeData(JsonGenerator json) throws IOException {
+            json.writeStringField("error", error);
+        }
+    }
+
+    static void writeIntegerField(JsonGenerator json, String name, Integer value) throws IOException {
+        if (value == null) {
+            json.writeNullField(name);
+        } else {
+            json.writeNumberField(name, value);
+        }
+    }
+
+    // writes the canonical 36 character form without going through UUID.toString
+    static void writeUuidField(JsonGenerator json, String name, UUID value) throws IOException {
+        if (value == null) {
+            json.writeNullField(name);
+            return;
+        }
+        char[] chars = new char[36];
+        writeHex(chars, 0, value.getMostSignificantBits() >>> 32, 8);
+        chars[8] = '-';
+        writeHex(chars, 9, value.getMostSignificantBits() >>> 16, 4);
+        chars[13] = '-';
+        writeHex(chars, 14, value.getMostSignificantBits(), 4);
+        chars[18] = '-';
+        writeHex(chars, 19, value.getLeastSignificantBits() >>> 48, 4);
+        chars[23] = '-';
+        writeHex(chars, 24, value.getLeastSignificantBits(), 12);
+        json.writeFieldName(name);
+        json.writeString(chars, 0, chars.length);
+    }
+
+    private static void writeHex(char[] chars, int offset, long bits, int digits) {
+        for (int i = digits - 1; i >= 0; i--) {
+            chars[offset + i] = Character.forDigit((int) (bits & 0xF), 16);
+            bits >>>= 4;
+        }
+    }
+}
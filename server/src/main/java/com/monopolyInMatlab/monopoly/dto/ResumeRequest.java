@@ -0,0 +1,13 @@
+package com.monopolyInMatlab.monopoly.dto;
+
+import lombok.Data;
+
+/**
+ * What a reconnecting client has already seen of a room, the room-stream and room-seq headers of the
+ * last room frame it got. Both are empty for a client that has nothing yet.
+ */
+@Data
+public class ResumeRequest {
+    private String stream;
+    private long lastSeq;
+}
@@ -0,0 +1,13 @@
+package com.monopolyInMatlab.monopoly.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class RoomPage {
+    private List<RoomSummary> rooms;
+    private String nextCursor;  // null on the last page, otherwise pass it back to get the next one
+}
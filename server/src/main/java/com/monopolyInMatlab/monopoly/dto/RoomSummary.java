@@ -0,0 +1,23 @@
+package com.monopolyInMatlab.monopoly.dto;
+
+import com.monopolyInMatlab.monopoly.domain.GamePhase;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * What the room browser shows for one room, kept up to date on every commit so the lobby never loads full rooms.
+ */
+@Data
+@Builder
+public class RoomSummary {
+    private final UUID roomId;
+    private final String roomName;
+    private final List<String> playerNames;
+    private final GamePhase gamePhase;
+    private final boolean isStarted;
+    private final Instant lastActivity;
+}
@@ -0,0 +1,141 @@
+package com.monopolyInMatlab.monopoly.persistence;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Keeps track of what an action commits, so the action's thread, usually the room's writer, doesn't have to
+ * wait for the journal and nothing that only hears of a commit can fail the action that made it.
+ *
+ * Repositories queue the journal write of a change before they store it and report it here, whoever ran the
+ * action holds its frames and its reply back until the returned future completes. RoomCommittedEvent and
+ * RoomRemovedEvent are held until the action is done and then published, still on the action's thread and in
+ * commit order. A listener that throws is logged, the commit stands.
+ * Outside call and run, e.g. for a room handed over by another node, events are published right after the
+ * commit and writes are not waited for.
+ */
+@Component
+public class RoomCommits {
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+    // the action running on this thread, null outside call and run
+    private static final ThreadLocal<Action> currentAction = new ThreadLocal<>();
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public RoomCommits(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Runs the action here and returns a future for its result that completes once every write it queued
+     * is durable, or fails if one of them couldn't be written. Nested inside another action, the writes are
+     * waited for by both and the events are published when the outer one is done.
+     */
+    public <T> CompletableFuture<T> call(Supplier<T> action) {
+        Action outer = currentAction.get();
+        Action current = outer != null ? outer : new Action();
+        int firstWrite = current.writes.size();
+        if (outer == null) {
+            currentAction.set(current);
+        }
+        T result;
+        try {
+            result = action.get();
+        } finally {
+            if (outer == null) {
+                // even if the action failed, what it committed before stays committed. Still inside the action,
+                // so what listeners send waits for its writes, and what they commit is published in this loop too
+                try {
+                    for (int i = 0; i < current.events.size(); i++) {
+                        publish(current.events.get(i));
+                    }
+                } finally {
+                    currentAction.remove();
+                }
+            }
+        }
+        return allOf(current.writes.subList(firstWrite, current.writes.size())).thenApply(written -> result);
+    }
+
+    public CompletableFuture<Void> run(Runnable action) {
+        return call(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * The writes queued so far by the action running on this thread, done if there are none.
+     */
+    public CompletableFuture<Void> pending() {
+        Action action = currentAction.get();
+        return action != null ? allOf(action.writes) : DONE;
+    }
+
+    /**
+     * Called by repositories for every write they queue.
+     */
+    public void written(CompletableFuture<Void> write) {
+        Action action = currentAction.get();
+        if (action != null) {
+            action.writes.add(write);
+        }
+    }
+
+    /**
+     * Called by RoomSnapshots for every commit and deletion, published once the action running here is done.
+     */
+    void committed(Object event) {
+        Action action = currentAction.get();
+        if (action != null) {
+            action.events.add(event);
+        } else {
+            publish(event);
+        }
+    }
+
+    /**
+     * Waits for a future from call or run and returns its result, rethrowing what made it fail.
+     * Must not be called on a room's writer, that is what call and run are there to avoid.
+     */
+    public static <T> T await(CompletableFuture<T> committed) {
+        try {
+            return committed.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void publish(Object event) {
+        try {
+            eventPublisher.publishEvent(event);
+        } catch (RuntimeException e) {
+            System.out.println("A listener failed on " + event.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+    }
+
+    private static CompletableFuture<Void> allOf(List<CompletableFuture<Void>> writes) {
+        if (writes.isEmpty()) {
+            return DONE;
+        }
+        if (writes.size() == 1) {
+            return writes.get(0);
+        }
+        return CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new));
+    }
+
+    private static final class Action {
+        private final List<CompletableFuture<Void>> writes = new ArrayList<>();
+        private final List<Object> events = new ArrayList<>();
+    }
+}
@@ -0,0 +1,12 @@
+package com.monopolyInMatlab.monopoly.persistence;
+
+import com.monopolyInMatlab.monopoly.domain.GameRoom;
+
+/**
+ * A room has been stored and its snapshot published.
+ * The room is the instance that was just stored, listeners must only read it and must not hold on to it.
+ * The previous snapshot is null for a room that had none yet.
+ * Replayed commits load rooms stored before a restart, they are nothing new to clients.
+ */
+public record RoomCommittedEvent(GameRoom room, RoomSnapshot previous, RoomSnapshot snapshot, boolean replayed) {
+}
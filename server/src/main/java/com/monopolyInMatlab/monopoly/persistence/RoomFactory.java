@@ -0,0 +1,40 @@
+package com.monopolyInMatlab.monopoly.persistence;
+
+import com.monopolyInMatlab.monopoly.config.BoardConfiguration;
+import com.monopolyInMatlab.monopoly.config.CardConfiguration;
+import com.monopolyInMatlab.monopoly.domain.Card;
+import com.monopolyInMatlab.monopoly.domain.CreateRoomRequest;
+import com.monopolyInMatlab.monopoly.domain.GameRoom;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Builds a fresh room with a standard board and shuffled decks, shared by every repository implementation.
+ */
+public class RoomFactory {
+
+    public static GameRoom newRoom(CreateRoomRequest createRoomRequest, UUID roomId) {
+        // Initialize card decks
+        List<Card> chanceCards = CardConfiguration.createChanceCards();
+        List<Card> communityChestCards = CardConfiguration.createCommunityChestCards();
+        Collections.shuffle(chanceCards);
+        Collections.shuffle(communityChestCards);
+
+        return GameRoom.builder()
+                .roomId(roomId)
+                .roomName(createRoomRequest.getRoomName())
+                .gamePlayers(new ArrayList<>())
+                .isStarted(false)
+                .boardSpaces(BoardConfiguration.createStandardBoard())
+                .chanceCards(chanceCards)
+                .communityChestCards(communityChestCards)
+                .build();
+    }
+
+    private RoomFactory() {
+        // Utility class, no instantiation
+    }
+}
@@ -0,0 +1,119 @@
+package com.monopolyInMatlab.monopoly.persistence;
+
+import com.monopolyInMatlab.monopoly.domain.GamePhase;
+import com.monopolyInMatlab.monopoly.domain.GamePlayer;
+import com.monopolyInMatlab.monopoly.domain.GameRoom;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Secondary indexes over the stored rooms, so lookups by phase, by player and by name prefix
+ * don't have to scan every room. Repositories call index() whenever they store a room and
+ * remove() when it is deleted. Updates for one room always come from that room's writer,
+ * so the per-room bookkeeping below never races with itself.
+ */
+public class RoomIndex {
+    private final Map<GamePhase, Set<UUID>> roomsByPhase = new EnumMap<>(GamePhase.class);
+    private final ConcurrentMap<UUID, Set<UUID>> roomsByPlayer = new ConcurrentHashMap<>();
+    // keyed by lower case room name + room id, so rooms with the same name don't overwrite each other
+    private final ConcurrentNavigableMap<String, UUID> roomsByName = new ConcurrentSkipListMap<>();
+
+    // what each room was last indexed under, so a re-index only touches the entries that changed
+    private final ConcurrentMap<UUID, IndexedRoom> indexedRooms = new ConcurrentHashMap<>();
+
+    public RoomIndex() {
+        for (GamePhase phase : GamePhase.values()) {
+            roomsByPhase.put(phase, ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    public void index(GameRoom room) {
+        UUID roomId = room.getRoomId();
+        IndexedRoom previous = indexedRooms.get(roomId);
+        IndexedRoom current = new IndexedRoom(room.getGamePhase(), playerIds(room), nameKey(room.getRoomName(), roomId));
+
+        if (previous == null || previous.phase() != current.phase()) {
+            if (previous != null) {
+                roomsByPhase.get(previous.phase()).remove(roomId);
+            }
+            roomsByPhase.get(current.phase()).add(roomId);
+        }
+
+        if (previous == null || !previous.playerIds().equals(current.playerIds())) {
+            if (previous != null) {
+                for (UUID playerId : previous.playerIds()) {
+                    if (!current.playerIds().contains(playerId)) {
+                        removePlayer(playerId, roomId);
+                    }
+                }
+            }
+            for (UUID playerId : current.playerIds()) {
+                roomsByPlayer.computeIfAbsent(playerId, id -> ConcurrentHashMap.newKeySet()).add(roomId);
+            }
+        }
+
+        if (previous == null || !previous.nameKey().equals(current.nameKey())) {
+            if (previous != null) {
+                roomsByName.remove(previous.nameKey());
+            }
+            roomsByName.put(current.nameKey(), roomId);
+        }
+
+        indexedRooms.put(roomId, current);
+    }
+
+    public void remove(UUID roomId) {
+        IndexedRoom previous = indexedRooms.remove(roomId);
+        if (previous == null) {
+            return;
+        }
+
+        roomsByPhase.get(previous.phase()).remove(roomId);
+        for (UUID playerId : previous.playerIds()) {
+            removePlayer(playerId, roomId);
+        }
+        roomsByName.remove(previous.nameKey());
+    }
+
+    public Set<UUID> findByPhase(GamePhase phase) {
+        return Collections.unmodifiableSet(roomsByPhase.get(phase));
+    }
+
+    public Set<UUID> findByPlayerId(UUID playerId) {
+        Set<UUID> roomIds = roomsByPlayer.get(playerId);
+        return roomIds == null ? Collections.emptySet() : Collections.unmodifiableSet(roomIds);
+    }
+
+    public Collection<UUID> findByNamePrefix(String prefix) {
+        String from = prefix == null ? "" : prefix.toLowerCase(Locale.ROOT);
+        // every key starting with the prefix sorts between the prefix and the prefix followed by the highest char
+        return roomsByName.subMap(from, true, from + Character.MAX_VALUE, true).values();
+    }
+
+    private void removePlayer(UUID playerId, UUID roomId) {
+        roomsByPlayer.computeIfPresent(playerId, (id, roomIds) -> {
+            roomIds.remove(roomId);
+            return roomIds.isEmpty() ? null : roomIds;
+        });
+    }
+
+    private static Set<UUID> playerIds(GameRoom room) {
+        Set<UUID> playerIds = new HashSet<>();
+        for (GamePlayer player : room.getGamePlayers()) {
+            playerIds.add(player.getPlayerId());
+        }
+        return playerIds;
+    }
+
+    private static String nameKey(String roomName, UUID roomId) {
+        String name = roomName == null ? "" : roomName.toLowerCase(Locale.ROOT);
+        return name + '\u0000' + roomId;
+    }
+
+    private record IndexedRoom(GamePhase phase, Set<UUID> playerIds, String nameKey) {
+    }
+}
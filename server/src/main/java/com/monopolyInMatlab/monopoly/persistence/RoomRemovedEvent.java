@@ -0,0 +1,9 @@
+package com.monopolyInMatlab.monopoly.persistence;
+
+import java.util.UUID;
+
+/**
+ * A room has been deleted and its snapshot dropped.
+ */
+public record RoomRemovedEvent(UUID roomId) {
+}
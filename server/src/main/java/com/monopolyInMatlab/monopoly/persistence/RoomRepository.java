@@ -1,17 +1,34 @@
 package com.monopolyInMatlab.monopoly.persistence;
 
 import com.monopolyInMatlab.monopoly.domain.CreateRoomRequest;
+import com.monopolyInMatlab.monopoly.domain.GameCommand;
+import com.monopolyInMatlab.monopoly.domain.GamePhase;
 import com.monopolyInMatlab.monopoly.domain.GameRoom;
 import com.monopolyInMatlab.monopoly.domain.GamePlayer;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
 public interface RoomRepository {
     List<GameRoom> getAllRooms();
-    GameRoom createRoom(CreateRoomRequest createRoomRequest);
+    // roomId is chosen by the caller, in a cluster it decides which node owns the room
+    GameRoom createRoom(CreateRoomRequest createRoomRequest, UUID roomId);
     GamePlayer joinRoom(UUID roomId, GamePlayer player);
     GameRoom findGameRoomById(UUID roomId);
-    void saveGameRoom(GameRoom gameRoom);
+    // A private copy of the stored room for the room's writer to change and then save, null if there is no such room.
+    // An action that fails halfway just drops its copy, so the stored room never holds half an action
+    GameRoom findGameRoomForUpdate(UUID roomId);
+    // Saves only if the stored room is still at expectedVersion, returns false if someone else saved first.
+    // Repositories that keep a history queue the command that made the change before the new version is stored,
+    // without waiting for it, the write is reported to RoomCommits
+    boolean saveGameRoomIfVersion(GameRoom gameRoom, long expectedVersion, GameCommand command);
     void deleteRoom(UUID roomId);
+    // Stores a room exactly as another node handed it over, keeping its version
+    void importRoom(GameRoom gameRoom);
+
+    // Secondary index lookups, ids only so callers can read the rooms from their committed snapshots
+    Collection<UUID> findRoomIdsByPhase(GamePhase gamePhase);
+    Collection<UUID> findRoomIdsByPlayerId(UUID playerId);
+    Collection<UUID> findRoomIdsByNamePrefix(String prefix);
 }
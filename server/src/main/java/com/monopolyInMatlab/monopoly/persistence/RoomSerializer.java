@@ -0,0 +1,42 @@
+package com.monopolyInMatlab.monopoly.persistence;
+
+import com.monopolyInMatlab.monopoly.domain.GameRoom;
+import com.monopolyInMatlab.monopoly.persistence.codec.GameRoomCodec;
+
+import java.io.*;
+
+/**
+ * Turns a whole GameRoom into bytes and back, for repositories that keep rooms outside the heap.
+ * Rooms are written with GameRoomCodec. Rooms written by earlier builds used Java serialization,
+ * those are still read so existing journals and segment files keep loading.
+ */
+public class RoomSerializer {
+    // first two bytes of every Java serialization stream
+    private static final int JAVA_STREAM_MAGIC_0 = 0xAC;
+    private static final int JAVA_STREAM_MAGIC_1 = 0xED;
+
+    public static byte[] toBytes(GameRoom room) {
+        return GameRoomCodec.encode(room);
+    }
+
+    public static GameRoom fromBytes(byte[] data) {
+        if (data.length >= 2 && (data[0] & 0xFF) == JAVA_STREAM_MAGIC_0 && (data[1] & 0xFF) == JAVA_STREAM_MAGIC_1) {
+            return fromJavaSerialization(data);
+        }
+        return GameRoomCodec.decode(data);
+    }
+
+    private static GameRoom fromJavaSerialization(byte[] data) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            return (GameRoom) in.readObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not deserialize room", e);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Could not deserialize room", e);
+        }
+    }
+
+    private RoomSerializer() {
+        // Utility class, no instantiation
+    }
+}
@@ -0,0 +1,78 @@
+package com.monopolyInMatlab.monopoly.persistence;
+
+import com.monopolyInMatlab.monopoly.config.WireFormat;
+import com.monopolyInMatlab.monopoly.domain.GameRoom;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A copy of a room as of one committed version.
+ * Readers decode their own GameRoom from it or use its JSON or CBOR, each rendered once per version
+ * on first use, so nothing a reader does can see or disturb a room that is being mutated.
+ *
+ * Only the snapshots of recently used rooms keep their bytes, see RoomSnapshots. The others read them again
+ * from the repository's RoomSource, which can only give them the room's current version.
+ */
+public final class RoomSnapshot {
+    private final UUID roomId;
+    private final long version;
+    private final RoomSource source;
+    // null while dropped, the rendered formats go with it
+    private volatile byte[] encodedRoom;
+    // rendered lazily per WireFormat, two readers racing on one just render the same bytes twice
+    private final AtomicReferenceArray<byte[]> rendered = new AtomicReferenceArray<>(WireFormat.values().length);
+
+    RoomSnapshot(UUID roomId, long version, byte[] encodedRoom, RoomSource source) {
+        this.roomId = roomId;
+        this.version = version;
+        this.encodedRoom = encodedRoom;
+        this.source = source;
+    }
+
+    public UUID getRoomId() {
+        return roomId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * A private GameRoom for this version, the caller may do whatever it likes with it.
+     * Null if the snapshot had dropped its bytes and the room has moved past this version since.
+     */
+    public GameRoom toRoom() {
+        byte[] bytes = encoded();
+        return bytes != null ? RoomSerializer.fromBytes(bytes) : null;
+    }
+
+    byte[] encoded() {
+        byte[] bytes = encodedRoom;
+        return bytes != null ? bytes : source.encodedRoom(roomId, version);
+    }
+
+    // the bytes kept on the heap, null while dropped
+    byte[] retainedBytes() {
+        return encodedRoom;
+    }
+
+    void retain(byte[] bytes) {
+        encodedRoom = bytes;
+    }
+
+    void release() {
+        encodedRoom = null;
+        for (int i = 0; i < rendered.length(); i++) {
+            rendered.set(i, null);
+        }
+    }
+
+    byte[] getRendered(WireFormat format) {
+        return rendered.get(format.ordinal());
+    }
+
+    void setRendered(WireFormat format, byte[] bytes) {
+        rendered.set(format.ordinal(), bytes);
+    }
+}
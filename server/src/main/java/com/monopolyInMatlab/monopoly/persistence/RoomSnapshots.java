@@ -0,0 +1,252 @@
+package com.monopolyInMatlab.monopoly.persistence;
+
+import com.monopolyInMatlab.monopoly.config.WireFormat;
+import com.monopolyInMatlab.monopoly.config.WireFormats;
+import com.monopolyInMatlab.monopoly.domain.GameRoom;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * The latest committed snapshot of every room, for readers outside the room's writer.
+ * Repositories publish a new snapshot whenever they store a room, the swap is a single map write,
+ * so reads never wait for game actions and game actions never wait for reads.
+ * The snapshots of the retained-rooms most recently used rooms keep their encoded and rendered bytes on the heap,
+ * the others drop them and read them again from their repository when asked, e.g. from the mapped slots.
+ * Commits and deletions are announced through RoomCommits, once the action that made them is done.
+ */
+@Component
+public class RoomSnapshots {
+    private final ConcurrentMap<UUID, RoomSnapshot> snapshots = new ConcurrentHashMap<>();
+    // parked long-poll readers per room, woken by the next publish past the version they already have
+    private final ConcurrentMap<UUID, Set<VersionWaiter>> waiters = new ConcurrentHashMap<>();
+    // the snapshots that keep their bytes, least recently used first, guarded by itself
+    private final Map<UUID, RoomSnapshot> retained = new LinkedHashMap<>(16, 0.75f, true);
+    private final int retainedRooms;
+    private final WireFormats wireFormats;
+    private final RoomSummaries roomSummaries;
+    private final RoomCommits roomCommits;
+    // set while the rooms stored before a restart are loaded, their commits are announced as replayed
+    private volatile boolean recovering;
+
+    public RoomSnapshots(WireFormats wireFormats, RoomSummaries roomSummaries, RoomCommits roomCommits,
+                         @Value("${monopoly.rooms.snapshots.retained-rooms:1024}") int retainedRooms) {
+        this.wireFormats = wireFormats;
+        this.retainedRooms = Math.max(retainedRooms, 1);
+        this.roomSummaries = roomSummaries;
+        this.roomCommits = roomCommits;
+    }
+
+    /**
+     * Runs the loading of the rooms stored before a restart. What it publishes is announced as replayed,
+     * listeners keep their own state up to date but send nothing, the broker isn't even up yet.
+     */
+    public void recover(Runnable loading) {
+        recovering = true;
+        try {
+            loading.run();
+        } finally {
+            recovering = false;
+        }
+    }
+
+    /**
+     * Publishes bytes the caller has already encoded with RoomSerializer, source is where they can be read again.
+     * An older version never replaces a newer one, so late publishers can't roll a room back.
+     * A snapshot that does replace the current one is announced as a RoomCommittedEvent on the publishing thread,
+     * which for game actions is the room's writer, so listeners see one room's commits one at a time and in order.
+     * Inside an action it is announced once the action is done, see RoomCommits.
+     */
+    public RoomSnapshot publish(GameRoom room, byte[] encodedRoom, RoomSource source) {
+        RoomSnapshot published = new RoomSnapshot(room.getRoomId(), room.getVersion(), encodedRoom, source);
+        RoomSnapshot[] replaced = new RoomSnapshot[1];
+        RoomSnapshot latest = snapshots.compute(room.getRoomId(), (id, current) -> {
+            if (current != null && current.getVersion() > published.getVersion()) {
+                return current;
+            }
+            // inside compute, so summary updates for one room are applied one at a time and in version order
+            roomSummaries.update(room);
+            replaced[0] = current;
+            return published;
+        });
+        if (latest == published) {
+            retain(published);
+            roomCommits.committed(new RoomCommittedEvent(room, replaced[0], published, recovering));
+        }
+        wakeWaiters(room.getRoomId(), latest);
+        return latest;
+    }
+
+    public RoomSnapshot get(UUID roomId) {
+        return snapshots.get(roomId);
+    }
+
+    public List<RoomSnapshot> getAll() {
+        return new ArrayList<>(snapshots.values());
+    }
+
+    public void remove(UUID roomId) {
+        boolean[] removed = new boolean[1];
+        snapshots.computeIfPresent(roomId, (id, snapshot) -> {
+            roomSummaries.remove(id);
+            removed[0] = true;
+            return null;
+        });
+        if (removed[0]) {
+            synchronized (retained) {
+                retained.remove(roomId);
+            }
+            roomCommits.committed(new RoomRemovedEvent(roomId));
+        }
+        wakeWaiters(roomId, null);
+    }
+
+    /**
+     * Calls back once the room has a snapshot newer than the given version, or with null once it is deleted.
+     * Fires straight away if that is already the case. The returned handle cancels the wait.
+     */
+    public Runnable awaitVersionAfter(UUID roomId, long version, Consumer<RoomSnapshot> callback) {
+        VersionWaiter waiter = new VersionWaiter(version, callback);
+        waiters.computeIfAbsent(roomId, id -> ConcurrentHashMap.newKeySet()).add(waiter);
+
+        // checked after registering, so a publish that lands in between can't be missed
+        RoomSnapshot current = snapshots.get(roomId);
+        if (current == null || current.getVersion() > version) {
+            fire(roomId, waiter, current);
+        }
+        return () -> removeWaiter(roomId, waiter);
+    }
+
+    /**
+     * A private GameRoom decoded from the room's latest snapshot, if that is at the given version and still has
+     * its bytes, so a repository copying a room for an update doesn't have to encode it first. Null otherwise.
+     */
+    public GameRoom copyOf(UUID roomId, long version) {
+        RoomSnapshot snapshot = snapshots.get(roomId);
+        byte[] bytes = snapshot != null && snapshot.getVersion() == version ? snapshot.retainedBytes() : null;
+        return bytes != null ? RoomSerializer.fromBytes(bytes) : null;
+    }
+
+    /**
+     * Drops the bytes of a room that has gone cold, they are read again from its repository if it is asked for.
+     */
+    public void release(UUID roomId) {
+        RoomSnapshot released;
+        synchronized (retained) {
+            released = retained.remove(roomId);
+        }
+        if (released != null) {
+            released.release();
+        }
+    }
+
+    // keeps the snapshot's bytes, and drops those of the least recently used room if that makes too many.
+    // Only the latest snapshot of a room is kept, older ones are garbage once their readers are done with them
+    private void retain(RoomSnapshot snapshot) {
+        RoomSnapshot evicted = null;
+        synchronized (retained) {
+            if (snapshots.get(snapshot.getRoomId()) != snapshot) {
+                return;
+            }
+            retained.put(snapshot.getRoomId(), snapshot);
+            if (retained.size() > retainedRooms) {
+                Iterator<RoomSnapshot> eldest = retained.values().iterator();
+                evicted = eldest.next();
+                eldest.remove();
+            }
+        }
+        if (evicted != null) {
+            evicted.release();
+        }
+    }
+
+    private void wakeWaiters(UUID roomId, RoomSnapshot latest) {
+        Set<VersionWaiter> roomWaiters = waiters.get(roomId);
+        if (roomWaiters == null) {
+            return;
+        }
+        for (VersionWaiter waiter : roomWaiters) {
+            if (latest == null || latest.getVersion() > waiter.version()) {
+                fire(roomId, waiter, latest);
+            }
+        }
+    }
+
+    private void fire(UUID roomId, VersionWaiter waiter, RoomSnapshot snapshot) {
+        if (waiter.fired().compareAndSet(false, true)) {
+            removeWaiter(roomId, waiter);
+            waiter.callback().accept(snapshot);
+        }
+    }
+
+    private void removeWaiter(UUID roomId, VersionWaiter waiter) {
+        waiters.computeIfPresent(roomId, (id, roomWaiters) -> {
+            roomWaiters.remove(waiter);
+            return roomWaiters.isEmpty() ? null : roomWaiters;
+        });
+    }
+
+    /**
+     * The snapshot in the given format. Null if the room is gone, or the room's latest version if the snapshot
+     * had dropped its bytes and the room has moved past it since.
+     */
+    public byte[] render(RoomSnapshot snapshot, WireFormat format) {
+        byte[] rendered = snapshot.getRendered(format);
+        if (rendered != null) {
+            return rendered;
+        }
+        byte[] encoded = snapshot.encoded();
+        if (encoded == null) {
+            RoomSnapshot latest = snapshots.get(snapshot.getRoomId());
+            return latest != null && latest != snapshot ? render(latest, format) : null;
+        }
+        rendered = wireFormats.write(RoomSerializer.fromBytes(encoded), format);
+        snapshot.retain(encoded);
+        snapshot.setRendered(format, rendered);
+        retain(snapshot);
+        return rendered;
+    }
+
+    /**
+     * An array of rooms stitched together from their rendered bytes.
+     * CBOR allows an indefinite-length array of already encoded items, so neither format re-renders anything.
+     */
+    public byte[] renderArray(Collection<RoomSnapshot> roomSnapshots, WireFormat format) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(format == WireFormat.CBOR ? 0x9F : '[');
+        boolean first = true;
+        for (RoomSnapshot snapshot : roomSnapshots) {
+            byte[] rendered = render(snapshot, format);
+            if (rendered == null) {
+                // deleted since the caller listed it
+                continue;
+            }
+            if (!first && format == WireFormat.JSON) {
+                out.write(',');
+            }
+            out.writeBytes(rendered);
+            first = false;
+        }
+        out.write(format == WireFormat.CBOR ? 0xFF : ']');
+        return out.toByteArray();
+    }
+
+    private record VersionWaiter(long version, Consumer<RoomSnapshot> callback, AtomicBoolean fired) {
+        VersionWaiter(long version, Consumer<RoomSnapshot> callback) {
+            this(version, callback, new AtomicBoolean(false));
+        }
+    }
+}
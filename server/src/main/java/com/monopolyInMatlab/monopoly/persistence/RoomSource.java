@@ -0,0 +1,14 @@
+package com.monopolyInMatlab.monopoly.persistence;
+
+import java.util.UUID;
+
+/**
+ * Where a repository keeps its rooms, so snapshots can drop their bytes and read them again when asked.
+ */
+@FunctionalInterface
+public interface RoomSource {
+    /**
+     * The room's encoded bytes as of the given version, null once the room has moved past it or is gone.
+     */
+    byte[] encodedRoom(UUID roomId, long version);
+}
@@ -0,0 +1,149 @@
+package com.monopolyInMatlab.monopoly.persistence;
+
+import com.monopolyInMatlab.monopoly.domain.GamePhase;
+import com.monopolyInMatlab.monopoly.domain.GamePlayer;
+import com.monopolyInMatlab.monopoly.domain.GameRoom;
+import com.monopolyInMatlab.monopoly.dto.RoomPage;
+import com.monopolyInMatlab.monopoly.dto.RoomSummary;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Lobby projection of every room, sorted by name and kept in skip lists per phase,
+ * so a page of the lobby costs O(page) no matter how many rooms there are or how big they get.
+ * RoomSnapshots updates it whenever a newer snapshot of a room is published, and in a cluster ClusterLink
+ * adds the summaries of rooms owned by other nodes.
+ *
+ * Pages are addressed with an opaque cursor, the sort key of the last room on the previous page,
+ * so rooms being created or deleted between requests never shift or repeat entries.
+ */
+@Component
+public class RoomSummaries {
+    private final ConcurrentMap<UUID, SortedSummary> summaries = new ConcurrentHashMap<>();
+    private final ConcurrentNavigableMap<String, RoomSummary> allRooms = new ConcurrentSkipListMap<>();
+    private final Map<GamePhase, ConcurrentNavigableMap<String, RoomSummary>> roomsByPhase = new EnumMap<>(GamePhase.class);
+
+    public RoomSummaries() {
+        for (GamePhase phase : GamePhase.values()) {
+            roomsByPhase.put(phase, new ConcurrentSkipListMap<>());
+        }
+    }
+
+    /**
+     * Updates one room's summary. Calls for the same room must not overlap, RoomSnapshots makes sure of that.
+     */
+    void update(GameRoom room) {
+        List<String> playerNames = new ArrayList<>(room.getGamePlayers().size());
+        for (GamePlayer player : room.getGamePlayers()) {
+            playerNames.add(player.getPlayerName());
+        }
+        RoomSummary summary = RoomSummary.builder()
+                .roomId(room.getRoomId())
+                .roomName(room.getRoomName())
+                .playerNames(Collections.unmodifiableList(playerNames))
+                .gamePhase(room.getGamePhase())
+                .isStarted(room.isStarted())
+                .lastActivity(Instant.now())
+                .build();
+        put(summary);
+    }
+
+    /**
+     * Adds or replaces a room's summary. Calls for the same room must not overlap.
+     */
+    public void put(RoomSummary summary) {
+        String key = sortKey(summary.getRoomName(), summary.getRoomId());
+
+        SortedSummary previous = summaries.put(summary.getRoomId(), new SortedSummary(key, summary));
+        if (previous != null) {
+            if (!previous.key().equals(key)) {
+                allRooms.remove(previous.key());
+            }
+            if (!previous.key().equals(key) || previous.summary().getGamePhase() != summary.getGamePhase()) {
+                roomsByPhase.get(previous.summary().getGamePhase()).remove(previous.key());
+            }
+        }
+        allRooms.put(key, summary);
+        roomsByPhase.get(summary.getGamePhase()).put(key, summary);
+    }
+
+    public void remove(UUID roomId) {
+        SortedSummary previous = summaries.remove(roomId);
+        if (previous != null) {
+            allRooms.remove(previous.key());
+            roomsByPhase.get(previous.summary().getGamePhase()).remove(previous.key());
+        }
+    }
+
+    public RoomSummary get(UUID roomId) {
+        SortedSummary sorted = summaries.get(roomId);
+        return sorted != null ? sorted.summary() : null;
+    }
+
+    public void removeIf(Predicate<UUID> roomIds) {
+        for (UUID roomId : summaries.keySet()) {
+            if (roomIds.test(roomId)) {
+                remove(roomId);
+            }
+        }
+    }
+
+    public void forEach(Consumer<RoomSummary> action) {
+        for (SortedSummary sorted : summaries.values()) {
+            action.accept(sorted.summary());
+        }
+    }
+
+    /**
+     * One page of rooms after the cursor, optionally only those in one phase.
+     */
+    public RoomPage page(GamePhase phase, String cursor, int limit) {
+        ConcurrentNavigableMap<String, RoomSummary> rooms = phase == null ? allRooms : roomsByPhase.get(phase);
+        if (cursor != null && !cursor.isEmpty()) {
+            rooms = rooms.tailMap(decodeCursor(cursor), false);
+        }
+
+        List<RoomSummary> page = new ArrayList<>(limit);
+        String lastKey = null;
+        for (Map.Entry<String, RoomSummary> entry : rooms.entrySet()) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(entry.getValue());
+            lastKey = entry.getKey();
+        }
+
+        // only hand out a cursor if there is something after this page
+        String nextCursor = lastKey != null && rooms.higherKey(lastKey) != null ? encodeCursor(lastKey) : null;
+        return RoomPage.builder().rooms(page).nextCursor(nextCursor).build();
+    }
+
+    private static String sortKey(String roomName, UUID roomId) {
+        String name = roomName == null ? "" : roomName.toLowerCase(Locale.ROOT);
+        return name + '\u0000' + roomId;
+    }
+
+    private static String encodeCursor(String key) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeCursor(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+
+    private record SortedSummary(String key, RoomSummary summary) {
+    }
+}
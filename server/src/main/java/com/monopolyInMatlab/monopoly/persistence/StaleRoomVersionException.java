@@ -0,0 +1,13 @@
+package com.monopolyInMatlab.monopoly.persistence;
+
+import java.util.UUID;
+
+/**
+ * Thrown when a conditional save finds that the stored room has moved past the version the caller read.
+ * Every save of a room runs on the room's writer, so this means something saved it from outside, which is a bug.
+ */
+public class StaleRoomVersionException extends IllegalStateException {
+    public StaleRoomVersionException(UUID roomId, long expectedVersion) {
+        super("Room " + roomId + " was modified concurrently (expected version " + expectedVersion + ")");
+    }
+}
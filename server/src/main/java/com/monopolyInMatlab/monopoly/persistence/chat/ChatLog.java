@@ -0,0 +1,276 @@
+package com.monopolyInMatlab.monopoly.persistence.chat;
+
+import com.monopolyInMatlab.monopoly.domain.ChatMessage;
+import com.monopolyInMatlab.monopoly.persistence.RoomRemovedEvent;
+import com.monopolyInMatlab.monopoly.persistence.chat.ChatLogRecords.IndexEntry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Every chat message a room ever had, in an append-only log on local disk that outlives the room and the process.
+ * A room's ChatHistory only keeps the latest messages, older pages are read from here (ChatService.getMessages).
+ *
+ * Files in the chat log directory, one directory per room:
+ *   {roomId}/chat-N.log  messages from seq N on, until the segment reached monopoly.chat.log.segment-bytes
+ *   {roomId}/chat-N.idx  the seq, timestamp and position of the segment's first message and then of one message
+ *                        every monopoly.chat.log.index-interval-bytes, so a read starts close to what it wants
+ *
+ * Messages are appended by a ChatLogWriter in the background, a message only becomes readable here once its
+ * batch has been written. Logs are never deleted by the server.
+ */
+@Component
+public class ChatLog {
+    private static final String SEGMENT_PREFIX = "chat-";
+    private static final String LOG_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".idx";
+
+    private final Path directory;
+    private final ChatLogWriter writer;
+
+    public ChatLog(@Value("${monopoly.chat.log.directory:data/chat}") String directory,
+                   @Value("${monopoly.chat.log.segment-bytes:1048576}") long segmentBytes,
+                   @Value("${monopoly.chat.log.index-interval-bytes:4096}") long indexIntervalBytes,
+                   @Value("${monopoly.chat.log.fsync:true}") boolean fsync) {
+        if (segmentBytes < 1 || indexIntervalBytes < 1) {
+            throw new IllegalStateException("monopoly.chat.log segment-bytes and index-interval-bytes must be positive");
+        }
+        this.directory = Paths.get(directory);
+        try {
+            Files.createDirectories(this.directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create chat log directory " + this.directory.toAbsolutePath(), e);
+        }
+        this.writer = new ChatLogWriter(this.directory, segmentBytes, indexIntervalBytes, fsync);
+    }
+
+    /**
+     * Queues a numbered message for the room's log and returns straight away.
+     */
+    public void append(UUID roomId, ChatMessage message) {
+        writer.append(roomId, message);
+    }
+
+    /**
+     * Up to limit messages numbered fromSeq and up, oldest first.
+     */
+    public List<ChatMessage> read(UUID roomId, long fromSeq, int limit) {
+        Path roomDirectory = roomDirectory(directory, roomId);
+        List<ChatMessage> result = new ArrayList<>();
+        try {
+            List<Long> segments = segments(roomDirectory);
+            for (int i = Math.max(0, floorSegment(segments, fromSeq)); i < segments.size() && result.size() < limit; i++) {
+                long baseSeq = segments.get(i);
+                long start = 0;
+                for (IndexEntry entry : ChatLogRecords.readIndex(indexPath(roomDirectory, baseSeq))) {
+                    if (entry.seq() > fromSeq) {
+                        break;
+                    }
+                    start = entry.position();
+                }
+                ChatLogRecords.scan(logPath(roomDirectory, baseSeq), start, Long.MAX_VALUE, (message, position) -> {
+                    if (message.getSeq() >= fromSeq) {
+                        result.add(message);
+                    }
+                    return result.size() < limit;
+                });
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the chat log of room " + roomId, e);
+        }
+        return result;
+    }
+
+    /**
+     * Up to limit of the messages numbered below beforeSeq, the newest of them, oldest first.
+     */
+    public List<ChatMessage> readBefore(UUID roomId, long beforeSeq, int limit) {
+        Path roomDirectory = roomDirectory(directory, roomId);
+        List<ChatMessage> result = new ArrayList<>();
+        try {
+            List<Long> segments = segments(roomDirectory);
+            for (int i = floorSegment(segments, beforeSeq - 1); i >= 0 && result.size() < limit; i--) {
+                long baseSeq = segments.get(i);
+                List<IndexEntry> entries = ChatLogRecords.readIndex(indexPath(roomDirectory, baseSeq));
+                // walk the index backwards, each step reads only the part between two entries
+                int entry = entries.size() - 1;
+                while (entry > 0 && entries.get(entry).seq() >= beforeSeq) {
+                    entry--;
+                }
+                long end = entry + 1 < entries.size() ? entries.get(entry + 1).position() : Long.MAX_VALUE;
+                while (result.size() < limit) {
+                    long start = entry >= 0 ? entries.get(entry).position() : 0;
+                    List<ChatMessage> chunk = new ArrayList<>();
+                    ChatLogRecords.scan(logPath(roomDirectory, baseSeq), start, end, (message, position) -> {
+                        if (message.getSeq() < beforeSeq) {
+                            chunk.add(message);
+                        }
+                        return message.getSeq() < beforeSeq;
+                    });
+                    chunk.addAll(result);
+                    result = chunk.size() > limit ? new ArrayList<>(chunk.subList(chunk.size() - limit, chunk.size())) : chunk;
+                    if (entry <= 0) {
+                        break;
+                    }
+                    end = start;
+                    entry--;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the chat log of room " + roomId, e);
+        }
+        return result;
+    }
+
+    /**
+     * Up to limit messages sent from `from` (inclusive) until `to` (exclusive), oldest first. Either may be null.
+     */
+    public List<ChatMessage> readBetween(UUID roomId, Instant from, Instant to, int limit) {
+        long fromMillis = from != null ? from.toEpochMilli() : Long.MIN_VALUE;
+        long toMillis = to != null ? to.toEpochMilli() : Long.MAX_VALUE;
+        Path roomDirectory = roomDirectory(directory, roomId);
+        List<ChatMessage> result = new ArrayList<>();
+        boolean[] done = {false};
+        try {
+            List<Long> segments = segments(roomDirectory);
+            // the last segment that starts before `from`, timestamps only go up within a room
+            int first = 0;
+            List<IndexEntry> firstEntries = List.of();
+            for (int i = segments.size() - 1; i >= 0; i--) {
+                List<IndexEntry> entries = ChatLogRecords.readIndex(indexPath(roomDirectory, segments.get(i)));
+                if (!entries.isEmpty() && entries.get(0).timestamp() < fromMillis) {
+                    first = i;
+                    firstEntries = entries;
+                    break;
+                }
+            }
+            for (int i = first; i < segments.size() && !done[0]; i++) {
+                long start = 0;
+                if (i == first) {
+                    for (IndexEntry entry : firstEntries) {
+                        if (entry.timestamp() >= fromMillis) {
+                            break;
+                        }
+                        start = entry.position();
+                    }
+                }
+                ChatLogRecords.scan(logPath(roomDirectory, segments.get(i)), start, Long.MAX_VALUE, (message, position) -> {
+                    long timestamp = message.getTimestamp() != null ? message.getTimestamp().toEpochMilli() : Long.MIN_VALUE;
+                    if (timestamp >= toMillis) {
+                        done[0] = true;
+                        return false;
+                    }
+                    if (timestamp >= fromMillis) {
+                        result.add(message);
+                    }
+                    done[0] = result.size() >= limit;
+                    return !done[0];
+                });
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the chat log of room " + roomId, e);
+        }
+        return result;
+    }
+
+    /**
+     * The number of the oldest message in the room's log, 0 if it has none.
+     */
+    public long firstSeq(UUID roomId) {
+        try {
+            List<Long> segments = segments(roomDirectory(directory, roomId));
+            return segments.isEmpty() ? 0 : segments.get(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the chat log of room " + roomId, e);
+        }
+    }
+
+    /**
+     * The number of the newest message in the room's log, 0 if it has none.
+     */
+    public long lastSeq(UUID roomId) {
+        try {
+            return lastLoggedSeq(roomDirectory(directory, roomId));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the chat log of room " + roomId, e);
+        }
+    }
+
+    // the room is gone from this node, its log stays but its segment doesn't need to be open any more
+    @EventListener
+    public void onRoomRemoved(RoomRemovedEvent event) {
+        writer.closeRoom(event.roomId());
+    }
+
+    @PreDestroy
+    public void close() {
+        writer.close();
+    }
+
+    static Path roomDirectory(Path directory, UUID roomId) {
+        return directory.resolve(roomId.toString());
+    }
+
+    static Path logPath(Path roomDirectory, long baseSeq) {
+        return roomDirectory.resolve(String.format(SEGMENT_PREFIX + "%020d" + LOG_SUFFIX, baseSeq));
+    }
+
+    static Path indexPath(Path roomDirectory, long baseSeq) {
+        return roomDirectory.resolve(String.format(SEGMENT_PREFIX + "%020d" + INDEX_SUFFIX, baseSeq));
+    }
+
+    /**
+     * The number of the last message the room's log has, read from the end of its last segment, 0 if it has none.
+     */
+    static long lastLoggedSeq(Path roomDirectory) throws IOException {
+        List<Long> segments = segments(roomDirectory);
+        if (segments.isEmpty()) {
+            return 0;
+        }
+        long baseSeq = segments.get(segments.size() - 1);
+        List<IndexEntry> entries = ChatLogRecords.readIndex(indexPath(roomDirectory, baseSeq));
+        long start = entries.isEmpty() ? 0 : entries.get(entries.size() - 1).position();
+        // a segment is only ever started for a message after everything before it
+        long[] lastSeq = {baseSeq - 1};
+        ChatLogRecords.scan(logPath(roomDirectory, baseSeq), start, Long.MAX_VALUE, (message, position) -> {
+            lastSeq[0] = message.getSeq();
+            return true;
+        });
+        return lastSeq[0];
+    }
+
+    // first seq of every segment of the room, in order
+    private static List<Long> segments(Path roomDirectory) throws IOException {
+        try (Stream<Path> files = Files.list(roomDirectory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(LOG_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - LOG_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        } catch (NoSuchFileException e) {
+            return List.of();
+        }
+    }
+
+    // the last segment starting at or before seq, -1 if they all start after it
+    private static int floorSegment(List<Long> segments, long seq) {
+        int floor = -1;
+        for (int i = 0; i < segments.size() && segments.get(i) <= seq; i++) {
+            floor = i;
+        }
+        return floor;
+    }
+}
@@ -0,0 +1,184 @@
+package com.monopolyInMatlab.monopoly.persistence.chat;
+
+import com.monopolyInMatlab.monopoly.domain.ChatMessage;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Encodes chat log records and index entries, and reads them back.
+ *
+ * A record is framed like a journal record, [int body length][int crc32 of body][body], and the body is
+ * [long seq][long timestamp millis][byte presence mask][player id][player name][message], the optional
+ * fields only when their bit is set. Strings are [int length][UTF-8 bytes].
+ *
+ * An index entry is [long seq][long timestamp millis][long position] of one record in the segment's log.
+ */
+class ChatLogRecords {
+    static final int HEADER_SIZE = 8;
+    static final int INDEX_ENTRY_SIZE = 24;
+
+    // anything longer is a length field that was only half written
+    private static final int MAX_BODY_SIZE = 1 << 20;
+
+    // bits in the presence mask
+    private static final int TIMESTAMP = 1;
+    private static final int PLAYER_ID = 1 << 1;
+    private static final int PLAYER_NAME = 1 << 2;
+    private static final int MESSAGE = 1 << 3;
+
+    static byte[] record(ChatMessage message) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0);  // body length and crc, filled in below once the body is written
+            out.writeInt(0);
+            out.writeLong(message.getSeq());
+            out.writeLong(message.getTimestamp() != null ? message.getTimestamp().toEpochMilli() : 0);
+            out.writeByte(presenceMask(message));
+            if (message.getPlayerId() != null) {
+                out.writeLong(message.getPlayerId().getMostSignificantBits());
+                out.writeLong(message.getPlayerId().getLeastSignificantBits());
+            }
+            if (message.getPlayerName() != null) writeString(out, message.getPlayerName());
+            if (message.getMessage() != null) writeString(out, message.getMessage());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        int bodyLength = buffer.capacity() - HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_SIZE, bodyLength);
+        buffer.putInt(0, bodyLength);
+        buffer.putInt(4, (int) crc.getValue());
+        return buffer.array();
+    }
+
+    static byte[] indexEntry(long seq, Instant timestamp, long position) {
+        return ByteBuffer.allocate(INDEX_ENTRY_SIZE)
+                .putLong(seq)
+                .putLong(timestamp != null ? timestamp.toEpochMilli() : 0)
+                .putLong(position)
+                .array();
+    }
+
+    /**
+     * Every complete entry of a segment's index, empty if it has none yet.
+     */
+    static List<IndexEntry> readIndex(Path index) throws IOException {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(index);
+        } catch (NoSuchFileException e) {
+            return List.of();
+        }
+        // a trailing partial entry is one the writer is still writing
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        List<IndexEntry> entries = new ArrayList<>(bytes.length / INDEX_ENTRY_SIZE);
+        while (buffer.remaining() >= INDEX_ENTRY_SIZE) {
+            entries.add(new IndexEntry(buffer.getLong(), buffer.getLong(), buffer.getLong()));
+        }
+        return entries;
+    }
+
+    /**
+     * Hands the visitor every record of the log from position start up to position end, in order, until it
+     * returns false. Stops at the first record that is incomplete or fails its checksum, which is where the
+     * writer currently is, or where it was when the process died.
+     */
+    static void scan(Path log, long start, long end, RecordVisitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            channel.position(start);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            long position = start;
+            while (position < end) {
+                int bodyLength;
+                int expectedCrc;
+                try {
+                    bodyLength = in.readInt();
+                    expectedCrc = in.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                if (bodyLength <= 0 || bodyLength > MAX_BODY_SIZE) {
+                    return;
+                }
+                byte[] body = in.readNBytes(bodyLength);
+                if (body.length < bodyLength || !checksumMatches(body, expectedCrc)) {
+                    return;
+                }
+                if (!visitor.visit(decode(body), position)) {
+                    return;
+                }
+                position += HEADER_SIZE + bodyLength;
+            }
+        } catch (NoSuchFileException e) {
+            // nothing logged for the room yet
+        }
+    }
+
+    private static ChatMessage decode(byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        long seq = in.readLong();
+        long timestamp = in.readLong();
+        int mask = in.readUnsignedByte();
+
+        ChatMessage.ChatMessageBuilder message = ChatMessage.builder().seq(seq);
+        if ((mask & TIMESTAMP) != 0) message.timestamp(Instant.ofEpochMilli(timestamp));
+        if ((mask & PLAYER_ID) != 0) message.playerId(new UUID(in.readLong(), in.readLong()));
+        if ((mask & PLAYER_NAME) != 0) message.playerName(readString(in));
+        if ((mask & MESSAGE) != 0) message.message(readString(in));
+        return message.build();
+    }
+
+    private static boolean checksumMatches(byte[] body, int expectedCrc) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue() == expectedCrc;
+    }
+
+    private static int presenceMask(ChatMessage message) {
+        int mask = 0;
+        if (message.getTimestamp() != null) mask |= TIMESTAMP;
+        if (message.getPlayerId() != null) mask |= PLAYER_ID;
+        if (message.getPlayerName() != null) mask |= PLAYER_NAME;
+        if (message.getMessage() != null) mask |= MESSAGE;
+        return mask;
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @FunctionalInterface
+    interface RecordVisitor {
+        boolean visit(ChatMessage message, long position) throws IOException;
+    }
+
+    record IndexEntry(long seq, long timestamp, long position) {
+    }
+
+    private ChatLogRecords() {
+        // Utility class, no instantiation
+    }
+}
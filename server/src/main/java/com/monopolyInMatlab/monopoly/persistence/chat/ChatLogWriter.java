@@ -0,0 +1,256 @@
+package com.monopolyInMatlab.monopoly.persistence.chat;
+
+import com.monopolyInMatlab.monopoly.domain.ChatMessage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Appends chat messages to the rooms' logs from a single background thread, the same way JournalWriter
+ * appends journal records: callers only queue the message, the writer drains whatever has queued up since
+ * its last pass and writes each room's share of it with one write per file, followed by one fsync.
+ *
+ * Each room's current segment stays open while the room is in use, up to MAX_OPEN_ROOMS of them.
+ * The first message a room gets after startup, or after its segment was closed, starts a new segment,
+ * nothing is ever appended after a tail that may have been cut short by a crash.
+ */
+class ChatLogWriter {
+    private static final int MAX_BATCH = 4096;
+    private static final int MAX_OPEN_ROOMS = 256;
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final long indexIntervalBytes;
+    private final boolean fsync;
+    private final BlockingQueue<Object> pending = new LinkedBlockingQueue<>();
+    private final Thread thread;
+
+    // only touched by the writer thread, least recently written room first
+    private final Map<UUID, RoomLog> rooms = new LinkedHashMap<>(16, 0.75f, true);
+    private volatile boolean running = true;
+
+    ChatLogWriter(Path directory, long segmentBytes, long indexIntervalBytes, boolean fsync) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.indexIntervalBytes = indexIntervalBytes;
+        this.fsync = fsync;
+
+        this.thread = new Thread(this::writeLoop, "chat-log-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    void append(UUID roomId, ChatMessage message) {
+        pending.add(new Entry(roomId, message));
+    }
+
+    /**
+     * Closes the room's segment once everything queued for it so far is written.
+     */
+    void closeRoom(UUID roomId) {
+        pending.add(roomId);
+    }
+
+    void close() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        List<Object> batch = new ArrayList<>();
+        while (running || !pending.isEmpty()) {
+            try {
+                batch.add(pending.take());
+            } catch (InterruptedException e) {
+                // closing, fall through and drain whatever is left
+            }
+            pending.drainTo(batch, MAX_BATCH);
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        }
+        for (RoomLog log : rooms.values()) {
+            log.close();
+        }
+        rooms.clear();
+    }
+
+    private void writeBatch(List<Object> batch) {
+        Set<RoomLog> written = new HashSet<>();
+        for (Object entry : batch) {
+            if (entry instanceof Entry message) {
+                RoomLog log = roomLog(message.roomId());
+                try {
+                    if (log.write(message.message())) {
+                        written.add(log);
+                    }
+                } catch (IOException e) {
+                    System.out.println("Failed to log chat message " + message.message().getSeq()
+                            + " of room " + message.roomId() + ": " + e.getMessage());
+                }
+            } else {
+                RoomLog log = rooms.remove((UUID) entry);
+                if (log != null) {
+                    written.remove(log);
+                    log.close();
+                }
+            }
+        }
+        for (RoomLog log : written) {
+            log.flush();
+        }
+        closeLeastRecentlyWritten(written);
+    }
+
+    private RoomLog roomLog(UUID roomId) {
+        RoomLog log = rooms.get(roomId);
+        if (log == null) {
+            log = new RoomLog(roomId, ChatLog.roomDirectory(directory, roomId));
+            rooms.put(roomId, log);
+        }
+        return log;
+    }
+
+    // rooms written in this batch are still in use, keep them open
+    private void closeLeastRecentlyWritten(Set<RoomLog> written) {
+        Iterator<RoomLog> oldest = rooms.values().iterator();
+        while (rooms.size() > MAX_OPEN_ROOMS && oldest.hasNext()) {
+            RoomLog log = oldest.next();
+            if (!written.contains(log)) {
+                log.close();
+                oldest.remove();
+            }
+        }
+    }
+
+    private record Entry(UUID roomId, ChatMessage message) {
+    }
+
+    private final class RoomLog {
+        private final UUID roomId;
+        private final Path roomDirectory;
+        // records of this batch not written yet, so each file gets one write per batch
+        private final List<ByteBuffer> logBuffers = new ArrayList<>();
+        private final List<ByteBuffer> indexBuffers = new ArrayList<>();
+        // the last message the room's log has, read back from disk when the room is opened
+        private long lastSeq = -1;
+        private FileChannel log;
+        private FileChannel index;
+        private long baseSeq;
+        private long size;
+        private long lastIndexed;
+
+        RoomLog(UUID roomId, Path roomDirectory) {
+            this.roomId = roomId;
+            this.roomDirectory = roomDirectory;
+        }
+
+        /**
+         * Returns false for a message numbered at or below the last one in the log. Rooms continue their
+         * numbering after their log, so that is a seq given out twice and the message is not written.
+         */
+        boolean write(ChatMessage message) throws IOException {
+            if (lastSeq < 0) {
+                lastSeq = ChatLog.lastLoggedSeq(roomDirectory);
+            }
+            if (message.getSeq() <= lastSeq) {
+                System.out.println("Chat message " + message.getSeq() + " of room " + roomId
+                        + " reuses a seq its log already has, up to " + lastSeq + ", not logged: " + message.getMessage());
+                return false;
+            }
+            if (log == null || size >= segmentBytes) {
+                startSegment(message.getSeq());
+            }
+
+            byte[] record = ChatLogRecords.record(message);
+            long position = size;
+            logBuffers.add(ByteBuffer.wrap(record));
+            size += record.length;
+            if (position == 0 || position - lastIndexed >= indexIntervalBytes) {
+                indexBuffers.add(ByteBuffer.wrap(ChatLogRecords.indexEntry(message.getSeq(), message.getTimestamp(), position)));
+                lastIndexed = position;
+            }
+            lastSeq = message.getSeq();
+            return true;
+        }
+
+        void flush() {
+            if (log == null) {
+                return;
+            }
+            try {
+                // the index after the log, so it never points at anything that isn't in the log yet
+                writeFully(log, logBuffers);
+                writeFully(index, indexBuffers);
+                if (fsync) {
+                    log.force(false);
+                    index.force(false);
+                }
+            } catch (IOException e) {
+                System.out.println("Failed to write " + logBuffers.size() + " chat messages of room " + roomId + ": " + e.getMessage());
+                // whatever made it to the file is as far as it goes, the next message starts a new segment
+                closeChannels();
+            }
+            logBuffers.clear();
+            indexBuffers.clear();
+        }
+
+        void close() {
+            if (log == null) {
+                return;
+            }
+            flush();
+            closeChannels();
+        }
+
+        private void startSegment(long firstSeq) throws IOException {
+            close();
+            Files.createDirectories(roomDirectory);
+            // a segment already named after this message can only hold a record that never got written completely
+            log = FileChannel.open(ChatLog.logPath(roomDirectory, firstSeq),
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            index = FileChannel.open(ChatLog.indexPath(roomDirectory, firstSeq),
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            baseSeq = firstSeq;
+            size = 0;
+            lastIndexed = 0;
+        }
+
+        private void closeChannels() {
+            if (log == null) {
+                return;
+            }
+            try {
+                log.close();
+                index.close();
+            } catch (IOException e) {
+                System.out.println("Failed to close chat log segment " + baseSeq + " of room " + roomId + ": " + e.getMessage());
+            }
+            log = null;
+            index = null;
+        }
+
+        private void writeFully(FileChannel channel, List<ByteBuffer> buffers) throws IOException {
+            if (buffers.isEmpty()) {
+                return;
+            }
+            ByteBuffer[] array = buffers.toArray(new ByteBuffer[0]);
+            while (array[array.length - 1].hasRemaining()) {
+                channel.write(array);
+            }
+        }
+    }
+}
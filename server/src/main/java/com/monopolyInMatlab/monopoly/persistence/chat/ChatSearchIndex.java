@@ -0,0 +1,338 @@
+package com.monopolyInMatlab.monopoly.persistence.chat;
+
+import com.monopolyInMatlab.monopoly.domain.ChatMessage;
+import com.monopolyInMatlab.monopoly.dto.ChatSearchHit;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-memory full-text index of the chat messages sent in this node's rooms, for moderators to find messages
+ * by words and player across rooms without going through every room.
+ *
+ * Rooms are spread over monopoly.chat.search.shards shards, each with its own inverted index (term -> ids of the
+ * messages that contain it, in the order they were indexed) and its own thread. The thread is the only one that
+ * touches its shard: ChatServiceImpl.sendMessage only queues the message, and a search runs on every shard it
+ * needs at once and merges what they found.
+ *
+ * Each shard keeps the latest monopoly.chat.search.max-messages / shards messages. The oldest message is always
+ * the first posting of each of its terms, so dropping it only touches those terms, and a term without postings
+ * left is dropped with it. Older messages can still be paged from the room's ChatLog.
+ */
+@Component
+public class ChatSearchIndex {
+    private static final int MAX_TERMS_PER_MESSAGE = 64;
+    private static final int MAX_TERM_LENGTH = 32;
+    // a short prefix can match a lot of terms, only this many of them are searched
+    private static final int MAX_PREFIX_TERMS = 1024;
+    // player ids are indexed with the name terms, no name term can start with it
+    private static final String PLAYER_ID_TERM = "#";
+
+    private final Shard[] shards;
+
+    public ChatSearchIndex(@Value("${monopoly.chat.search.shards:4}") int shardCount,
+                           @Value("${monopoly.chat.search.max-messages:100000}") int maxMessages) {
+        if (shardCount < 1 || maxMessages < shardCount) {
+            throw new IllegalStateException("monopoly.chat.search needs shards >= 1 and max-messages >= shards");
+        }
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i, maxMessages / shardCount);
+        }
+    }
+
+    /**
+     * Queues a numbered message for indexing and returns straight away.
+     */
+    public void add(UUID roomId, ChatMessage message) {
+        Shard shard = shardOf(roomId);
+        shard.executor.execute(() -> shard.add(roomId, message));
+    }
+
+    /**
+     * The newest messages, up to limit, that have a term starting with each word of text and were sent by player,
+     * a player id or words their name starts with. At least one of text and player is needed, roomId, from
+     * (inclusive) and to (exclusive) narrow it down further. A search sees every message added before it.
+     */
+    public List<ChatSearchHit> search(String text, String player, UUID roomId, Instant from, Instant to, int limit) {
+        Query query = new Query(terms(text, Integer.MAX_VALUE), new ArrayList<>(), roomId,
+                from != null ? from.toEpochMilli() : Long.MIN_VALUE, to != null ? to.toEpochMilli() : Long.MAX_VALUE, limit);
+        if (player != null && !player.isBlank()) {
+            try {
+                query.nameTerms().add(PLAYER_ID_TERM + UUID.fromString(player.trim()));
+            } catch (IllegalArgumentException e) {
+                query.nameTerms().addAll(terms(player, Integer.MAX_VALUE));
+            }
+        }
+        if (query.textTerms().isEmpty() && query.nameTerms().isEmpty()) {
+            throw new IllegalArgumentException("Search needs words or a player");
+        }
+
+        // a room's messages are all in one shard, otherwise every shard searches its own rooms
+        List<Shard> searched = roomId != null ? List.of(shardOf(roomId)) : Arrays.asList(shards);
+        List<CompletableFuture<List<ChatSearchHit>>> results = new ArrayList<>(searched.size());
+        for (Shard shard : searched) {
+            results.add(CompletableFuture.supplyAsync(() -> shard.search(query), shard.executor));
+        }
+        List<ChatSearchHit> hits = new ArrayList<>();
+        for (CompletableFuture<List<ChatSearchHit>> result : results) {
+            hits.addAll(result.join());
+        }
+        hits.sort(Comparator.comparing(ChatSearchHit::getTimestamp, Comparator.nullsFirst(Comparator.<Instant>naturalOrder()))
+                .thenComparingLong(ChatSearchHit::getSeq).reversed());
+        return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+    }
+
+    @PreDestroy
+    public void close() {
+        for (Shard shard : shards) {
+            shard.executor.shutdown();
+        }
+    }
+
+    private Shard shardOf(UUID roomId) {
+        return shards[Math.floorMod(roomId.hashCode(), shards.length)];
+    }
+
+    // lower case runs of letters and digits, each once, in the order they first appear
+    private static List<String> terms(String text, int maxTerms) {
+        if (text == null) {
+            return new ArrayList<>();
+        }
+        Set<String> terms = new LinkedHashSet<>();
+        StringBuilder term = new StringBuilder();
+        for (int i = 0; i <= text.length() && terms.size() < maxTerms; i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                if (term.length() < MAX_TERM_LENGTH) {
+                    term.append(Character.toLowerCase(c));
+                }
+            } else if (term.length() > 0) {
+                terms.add(term.toString());
+                term.setLength(0);
+            }
+        }
+        return new ArrayList<>(terms);
+    }
+
+    private record Query(List<String> textTerms, List<String> nameTerms, UUID roomId, long from, long to, int limit) {
+    }
+
+    private static final class Shard {
+        private final ExecutorService executor;
+        // messages firstId..nextId-1 live at id % capacity
+        private final UUID[] roomIds;
+        private final ChatMessage[] messages;
+        private final String[][] textTerms;
+        private final String[][] nameTerms;
+        private final NavigableMap<String, Postings> textIndex = new TreeMap<>();
+        private final NavigableMap<String, Postings> nameIndex = new TreeMap<>();
+        private long firstId;
+        private long nextId;
+
+        Shard(int number, int capacity) {
+            executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "chat-search-" + number);
+                thread.setDaemon(true);
+                return thread;
+            });
+            roomIds = new UUID[capacity];
+            messages = new ChatMessage[capacity];
+            textTerms = new String[capacity][];
+            nameTerms = new String[capacity][];
+        }
+
+        void add(UUID roomId, ChatMessage message) {
+            if (nextId - firstId == messages.length) {
+                dropOldest();
+            }
+            long id = nextId++;
+            int slot = slot(id);
+            roomIds[slot] = roomId;
+            messages[slot] = message;
+            textTerms[slot] = terms(message.getMessage(), MAX_TERMS_PER_MESSAGE).toArray(new String[0]);
+            List<String> names = terms(message.getPlayerName(), MAX_TERMS_PER_MESSAGE);
+            if (message.getPlayerId() != null) {
+                names.add(PLAYER_ID_TERM + message.getPlayerId());
+            }
+            nameTerms[slot] = names.toArray(new String[0]);
+            for (String term : textTerms[slot]) {
+                textIndex.computeIfAbsent(term, t -> new Postings()).add(id);
+            }
+            for (String term : nameTerms[slot]) {
+                nameIndex.computeIfAbsent(term, t -> new Postings()).add(id);
+            }
+        }
+
+        List<ChatSearchHit> search(Query query) {
+            List<long[]> lists = new ArrayList<>();
+            for (String term : query.textTerms()) {
+                lists.add(matching(textIndex, term));
+            }
+            for (String term : query.nameTerms()) {
+                // a player id has to match as a whole
+                lists.add(term.startsWith(PLAYER_ID_TERM) ? exact(nameIndex, term) : matching(nameIndex, term));
+            }
+            long[] ids = intersect(lists);
+
+            List<ChatSearchHit> hits = new ArrayList<>();
+            for (int i = ids.length - 1; i >= 0 && hits.size() < query.limit(); i--) {
+                int slot = slot(ids[i]);
+                ChatMessage message = messages[slot];
+                long timestamp = message.getTimestamp() != null ? message.getTimestamp().toEpochMilli() : Long.MIN_VALUE;
+                if ((query.roomId() == null || query.roomId().equals(roomIds[slot]))
+                        && timestamp >= query.from() && timestamp < query.to()) {
+                    hits.add(ChatSearchHit.builder()
+                            .roomId(roomIds[slot])
+                            .seq(message.getSeq())
+                            .timestamp(message.getTimestamp())
+                            .playerId(message.getPlayerId())
+                            .playerName(message.getPlayerName())
+                            .message(message.getMessage())
+                            .build());
+                }
+            }
+            return hits;
+        }
+
+        private void dropOldest() {
+            long id = firstId++;
+            int slot = slot(id);
+            for (String term : textTerms[slot]) {
+                dropPosting(textIndex, term, id);
+            }
+            for (String term : nameTerms[slot]) {
+                dropPosting(nameIndex, term, id);
+            }
+            roomIds[slot] = null;
+            messages[slot] = null;
+            textTerms[slot] = null;
+            nameTerms[slot] = null;
+        }
+
+        private static void dropPosting(Map<String, Postings> index, String term, long id) {
+            Postings postings = index.get(term);
+            postings.removeFirst(id);
+            if (postings.isEmpty()) {
+                index.remove(term);
+            }
+        }
+
+        private static long[] exact(NavigableMap<String, Postings> index, String term) {
+            Postings postings = index.get(term);
+            return postings != null ? postings.toArray() : new long[0];
+        }
+
+        // ids of the messages with a term starting with prefix, in order
+        private static long[] matching(NavigableMap<String, Postings> index, String prefix) {
+            SortedMap<String, Postings> terms = index.subMap(prefix, prefix + Character.MAX_VALUE);
+            if (terms.size() == 1) {
+                return terms.values().iterator().next().toArray();
+            }
+            int size = 0;
+            List<Postings> matched = new ArrayList<>();
+            for (Postings postings : terms.values()) {
+                if (matched.size() == MAX_PREFIX_TERMS) {
+                    break;
+                }
+                matched.add(postings);
+                size += postings.size();
+            }
+            long[] ids = new long[size];
+            int length = 0;
+            for (Postings postings : matched) {
+                length = postings.copyTo(ids, length);
+            }
+            Arrays.sort(ids);
+            // a message with several matching terms is in several lists
+            int distinct = 0;
+            for (int i = 0; i < ids.length; i++) {
+                if (i == 0 || ids[i] != ids[i - 1]) {
+                    ids[distinct++] = ids[i];
+                }
+            }
+            return Arrays.copyOf(ids, distinct);
+        }
+
+        // smallest list first, each following one only has to be checked for the ids still left
+        private static long[] intersect(List<long[]> lists) {
+            lists.sort(Comparator.comparingInt(list -> list.length));
+            long[] result = lists.get(0);
+            for (int i = 1; i < lists.size() && result.length > 0; i++) {
+                long[] other = lists.get(i);
+                long[] kept = new long[result.length];
+                int length = 0;
+                int j = 0;
+                for (long id : result) {
+                    while (j < other.length && other[j] < id) {
+                        j++;
+                    }
+                    if (j < other.length && other[j] == id) {
+                        kept[length++] = id;
+                    }
+                }
+                result = Arrays.copyOf(kept, length);
+            }
+            return result;
+        }
+
+        private int slot(long id) {
+            return (int) (id % messages.length);
+        }
+    }
+
+    // ids in the order they were added, which is ascending, dropped from the front
+    private static final class Postings {
+        private long[] ids = new long[2];
+        private int start;
+        private int end;
+
+        void add(long id) {
+            if (end == ids.length) {
+                int size = end - start;
+                // reuse the dropped front before growing
+                long[] grown = size < ids.length / 2 ? ids : new long[ids.length * 2];
+                System.arraycopy(ids, start, grown, 0, size);
+                ids = grown;
+                start = 0;
+                end = size;
+            }
+            ids[end++] = id;
+        }
+
+        void removeFirst(long id) {
+            if (start < end && ids[start] == id) {
+                start++;
+            }
+            // shrink a list that was long once and isn't any more
+            if (ids.length > 16 && size() < ids.length / 4) {
+                ids = Arrays.copyOfRange(ids, start, start + Math.max(size() * 2, 2));
+                end = size();
+                start = 0;
+            }
+        }
+
+        int size() {
+            return end - start;
+        }
+
+        boolean isEmpty() {
+            return start == end;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOfRange(ids, start, end);
+        }
+
+        int copyTo(long[] target, int offset) {
+            System.arraycopy(ids, start, target, offset, size());
+            return offset + size();
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package com.monopolyInMatlab.monopoly.persistence.codec;
+
+import com.monopolyInMatlab.monopoly.config.BoardConfiguration;
+import com.monopolyInMatlab.monopoly.config.CardConfiguration;
+import com.monopolyInMatlab.monopoly.domain.*;
+
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Compact binary encoding of a whole GameRoom.
+ *
+ * Only mutable state is written. The board's names, prices and rent tables are rebuilt from
+ * BoardConfiguration on decode, cards are written as their index in the CardConfiguration decks,
+ * and every player id after the player list is written as that player's slot in the room.
+ * Numbers are varints, so a typical room fits in a few hundred bytes.
+ *
+ * Layout: [byte 'M'][byte 'R'][varint format version][room fields...]
+ * Bump FORMAT_VERSION whenever the layout changes and keep decoding the older versions.
+ *
+ * Versions:
+ *   1  chat messages without numbers or timestamps, numbered from 1 on decode
+ *   2  the chat's last message number, then each kept message with its timestamp
+ *   3  when the current auction closes
+ */
+public class GameRoomCodec {
+    public static final int MAGIC_0 = 'M';
+    public static final int MAGIC_1 = 'R';
+    private static final int FORMAT_VERSION = 3;
+
+    // player references: 0 is null, 1..n is a player slot, n + 1 is an id that isn't in the room followed by the raw id
+    private static final int NO_PLAYER = 0;
+
+    // card references: 0 is a card that isn't in the standard deck followed by the whole card, i + 1 is standard card i
+    private static final int INLINE_CARD = 0;
+
+    private static final List<Card> STANDARD_CHANCE_CARDS = CardConfiguration.createChanceCards();
+    private static final List<Card> STANDARD_COMMUNITY_CHEST_CARDS = CardConfiguration.createCommunityChestCards();
+    private static final Map<Card, Integer> CHANCE_CARD_INDEXES = indexesOf(STANDARD_CHANCE_CARDS);
+    private static final Map<Card, Integer> COMMUNITY_CHEST_CARD_INDEXES = indexesOf(STANDARD_COMMUNITY_CHEST_CARDS);
+
+    private static final GamePhase[] PHASES = GamePhase.values();
+    private static final ColorGroup[] COLOR_GROUPS = ColorGroup.values();
+    private static final CardActionType[] CARD_ACTIONS = CardActionType.values();
+    private static final Trade.TradeStatus[] TRADE_STATUSES = Trade.TradeStatus.values();
+
+    public static byte[] encode(GameRoom room) {
+        BinaryWriter out = new BinaryWriter(512);
+        out.writeByte(MAGIC_0);
+        out.writeByte(MAGIC_1);
+        out.writeVarInt(FORMAT_VERSION);
+
+        out.writeUuid(room.getRoomId());
+        out.writeString(room.getRoomName());
+        out.writeVarLong(room.getVersion());
+        out.writeByte(room.isStarted() ? 1 : 0);
+        out.writeVarInt(room.getGamePhase().ordinal());
+
+        List<GamePlayer> players = room.getGamePlayers();
+        Map<UUID, Integer> slots = new HashMap<>();
+        out.writeVarInt(players.size());
+        for (GamePlayer player : players) {
+            slots.put(player.getPlayerId(), slots.size());
+            writePlayer(out, player);
+        }
+
+        out.writeVarInt(room.getCurrentPlayerIndex());
+        out.writeVarInt(room.getLastDiceRoll().length);
+        for (int die : room.getLastDiceRoll()) {
+            out.writeSignedVarInt(die);
+        }
+        out.writeVarInt(room.getDoublesCount());
+        out.writeVarInt(room.getTotalHousesRemaining());
+        out.writeVarInt(room.getTotalHotelsRemaining());
+
+        writeBoard(out, room.getBoardSpaces(), slots);
+
+        writeDeck(out, room.getChanceCards(), CHANCE_CARD_INDEXES);
+        out.writeVarInt(room.getChanceCardIndex());
+        writeDeck(out, room.getCommunityChestCards(), COMMUNITY_CHEST_CARD_INDEXES);
+        out.writeVarInt(room.getCommunityChestCardIndex());
+
+        writeAuction(out, room.getCurrentAuction(), slots);
+        writeTrade(out, room.getCurrentTrade(), slots);
+
+        // kept messages are numbered consecutively up to the last one, only that number is written
+        ChatHistory chat = ChatHistory.of(room.getChatHistory());
+        out.writeVarLong(chat.lastSeq());
+        out.writeVarInt(chat.size());
+        for (ChatMessage message : chat) {
+            writePlayerRef(out, message.getPlayerId(), slots);
+            out.writeString(message.getPlayerName());
+            out.writeString(message.getMessage());
+            // 0 is no timestamp, otherwise epoch millis + 1
+            out.writeVarLong(message.getTimestamp() == null ? 0 : message.getTimestamp().toEpochMilli() + 1);
+        }
+
+        writePlayerRef(out, room.getWinnerId(), slots);
+
+        writePlayerRef(out, room.getPendingDebtPlayerId(), slots);
+        out.writeNullableInt(room.getPendingDebtAmount());
+        writePlayerRef(out, room.getPendingDebtCreditorId(), slots);
+        out.writeString(room.getPendingDebtReason());
+
+        return out.toByteArray();
+    }
+
+    public static GameRoom decode(byte[] data) {
+        BinaryReader in = new BinaryReader(data);
+        if (in.readByte() != MAGIC_0 || in.readByte() != MAGIC_1) {
+            throw new IllegalArgumentException("Not an encoded room");
+        }
+        int formatVersion = in.readVarInt();
+        if (formatVersion < 1 || formatVersion > FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported room format version " + formatVersion);
+        }
+
+        GameRoom room = GameRoom.builder()
+                .roomId(in.readUuid())
+                .roomName(in.readString())
+                .build();
+        room.setVersion(in.readVarLong());
+        room.setStarted(in.readByte() != 0);
+        room.setGamePhase(PHASES[in.readVarInt()]);
+
+        int playerCount = in.readVarInt();
+        List<GamePlayer> players = new ArrayList<>(playerCount);
+        for (int i = 0; i < playerCount; i++) {
+            players.add(readPlayer(in));
+        }
+        room.setGamePlayers(players);
+
+        room.setCurrentPlayerIndex(in.readVarInt());
+        int[] lastDiceRoll = new int[in.readVarInt()];
+        for (int i = 0; i < lastDiceRoll.length; i++) {
+            lastDiceRoll[i] = in.readSignedVarInt();
+        }
+        room.setLastDiceRoll(lastDiceRoll);
+        room.setDoublesCount(in.readVarInt());
+        room.setTotalHousesRemaining(in.readVarInt());
+        room.setTotalHotelsRemaining(in.readVarInt());
+
+        room.setBoardSpaces(readBoard(in, players));
+
+        room.setChanceCards(readDeck(in, STANDARD_CHANCE_CARDS));
+        room.setChanceCardIndex(in.readVarInt());
+        room.setCommunityChestCards(readDeck(in, STANDARD_COMMUNITY_CHEST_CARDS));
+        room.setCommunityChestCardIndex(in.readVarInt());
+
+        room.setCurrentAuction(readAuction(in, players, formatVersion));
+        room.setCurrentTrade(readTrade(in, players));
+
+        room.setChatHistory(readChat(in, players, formatVersion));
+
+        room.setWinnerId(readPlayerRef(in, players));
+
+        room.setPendingDebtPlayerId(readPlayerRef(in, players));
+        room.setPendingDebtAmount(in.readNullableInt());
+        room.setPendingDebtCreditorId(readPlayerRef(in, players));
+        room.setPendingDebtReason(in.readString());
+
+        return room;
+    }
+
+    private static void writePlayer(BinaryWriter out, GamePlayer player) {
+        out.writeUuid(player.getPlayerId());
+        out.writeString(player.getPlayerName());
+        out.writeVarInt(player.getPosition());
+        out.writeSignedVarInt(player.getMoney());
+        out.writeIntList(player.getOwnedPropertyPositions());
+        out.writeByte((player.isInJail() ? 1 : 0) | (player.isBankrupt() ? 2 : 0));
+        out.writeVarInt(player.getJailTurns());
+        out.writeVarInt(player.getGetOutOfJailCards());
+        out.writeVarInt(player.getTotalHouses());
+        out.writeVarInt(player.getTotalHotels());
+
+        Map<ColorGroup, Integer> colorGroupCounts = player.getColorGroupCounts();
+        out.writeVarInt(colorGroupCounts.size());
+        for (Map.Entry<ColorGroup, Integer> entry : colorGroupCounts.entrySet()) {
+            out.writeVarInt(entry.getKey().ordinal());
+            out.writeVarInt(entry.getValue());
+        }
+    }
+
+    private static GamePlayer readPlayer(BinaryReader in) {
+        GamePlayer player = GamePlayer.builder()
+                .playerId(in.readUuid())
+                .playerName(in.readString())
+                .position(in.readVarInt())
+                .money(in.readSignedVarInt())
+                .ownedPropertyPositions(in.readIntList())
+                .build();
+        int flags = in.readByte();
+        player.setInJail((flags & 1) != 0);
+        player.setBankrupt((flags & 2) != 0);
+        player.setJailTurns(in.readVarInt());
+        player.setGetOutOfJailCards(in.readVarInt());
+        player.setTotalHouses(in.readVarInt());
+        player.setTotalHotels(in.readVarInt());
+
+        int groups = in.readVarInt();
+        Map<ColorGroup, Integer> colorGroupCounts = new EnumMap<>(ColorGroup.class);
+        for (int i = 0; i < groups; i++) {
+            colorGroupCounts.put(COLOR_GROUPS[in.readVarInt()], in.readVarInt());
+        }
+        player.setColorGroupCounts(colorGroupCounts);
+        return player;
+    }
+
+    private static ChatHistory readChat(BinaryReader in, List<GamePlayer> players, int formatVersion) {
+        ChatHistory chat = new ChatHistory();
+        if (formatVersion == 1) {
+            int messageCount = in.readVarInt();
+            for (int i = 0; i < messageCount; i++) {
+                chat.append(ChatMessage.builder()
+                        .playerId(readPlayerRef(in, players))
+                        .playerName(in.readString())
+                        .message(in.readString())
+                        .build());
+            }
+            return chat;
+        }
+
+        long lastSeq = in.readVarLong();
+        int messageCount = in.readVarInt();
+        for (long seq = lastSeq - messageCount + 1; seq <= lastSeq; seq++) {
+            UUID playerId = readPlayerRef(in, players);
+            String playerName = in.readString();
+            String message = in.readString();
+            long timestamp = in.readVarLong();
+            chat.add(ChatMessage.builder()
+                    .seq(seq)
+                    .timestamp(timestamp == 0 ? null : Instant.ofEpochMilli(timestamp - 1))
+                    .playerId(playerId)
+                    .playerName(playerName)
+                    .message(message)
+                    .build());
+        }
+        return chat;
+    }
+
+    // only ownership, mortgages and buildings change during a game, the rest comes from BoardConfiguration
+    private static void writeBoard(BinaryWriter out, List<BoardSpace> spaces, Map<UUID, Integer> slots) {
+        out.writeVarInt(spaces.size());
+        for (BoardSpace space : spaces) {
+            if (space instanceof PropertySpace property) {
+                writePlayerRef(out, property.getOwnerId(), slots);
+                out.writeByte((property.isMortgaged() ? 1 : 0) | (property.isHasHotel() ? 2 : 0));
+                out.writeVarInt(property.getHousesBuilt());
+            } else if (space instanceof RailroadSpace railroad) {
+                writePlayerRef(out, railroad.getOwnerId(), slots);
+                out.writeByte(railroad.isMortgaged() ? 1 : 0);
+            } else if (space instanceof UtilitySpace utility) {
+                writePlayerRef(out, utility.getOwnerId(), slots);
+                out.writeByte(utility.isMortgaged() ? 1 : 0);
+            }
+        }
+    }
+
+    private static List<BoardSpace> readBoard(BinaryReader in, List<GamePlayer> players) {
+        List<BoardSpace> spaces = BoardConfiguration.createStandardBoard();
+        int count = in.readVarInt();
+        if (count != spaces.size()) {
+            throw new IllegalArgumentException("Encoded board has " + count + " spaces, the standard board has " + spaces.size());
+        }
+        for (BoardSpace space : spaces) {
+            if (space instanceof PropertySpace property) {
+                property.setOwnerId(readPlayerRef(in, players));
+                int flags = in.readByte();
+                property.setMortgaged((flags & 1) != 0);
+                property.setHasHotel((flags & 2) != 0);
+                property.setHousesBuilt(in.readVarInt());
+            } else if (space instanceof RailroadSpace railroad) {
+                railroad.setOwnerId(readPlayerRef(in, players));
+                railroad.setMortgaged(in.readByte() != 0);
+            } else if (space instanceof UtilitySpace utility) {
+                utility.setOwnerId(readPlayerRef(in, players));
+                utility.setMortgaged(in.readByte() != 0);
+            }
+        }
+        return spaces;
+    }
+
+    private static void writeDeck(BinaryWriter out, List<Card> deck, Map<Card, Integer> standardIndexes) {
+        out.writeVarInt(deck.size());
+        for (Card card : deck) {
+            Integer index = standardIndexes.get(card);
+            if (index != null) {
+                out.writeVarInt(index + 1);
+            } else {
+                out.writeVarInt(INLINE_CARD);
+                out.writeString(card.getCardType());
+                out.writeString(card.getDescription());
+                out.writeVarInt(card.getActionType().ordinal());
+                out.writeNullableInt(card.getValue());
+            }
+        }
+    }
+
+    private static List<Card> readDeck(BinaryReader in, List<Card> standardDeck) {
+        int size = in.readVarInt();
+        List<Card> deck = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int reference = in.readVarInt();
+            if (reference != INLINE_CARD) {
+                // cards are immutable, so decoded decks can share the standard instances
+                deck.add(standardDeck.get(reference - 1));
+            } else {
+                deck.add(Card.builder()
+                        .cardType(in.readString())
+                        .description(in.readString())
+                        .actionType(CARD_ACTIONS[in.readVarInt()])
+                        .value(in.readNullableInt())
+                        .build());
+            }
+        }
+        return deck;
+    }
+
+    private static void writeAuction(BinaryWriter out, Auction auction, Map<UUID, Integer> slots) {
+        if (auction == null) {
+            out.writeByte(0);
+            return;
+        }
+        out.writeByte(1);
+        out.writeVarInt(auction.getPropertyPosition());
+        writePlayerRef(out, auction.getHighestBidderId(), slots);
+        out.writeVarInt(auction.getHighestBid());
+        out.writeByte(auction.isActive() ? 1 : 0);
+        // 0 is no deadline, otherwise epoch millis + 1
+        out.writeVarLong(auction.getClosesAt() == null ? 0 : auction.getClosesAt().toEpochMilli() + 1);
+    }
+
+    private static Auction readAuction(BinaryReader in, List<GamePlayer> players, int formatVersion) {
+        if (in.readByte() == 0) {
+            return null;
+        }
+        Auction.AuctionBuilder auction = Auction.builder()
+                .propertyPosition(in.readVarInt())
+                .highestBidderId(readPlayerRef(in, players))
+                .highestBid(in.readVarInt())
+                .active(in.readByte() != 0);
+        if (formatVersion >= 3) {
+            long closesAt = in.readVarLong();
+            auction.closesAt(closesAt == 0 ? null : Instant.ofEpochMilli(closesAt - 1));
+        }
+        return auction.build();
+    }
+
+    private static void writeTrade(BinaryWriter out, Trade trade, Map<UUID, Integer> slots) {
+        if (trade == null) {
+            out.writeByte(0);
+            return;
+        }
+        out.writeByte(1);
+        out.writeUuid(trade.getTradeId());
+        writePlayerRef(out, trade.getFromPlayerId(), slots);
+        writePlayerRef(out, trade.getToPlayerId(), slots);
+        out.writeIntList(trade.getFromPlayerProperties());
+        out.writeSignedVarInt(trade.getFromPlayerMoney());
+        out.writeIntList(trade.getToPlayerProperties());
+        out.writeSignedVarInt(trade.getToPlayerMoney());
+        out.writeVarInt(trade.getStatus().ordinal());
+    }
+
+    private static Trade readTrade(BinaryReader in, List<GamePlayer> players) {
+        if (in.readByte() == 0) {
+            return null;
+        }
+        return Trade.builder()
+                .tradeId(in.readUuid())
+                .fromPlayerId(readPlayerRef(in, players))
+                .toPlayerId(readPlayerRef(in, players))
+                .fromPlayerProperties(in.readIntList())
+                .fromPlayerMoney(in.readSignedVarInt())
+                .toPlayerProperties(in.readIntList())
+                .toPlayerMoney(in.readSignedVarInt())
+                .status(TRADE_STATUSES[in.readVarInt()])
+                .build();
+    }
+
+    private static void writePlayerRef(BinaryWriter out, UUID playerId, Map<UUID, Integer> slots) {
+        if (playerId == null) {
+            out.writeVarInt(NO_PLAYER);
+            return;
+        }
+        Integer slot = slots.get(playerId);
+        if (slot != null) {
+            out.writeVarInt(slot + 1);
+        } else {
+            // e.g. a chat message from a player who has since left
+            out.writeVarInt(slots.size() + 1);
+            out.writeUuid(playerId);
+        }
+    }
+
+    private static UUID readPlayerRef(BinaryReader in, List<GamePlayer> players) {
+        int reference = in.readVarInt();
+        if (reference == NO_PLAYER) {
+            return null;
+        }
+        if (reference <= players.size()) {
+            return players.get(reference - 1).getPlayerId();
+        }
+        return in.readUuid();
+    }
+
+    private static Map<Card, Integer> indexesOf(List<Card> deck) {
+        Map<Card, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < deck.size(); i++) {
+            // identical cards share the first index, they decode to an equal card either way
+            indexes.putIfAbsent(deck.get(i), i);
+        }
+        return indexes;
+    }
+
+    private GameRoomCodec() {
+        // Utility class, no instantiation
+    }
+}
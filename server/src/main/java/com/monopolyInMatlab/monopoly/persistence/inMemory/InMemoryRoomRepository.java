@@ -1,74 +1,278 @@
 package com.monopolyInMatlab.monopoly.persistence.inMemory;
 
-import com.monopolyInMatlab.monopoly.config.BoardConfiguration;
-import com.monopolyInMatlab.monopoly.config.CardConfiguration;
-import com.monopolyInMatlab.monopoly.domain.Card;
 import com.monopolyInMatlab.monopoly.domain.CreateRoomRequest;
+import com.monopolyInMatlab.monopoly.domain.GameCommand;
+import com.monopolyInMatlab.monopoly.domain.GameCommandType;
+import com.monopolyInMatlab.monopoly.domain.GamePhase;
 import com.monopolyInMatlab.monopoly.domain.GameRoom;
 import com.monopolyInMatlab.monopoly.domain.GamePlayer;
+import com.monopolyInMatlab.monopoly.persistence.RoomFactory;
+import com.monopolyInMatlab.monopoly.persistence.RoomIndex;
 import com.monopolyInMatlab.monopoly.persistence.RoomRepository;
+import com.monopolyInMatlab.monopoly.persistence.RoomSerializer;
+import com.monopolyInMatlab.monopoly.persistence.RoomSource;
+import com.monopolyInMatlab.monopoly.persistence.RoomSnapshots;
+import com.monopolyInMatlab.monopoly.persistence.StaleRoomVersionException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Repository
+@ConditionalOnProperty(name = "monopoly.persistence.mode", havingValue = "memory", matchIfMissing = true)
 public class InMemoryRoomRepository implements RoomRepository {
+    // hot rooms only, idle rooms are moved to coldStorage by the RoomReaper and come back on their next access
     private final ConcurrentMap<UUID, GameRoom> gameRooms = new ConcurrentHashMap<>();
+    private final RoomColdStorage coldStorage;
+    private final RoomIndex roomIndex = new RoomIndex();
+    private final RoomSource roomSource = this::encodedRoomAt;
+    private final RoomSnapshots roomSnapshots;
+    // committed version per room, kept outside GameRoom so conditional saves can compare-and-set it
+    private final ConcurrentMap<UUID, AtomicLong> roomVersions = new ConcurrentHashMap<>();
+    // what the reaper needs to know about every room, whichever tier it is in
+    private final ConcurrentMap<UUID, RoomActivity> roomActivity = new ConcurrentHashMap<>();
+
+    public InMemoryRoomRepository(@Value("${monopoly.rooms.cold.directory:data/cold-rooms}") String coldDirectory,
+                                  RoomSnapshots roomSnapshots) {
+        this.coldStorage = new RoomColdStorage(coldDirectory);
+        this.roomSnapshots = roomSnapshots;
+    }
 
     @Override
     public List<GameRoom> getAllRooms() {
-        return new ArrayList<>(gameRooms.values());
+        return resolve(roomVersions.keySet());
     }
 
     @Override
-    public GameRoom createRoom(CreateRoomRequest createRoomRequest) {
-        // Initialize card decks
-        List<Card> chanceCards = CardConfiguration.createChanceCards();
-        List<Card> communityChestCards = CardConfiguration.createCommunityChestCards();
-        Collections.shuffle(chanceCards);
-        Collections.shuffle(communityChestCards);
-
-        GameRoom newRoom = GameRoom.builder()
-                .roomId(UUID.randomUUID())
-                .roomName(createRoomRequest.getRoomName())
-                .gamePlayers(new ArrayList<>())
-                .isStarted(false)
-                .boardSpaces(BoardConfiguration.createStandardBoard())
-                .chanceCards(chanceCards)
-                .communityChestCards(communityChestCards)
-                .build();
-        gameRooms.put(newRoom.getRoomId(), newRoom);
+    public GameRoom createRoom(CreateRoomRequest createRoomRequest, UUID roomId) {
+        GameRoom newRoom = RoomFactory.newRoom(createRoomRequest, roomId);
+        roomVersions.put(newRoom.getRoomId(), new AtomicLong(newRoom.getVersion()));
+        record(newRoom, null);
+        store(newRoom);
         return newRoom;
     }
 
     @Override
     public GamePlayer joinRoom(UUID roomId, GamePlayer player) {
-        GameRoom room = gameRooms.get(roomId);
+        GameRoom room = findGameRoomForUpdate(roomId);
         // the player we are getting passed in is not stored in memory yet, here we are doing that
         GamePlayer gamePlayer = GamePlayer.builder().playerName(player.getPlayerName()).build();
         if (room != null && !room.isStarted()) {
+            long expectedVersion = room.getVersion();
             room.getGamePlayers().add(gamePlayer);
+            if (!saveGameRoomIfVersion(room, expectedVersion, GameCommand.builder()
+                    .type(GameCommandType.PLAYER_JOINED)
+                    .playerId(gamePlayer.getPlayerId())
+                    .playerName(gamePlayer.getPlayerName())
+                    .build())) {
+                throw new StaleRoomVersionException(roomId, expectedVersion);
+            }
         }
         return gamePlayer;
     }
 
     @Override
     public GameRoom findGameRoomById(UUID roomId) {
-        return gameRooms.get(roomId);
+        GameRoom room = gameRooms.get(roomId);
+        if (room != null) {
+            return room;
+        }
+        // accessing a cold room brings it back, computeIfAbsent makes sure only one caller decodes it
+        // and that other callers wait for it instead of seeing the room in neither tier
+        return gameRooms.computeIfAbsent(roomId, id -> {
+            GameRoom rehydrated = coldStorage.take(id);
+            if (rehydrated != null) {
+                touch(rehydrated);
+            }
+            return rehydrated;
+        });
     }
 
     @Override
-    public void saveGameRoom(GameRoom gameRoom) {
+    public GameRoom findGameRoomForUpdate(UUID roomId) {
+        GameRoom room = findGameRoomById(roomId);
+        if (room == null) {
+            return null;
+        }
+        // the stored instance is the one everybody reads, changes go to a copy that replaces it when it is saved.
+        // The copy comes from the bytes its snapshot already has, the room is only encoded if they were dropped
+        GameRoom copy = roomSnapshots.copyOf(roomId, room.getVersion());
+        return copy != null ? copy : RoomSerializer.fromBytes(RoomSerializer.toBytes(room));
+    }
+
+    @Override
+    public boolean saveGameRoomIfVersion(GameRoom gameRoom, long expectedVersion, GameCommand command) {
+        AtomicLong version = roomVersions.get(gameRoom.getRoomId());
+        if (version == null || !version.compareAndSet(expectedVersion, expectedVersion + 1)) {
+            return false;
+        }
+        gameRoom.setVersion(expectedVersion + 1);
+        try {
+            record(gameRoom, command);
+        } catch (RuntimeException e) {
+            // not recorded, so not stored either, the next action starts from the version before
+            version.compareAndSet(expectedVersion + 1, expectedVersion);
+            throw e;
+        }
+        store(gameRoom);
+        return true;
+    }
+
+    @Override
+    public void importRoom(GameRoom gameRoom) {
+        record(gameRoom, null);
+        restoreRoom(gameRoom);
+    }
+
+    /**
+     * Called with every change right before it is stored, for repositories that keep a history of them.
+     * The command is null when the room didn't change by a command but was created or handed over whole.
+     * Nothing to record here, in-memory rooms don't outlive the process.
+     */
+    protected void record(GameRoom gameRoom, GameCommand command) {
+    }
+
+    /**
+     * Puts a room back exactly as it was stored, keeping its version, for repositories that recover rooms at startup.
+     */
+    protected void restoreRoom(GameRoom gameRoom) {
+        roomVersions.put(gameRoom.getRoomId(), new AtomicLong(gameRoom.getVersion()));
+        store(gameRoom);
+    }
+
+    protected List<UUID> getAllRoomIds() {
+        return new ArrayList<>(roomVersions.keySet());
+    }
+
+    /**
+     * The room's encoded bytes, taken from whichever tier it is in without warming it up.
+     * Call from the room's writer so the room can't change tier or state halfway through.
+     */
+    protected byte[] encodedRoom(UUID roomId) {
+        GameRoom room = gameRooms.get(roomId);
+        return room != null ? RoomSerializer.toBytes(room) : coldStorage.encoded(roomId);
+    }
+
+    // where snapshots that dropped their bytes read them again, hot rooms are encoded, cold ones are already
+    private byte[] encodedRoomAt(UUID roomId, long version) {
+        GameRoom room = gameRooms.get(roomId);
+        if (room != null) {
+            return room.getVersion() == version ? RoomSerializer.toBytes(room) : null;
+        }
+        // a cold room doesn't change until it is warmed up again
+        AtomicLong current = roomVersions.get(roomId);
+        return current != null && current.get() == version ? coldStorage.encoded(roomId) : null;
+    }
+
+    List<UUID> getRoomIdsWithActivity() {
+        return new ArrayList<>(roomActivity.keySet());
+    }
+
+    RoomActivity getRoomActivity(UUID roomId) {
+        return roomActivity.get(roomId);
+    }
+
+    RoomTier getRoomTier(UUID roomId) {
+        return coldStorage.tierOf(roomId);
+    }
+
+    int getHotRoomCount() {
+        return gameRooms.size();
+    }
+
+    long getCompressedBytes() {
+        return coldStorage.getCompressedBytes();
+    }
+
+    /**
+     * Moves an idle room to a colder tier. Must run on the room's writer.
+     * The cold copy is written before the hot one is dropped, so concurrent readers always find the room somewhere.
+     */
+    void moveToTier(UUID roomId, RoomTier target) {
+        GameRoom room = gameRooms.get(roomId);
+        if (room != null) {
+            if (target == RoomTier.COMPRESSED) {
+                coldStorage.compress(room);
+            } else if (target == RoomTier.DISK) {
+                coldStorage.spill(room);
+            }
+            if (target != RoomTier.HOT) {
+                gameRooms.remove(roomId, room);
+                roomSnapshots.release(roomId);
+            }
+        } else if (target == RoomTier.DISK && coldStorage.tierOf(roomId) == RoomTier.COMPRESSED) {
+            coldStorage.spillCompressed(roomId);
+        }
+    }
+
+    private void store(GameRoom gameRoom) {
         gameRooms.put(gameRoom.getRoomId(), gameRoom);
+        // a room saved from a copy taken before it went cold is hot again, drop the stale cold copy
+        if (coldStorage.contains(gameRoom.getRoomId())) {
+            coldStorage.remove(gameRoom.getRoomId());
+        }
+        roomIndex.index(gameRoom);
+        roomSnapshots.publish(gameRoom, RoomSerializer.toBytes(gameRoom), roomSource);
+        touch(gameRoom);
+    }
+
+    private void touch(GameRoom gameRoom) {
+        roomActivity.put(gameRoom.getRoomId(), new RoomActivity(System.currentTimeMillis(),
+                gameRoom.getGamePhase(), gameRoom.getGamePlayers().size()));
     }
 
     @Override
     public void deleteRoom(UUID roomId) {
         gameRooms.remove(roomId);
+        coldStorage.remove(roomId);
+        roomIndex.remove(roomId);
+        roomVersions.remove(roomId);
+        roomActivity.remove(roomId);
+        roomSnapshots.remove(roomId);
+    }
+
+    @Override
+    public Collection<UUID> findRoomIdsByPhase(GamePhase gamePhase) {
+        return new ArrayList<>(roomIndex.findByPhase(gamePhase));
+    }
+
+    @Override
+    public Collection<UUID> findRoomIdsByPlayerId(UUID playerId) {
+        return new ArrayList<>(roomIndex.findByPlayerId(playerId));
+    }
+
+    @Override
+    public Collection<UUID> findRoomIdsByNamePrefix(String prefix) {
+        return new ArrayList<>(roomIndex.findByNamePrefix(prefix));
+    }
+
+    // listings decode cold rooms without warming them up, a lobby refresh shouldn't pull every room back into memory
+    private List<GameRoom> resolve(Collection<UUID> roomIds) {
+        List<GameRoom> rooms = new ArrayList<>(roomIds.size());
+        for (UUID roomId : roomIds) {
+            GameRoom room = gameRooms.get(roomId);
+            if (room == null) {
+                room = coldStorage.peek(roomId);
+            }
+            if (room == null) {
+                // it may have been warmed up while we were looking at the cold tiers
+                room = gameRooms.get(roomId);
+            }
+            // a room can be deleted between reading the index and reading the map
+            if (room != null) {
+                rooms.add(room);
+            }
+        }
+        return rooms;
+    }
+
+    record RoomActivity(long lastActivityMillis, GamePhase gamePhase, int playerCount) {
     }
 }
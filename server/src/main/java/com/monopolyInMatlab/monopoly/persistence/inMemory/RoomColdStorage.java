@@ -0,0 +1,205 @@
+package com.monopolyInMatlab.monopoly.persistence.inMemory;
+
+import com.monopolyInMatlab.monopoly.domain.GameRoom;
+import com.monopolyInMatlab.monopoly.persistence.RoomSerializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The two cold tiers behind InMemoryRoomRepository: deflated room bytes kept on the heap,
+ * and the same bytes spilled to one file per room on local disk.
+ * Callers make sure a room is only moved between tiers from its own writer.
+ */
+class RoomColdStorage {
+    private final Path directory;
+    private final ConcurrentMap<UUID, RoomTier> tiers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<UUID, byte[]> compressedRooms = new ConcurrentHashMap<>();
+    private final AtomicLong compressedBytes = new AtomicLong();
+
+    RoomColdStorage(String directory) {
+        this.directory = Paths.get(directory);
+        deleteLeftovers();
+    }
+
+    RoomTier tierOf(UUID roomId) {
+        return tiers.getOrDefault(roomId, RoomTier.HOT);
+    }
+
+    boolean contains(UUID roomId) {
+        return tiers.containsKey(roomId);
+    }
+
+    long getCompressedBytes() {
+        return compressedBytes.get();
+    }
+
+    List<UUID> getRoomIds() {
+        return new ArrayList<>(tiers.keySet());
+    }
+
+    void compress(GameRoom room) {
+        byte[] deflated = deflate(RoomSerializer.toBytes(room));
+        removeCompressed(room.getRoomId());
+        compressedRooms.put(room.getRoomId(), deflated);
+        compressedBytes.addAndGet(deflated.length);
+        tiers.put(room.getRoomId(), RoomTier.COMPRESSED);
+    }
+
+    void spill(GameRoom room) {
+        writeFile(room.getRoomId(), deflate(RoomSerializer.toBytes(room)));
+        removeCompressed(room.getRoomId());
+        tiers.put(room.getRoomId(), RoomTier.DISK);
+    }
+
+    // moves an already compressed room to disk without decoding it
+    void spillCompressed(UUID roomId) {
+        byte[] deflated = compressedRooms.get(roomId);
+        if (deflated == null) {
+            return;
+        }
+        writeFile(roomId, deflated);
+        tiers.put(roomId, RoomTier.DISK);
+        removeCompressed(roomId);
+    }
+
+    /**
+     * Decodes a cold room and drops it from the cold tiers, or returns null if the room isn't cold.
+     */
+    GameRoom take(UUID roomId) {
+        GameRoom room = peek(roomId);
+        if (room != null) {
+            remove(roomId);
+        }
+        return room;
+    }
+
+    /**
+     * Decodes a cold room but leaves it where it is, for reads that shouldn't warm it up.
+     */
+    GameRoom peek(UUID roomId) {
+        byte[] encoded = encoded(roomId);
+        return encoded == null ? null : RoomSerializer.fromBytes(encoded);
+    }
+
+    byte[] encoded(UUID roomId) {
+        RoomTier tier = tiers.get(roomId);
+        if (tier == RoomTier.COMPRESSED) {
+            byte[] deflated = compressedRooms.get(roomId);
+            return deflated == null ? null : inflate(deflated);
+        }
+        if (tier == RoomTier.DISK) {
+            try {
+                return inflate(Files.readAllBytes(roomPath(roomId)));
+            } catch (NoSuchFileException e) {
+                // warmed up or deleted since we looked at its tier
+                return null;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read cold room " + roomId, e);
+            }
+        }
+        return null;
+    }
+
+    void remove(UUID roomId) {
+        RoomTier tier = tiers.remove(roomId);
+        removeCompressed(roomId);
+        if (tier == RoomTier.DISK) {
+            try {
+                Files.deleteIfExists(roomPath(roomId));
+            } catch (IOException e) {
+                System.out.println("Failed to delete cold room " + roomId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void removeCompressed(UUID roomId) {
+        byte[] previous = compressedRooms.remove(roomId);
+        if (previous != null) {
+            compressedBytes.addAndGet(-previous.length);
+        }
+    }
+
+    private void writeFile(UUID roomId, byte[] deflated) {
+        Path file = roomPath(roomId);
+        Path temp = directory.resolve(roomId + ".tmp");
+        try {
+            Files.createDirectories(directory);
+            Files.write(temp, deflated);
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not spill room " + roomId + " to " + directory, e);
+        }
+    }
+
+    // cold rooms only live as long as the process that spilled them, files from an earlier run are stale
+    private void deleteLeftovers() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.{room,tmp}")) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            System.out.println("Failed to clear cold rooms in " + directory + ": " + e.getMessage());
+        }
+    }
+
+    private Path roomPath(UUID roomId) {
+        return directory.resolve(roomId + ".room");
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+            byte[] chunk = new byte[1024];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 3);
+            byte[] chunk = new byte[1024];
+            while (!inflater.finished()) {
+                int read = inflater.inflate(chunk);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Cold room data is truncated");
+                }
+                out.write(chunk, 0, read);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Cold room data is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.monopolyInMatlab.monopoly.persistence.inMemory;
+
+import com.monopolyInMatlab.monopoly.concurrency.RoomExecutor;
+import com.monopolyInMatlab.monopoly.domain.GamePhase;
+import com.monopolyInMatlab.monopoly.persistence.inMemory.InMemoryRoomRepository.RoomActivity;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Background lifecycle manager for rooms kept by InMemoryRoomRepository (and the journal repository built on it).
+ *
+ * Every pass looks at how long each room has been idle and
+ *   - deletes empty lobbies once nobody has come back for a while,
+ *   - spills finished games to disk soon after they end,
+ *   - compresses idle rooms on the heap and spills long-idle ones to disk,
+ *   - compresses the least recently used rooms when there are more hot rooms than the budget allows,
+ *     and spills the oldest compressed rooms when the compressed tier is over its byte budget.
+ * A room comes back to the hot tier on its next access. Every move runs on the room's writer.
+ */
+@Component
+public class RoomReaper {
+    private final ObjectProvider<InMemoryRoomRepository> repositoryProvider;
+    private final RoomExecutor roomExecutor;
+
+    private final long compressAfterMillis;
+    private final long spillAfterMillis;
+    private final long finishedSpillAfterMillis;
+    private final long emptyRoomTtlMillis;
+    private final int maxHotRooms;
+    private final long maxCompressedBytes;
+
+    public RoomReaper(ObjectProvider<InMemoryRoomRepository> repositoryProvider,
+                      RoomExecutor roomExecutor,
+                      @Value("${monopoly.rooms.reaper.compress-after-ms:300000}") long compressAfterMillis,
+                      @Value("${monopoly.rooms.reaper.spill-after-ms:3600000}") long spillAfterMillis,
+                      @Value("${monopoly.rooms.reaper.finished-spill-after-ms:300000}") long finishedSpillAfterMillis,
+                      @Value("${monopoly.rooms.reaper.empty-room-ttl-ms:600000}") long emptyRoomTtlMillis,
+                      @Value("${monopoly.rooms.reaper.max-hot-rooms:10000}") int maxHotRooms,
+                      @Value("${monopoly.rooms.reaper.max-compressed-bytes:268435456}") long maxCompressedBytes) {
+        this.repositoryProvider = repositoryProvider;
+        this.roomExecutor = roomExecutor;
+        this.compressAfterMillis = compressAfterMillis;
+        this.spillAfterMillis = spillAfterMillis;
+        this.finishedSpillAfterMillis = finishedSpillAfterMillis;
+        this.emptyRoomTtlMillis = emptyRoomTtlMillis;
+        this.maxHotRooms = maxHotRooms;
+        this.maxCompressedBytes = maxCompressedBytes;
+    }
+
+    @Scheduled(initialDelayString = "${monopoly.rooms.reaper.interval-ms:30000}",
+               fixedDelayString = "${monopoly.rooms.reaper.interval-ms:30000}")
+    public void reap() {
+        // other persistence modes keep rooms off the heap already
+        InMemoryRoomRepository repository = repositoryProvider.getIfAvailable();
+        if (repository == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        List<TrackedRoom> hotRooms = new ArrayList<>();
+        List<TrackedRoom> compressedRooms = new ArrayList<>();
+
+        for (UUID roomId : repository.getRoomIdsWithActivity()) {
+            RoomActivity activity = repository.getRoomActivity(roomId);
+            if (activity == null) {
+                continue;
+            }
+            long idle = now - activity.lastActivityMillis();
+            RoomTier tier = repository.getRoomTier(roomId);
+
+            if (activity.playerCount() == 0 && activity.gamePhase() == GamePhase.LOBBY && idle > emptyRoomTtlMillis) {
+                schedule(repository, roomId, activity, null);
+            } else if (tier != RoomTier.DISK && (idle > spillAfterMillis
+                    || (activity.gamePhase() == GamePhase.FINISHED && idle > finishedSpillAfterMillis))) {
+                schedule(repository, roomId, activity, RoomTier.DISK);
+            } else if (tier == RoomTier.HOT && idle > compressAfterMillis) {
+                schedule(repository, roomId, activity, RoomTier.COMPRESSED);
+            } else if (tier == RoomTier.HOT) {
+                hotRooms.add(new TrackedRoom(roomId, activity));
+            } else if (tier == RoomTier.COMPRESSED) {
+                compressedRooms.add(new TrackedRoom(roomId, activity));
+            }
+        }
+
+        // budgets: push the least recently active rooms one tier down until we are back under them
+        int hotOverBudget = hotRooms.size() - maxHotRooms;
+        if (hotOverBudget > 0) {
+            hotRooms.sort(Comparator.comparingLong(room -> room.activity().lastActivityMillis()));
+            for (TrackedRoom room : hotRooms.subList(0, hotOverBudget)) {
+                schedule(repository, room.roomId(), room.activity(), RoomTier.COMPRESSED);
+            }
+        }
+
+        if (repository.getCompressedBytes() > maxCompressedBytes) {
+            compressedRooms.sort(Comparator.comparingLong(room -> room.activity().lastActivityMillis()));
+            // sizes aren't tracked per room, so spill the older half and let the next pass look again
+            for (TrackedRoom room : compressedRooms.subList(0, (compressedRooms.size() + 1) / 2)) {
+                schedule(repository, room.roomId(), room.activity(), RoomTier.DISK);
+            }
+        }
+    }
+
+    /**
+     * Queues the move on the room's writer. A null target deletes the room.
+     * If the room was used after this pass looked at it, the move is dropped.
+     */
+    private void schedule(InMemoryRoomRepository repository, UUID roomId, RoomActivity seen, RoomTier target) {
+        roomExecutor.submit(roomId, () -> {
+            if (!seen.equals(repository.getRoomActivity(roomId))) {
+                return false;
+            }
+            if (target == null) {
+                repository.deleteRoom(roomId);
+                System.out.println("Deleted empty room " + roomId);
+            } else {
+                repository.moveToTier(roomId, target);
+            }
+            return target == null;
+        }).thenAcceptAsync(deleted -> {
+            // off the writer, a mailbox can only be released once nothing is draining it
+            if (deleted) {
+                roomExecutor.release(roomId);
+            }
+        });
+    }
+
+    private record TrackedRoom(UUID roomId, RoomActivity activity) {
+    }
+}
@@ -0,0 +1,10 @@
+package com.monopolyInMatlab.monopoly.persistence.inMemory;
+
+/**
+ * Where a stored room currently lives, from cheapest to access to cheapest to keep.
+ */
+enum RoomTier {
+    HOT,         // live GameRoom object on the heap
+    COMPRESSED,  // deflated encoded bytes on the heap
+    DISK         // deflated encoded bytes in a file under the cold directory
+}
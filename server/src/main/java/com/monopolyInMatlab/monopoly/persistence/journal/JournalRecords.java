@@ -0,0 +1,216 @@
+package com.monopolyInMatlab.monopoly.persistence.journal;
+
+import com.monopolyInMatlab.monopoly.domain.GameCommand;
+import com.monopolyInMatlab.monopoly.domain.GameCommandType;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Encodes journal records. Every record is framed as
+ * [int body length][int crc32 of body][body], and the body is
+ * [byte kind][long roomId msb][long roomId lsb][long room version][payload].
+ * The crc lets recovery stop cleanly at a record that was only half written when the process died.
+ */
+class JournalRecords {
+    static final byte ROOM_IMAGE = 1;     // payload is a whole serialized room
+    static final byte COMMAND = 2;        // payload is one GameCommand
+    static final byte ROOM_DELETED = 3;   // no payload
+
+    static final int HEADER_SIZE = 8;
+    static final int BODY_PREFIX_SIZE = 1 + 8 + 8 + 8;
+
+    // bits in the command presence mask, one per optional field
+    private static final int PLAYER_ID = 1;
+    private static final int PLAYER_NAME = 1 << 1;
+    private static final int POSITION = 1 << 2;
+    private static final int AMOUNT = 1 << 3;
+    private static final int DICE = 1 << 4;
+    private static final int DECK_TYPE = 1 << 5;
+    private static final int TRADE_ID = 1 << 6;
+    private static final int TO_PLAYER_ID = 1 << 7;
+    private static final int FROM_PLAYER_PROPERTIES = 1 << 8;
+    private static final int FROM_PLAYER_MONEY = 1 << 9;
+    private static final int TO_PLAYER_PROPERTIES = 1 << 10;
+    private static final int TO_PLAYER_MONEY = 1 << 11;
+    private static final int ACCEPT = 1 << 12;
+    private static final int HOUSES_TO_SELL = 1 << 13;
+    private static final int HOTELS_TO_SELL = 1 << 14;
+    private static final int PROPERTIES_TO_MORTGAGE = 1 << 15;
+    private static final int CREDITOR_ID = 1 << 16;
+    private static final int MESSAGE = 1 << 17;
+    private static final int TIMESTAMP = 1 << 18;
+    private static final int SEQ = 1 << 19;
+    private static final int CLOSES_AT = 1 << 20;
+
+    static byte[] record(byte kind, UUID roomId, long version, byte[] payload) {
+        int bodyLength = BODY_PREFIX_SIZE + payload.length;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + bodyLength);
+        buffer.putInt(bodyLength);
+        buffer.putInt(0);  // crc, filled in below once the body is written
+        buffer.put(kind);
+        buffer.putLong(roomId.getMostSignificantBits());
+        buffer.putLong(roomId.getLeastSignificantBits());
+        buffer.putLong(version);
+        buffer.put(payload);
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_SIZE, bodyLength);
+        buffer.putInt(4, (int) crc.getValue());
+        return buffer.array();
+    }
+
+    static boolean checksumMatches(byte[] body, int expectedCrc) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue() == expectedCrc;
+    }
+
+    static byte[] encodeCommand(GameCommand command) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(command.getType().ordinal());
+            out.writeInt(presenceMask(command));
+
+            if (command.getPlayerId() != null) writeUuid(out, command.getPlayerId());
+            if (command.getPlayerName() != null) out.writeUTF(command.getPlayerName());
+            if (command.getPosition() != null) out.writeInt(command.getPosition());
+            if (command.getAmount() != null) out.writeInt(command.getAmount());
+            if (command.getDice() != null) {
+                out.writeByte(command.getDice()[0]);
+                out.writeByte(command.getDice()[1]);
+            }
+            if (command.getDeckType() != null) out.writeUTF(command.getDeckType());
+            if (command.getTradeId() != null) writeUuid(out, command.getTradeId());
+            if (command.getToPlayerId() != null) writeUuid(out, command.getToPlayerId());
+            if (command.getFromPlayerProperties() != null) writeInts(out, command.getFromPlayerProperties());
+            if (command.getFromPlayerMoney() != null) out.writeInt(command.getFromPlayerMoney());
+            if (command.getToPlayerProperties() != null) writeInts(out, command.getToPlayerProperties());
+            if (command.getToPlayerMoney() != null) out.writeInt(command.getToPlayerMoney());
+            if (command.getAccept() != null) out.writeBoolean(command.getAccept());
+            if (command.getHousesToSell() != null) writeInts(out, command.getHousesToSell());
+            if (command.getHotelsToSell() != null) writeInts(out, command.getHotelsToSell());
+            if (command.getPropertiesToMortgage() != null) writeInts(out, command.getPropertiesToMortgage());
+            if (command.getCreditorId() != null) writeUuid(out, command.getCreditorId());
+            if (command.getMessage() != null) writeString(out, command.getMessage());
+            if (command.getTimestamp() != null) writeInstant(out, command.getTimestamp());
+            if (command.getSeq() != null) out.writeLong(command.getSeq());
+            if (command.getClosesAt() != null) writeInstant(out, command.getClosesAt());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static GameCommand decodeCommand(DataInputStream in) throws IOException {
+        GameCommandType type = GameCommandType.values()[in.readUnsignedByte()];
+        int mask = in.readInt();
+
+        GameCommand.GameCommandBuilder command = GameCommand.builder().type(type);
+        if ((mask & PLAYER_ID) != 0) command.playerId(readUuid(in));
+        if ((mask & PLAYER_NAME) != 0) command.playerName(in.readUTF());
+        if ((mask & POSITION) != 0) command.position(in.readInt());
+        if ((mask & AMOUNT) != 0) command.amount(in.readInt());
+        if ((mask & DICE) != 0) command.dice(new int[]{in.readUnsignedByte(), in.readUnsignedByte()});
+        if ((mask & DECK_TYPE) != 0) command.deckType(in.readUTF());
+        if ((mask & TRADE_ID) != 0) command.tradeId(readUuid(in));
+        if ((mask & TO_PLAYER_ID) != 0) command.toPlayerId(readUuid(in));
+        if ((mask & FROM_PLAYER_PROPERTIES) != 0) command.fromPlayerProperties(readInts(in));
+        if ((mask & FROM_PLAYER_MONEY) != 0) command.fromPlayerMoney(in.readInt());
+        if ((mask & TO_PLAYER_PROPERTIES) != 0) command.toPlayerProperties(readInts(in));
+        if ((mask & TO_PLAYER_MONEY) != 0) command.toPlayerMoney(in.readInt());
+        if ((mask & ACCEPT) != 0) command.accept(in.readBoolean());
+        if ((mask & HOUSES_TO_SELL) != 0) command.housesToSell(readInts(in));
+        if ((mask & HOTELS_TO_SELL) != 0) command.hotelsToSell(readInts(in));
+        if ((mask & PROPERTIES_TO_MORTGAGE) != 0) command.propertiesToMortgage(readInts(in));
+        if ((mask & CREDITOR_ID) != 0) command.creditorId(readUuid(in));
+        if ((mask & MESSAGE) != 0) command.message(readString(in));
+        if ((mask & TIMESTAMP) != 0) command.timestamp(readInstant(in));
+        if ((mask & SEQ) != 0) command.seq(in.readLong());
+        if ((mask & CLOSES_AT) != 0) command.closesAt(readInstant(in));
+        return command.build();
+    }
+
+    private static int presenceMask(GameCommand command) {
+        int mask = 0;
+        if (command.getPlayerId() != null) mask |= PLAYER_ID;
+        if (command.getPlayerName() != null) mask |= PLAYER_NAME;
+        if (command.getPosition() != null) mask |= POSITION;
+        if (command.getAmount() != null) mask |= AMOUNT;
+        if (command.getDice() != null) mask |= DICE;
+        if (command.getDeckType() != null) mask |= DECK_TYPE;
+        if (command.getTradeId() != null) mask |= TRADE_ID;
+        if (command.getToPlayerId() != null) mask |= TO_PLAYER_ID;
+        if (command.getFromPlayerProperties() != null) mask |= FROM_PLAYER_PROPERTIES;
+        if (command.getFromPlayerMoney() != null) mask |= FROM_PLAYER_MONEY;
+        if (command.getToPlayerProperties() != null) mask |= TO_PLAYER_PROPERTIES;
+        if (command.getToPlayerMoney() != null) mask |= TO_PLAYER_MONEY;
+        if (command.getAccept() != null) mask |= ACCEPT;
+        if (command.getHousesToSell() != null) mask |= HOUSES_TO_SELL;
+        if (command.getHotelsToSell() != null) mask |= HOTELS_TO_SELL;
+        if (command.getPropertiesToMortgage() != null) mask |= PROPERTIES_TO_MORTGAGE;
+        if (command.getCreditorId() != null) mask |= CREDITOR_ID;
+        if (command.getMessage() != null) mask |= MESSAGE;
+        if (command.getTimestamp() != null) mask |= TIMESTAMP;
+        if (command.getSeq() != null) mask |= SEQ;
+        if (command.getClosesAt() != null) mask |= CLOSES_AT;
+        return mask;
+    }
+
+    static void writeUuid(DataOutput out, UUID id) throws IOException {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+
+    static UUID readUuid(DataInput in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    private static void writeInts(DataOutput out, List<Integer> values) throws IOException {
+        out.writeShort(values.size());
+        for (Integer value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static List<Integer> readInts(DataInput in) throws IOException {
+        int size = in.readUnsignedShort();
+        List<Integer> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(in.readInt());
+        }
+        return values;
+    }
+
+    private static void writeInstant(DataOutput out, Instant instant) throws IOException {
+        out.writeLong(instant.getEpochSecond());
+        out.writeInt(instant.getNano());
+    }
+
+    private static Instant readInstant(DataInput in) throws IOException {
+        return Instant.ofEpochSecond(in.readLong(), in.readInt());
+    }
+
+    // chat can be longer than writeUTF takes
+    private static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private JournalRecords() {
+        // Utility class, no instantiation
+    }
+}
@@ -0,0 +1,32 @@
+package com.monopolyInMatlab.monopoly.persistence.journal;
+
+import com.monopolyInMatlab.monopoly.persistence.RoomSnapshots;
+import com.monopolyInMatlab.monopoly.service.GameService;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Replays the journal once every bean is wired up, before the server starts taking messages.
+ * Lives outside the repository because replaying needs the game service, which itself depends on the repository.
+ * Replayed commits are announced as such, clients have seen them before the restart, if at all.
+ */
+@Component
+@ConditionalOnProperty(name = "monopoly.persistence.mode", havingValue = "journal")
+public class JournalReplayer implements SmartInitializingSingleton {
+    private final JournalRoomRepository journalRoomRepository;
+    private final GameService gameService;
+    private final RoomSnapshots roomSnapshots;
+
+    public JournalReplayer(JournalRoomRepository journalRoomRepository, GameService gameService,
+                           RoomSnapshots roomSnapshots) {
+        this.journalRoomRepository = journalRoomRepository;
+        this.gameService = gameService;
+        this.roomSnapshots = roomSnapshots;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        roomSnapshots.recover(() -> journalRoomRepository.recover(gameService::replayCommand));
+    }
+}
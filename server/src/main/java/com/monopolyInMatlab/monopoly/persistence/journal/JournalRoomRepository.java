@@ -0,0 +1,294 @@
+package com.monopolyInMatlab.monopoly.persistence.journal;
+
+import com.monopolyInMatlab.monopoly.concurrency.RoomExecutor;
+import com.monopolyInMatlab.monopoly.domain.GameCommand;
+import com.monopolyInMatlab.monopoly.domain.GameRoom;
+import com.monopolyInMatlab.monopoly.persistence.RoomCommits;
+import com.monopolyInMatlab.monopoly.persistence.RoomSerializer;
+import com.monopolyInMatlab.monopoly.persistence.RoomSnapshots;
+import com.monopolyInMatlab.monopoly.persistence.inMemory.InMemoryRoomRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Keeps rooms in memory like InMemoryRoomRepository, but also appends every applied action to an
+ * append-only journal on local disk and periodically writes a snapshot of all rooms.
+ * At startup rooms are rebuilt from the latest snapshot plus the journal segments written after it.
+ *
+ * A change is queued on the journal before it is stored, so nothing can build on it that the journal doesn't
+ * have in front of it. The room's writer doesn't wait for the write, it reports it to RoomCommits instead.
+ * If a write fails, the room's next record is its whole image, so the journal catches up with the room.
+ *
+ * Files in the journal directory:
+ *   journal-N.log   records appended while segment N was current
+ *   snapshot-N.bin  every room as of the moment segment N was started, so it covers all segments below N
+ */
+@Repository
+@ConditionalOnProperty(name = "monopoly.persistence.mode", havingValue = "journal")
+public class JournalRoomRepository extends InMemoryRoomRepository {
+    private static final int SNAPSHOT_MAGIC = 0x4D4F4E53;  // "MONS"
+
+    private final Path directory;
+    private final boolean fsync;
+    private final RoomExecutor roomExecutor;
+    private final RoomCommits roomCommits;
+    // rooms whose last journal write failed, the journal gets their whole image next
+    private final Set<UUID> unjournaled = ConcurrentHashMap.newKeySet();
+
+    // null until recover() has run, nothing may be appended before the old journal has been replayed
+    private volatile JournalWriter writer;
+
+    public JournalRoomRepository(@Value("${monopoly.persistence.journal.directory:data/journal}") String directory,
+                                 @Value("${monopoly.persistence.journal.fsync:true}") boolean fsync,
+                                 @Value("${monopoly.rooms.cold.directory:data/cold-rooms}") String coldDirectory,
+                                 RoomExecutor roomExecutor,
+                                 RoomCommits roomCommits,
+                                 RoomSnapshots roomSnapshots) {
+        super(coldDirectory, roomSnapshots);
+        this.directory = Paths.get(directory);
+        this.fsync = fsync;
+        this.roomExecutor = roomExecutor;
+        this.roomCommits = roomCommits;
+    }
+
+    /**
+     * Rebuilds every room from disk and then opens a fresh journal segment for new appends.
+     * Commands are replayed through the replayer (the game service) so they run the exact same game logic,
+     * on a copy of the room that is then put back at the command's version without being journaled again.
+     */
+    public void recover(BiConsumer<GameRoom, GameCommand> replayer) {
+        try {
+            Files.createDirectories(directory);
+
+            long snapshotNumber = latestFileNumber("snapshot-", ".bin");
+            if (snapshotNumber >= 0) {
+                loadSnapshot(snapshotPath(snapshotNumber));
+            }
+
+            long lastSegment = -1;
+            for (long segmentNumber : fileNumbers("journal-", ".log")) {
+                if (segmentNumber >= snapshotNumber) {
+                    replaySegment(JournalWriter.segmentPath(directory, segmentNumber), replayer);
+                }
+                lastSegment = segmentNumber;
+            }
+
+            // never append after a tail that may have been cut short by a crash, always start a new segment
+            writer = new JournalWriter(directory, Math.max(lastSegment + 1, snapshotNumber + 1), fsync);
+            System.out.println("Recovered " + getAllRoomIds().size() + " rooms from " + directory.toAbsolutePath());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not recover rooms from " + directory, e);
+        }
+    }
+
+    @Override
+    public void deleteRoom(UUID roomId) {
+        append(roomId, JournalRecords.record(JournalRecords.ROOM_DELETED, roomId, 0, new byte[0]));
+        unjournaled.remove(roomId);
+        super.deleteRoom(roomId);
+    }
+
+    @Override
+    protected void record(GameRoom gameRoom, GameCommand command) {
+        // a new or handed over room has shuffled decks and fresh ids, so the journal gets its whole image rather
+        // than a command, and so does a room the journal has fallen behind on, the image includes this change too
+        if (command == null || unjournaled.remove(gameRoom.getRoomId())) {
+            append(gameRoom.getRoomId(), image(gameRoom));
+            return;
+        }
+        append(gameRoom.getRoomId(), JournalRecords.record(JournalRecords.COMMAND, gameRoom.getRoomId(),
+                gameRoom.getVersion(), JournalRecords.encodeCommand(command)));
+    }
+
+    /**
+     * Writes every room to a new snapshot file and deletes the journal segments it covers.
+     * Each room is captured on its own writer, so the image never contains half of an action.
+     */
+    @Scheduled(initialDelayString = "${monopoly.persistence.journal.snapshot-interval-ms:60000}",
+               fixedDelayString = "${monopoly.persistence.journal.snapshot-interval-ms:60000}")
+    public void takeSnapshot() {
+        if (writer == null) {
+            return;
+        }
+
+        // after the roll, every record in an older segment belongs to an action that the images below include
+        long snapshotNumber = writer.roll();
+
+        List<CompletableFuture<byte[]>> images = new ArrayList<>();
+        for (UUID roomId : getAllRoomIds()) {
+            // encodedRoom reads cold rooms where they are, a snapshot shouldn't warm every room up
+            images.add(roomExecutor.submit(roomId, () -> encodedRoom(roomId)));
+        }
+
+        Path snapshot = snapshotPath(snapshotNumber);
+        Path temp = directory.resolve(snapshot.getFileName() + ".tmp");
+        try {
+            int written = 0;
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                for (CompletableFuture<byte[]> image : images) {
+                    byte[] bytes = image.join();
+                    if (bytes != null) {
+                        out.writeInt(bytes.length);
+                        out.write(bytes);
+                        written++;
+                    }
+                }
+                out.writeInt(-1);  // end marker, a snapshot without it was cut short
+            }
+            try (FileOutputStream sync = new FileOutputStream(temp.toFile(), true)) {
+                sync.getFD().sync();
+            }
+            Files.move(temp, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+            deleteFilesBelow("journal-", ".log", snapshotNumber);
+            deleteFilesBelow("snapshot-", ".bin", snapshotNumber);
+            System.out.println("Wrote snapshot " + snapshotNumber + " with " + written + " rooms");
+        } catch (IOException e) {
+            System.out.println("Failed to write snapshot " + snapshotNumber + ": " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    // only queued, whoever runs the action waits for it through RoomCommits before answering
+    private void append(UUID roomId, byte[] record) {
+        if (writer == null) {
+            throw new IllegalStateException("Journal has not been recovered yet");
+        }
+        CompletableFuture<Void> written = writer.append(record);
+        written.whenComplete((ignored, failure) -> {
+            if (failure != null) {
+                unjournaled.add(roomId);
+                // the room may not change again for a while, catch up on its writer rather than on its next action
+                roomExecutor.execute(roomId, () -> catchUp(roomId));
+            }
+        });
+        roomCommits.written(written);
+    }
+
+    private void catchUp(UUID roomId) {
+        GameRoom room = findGameRoomById(roomId);
+        if (room != null && unjournaled.remove(roomId)) {
+            System.out.println("Writing the whole of room " + roomId + " to the journal after a failed write");
+            append(roomId, image(room));
+        }
+    }
+
+    private static byte[] image(GameRoom room) {
+        return JournalRecords.record(JournalRecords.ROOM_IMAGE, room.getRoomId(), room.getVersion(),
+                RoomSerializer.toBytes(room));
+    }
+
+    private void loadSnapshot(Path snapshot) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a snapshot file: " + snapshot);
+            }
+            int length;
+            while ((length = in.readInt()) >= 0) {
+                byte[] bytes = in.readNBytes(length);
+                restoreRoom(RoomSerializer.fromBytes(bytes));
+            }
+        }
+    }
+
+    private void replaySegment(Path segment, BiConsumer<GameRoom, GameCommand> replayer) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment)))) {
+            while (true) {
+                int bodyLength;
+                int crc;
+                byte[] body;
+                try {
+                    bodyLength = in.readInt();
+                    crc = in.readInt();
+                    body = in.readNBytes(bodyLength);
+                } catch (EOFException e) {
+                    return;
+                }
+                if (body.length < bodyLength || !JournalRecords.checksumMatches(body, crc)) {
+                    System.out.println("Journal " + segment.getFileName() + " ends with a torn record, stopping there");
+                    return;
+                }
+                applyRecord(new DataInputStream(new ByteArrayInputStream(body)), replayer);
+            }
+        }
+    }
+
+    private void applyRecord(DataInputStream record, BiConsumer<GameRoom, GameCommand> replayer) throws IOException {
+        byte kind = record.readByte();
+        UUID roomId = JournalRecords.readUuid(record);
+        long version = record.readLong();
+
+        switch (kind) {
+            case JournalRecords.ROOM_IMAGE:
+                restoreRoom(RoomSerializer.fromBytes(record.readAllBytes()));
+                break;
+            case JournalRecords.ROOM_DELETED:
+                super.deleteRoom(roomId);
+                break;
+            case JournalRecords.COMMAND:
+                GameRoom room = findGameRoomById(roomId);
+                // commands at or below the room's version are already part of the snapshot
+                if (room != null && version > room.getVersion()) {
+                    GameCommand command = JournalRecords.decodeCommand(record);
+                    try {
+                        GameRoom replayed = findGameRoomForUpdate(roomId);
+                        replayer.accept(replayed, command);
+                        replayed.setVersion(version);
+                        restoreRoom(replayed);
+                    } catch (RuntimeException e) {
+                        System.out.println("Could not replay " + command.getType() + " for room " + roomId + ": " + e.getMessage());
+                    }
+                }
+                break;
+            default:
+                throw new IOException("Unknown journal record kind " + kind);
+        }
+    }
+
+    private Path snapshotPath(long number) {
+        return directory.resolve(String.format("snapshot-%020d.bin", number));
+    }
+
+    private long latestFileNumber(String prefix, String suffix) throws IOException {
+        List<Long> numbers = fileNumbers(prefix, suffix);
+        return numbers.isEmpty() ? -1 : numbers.get(numbers.size() - 1);
+    }
+
+    private List<Long> fileNumbers(String prefix, String suffix) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+                    .forEach(name -> numbers.add(Long.parseLong(
+                            name.substring(prefix.length(), name.length() - suffix.length()))));
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    private void deleteFilesBelow(String prefix, String suffix, long number) throws IOException {
+        for (long fileNumber : fileNumbers(prefix, suffix)) {
+            if (fileNumber < number) {
+                Files.deleteIfExists(directory.resolve(String.format("%s%020d%s", prefix, fileNumber, suffix)));
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.monopolyInMatlab.monopoly.persistence.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Appends journal records from a single background thread.
+ * Callers hand over an encoded record and get a future for it, the writer drains whatever has queued up
+ * since its last pass and writes it as one batch followed by one fsync (group commit), then completes the batch's
+ * futures, or fails them all if the write or the fsync failed.
+ * Under load batches grow on their own, so the fsync cost is shared by many actions instead of paid per message.
+ */
+class JournalWriter {
+    private static final int MAX_BATCH = 4096;
+
+    private final Path directory;
+    private final boolean fsync;
+    private final BlockingQueue<Object> pending = new LinkedBlockingQueue<>();
+    private final Thread thread;
+
+    private FileChannel segment;
+    private long segmentNumber;
+    private volatile boolean running = true;
+
+    JournalWriter(Path directory, long firstSegmentNumber, boolean fsync) {
+        this.directory = directory;
+        this.fsync = fsync;
+        openSegment(firstSegmentNumber);
+
+        this.thread = new Thread(this::writeLoop, "journal-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    static Path segmentPath(Path directory, long segmentNumber) {
+        return directory.resolve(String.format("journal-%020d.log", segmentNumber));
+    }
+
+    /**
+     * Queues a record, the future completes once it is written and, with fsync on, on disk.
+     * It fails with an UncheckedIOException if the record couldn't be written.
+     */
+    CompletableFuture<Void> append(byte[] record) {
+        Append append = new Append(record, new CompletableFuture<>());
+        pending.add(append);
+        return append.done();
+    }
+
+    /**
+     * Closes the current segment and starts the next one, waiting until the switch has happened.
+     * Every record appended before this call ends up in a segment numbered lower than the returned one.
+     */
+    long roll() {
+        CompletableFuture<Long> rolled = new CompletableFuture<>();
+        pending.add(rolled);
+        return rolled.join();
+    }
+
+    void close() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        List<Object> batch = new ArrayList<>();
+        while (running || !pending.isEmpty()) {
+            try {
+                batch.add(pending.take());
+            } catch (InterruptedException e) {
+                // closing, fall through and drain whatever is left
+            }
+            pending.drainTo(batch, MAX_BATCH);
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        }
+        closeSegment();
+        // whatever was queued after the last pass is never written, don't leave its callers waiting
+        pending.drainTo(batch);
+        for (Object entry : batch) {
+            if (entry instanceof Append append) {
+                append.done().completeExceptionally(new UncheckedIOException("Could not write to the journal",
+                        new IOException("Journal is closed")));
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeBatch(List<Object> batch) {
+        List<Append> records = new ArrayList<>(batch.size());
+        for (Object entry : batch) {
+            if (entry instanceof Append append) {
+                records.add(append);
+            } else {
+                // a roll request, everything queued before it has to land in the current segment first
+                flush(records);
+                records.clear();
+                closeSegment();
+                openSegment(segmentNumber + 1);
+                ((CompletableFuture<Long>) entry).complete(segmentNumber);
+            }
+        }
+        flush(records);
+    }
+
+    private void flush(List<Append> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        try {
+            ByteBuffer[] buffers = new ByteBuffer[records.size()];
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = ByteBuffer.wrap(records.get(i).record());
+            }
+            while (buffers[buffers.length - 1].hasRemaining()) {
+                segment.write(buffers);
+            }
+            if (fsync) {
+                segment.force(false);
+            }
+        } catch (IOException e) {
+            System.out.println("Failed to write " + records.size() + " journal records: " + e.getMessage());
+            for (Append append : records) {
+                append.done().completeExceptionally(new UncheckedIOException("Could not write to the journal", e));
+            }
+            // recovery stops reading a segment at a half written record, later ones go into the next segment
+            closeSegment();
+            try {
+                openSegment(segmentNumber + 1);
+            } catch (UncheckedIOException opening) {
+                // the closed segment fails the next batch, which tries again
+                System.out.println(opening.getMessage() + ": " + opening.getCause().getMessage());
+            }
+            return;
+        }
+        for (Append append : records) {
+            append.done().complete(null);
+        }
+    }
+
+    private void openSegment(long number) {
+        try {
+            segment = FileChannel.open(segmentPath(directory, number),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            segmentNumber = number;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open journal segment " + number, e);
+        }
+    }
+
+    private void closeSegment() {
+        try {
+            segment.force(true);
+            segment.close();
+        } catch (IOException e) {
+            System.out.println("Failed to close journal segment " + segmentNumber + ": " + e.getMessage());
+        }
+    }
+
+    private record Append(byte[] record, CompletableFuture<Void> done) {
+    }
+}
@@ -0,0 +1,422 @@
+package com.monopolyInMatlab.monopoly.persistence.mapped;
+
+import com.monopolyInMatlab.monopoly.domain.CreateRoomRequest;
+import com.monopolyInMatlab.monopoly.domain.GameCommand;
+import com.monopolyInMatlab.monopoly.domain.GamePhase;
+import com.monopolyInMatlab.monopoly.domain.GamePlayer;
+import com.monopolyInMatlab.monopoly.domain.GameRoom;
+import com.monopolyInMatlab.monopoly.persistence.RoomFactory;
+import com.monopolyInMatlab.monopoly.persistence.RoomIndex;
+import com.monopolyInMatlab.monopoly.persistence.RoomRepository;
+import com.monopolyInMatlab.monopoly.persistence.RoomSerializer;
+import com.monopolyInMatlab.monopoly.persistence.RoomSnapshots;
+import com.monopolyInMatlab.monopoly.persistence.RoomSource;
+import com.monopolyInMatlab.monopoly.persistence.StaleRoomVersionException;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps every room serialized in fixed-size slots of memory-mapped segment files instead of on the heap.
+ * Only the slot table, versions and secondary indexes stay on the heap, the room state itself lives in the
+ * OS page cache, so rooms nobody touches simply get paged out.
+ *
+ * Every read decodes a fresh GameRoom from its slot, callers mutate that copy and hand it back through
+ * saveGameRoom, which is what GameServiceImpl already does for every action.
+ *
+ * Slot layout: [long roomId msb][long roomId lsb][long version][int length][int stamp][serialized room].
+ * A length of 0 marks a free slot. Freed slots go on a free list and are handed out before a new segment is mapped.
+ * A room too big for its slot is kept whole in overflow/{roomId}.room instead, its slot has a length of -1.
+ *
+ * Snapshots of rooms that haven't been used lately drop their bytes and read them from the slot again.
+ *
+ * Only the room's writer writes its slot, but snapshots and lookups read slots from any thread. The stamp is a
+ * seqlock: odd while the slot is being written, so a read that saw it odd, or saw it change, reads again.
+ */
+@Repository
+@ConditionalOnProperty(name = "monopoly.persistence.mode", havingValue = "mmap")
+public class MappedRoomRepository implements RoomRepository {
+    private static final int SLOT_HEADER_SIZE = 8 + 8 + 8 + 4 + 4;
+    private static final int LENGTH_OFFSET = 24;
+    private static final int STAMP_OFFSET = 28;
+    private static final int OVERFLOW = -1;
+    private static final VarHandle STAMP = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private final Path directory;
+    private final int slotSize;
+    private final int slotsPerSegment;
+
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private final ConcurrentMap<UUID, Integer> roomSlots = new ConcurrentHashMap<>();
+    // committed version per room, kept on the heap so conditional saves can compare-and-set it
+    private final ConcurrentMap<UUID, AtomicLong> roomVersions = new ConcurrentHashMap<>();
+    private final RoomIndex roomIndex = new RoomIndex();
+    private final RoomSnapshots roomSnapshots;
+    private final RoomSource roomSource = this::encodedRoomAt;
+
+    public MappedRoomRepository(@Value("${monopoly.persistence.mapped.directory:data/rooms}") String directory,
+                                @Value("${monopoly.persistence.mapped.slot-size:65536}") int slotSize,
+                                @Value("${monopoly.persistence.mapped.slots-per-segment:1024}") int slotsPerSegment,
+                                RoomSnapshots roomSnapshots) {
+        // the stamp is read and written atomically, which needs it aligned in every slot
+        if (slotSize <= SLOT_HEADER_SIZE || slotSize % 8 != 0 || slotsPerSegment < 1) {
+            throw new IllegalStateException("monopoly.persistence.mapped needs a slot-size above " + SLOT_HEADER_SIZE
+                    + " that is a multiple of 8 and at least one slot per segment");
+        }
+        this.directory = Paths.get(directory);
+        this.slotSize = slotSize;
+        this.slotsPerSegment = slotsPerSegment;
+        this.roomSnapshots = roomSnapshots;
+        openExistingSegments();
+    }
+
+    @Override
+    public List<GameRoom> getAllRooms() {
+        return resolve(roomSlots.keySet());
+    }
+
+    @Override
+    public GameRoom createRoom(CreateRoomRequest createRoomRequest, UUID roomId) {
+        GameRoom newRoom = RoomFactory.newRoom(createRoomRequest, roomId);
+        int slot = allocateSlot();
+        roomSlots.put(newRoom.getRoomId(), slot);
+        roomVersions.put(newRoom.getRoomId(), new AtomicLong(newRoom.getVersion()));
+        writeSlot(slot, newRoom);
+        roomIndex.index(newRoom);
+        return newRoom;
+    }
+
+    @Override
+    public void importRoom(GameRoom gameRoom) {
+        roomSlots.computeIfAbsent(gameRoom.getRoomId(), id -> allocateSlot());
+        roomVersions.put(gameRoom.getRoomId(), new AtomicLong(gameRoom.getVersion()));
+        store(gameRoom);
+    }
+
+    @Override
+    public GamePlayer joinRoom(UUID roomId, GamePlayer player) {
+        GameRoom room = findGameRoomForUpdate(roomId);
+        // the player we are getting passed in is not stored yet, here we are doing that
+        GamePlayer gamePlayer = GamePlayer.builder().playerName(player.getPlayerName()).build();
+        if (room != null && !room.isStarted()) {
+            long expectedVersion = room.getVersion();
+            room.getGamePlayers().add(gamePlayer);
+            if (!saveGameRoomIfVersion(room, expectedVersion, null)) {
+                throw new StaleRoomVersionException(roomId, expectedVersion);
+            }
+        }
+        return gamePlayer;
+    }
+
+    @Override
+    public GameRoom findGameRoomById(UUID roomId) {
+        Integer slot = roomSlots.get(roomId);
+        Slot read = slot == null ? null : readSlot(slot);
+        GameRoom room = read != null ? RoomSerializer.fromBytes(read.bytes()) : null;
+        // the room may have been deleted and its slot handed to another one since the lookup
+        return room != null && room.getRoomId().equals(roomId) ? room : null;
+    }
+
+    @Override
+    public GameRoom findGameRoomForUpdate(UUID roomId) {
+        // every read decodes the slot, so it already is a copy of its own
+        return findGameRoomById(roomId);
+    }
+
+    @Override
+    public boolean saveGameRoomIfVersion(GameRoom gameRoom, long expectedVersion, GameCommand command) {
+        // nothing to record, the slot already holds the whole room
+        AtomicLong version = roomVersions.get(gameRoom.getRoomId());
+        if (version == null || !version.compareAndSet(expectedVersion, expectedVersion + 1)) {
+            return false;
+        }
+        gameRoom.setVersion(expectedVersion + 1);
+        store(gameRoom);
+        return true;
+    }
+
+    @Override
+    public void deleteRoom(UUID roomId) {
+        Integer slot = roomSlots.remove(roomId);
+        roomIndex.remove(roomId);
+        roomVersions.remove(roomId);
+        roomSnapshots.remove(roomId);
+        if (slot != null) {
+            ByteBuffer buffer = slotBuffer(slot);
+            int stamp = beginWrite(buffer);
+            buffer.putInt(LENGTH_OFFSET, 0);
+            endWrite(buffer, stamp);
+            deleteOverflow(roomId);
+            synchronized (freeSlots) {
+                freeSlots.push(slot);
+            }
+        }
+    }
+
+    @Override
+    public Collection<UUID> findRoomIdsByPhase(GamePhase gamePhase) {
+        return new ArrayList<>(roomIndex.findByPhase(gamePhase));
+    }
+
+    @Override
+    public Collection<UUID> findRoomIdsByPlayerId(UUID playerId) {
+        return new ArrayList<>(roomIndex.findByPlayerId(playerId));
+    }
+
+    @Override
+    public Collection<UUID> findRoomIdsByNamePrefix(String prefix) {
+        return new ArrayList<>(roomIndex.findByNamePrefix(prefix));
+    }
+
+    @PreDestroy
+    public void close() {
+        for (Segment segment : segments) {
+            segment.buffer().force();
+            try {
+                segment.channel().close();
+            } catch (IOException e) {
+                System.out.println("Failed to close room segment: " + e.getMessage());
+            }
+        }
+    }
+
+    private void store(GameRoom gameRoom) {
+        Integer slot = roomSlots.get(gameRoom.getRoomId());
+        if (slot == null) {
+            // the room was deleted while this save was in flight
+            return;
+        }
+        writeSlot(slot, gameRoom);
+        roomIndex.index(gameRoom);
+    }
+
+    private void writeSlot(int slot, GameRoom room) {
+        byte[] bytes = RoomSerializer.toBytes(room);
+        boolean overflows = bytes.length > slotSize - SLOT_HEADER_SIZE;
+        if (overflows) {
+            // in place before the slot points at it
+            writeOverflow(room.getRoomId(), bytes);
+        }
+
+        ByteBuffer buffer = slotBuffer(slot);
+        boolean overflowed = buffer.getInt(LENGTH_OFFSET) == OVERFLOW;
+        int stamp = beginWrite(buffer);
+        buffer.putLong(0, room.getRoomId().getMostSignificantBits());
+        buffer.putLong(8, room.getRoomId().getLeastSignificantBits());
+        buffer.putLong(16, room.getVersion());
+        if (!overflows) {
+            buffer.put(SLOT_HEADER_SIZE, bytes);
+        }
+        buffer.putInt(LENGTH_OFFSET, overflows ? OVERFLOW : bytes.length);
+        endWrite(buffer, stamp);
+        if (overflowed && !overflows) {
+            deleteOverflow(room.getRoomId());
+        }
+        roomSnapshots.publish(room, bytes, roomSource);
+    }
+
+    private byte[] encodedRoomAt(UUID roomId, long version) {
+        Integer slot = roomSlots.get(roomId);
+        Slot read = slot == null ? null : readSlot(slot);
+        return read != null && read.roomId().equals(roomId) && read.version() == version ? read.bytes() : null;
+    }
+
+    // null for a free slot
+    private Slot readSlot(int slot) {
+        ByteBuffer buffer = slotBuffer(slot);
+        while (true) {
+            int stamp = (int) STAMP.getAcquire(buffer, STAMP_OFFSET);
+            if ((stamp & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            UUID roomId = new UUID(buffer.getLong(0), buffer.getLong(8));
+            long version = buffer.getLong(16);
+            int length = buffer.getInt(LENGTH_OFFSET);
+            byte[] bytes = null;
+            if (length > 0 && length <= slotSize - SLOT_HEADER_SIZE) {
+                bytes = new byte[length];
+                buffer.get(SLOT_HEADER_SIZE, bytes);
+            } else if (length == OVERFLOW) {
+                bytes = readOverflow(roomId);
+            }
+            VarHandle.loadLoadFence();
+            if ((int) STAMP.getOpaque(buffer, STAMP_OFFSET) != stamp) {
+                // written while we read it, what we have may be half of each
+                continue;
+            }
+            if (length == 0) {
+                return null;
+            }
+            if (bytes == null) {
+                throw new IllegalStateException("Room slot " + slot + " points at an overflow file that is gone");
+            }
+            return new Slot(roomId, version, bytes);
+        }
+    }
+
+    // the stamp goes odd before anything else in the slot changes
+    private int beginWrite(ByteBuffer buffer) {
+        int stamp = (int) STAMP.getOpaque(buffer, STAMP_OFFSET) + 1;
+        STAMP.setOpaque(buffer, STAMP_OFFSET, stamp);
+        VarHandle.storeStoreFence();
+        return stamp;
+    }
+
+    private void endWrite(ByteBuffer buffer, int stamp) {
+        STAMP.setRelease(buffer, STAMP_OFFSET, stamp + 1);
+    }
+
+    // replaced by a rename, so a reader gets either the old room or the new one
+    private void writeOverflow(UUID roomId, byte[] bytes) {
+        Path path = overflowPath(roomId);
+        Path temp = path.resolveSibling(roomId + ".tmp");
+        try {
+            Files.createDirectories(path.getParent());
+            Files.write(temp, bytes);
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write room " + roomId + " to its overflow file", e);
+        }
+    }
+
+    // null once the room no longer overflows, its slot has changed by then
+    private byte[] readOverflow(UUID roomId) {
+        try {
+            return Files.readAllBytes(overflowPath(roomId));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the overflow file of room " + roomId, e);
+        }
+    }
+
+    private void deleteOverflow(UUID roomId) {
+        try {
+            Files.deleteIfExists(overflowPath(roomId));
+        } catch (IOException e) {
+            System.out.println("Failed to delete the overflow file of room " + roomId + ": " + e.getMessage());
+        }
+    }
+
+    private Path overflowPath(UUID roomId) {
+        return directory.resolve("overflow").resolve(roomId + ".room");
+    }
+
+    // a private view of one slot, so concurrent writers to different slots never share buffer state
+    private ByteBuffer slotBuffer(int slot) {
+        Segment segment = segments.get(slot / slotsPerSegment);
+        return segment.buffer().slice((slot % slotsPerSegment) * slotSize, slotSize);
+    }
+
+    private int allocateSlot() {
+        synchronized (freeSlots) {
+            if (freeSlots.isEmpty()) {
+                int first = segments.size() * slotsPerSegment;
+                segments.add(mapSegment(segments.size()));
+                for (int slot = first + slotsPerSegment - 1; slot >= first; slot--) {
+                    freeSlots.push(slot);
+                }
+            }
+            return freeSlots.pop();
+        }
+    }
+
+    private void openExistingSegments() {
+        try {
+            Files.createDirectories(directory);
+            int segmentNumber = 0;
+            while (Files.exists(segmentPath(segmentNumber))) {
+                segments.add(mapSegment(segmentNumber));
+                segmentNumber++;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open room segments in " + directory, e);
+        }
+
+        // rebuild the slot table, versions, indexes and free list from what the segments hold
+        roomSnapshots.recover(this::loadSlots);
+        if (!roomSlots.isEmpty()) {
+            System.out.println("Loaded " + roomSlots.size() + " rooms from " + directory.toAbsolutePath());
+        }
+    }
+
+    private void loadSlots() {
+        int totalSlots = segments.size() * slotsPerSegment;
+        for (int slot = totalSlots - 1; slot >= 0; slot--) {
+            ByteBuffer buffer = slotBuffer(slot);
+            int stamp = (int) STAMP.getOpaque(buffer, STAMP_OFFSET);
+            if ((stamp & 1) != 0) {
+                // the process stopped halfway through writing this slot, what is left of the room can't be trusted
+                System.out.println("Dropped room slot " + slot + ", it was being written when the server stopped");
+                buffer.putInt(LENGTH_OFFSET, 0);
+                STAMP.setRelease(buffer, STAMP_OFFSET, stamp + 1);
+            }
+            Slot read = readSlot(slot);
+            if (read == null) {
+                freeSlots.push(slot);
+                continue;
+            }
+            GameRoom room = RoomSerializer.fromBytes(read.bytes());
+            roomSlots.put(room.getRoomId(), slot);
+            roomVersions.put(room.getRoomId(), new AtomicLong(room.getVersion()));
+            roomIndex.index(room);
+            roomSnapshots.publish(room, read.bytes(), roomSource);
+        }
+    }
+
+    private Segment mapSegment(int segmentNumber) {
+        try {
+            FileChannel channel = FileChannel.open(segmentPath(segmentNumber),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) slotSize * slotsPerSegment);
+            return new Segment(channel, buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not map room segment " + segmentNumber, e);
+        }
+    }
+
+    private Path segmentPath(int segmentNumber) {
+        return directory.resolve(String.format("rooms-%05d.seg", segmentNumber));
+    }
+
+    private List<GameRoom> resolve(Collection<UUID> roomIds) {
+        List<GameRoom> rooms = new ArrayList<>(roomIds.size());
+        for (UUID roomId : roomIds) {
+            GameRoom room = findGameRoomById(roomId);
+            // a room can be deleted between reading the index and reading its slot
+            if (room != null) {
+                rooms.add(room);
+            }
+        }
+        return rooms;
+    }
+
+    private record Segment(FileChannel channel, MappedByteBuffer buffer) {
+    }
+
+    private record Slot(UUID roomId, long version, byte[] bytes) {
+    }
+}
@@ -0,0 +1,107 @@
+package com.monopolyInMatlab.monopoly.presentation;
+
+import com.monopolyInMatlab.monopoly.concurrency.RoomExecutor;
+import com.monopolyInMatlab.monopoly.concurrency.TimingWheel;
+import com.monopolyInMatlab.monopoly.domain.Auction;
+import com.monopolyInMatlab.monopoly.domain.GameRoom;
+import com.monopolyInMatlab.monopoly.dto.GameEvent;
+import com.monopolyInMatlab.monopoly.persistence.RoomCommittedEvent;
+import com.monopolyInMatlab.monopoly.persistence.RoomRemovedEvent;
+import com.monopolyInMatlab.monopoly.persistence.RoomRepository;
+import com.monopolyInMatlab.monopoly.service.GameService;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Closes auctions when their bid window runs out, so an auction no longer waits for a client to send endAuction.
+ *
+ * Every committed room with an open auction has one timeout on the TimingWheel for the auction's closesAt,
+ * moved whenever a new high bid moves closesAt. Rooms are only committed on the node that owns them, so that is
+ * the node whose wheel closes them. When the timeout fires the auction is ended on the room's writer, unless it
+ * was ended by hand or got a later deadline in the meantime, and AUCTION_ENDED goes out as if a client had sent it.
+ *
+ * Auctions kept by earlier builds have no deadline and still need an endAuction.
+ */
+@Component
+public class AuctionDeadlines {
+    private final GameService gameService;
+    private final RoomRepository roomRepository;
+    private final RoomExecutor roomExecutor;
+    private final RoomOutbox roomOutbox;
+    private final TimingWheel timingWheel;
+    // only rooms with an open auction, changed on the room's writer
+    private final ConcurrentMap<UUID, Deadline> deadlines = new ConcurrentHashMap<>();
+
+    public AuctionDeadlines(GameService gameService, RoomRepository roomRepository, RoomExecutor roomExecutor,
+                            RoomOutbox roomOutbox, TimingWheel timingWheel) {
+        this.gameService = gameService;
+        this.roomRepository = roomRepository;
+        this.roomExecutor = roomExecutor;
+        this.roomOutbox = roomOutbox;
+        this.timingWheel = timingWheel;
+    }
+
+    // runs on the thread that stored the room, the room's writer for game actions
+    @EventListener
+    public void onRoomCommitted(RoomCommittedEvent event) {
+        Auction auction = event.room().getCurrentAuction();
+        Instant closesAt = auction != null && auction.isActive() ? auction.getClosesAt() : null;
+        UUID roomId = event.room().getRoomId();
+        Deadline deadline = deadlines.get(roomId);
+        if (deadline != null && deadline.closesAt().equals(closesAt)) {
+            return;
+        }
+        if (deadline != null) {
+            deadline.timeout().cancel();
+        }
+        if (closesAt == null) {
+            deadlines.remove(roomId);
+            return;
+        }
+        long delayMs = Math.max(Duration.between(Instant.now(), closesAt).toMillis(), 0);
+        TimingWheel.Timeout timeout = timingWheel.schedule(
+                () -> roomExecutor.execute(roomId, () -> expire(roomId, closesAt)), delayMs);
+        deadlines.put(roomId, new Deadline(closesAt, timeout));
+    }
+
+    @EventListener
+    public void onRoomRemoved(RoomRemovedEvent event) {
+        Deadline deadline = deadlines.remove(event.roomId());
+        if (deadline != null) {
+            deadline.timeout().cancel();
+        }
+    }
+
+    private void expire(UUID roomId, Instant closesAt) {
+        Deadline deadline = deadlines.get(roomId);
+        // a commit since the timeout fired has put a later deadline in its place, or the auction is over
+        if (deadline == null || !deadline.closesAt().equals(closesAt)) {
+            return;
+        }
+        deadlines.remove(roomId, deadline);
+        roomOutbox.batch(roomId, null, () -> {
+            GameRoom room = roomRepository.findGameRoomById(roomId);
+            Auction auction = room != null ? room.getCurrentAuction() : null;
+            if (auction == null || !auction.isActive() || !closesAt.equals(auction.getClosesAt())) {
+                return;
+            }
+            try {
+                gameService.endAuction(roomId);
+                System.out.println("Auction for position " + auction.getPropertyPosition() + " in room " + roomId
+                        + " closed at " + auction.getHighestBid());
+                roomOutbox.send(roomId, new GameEvent.AuctionEnded());
+            } catch (RuntimeException e) {
+                System.out.println("Failed to close the auction in room " + roomId + ": " + e.getMessage());
+            }
+        });
+    }
+
+    private record Deadline(Instant closesAt, TimingWheel.Timeout timeout) {
+    }
+}
@@ -0,0 +1,34 @@
+package com.monopolyInMatlab.monopoly.presentation;
+
+import com.monopolyInMatlab.monopoly.dto.ChatSearchHit;
+import com.monopolyInMatlab.monopoly.persistence.chat.ChatSearchIndex;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/chat")
+@RequiredArgsConstructor
+public class ChatSearchController {
+    private static final int MAX_RESULTS = 100;
+
+    private final ChatSearchIndex chatSearchIndex;
+
+    // messages of this node's rooms, newest first, every word of q and player matches as a prefix.
+    // For the next page pass the timestamp of the last hit as `to`
+    @GetMapping("/search")
+    public List<ChatSearchHit> search(@RequestParam(value = "q", required = false) String text,
+                                      @RequestParam(value = "player", required = false) String player,
+                                      @RequestParam(value = "roomId", required = false) UUID roomId,
+                                      @RequestParam(value = "from", required = false) Instant from,
+                                      @RequestParam(value = "to", required = false) Instant to,
+                                      @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        return chatSearchIndex.search(text, player, roomId, from, to, Math.max(1, Math.min(limit, MAX_RESULTS)));
+    }
+}
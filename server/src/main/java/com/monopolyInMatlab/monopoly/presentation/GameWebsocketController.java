@@ -1,5 +1,6 @@
 package com.monopolyInMatlab.monopoly.presentation;
 
+import com.monopolyInMatlab.monopoly.concurrency.RoomExecutor;
 import com.monopolyInMatlab.monopoly.domain.*;
 import com.monopolyInMatlab.monopoly.dto.*;
 import com.monopolyInMatlab.monopoly.service.ChatService;
@@ -8,394 +9,398 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.SimpAttributes;
+import org.springframework.messaging.simp.SimpAttributesContextHolder;
 import org.springframework.stereotype.Controller;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 
 @Controller
 @RequiredArgsConstructor
 public class GameWebsocketController {
-    private final SimpMessagingTemplate simpMessagingTemplate;
+    private final RoomOutbox roomOutbox;
     private final GameService gameService;
     private final ChatService chatService;
+    private final RoomExecutor roomExecutor;
 
     @MessageMapping("/room/{roomId}/join")
     public void joinRoom(@DestinationVariable String roomId, @Payload GamePlayer player) {
-        System.out.println("Player " + player.getPlayerName() + " joined room " + roomId);
+        onRoomWriter(roomId, () -> {
+            System.out.println("Player " + player.getPlayerName() + " joined room " + roomId);
 
-        // Note: RoomsService.joinRoom should be called from client before websocket connection
-        // This message handler just broadcasts the join event
-        Map<String, Object> data = new HashMap<>();
-        data.put("playerName", player.getPlayerName());
+            // Note: RoomsService.joinRoom should be called from client before websocket connection
+            // This message handler just broadcasts the join event
+            broadcastGameEvent(roomId, new GameEvent.PlayerJoined(player.getPlayerName()));
+        });
+    }
 
-        broadcastGameEvent(roomId, "PLAYER_JOINED", data);
+    // Reconnecting clients get the room frames they missed, or a STATE_KEYFRAME if those are gone
+    @MessageMapping("/room/{roomId}/resume")
+    public void resume(@DestinationVariable String roomId, @Payload ResumeRequest request) {
+        onRoomWriter(roomId, () -> {
+            try {
+                GameRoom room = gameService.getGameRoom(UUID.fromString(roomId));
+                roomOutbox.resume(room.getRoomId(), request.getStream(), request.getLastSeq(), () -> RoomOutbox.keyframe(room));
+            } catch (Exception e) {
+                sendError(roomId, "Resume failed: " + e.getMessage());
+            }
+        });
     }
 
     // Chat endpoint
     @MessageMapping("/room/{roomId}/chat")
     public void handleChatMessage(@DestinationVariable String roomId, @Payload Map<String, String> payload) {
-        UUID playerId = UUID.fromString(payload.get("playerId"));
-        String playerName = payload.get("playerName");
-        String message = payload.get("message");
+        onRoomWriter(roomId, () -> {
+            UUID playerId = UUID.fromString(payload.get("playerId"));
+            String playerName = payload.get("playerName");
+            String message = payload.get("message");
 
-        System.out.println("Player " + playerName + " sent a message:" + message);
+            System.out.println("Player " + playerName + " sent a message:" + message);
 
-        ChatMessage chatMessage = chatService.sendMessage(UUID.fromString(roomId), playerId, playerName, message);
+            ChatMessage chatMessage = chatService.sendMessage(UUID.fromString(roomId), playerId, playerName, message);
 
-        ChatMessageDTO dto = ChatMessageDTO.builder()
-                .messageType("CHAT_MESSAGE")
-                .playerId(chatMessage.getPlayerId())
-                .playerName(chatMessage.getPlayerName())
-                .message(chatMessage.getMessage())
-                .build();
+            ChatMessageDTO dto = ChatMessageDTO.builder()
+                    .messageType("CHAT_MESSAGE")
+                    .seq(chatMessage.getSeq())
+                    .timestamp(chatMessage.getTimestamp())
+                    .playerId(chatMessage.getPlayerId())
+                    .playerName(chatMessage.getPlayerName())
+                    .message(chatMessage.getMessage())
+                    .build();
 
-        simpMessagingTemplate.convertAndSend("/room/" + roomId, dto);
+            roomOutbox.send(UUID.fromString(roomId), dto);
+        });
     }
 
-    // Game lifecycle
-    @MessageMapping("/room/{roomId}/game/start")
-    public void startGame(@DestinationVariable String roomId) {
+    // Goes to the player queue of the session that asked, like an error. Read on the inbound thread,
+    // older pages come from the chat log on disk and must not hold up the room's writer
+    @MessageMapping("/room/{roomId}/chat/history")
+    public void getChatHistory(@DestinationVariable String roomId, @Payload ChatHistoryRequest request) {
+        ChatPage page;
         try {
-            gameService.initializeGame(UUID.fromString(roomId));
-            GameRoom room = gameService.startGame(UUID.fromString(roomId));
-
-            Map<String, Object> data = new HashMap<>();
-            data.put("currentPlayerIndex", room.getCurrentPlayerIndex());
-            data.put("currentPlayerId", room.getCurrentPlayer().getPlayerId().toString());
-
-            broadcastGameEvent(roomId, "GAME_STARTED", data);
+            page = request.getFrom() != null || request.getTo() != null
+                    ? chatService.getMessagesBetween(UUID.fromString(roomId), request.getFrom(), request.getTo(), request.getLimit())
+                    : chatService.getMessages(UUID.fromString(roomId), request.getBefore(), request.getAfter(), request.getLimit());
         } catch (Exception e) {
-            broadcastError(roomId, "Failed to start game: " + e.getMessage());
+            onRoomWriter(roomId, () -> sendError(roomId, "Chat history failed: " + e.getMessage()));
+            return;
         }
+        onRoomWriter(roomId, () -> roomOutbox.reply(UUID.fromString(roomId), new GameEvent.ChatHistoryPage(page)));
+    }
+
+    // Game lifecycle
+    @MessageMapping("/room/{roomId}/game/start")
+    public void startGame(@DestinationVariable String roomId) {
+        onRoomWriter(roomId, () -> {
+            try {
+                gameService.initializeGame(UUID.fromString(roomId));
+                GameRoom room = gameService.startGame(UUID.fromString(roomId));
+
+                broadcastGameEvent(roomId, new GameEvent.GameStarted(room.getCurrentPlayer().getPlayerId(),
+                        room.getCurrentPlayerIndex()));
+            } catch (Exception e) {
+                sendError(roomId, "Failed to start game: " + e.getMessage());
+            }
+        });
     }
 
     // Turn actions
     @MessageMapping("/room/{roomId}/game/roll")
     public void rollDice(@DestinationVariable String roomId, @Payload GameActionRequest request) {
-        try {
-            int[] dice = gameService.rollDice(UUID.fromString(roomId), request.getPlayerId());
-
-            Map<String, Object> data = new HashMap<>();
-            data.put("playerId", request.getPlayerId().toString());
-            data.put("dice", new int[]{dice[0], dice[1]});
-            data.put("isDoubles", dice[0] == dice[1]);
+        onRoomWriter(roomId, () -> {
+            try {
+                int[] dice = gameService.rollDice(UUID.fromString(roomId), request.getPlayerId());
 
-            broadcastGameEvent(roomId, "DICE_ROLLED", data);
+                broadcastGameEvent(roomId, new GameEvent.DiceRolled(request.getPlayerId(), dice[0], dice[1]));
 
-            // Get updated player position
-            GameRoom room = gameService.getGameRoom(UUID.fromString(roomId));
-            GamePlayer player = room.getPlayerById(request.getPlayerId());
+                // Get updated player position
+                GameRoom room = gameService.getGameRoom(UUID.fromString(roomId));
+                GamePlayer player = room.getPlayerById(request.getPlayerId());
 
-            Map<String, Object> moveData = new HashMap<>();
-            moveData.put("playerId", request.getPlayerId().toString());
-            moveData.put("newPosition", player.getPosition());
-            moveData.put("money", player.getMoney());
+                broadcastGameEvent(roomId, new GameEvent.PlayerMoved(request.getPlayerId(), player.getPosition(),
+                        player.getMoney()));
 
-            broadcastGameEvent(roomId, "PLAYER_MOVED", moveData);
+                // Check if player needs to liquidate assets to pay debt
+                checkAndSendLiquidationRequired(room, roomId);
 
-            // Check if player needs to liquidate assets to pay debt
-            checkAndBroadcastLiquidationRequired(room, roomId);
-
-        } catch (Exception e) {
-            broadcastError(roomId, "Roll dice failed: " + e.getMessage());
-        }
+            } catch (Exception e) {
+                sendError(roomId, "Roll dice failed: " + e.getMessage());
+            }
+        });
     }
 
     @MessageMapping("/room/{roomId}/game/endTurn")
     public void endTurn(@DestinationVariable String roomId, @Payload GameActionRequest request) {
-        try {
-            gameService.endTurn(UUID.fromString(roomId), request.getPlayerId());
-            GameRoom room = gameService.getGameRoom(UUID.fromString(roomId));
-
-            if (room.getGamePhase() == GamePhase.FINISHED) {
-                Map<String, Object> data = new HashMap<>();
-                data.put("winnerId", room.getWinnerId().toString());
-                broadcastGameEvent(roomId, "GAME_OVER", data);
-            } else {
-                Map<String, Object> data = new HashMap<>();
-                data.put("currentPlayerId", room.getCurrentPlayer().getPlayerId().toString());
-                broadcastGameEvent(roomId, "TURN_CHANGED", data);
+        onRoomWriter(roomId, () -> {
+            try {
+                gameService.endTurn(UUID.fromString(roomId), request.getPlayerId());
+                GameRoom room = gameService.getGameRoom(UUID.fromString(roomId));
+
+                if (room.getGamePhase() == GamePhase.FINISHED) {
+                    broadcastGameEvent(roomId, new GameEvent.GameOver(room.getWinnerId()));
+                } else {
+                    broadcastGameEvent(roomId, new GameEvent.TurnChanged(room.getCurrentPlayer().getPlayerId()));
+                }
+            } catch (Exception e) {
+                sendError(roomId, "End turn failed: " + e.getMessage());
             }
-        } catch (Exception e) {
-            broadcastError(roomId, "End turn failed: " + e.getMessage());
-        }
+        });
     }
 
     // Property actions
     @MessageMapping("/room/{roomId}/game/buyProperty")
     public void buyProperty(@DestinationVariable String roomId, @Payload GameActionRequest request) {
-        try {
-            gameService.buyProperty(UUID.fromString(roomId), request.getPlayerId(), request.getPosition());
-            GameRoom room = gameService.getGameRoom(UUID.fromString(roomId));
-            GamePlayer player = room.getPlayerById(request.getPlayerId());
-
-            Map<String, Object> data = new HashMap<>();
-            data.put("playerId", request.getPlayerId().toString());
-            data.put("position", request.getPosition());
-            data.put("money", player.getMoney());
-
-            broadcastGameEvent(roomId, "PROPERTY_BOUGHT", data);
-        } catch (Exception e) {
-            broadcastError(roomId, "Buy property failed: " + e.getMessage());
-        }
+        onRoomWriter(roomId, () -> {
+            try {
+                gameService.buyProperty(UUID.fromString(roomId), request.getPlayerId(), request.getPosition());
+                GameRoom room = gameService.getGameRoom(UUID.fromString(roomId));
+                GamePlayer player = room.getPlayerById(request.getPlayerId());
+
+                broadcastGameEvent(roomId, new GameEvent.PropertyBought(request.getPlayerId(), request.getPosition(),
+                        player.getMoney()));
+            } catch (Exception e) {
+                sendError(roomId, "Buy property failed: " + e.getMessage());
+            }
+        });
     }
 
     @MessageMapping("/room/{roomId}/game/declineProperty")
     public void declineProperty(@DestinationVariable String roomId, @Payload GameActionRequest request) {
-        try {
-            gameService.declineProperty(UUID.fromString(roomId), request.getPlayerId(), request.getPosition());
+        onRoomWriter(roomId, () -> {
+            try {
+                gameService.declineProperty(UUID.fromString(roomId), request.getPlayerId(), request.getPosition());
 
-            Map<String, Object> data = new HashMap<>();
-            data.put("position", request.getPosition());
-
-            broadcastGameEvent(roomId, "AUCTION_STARTED", data);
-        } catch (Exception e) {
-            broadcastError(roomId, "Decline property failed: " + e.getMessage());
-        }
+                broadcastGameEvent(roomId, new GameEvent.AuctionStarted(request.getPosition()));
+            } catch (Exception e) {
+                sendError(roomId, "Decline property failed: " + e.getMessage());
+            }
+        });
     }
 
     // Building actions
     @MessageMapping("/room/{roomId}/game/buildHouse")
     public void buildHouse(@DestinationVariable String roomId, @Payload GameActionRequest request) {
-        try {
-            gameService.buildHouse(UUID.fromString(roomId), request.getPlayerId(), request.getPosition());
-            GameRoom room = gameService.getGameRoom(UUID.fromString(roomId));
-            PropertySpace prop = (PropertySpace) room.getBoardSpaces().get(request.getPosition());
-
-            Map<String, Object> data = new HashMap<>();
-            data.put("playerId", request.getPlayerId().toString());
-            data.put("position", request.getPosition());
-            data.put("housesBuilt", prop.getHousesBuilt());
-
-            broadcastGameEvent(roomId, "HOUSE_BUILT", data);
-        } catch (Exception e) {
-            broadcastError(roomId, "Build house failed: " + e.getMessage());
-        }
+        onRoomWriter(roomId, () -> {
+            try {
+                gameService.buildHouse(UUID.fromString(roomId), request.getPlayerId(), request.getPosition());
+                GameRoom room = gameService.getGameRoom(UUID.fromString(roomId));
+                PropertySpace prop = (PropertySpace) room.getBoardSpaces().get(request.getPosition());
+
+                broadcastGameEvent(roomId, new GameEvent.HouseBuilt(request.getPlayerId(), request.getPosition(),
+                        prop.getHousesBuilt()));
+            } catch (Exception e) {
+                sendError(roomId, "Build house failed: " + e.getMessage());
+            }
+        });
     }
 
     @MessageMapping("/room/{roomId}/game/buildHotel")
     public void buildHotel(@DestinationVariable String roomId, @Payload GameActionRequest request) {
-        try {
-            gameService.buildHotel(UUID.fromString(roomId), request.getPlayerId(), request.getPosition());
-
-            Map<String, Object> data = new HashMap<>();
-            data.put("playerId", request.getPlayerId().toString());
-            data.put("position", request.getPosition());
+        onRoomWriter(roomId, () -> {
+            try {
+                gameService.buildHotel(UUID.fromString(roomId), request.getPlayerId(), request.getPosition());
 
-            broadcastGameEvent(roomId, "HOTEL_BUILT", data);
-        } catch (Exception e) {
-            broadcastError(roomId, "Build hotel failed: " + e.getMessage());
-        }
+                broadcastGameEvent(roomId, GameEvent.PropertyChanged.hotelBuilt(request.getPlayerId(), request.getPosition()));
+            } catch (Exception e) {
+                sendError(roomId, "Build hotel failed: " + e.getMessage());
+            }
+        });
     }
 
     // Mortgage actions
     @MessageMapping("/room/{roomId}/game/mortgage")
     public void mortgageProperty(@DestinationVariable String roomId, @Payload GameActionRequest request) {
-        try {
-            gameService.mortgageProperty(UUID.fromString(roomId), request.getPlayerId(), request.getPosition());
-
-            Map<String, Object> data = new HashMap<>();
-            data.put("playerId", request.getPlayerId().toString());
-            data.put("position", request.getPosition());
+        onRoomWriter(roomId, () -> {
+            try {
+                gameService.mortgageProperty(UUID.fromString(roomId), request.getPlayerId(), request.getPosition());
 
-            broadcastGameEvent(roomId, "PROPERTY_MORTGAGED", data);
-        } catch (Exception e) {
-            broadcastError(roomId, "Mortgage failed: " + e.getMessage());
-        }
+                broadcastGameEvent(roomId, GameEvent.PropertyChanged.mortgaged(request.getPlayerId(), request.getPosition()));
+            } catch (Exception e) {
+                sendError(roomId, "Mortgage failed: " + e.getMessage());
+            }
+        });
     }
 
     @MessageMapping("/room/{roomId}/game/unmortgage")
     public void unmortgageProperty(@DestinationVariable String roomId, @Payload GameActionRequest request) {
-        try {
-            gameService.unmortgageProperty(UUID.fromString(roomId), request.getPlayerId(), request.getPosition());
+        onRoomWriter(roomId, () -> {
+            try {
+                gameService.unmortgageProperty(UUID.fromString(roomId), request.getPlayerId(), request.getPosition());
 
-            Map<String, Object> data = new HashMap<>();
-            data.put("playerId", request.getPlayerId().toString());
-            data.put("position", request.getPosition());
-
-            broadcastGameEvent(roomId, "PROPERTY_UNMORTGAGED", data);
-        } catch (Exception e) {
-            broadcastError(roomId, "Unmortgage failed: " + e.getMessage());
-        }
+                broadcastGameEvent(roomId, GameEvent.PropertyChanged.unmortgaged(request.getPlayerId(), request.getPosition()));
+            } catch (Exception e) {
+                sendError(roomId, "Unmortgage failed: " + e.getMessage());
+            }
+        });
     }
 
     // Jail actions
     @MessageMapping("/room/{roomId}/game/jailAction")
     public void handleJailAction(@DestinationVariable String roomId, @Payload GameActionRequest request) {
-        try {
-            String action = request.getAction();
-            boolean released = false;
-
-            switch (action) {
-                case "PAY":
-                    gameService.payJailFine(UUID.fromString(roomId), request.getPlayerId());
-                    released = true;
-                    break;
-                case "CARD":
-                    gameService.useGetOutOfJailCard(UUID.fromString(roomId), request.getPlayerId());
-                    released = true;
-                    break;
-                case "ROLL":
-                    released = gameService.rollForJail(UUID.fromString(roomId), request.getPlayerId());
-                    break;
-            }
-
-            Map<String, Object> data = new HashMap<>();
-            data.put("playerId", request.getPlayerId().toString());
-            data.put("released", released);
+        onRoomWriter(roomId, () -> {
+            try {
+                String action = request.getAction();
+                boolean released = false;
+
+                switch (action) {
+                    case "PAY":
+                        gameService.payJailFine(UUID.fromString(roomId), request.getPlayerId());
+                        released = true;
+                        break;
+                    case "CARD":
+                        gameService.useGetOutOfJailCard(UUID.fromString(roomId), request.getPlayerId());
+                        released = true;
+                        break;
+                    case "ROLL":
+                        released = gameService.rollForJail(UUID.fromString(roomId), request.getPlayerId());
+                        break;
+                }
 
-            broadcastGameEvent(roomId, "PLAYER_RELEASED_JAIL", data);
-        } catch (Exception e) {
-            broadcastError(roomId, "Jail action failed: " + e.getMessage());
-        }
+                broadcastGameEvent(roomId, new GameEvent.PlayerReleasedJail(request.getPlayerId(), released));
+            } catch (Exception e) {
+                sendError(roomId, "Jail action failed: " + e.getMessage());
+            }
+        });
     }
 
     // Trading
     @MessageMapping("/room/{roomId}/game/proposeTrade")
     public void proposeTrade(@DestinationVariable String roomId, @Payload TradeOfferDTO tradeOffer) {
-        try {
-            gameService.proposeTrade(UUID.fromString(roomId), tradeOffer);
-
-            Map<String, Object> data = new HashMap<>();
-            data.put("tradeId", tradeOffer.getTradeId().toString());
-            data.put("fromPlayerId", tradeOffer.getFromPlayerId().toString());
-            data.put("toPlayerId", tradeOffer.getToPlayerId().toString());
-
-            broadcastGameEvent(roomId, "TRADE_PROPOSED", data);
-        } catch (Exception e) {
-            broadcastError(roomId, "Propose trade failed: " + e.getMessage());
-        }
+        onRoomWriter(roomId, () -> {
+            try {
+                gameService.proposeTrade(UUID.fromString(roomId), tradeOffer);
+
+                // only the two players in the trade need to see the offer
+                roomOutbox.sendToPlayers(UUID.fromString(roomId), new GameEvent.TradeProposed(tradeOffer.getTradeId(),
+                        tradeOffer.getFromPlayerId(), tradeOffer.getToPlayerId()),
+                        tradeOffer.getFromPlayerId(), tradeOffer.getToPlayerId());
+            } catch (Exception e) {
+                sendError(roomId, "Propose trade failed: " + e.getMessage());
+            }
+        });
     }
 
     @MessageMapping("/room/{roomId}/game/respondTrade")
     public void respondToTrade(@DestinationVariable String roomId, @Payload Map<String, String> payload) {
-        try {
-            UUID playerId = UUID.fromString(payload.get("playerId"));
-            UUID tradeId = UUID.fromString(payload.get("tradeId"));
-            boolean accept = Boolean.parseBoolean(payload.get("accept"));
-
-            gameService.respondToTrade(UUID.fromString(roomId), playerId, tradeId, accept);
+        onRoomWriter(roomId, () -> {
+            try {
+                UUID playerId = UUID.fromString(payload.get("playerId"));
+                UUID tradeId = UUID.fromString(payload.get("tradeId"));
+                boolean accept = Boolean.parseBoolean(payload.get("accept"));
 
-            Map<String, Object> data = new HashMap<>();
-            data.put("tradeId", tradeId.toString());
-            data.put("accepted", accept);
+                gameService.respondToTrade(UUID.fromString(roomId), playerId, tradeId, accept);
 
-            String eventType = accept ? "TRADE_COMPLETED" : "TRADE_DECLINED";
-            broadcastGameEvent(roomId, eventType, data);
-        } catch (Exception e) {
-            broadcastError(roomId, "Respond to trade failed: " + e.getMessage());
-        }
+                broadcastGameEvent(roomId, new GameEvent.TradeAnswered(tradeId, accept));
+            } catch (Exception e) {
+                sendError(roomId, "Respond to trade failed: " + e.getMessage());
+            }
+        });
     }
 
     // Auction
     @MessageMapping("/room/{roomId}/game/placeBid")
     public void placeBid(@DestinationVariable String roomId, @Payload GameActionRequest request) {
-        try {
-            gameService.placeBid(UUID.fromString(roomId), request.getPlayerId(), request.getAmount());
+        onRoomWriter(roomId, () -> {
+            try {
+                gameService.placeBid(UUID.fromString(roomId), request.getPlayerId(), request.getAmount());
 
-            Map<String, Object> data = new HashMap<>();
-            data.put("playerId", request.getPlayerId().toString());
-            data.put("amount", request.getAmount());
-
-            broadcastGameEvent(roomId, "BID_PLACED", data);
-        } catch (Exception e) {
-            broadcastError(roomId, "Place bid failed: " + e.getMessage());
-        }
+                broadcastGameEvent(roomId, new GameEvent.BidPlaced(request.getPlayerId(), request.getAmount()));
+            } catch (Exception e) {
+                sendError(roomId, "Place bid failed: " + e.getMessage());
+            }
+        });
     }
 
     @MessageMapping("/room/{roomId}/game/endAuction")
     public void endAuction(@DestinationVariable String roomId) {
-        try {
-            gameService.endAuction(UUID.fromString(roomId));
+        onRoomWriter(roomId, () -> {
+            try {
+                gameService.endAuction(UUID.fromString(roomId));
 
-            broadcastGameEvent(roomId, "AUCTION_ENDED", new HashMap<>());
-        } catch (Exception e) {
-            broadcastError(roomId, "End auction failed: " + e.getMessage());
-        }
+                broadcastGameEvent(roomId, new GameEvent.AuctionEnded());
+            } catch (Exception e) {
+                sendError(roomId, "End auction failed: " + e.getMessage());
+            }
+        });
     }
 
     // Card handling
     @MessageMapping("/room/{roomId}/game/drawCard")
     public void drawCard(@DestinationVariable String roomId, @Payload Map<String, String> payload) {
-        try {
-            UUID playerId = UUID.fromString(payload.get("playerId"));
-            String deckType = payload.get("deckType");
-
-            Card card = gameService.drawCard(UUID.fromString(roomId), playerId, deckType);
+        onRoomWriter(roomId, () -> {
+            try {
+                UUID playerId = UUID.fromString(payload.get("playerId"));
+                String deckType = payload.get("deckType");
 
-            Map<String, Object> data = new HashMap<>();
-            data.put("playerId", playerId.toString());
-            data.put("cardType", card.getCardType());
-            data.put("description", card.getDescription());
+                Card card = gameService.drawCard(UUID.fromString(roomId), playerId, deckType);
 
-            broadcastGameEvent(roomId, "CARD_DRAWN", data);
+                broadcastGameEvent(roomId, new GameEvent.CardDrawn(playerId, card.getCardType(), card.getDescription()));
 
-            // Check if card action requires liquidation
-            GameRoom room = gameService.getGameRoom(UUID.fromString(roomId));
-            checkAndBroadcastLiquidationRequired(room, roomId);
-        } catch (Exception e) {
-            broadcastError(roomId, "Draw card failed: " + e.getMessage());
-        }
+                // Check if card action requires liquidation
+                GameRoom room = gameService.getGameRoom(UUID.fromString(roomId));
+                checkAndSendLiquidationRequired(room, roomId);
+            } catch (Exception e) {
+                sendError(roomId, "Draw card failed: " + e.getMessage());
+            }
+        });
     }
 
     // Debt payment handling
     @MessageMapping("/room/{roomId}/game/payOffDebt")
     public void payOffDebt(@DestinationVariable String roomId, @Payload PayOffDebtRequest request) {
-        try {
-            gameService.payOffDebt(
-                UUID.fromString(roomId),
-                request.getPlayerId(),
-                request.getHousesToSell(),
-                request.getHotelsToSell(),
-                request.getPropertiesToMortgage(),
-                request.getCreditorId(),
-                request.getAmountOwed()
-            );
-
-            // Get updated game state
-            GameRoom room = gameService.getGameRoom(UUID.fromString(roomId));
-            GamePlayer player = room.getPlayerById(request.getPlayerId());
-
-            // Clear pending debt
-            room.clearPendingDebt();
-
-            Map<String, Object> data = new HashMap<>();
-            data.put("playerId", request.getPlayerId().toString());
-            data.put("playerMoney", player.getMoney());
-            data.put("amountPaid", request.getAmountOwed());
-            if (request.getCreditorId() != null) {
-                GamePlayer creditor = room.getPlayerById(request.getCreditorId());
-                data.put("creditorId", request.getCreditorId().toString());
-                data.put("creditorMoney", creditor.getMoney());
-            }
+        onRoomWriter(roomId, () -> {
+            try {
+                gameService.payOffDebt(
+                    UUID.fromString(roomId),
+                    request.getPlayerId(),
+                    request.getHousesToSell(),
+                    request.getHotelsToSell(),
+                    request.getPropertiesToMortgage(),
+                    request.getCreditorId(),
+                    request.getAmountOwed()
+                );
+
+                // Get updated game state
+                GameRoom room = gameService.getGameRoom(UUID.fromString(roomId));
+                GamePlayer player = room.getPlayerById(request.getPlayerId());
+
+                int creditorMoney = 0;
+                if (request.getCreditorId() != null) {
+                    creditorMoney = room.getPlayerById(request.getCreditorId()).getMoney();
+                }
 
-            broadcastGameEvent(roomId, "DEBT_PAID", data);
-        } catch (Exception e) {
-            broadcastError(roomId, "Pay off debt failed: " + e.getMessage());
-        }
+                broadcastGameEvent(roomId, new GameEvent.DebtPaid(request.getPlayerId(), player.getMoney(),
+                        request.getAmountOwed(), request.getCreditorId(), creditorMoney));
+            } catch (Exception e) {
+                sendError(roomId, "Pay off debt failed: " + e.getMessage());
+            }
+        });
     }
 
     // Helper methods
-    private void broadcastGameEvent(String roomId, String eventType, Map<String, Object> data) {
-        GameEventMessage message = GameEventMessage.builder()
-                .messageType(eventType)
-                .data(data)
-                .build();
 
-        simpMessagingTemplate.convertAndSend("/room/" + roomId, message);
+    // Runs a handler on the room's single writer, so the service call, the follow-up reads
+    // and the broadcasts for one message never interleave with another message for the same room.
+    // Everything the handler broadcasts goes out as one frame once it is done
+    private void onRoomWriter(String roomId, Runnable handler) {
+        UUID id = UUID.fromString(roomId);
+        // read here, the holder is only set on the thread that received the message
+        SimpAttributes attributes = SimpAttributesContextHolder.getAttributes();
+        String sessionId = attributes != null ? attributes.getSessionId() : null;
+        roomExecutor.execute(id, () -> roomOutbox.batch(id, sessionId, handler));
     }
 
-    private void broadcastError(String roomId, String errorMessage) {
-        Map<String, Object> data = new HashMap<>();
-        data.put("error", errorMessage);
+    private void broadcastGameEvent(String roomId, GameEvent event) {
+        roomOutbox.send(UUID.fromString(roomId), event);
+    }
 
-        broadcastGameEvent(roomId, "ERROR", data);
+    // errors go back to the session whose request failed, nobody else needs them
+    private void sendError(String roomId, String errorMessage) {
+        roomOutbox.reply(UUID.fromString(roomId), new GameEvent.Error(errorMessage));
     }
 
-    private void checkAndBroadcastLiquidationRequired(GameRoom room, String roomId) {
+    private void checkAndSendLiquidationRequired(GameRoom room, String roomId) {
         if (room.getPendingDebtAmount() != null && room.getPendingDebtPlayerId() != null) {
             GamePlayer debtor = room.getPlayerById(room.getPendingDebtPlayerId());
 
@@ -440,19 +445,15 @@ public class GameWebsocketController {
                 }
             }
 
-            Map<String, Object> data = new HashMap<>();
-            data.put("playerId", room.getPendingDebtPlayerId().toString());
-            data.put("amountOwed", room.getPendingDebtAmount());
-            data.put("currentMoney", debtor.getMoney());
-            data.put("reason", room.getPendingDebtReason());
+            String creditorName = null;
             if (room.getPendingDebtCreditorId() != null) {
-                GamePlayer creditor = room.getPlayerById(room.getPendingDebtCreditorId());
-                data.put("creditorId", room.getPendingDebtCreditorId().toString());
-                data.put("creditorName", creditor.getPlayerName());
+                creditorName = room.getPlayerById(room.getPendingDebtCreditorId()).getPlayerName();
             }
-            data.put("assets", assets);
 
-            broadcastGameEvent(roomId, "LIQUIDATION_REQUIRED", data);
+            // the asset list is only of use to the debtor
+            roomOutbox.sendToPlayers(UUID.fromString(roomId), new GameEvent.LiquidationRequired(room.getPendingDebtPlayerId(),
+                    room.getPendingDebtAmount(), debtor.getMoney(), room.getPendingDebtReason(),
+                    room.getPendingDebtCreditorId(), creditorName, assets), room.getPendingDebtPlayerId());
         }
     }
 }
@@ -1,12 +1,26 @@
 package com.monopolyInMatlab.monopoly.presentation;
 
+import com.monopolyInMatlab.monopoly.config.WireFormat;
 import com.monopolyInMatlab.monopoly.domain.CreateRoomRequest;
+import com.monopolyInMatlab.monopoly.domain.GamePhase;
 import com.monopolyInMatlab.monopoly.domain.GameRoom;
 import com.monopolyInMatlab.monopoly.domain.GamePlayer;
+import com.monopolyInMatlab.monopoly.dto.ChatPage;
+import com.monopolyInMatlab.monopoly.dto.RoomPage;
+import com.monopolyInMatlab.monopoly.dto.RoomSummary;
+import com.monopolyInMatlab.monopoly.persistence.RoomSnapshot;
+import com.monopolyInMatlab.monopoly.service.ChatService;
 import com.monopolyInMatlab.monopoly.service.RoomsService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
 
@@ -14,16 +28,95 @@ import java.util.UUID;
 @RequestMapping("/menu")
 @RequiredArgsConstructor
 public class MenuController {
+    private static final int MAX_LOBBY_PAGE_SIZE = 100;
+    private static final long MAX_POLL_TIMEOUT_MS = 60000;
+
     private final RoomsService roomsService;
+    private final ChatService chatService;
+
+    // Rooms are served as JSON, or as CBOR to clients whose Accept header asks for application/cbor.
+    // The other endpoints get the same choice from Spring's own CBOR message converter.
+
+    // served from committed snapshots, rendering never touches a room a game action may be mutating
+    @GetMapping(value = "/rooms", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<byte[]> getRooms(@RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        WireFormat format = WireFormat.negotiate(accept);
+        return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT).contentType(format.getMediaType())
+                .body(roomsService.renderAllRooms(format));
+    }
 
-    @GetMapping("/rooms")
-    public List<GameRoom> getRooms() {
-        return roomsService.getAllRooms();
+    // the ETag is the room's committed version, a client that sends it back in If-None-Match gets a 304 until the room changes
+    @GetMapping(value = "/room/{roomId}", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<byte[]> getRoom(@PathVariable("roomId") UUID roomId,
+                                          @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                          WebRequest request) {
+        RoomSnapshot snapshot = roomsService.getRoomSnapshot(roomId);
+        if (snapshot == null) {
+            return ResponseEntity.ok().build();
+        }
+        String etag = etagOf(snapshot);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        WireFormat format = WireFormat.negotiate(accept);
+        // both formats share the version as ETag, Vary keeps caches from answering one format's request with the other
+        return ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT).contentType(format.getMediaType())
+                .body(roomsService.renderRoom(snapshot, format));
     }
 
-    @GetMapping("/room/{roomId}")
-    public GameRoom getRoom(@PathVariable("roomId") UUID roomId) {
-        return roomsService.getGameRoom(roomId);
+    // long-poll: parks until the room moves past the given version, answers 304 if nothing changed before the timeout
+    @GetMapping(value = "/room/{roomId}/poll", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public DeferredResult<ResponseEntity<byte[]>> pollRoom(@PathVariable("roomId") UUID roomId,
+                                                           @RequestParam("version") long version,
+                                                           @RequestParam(value = "timeoutMs", defaultValue = "25000") long timeoutMs,
+                                                           @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        WireFormat format = WireFormat.negotiate(accept);
+        long timeout = Math.max(1, Math.min(timeoutMs, MAX_POLL_TIMEOUT_MS));
+        DeferredResult<ResponseEntity<byte[]>> result = new DeferredResult<>(timeout,
+                ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etagOf(version)).build());
+
+        Runnable cancel = roomsService.onRoomVersionAfter(roomId, version, snapshot -> {
+            if (snapshot == null) {
+                result.setResult(ResponseEntity.notFound().build());
+            } else {
+                result.setResult(ResponseEntity.ok().eTag(etagOf(snapshot)).varyBy(HttpHeaders.ACCEPT).contentType(format.getMediaType())
+                        .body(roomsService.renderRoom(snapshot, format)));
+            }
+        });
+        result.onCompletion(cancel);
+        return result;
+    }
+
+    // a page of the room's chat, the newest messages before `before` or the oldest after `after`, the latest page without either,
+    // or with `from` and/or `to` (ISO-8601) the oldest messages sent in that time range
+    @GetMapping("/room/{roomId}/chat")
+    public ChatPage getChat(@PathVariable("roomId") UUID roomId,
+                            @RequestParam(value = "before", required = false) Long before,
+                            @RequestParam(value = "after", required = false) Long after,
+                            @RequestParam(value = "from", required = false) Instant from,
+                            @RequestParam(value = "to", required = false) Instant to,
+                            @RequestParam(value = "limit", defaultValue = "50") int limit) {
+        if (from != null || to != null) {
+            return chatService.getMessagesBetween(roomId, from, to, limit);
+        }
+        return chatService.getMessages(roomId, before, after, limit);
+    }
+
+    // paged lobby listing from the summary projection, much cheaper than /rooms for the room browser
+    @GetMapping("/lobby")
+    public RoomPage getLobby(@RequestParam(value = "phase", required = false) GamePhase phase,
+                             @RequestParam(value = "cursor", required = false) String cursor,
+                             @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        return roomsService.getRoomSummaries(phase, cursor, Math.max(1, Math.min(limit, MAX_LOBBY_PAGE_SIZE)));
+    }
+
+    // rooms of this node by phase, by a player in them (e.g. to find the game to rejoin) and by name prefix, any combination
+    @GetMapping("/rooms/search")
+    public List<RoomSummary> searchRooms(@RequestParam(value = "phase", required = false) GamePhase phase,
+                                         @RequestParam(value = "playerId", required = false) UUID playerId,
+                                         @RequestParam(value = "name", required = false) String name,
+                                         @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        return roomsService.findRooms(phase, playerId, name, Math.max(1, Math.min(limit, MAX_LOBBY_PAGE_SIZE)));
     }
 
     @PostMapping("/createroom")
@@ -40,4 +133,12 @@ public class MenuController {
     public void leaveRoom(@PathVariable UUID roomId, @RequestBody UUID playerId) {
         roomsService.leaveRoom(roomId, playerId);
     }
+
+    private static String etagOf(RoomSnapshot snapshot) {
+        return etagOf(snapshot.getVersion());
+    }
+
+    private static String etagOf(long version) {
+        return "\"" + version + "\"";
+    }
 }
@@ -0,0 +1,117 @@
+package com.monopolyInMatlab.monopoly.presentation;
+
+import com.monopolyInMatlab.monopoly.cluster.ClusterLink;
+import com.monopolyInMatlab.monopoly.cluster.RoomOwnership;
+import com.monopolyInMatlab.monopoly.concurrency.RoomExecutor;
+import com.monopolyInMatlab.monopoly.config.PlayerQueueEvent;
+import com.monopolyInMatlab.monopoly.config.PlayerSessionRegistry;
+import com.monopolyInMatlab.monopoly.domain.GamePhase;
+import com.monopolyInMatlab.monopoly.domain.GameRoom;
+import com.monopolyInMatlab.monopoly.dto.GameEvent;
+import com.monopolyInMatlab.monopoly.persistence.RoomRepository;
+import com.monopolyInMatlab.monopoly.service.GameService;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Turns a player's lost connection into GameService.handlePlayerDisconnect, after a grace period
+ * (monopoly.session.disconnect-grace-ms) in which the player may reconnect, on this node or any other.
+ *
+ * When the grace period is over the player is only disconnected if none of their sessions is subscribed to
+ * its player queue any more and their game is still running. In a cluster the room's owner does that check
+ * and the disconnect, the node the session was on sends it a PLAYER_GONE.
+ */
+@Component
+public class PlayerDisconnects {
+    private final GameService gameService;
+    private final RoomRepository roomRepository;
+    private final RoomExecutor roomExecutor;
+    private final RoomOutbox roomOutbox;
+    private final PlayerSessionRegistry playerSessionRegistry;
+    private final RoomOwnership roomOwnership;
+    private final ClusterLink clusterLink;
+    // the broker's scheduler, defined by the WebSocket configuration which needs beans that need this one
+    private final TaskScheduler taskScheduler;
+    private final long gracePeriodMs;
+    private final ConcurrentMap<UUID, ScheduledFuture<?>> pending = new ConcurrentHashMap<>();
+
+    public PlayerDisconnects(GameService gameService, RoomRepository roomRepository, RoomExecutor roomExecutor,
+                             RoomOutbox roomOutbox, PlayerSessionRegistry playerSessionRegistry,
+                             RoomOwnership roomOwnership, ClusterLink clusterLink,
+                             @Lazy @Qualifier("messageBrokerTaskScheduler") TaskScheduler taskScheduler,
+                             @Value("${monopoly.session.disconnect-grace-ms:30000}") long gracePeriodMs) {
+        this.gameService = gameService;
+        this.roomRepository = roomRepository;
+        this.roomExecutor = roomExecutor;
+        this.roomOutbox = roomOutbox;
+        this.playerSessionRegistry = playerSessionRegistry;
+        this.roomOwnership = roomOwnership;
+        this.clusterLink = clusterLink;
+        this.taskScheduler = taskScheduler;
+        this.gracePeriodMs = gracePeriodMs;
+    }
+
+    /**
+     * A session of the player has ended, starts their grace period unless one is already running.
+     */
+    public void sessionEnded(UUID roomId, UUID playerId) {
+        pending.computeIfAbsent(playerId, id -> {
+            System.out.println("Player " + playerId + " lost a connection, disconnecting them in " + gracePeriodMs + " ms unless they are back");
+            return taskScheduler.schedule(() -> {
+                pending.remove(playerId);
+                expire(roomId, playerId, false);
+            }, Instant.now().plusMillis(gracePeriodMs));
+        });
+    }
+
+    @EventListener
+    public void onPlayerQueue(PlayerQueueEvent event) {
+        if (event.subscribed() && event.playerId() != null) {
+            ScheduledFuture<?> disconnect = pending.remove(event.playerId());
+            if (disconnect != null) {
+                disconnect.cancel(false);
+                System.out.println("Player " + event.playerId() + " reconnected within the grace period");
+            }
+        }
+    }
+
+    /**
+     * Disconnects the player if they still have no session. forwarded is true on the owner a PLAYER_GONE was sent to.
+     */
+    public void expire(UUID roomId, UUID playerId, boolean forwarded) {
+        // sessions on other nodes are registered too, a reconnect anywhere counts
+        if (!playerSessionRegistry.sessionsOf(playerId).isEmpty()) {
+            return;
+        }
+        if (!roomOwnership.isLocal(roomId)) {
+            // forwarded once only, nodes that don't agree on the ring yet must not bounce it between them
+            if (forwarded) {
+                System.out.println("Dropped disconnect of player " + playerId + ", room " + roomId + " moved on");
+            } else {
+                clusterLink.playerGone(roomOwnership.ownerOf(roomId), roomId, playerId);
+            }
+            return;
+        }
+
+        roomExecutor.execute(roomId, () -> roomOutbox.batch(roomId, null, () -> {
+            GameRoom room = roomRepository.findGameRoomById(roomId);
+            // only a running game ends, a lobby keeps waiting and a finished game has nothing left to end
+            if (room == null || room.getGamePhase() != GamePhase.IN_PROGRESS || room.getPlayerById(playerId) == null) {
+                return;
+            }
+            System.out.println("Player " + playerId + " did not come back, ending the game in room " + roomId);
+            gameService.handlePlayerDisconnect(roomId, playerId);
+            roomOutbox.send(roomId, new GameEvent.GameOver(gameService.getGameRoom(roomId).getWinnerId()));
+        }));
+    }
+}
@@ -0,0 +1,418 @@
+package com.monopolyInMatlab.monopoly.presentation;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.monopolyInMatlab.monopoly.concurrency.RoomExecutor;
+import com.monopolyInMatlab.monopoly.config.PlayerSessionRegistry;
+import com.monopolyInMatlab.monopoly.domain.GameRoom;
+import com.monopolyInMatlab.monopoly.dto.GameEvent;
+import com.monopolyInMatlab.monopoly.dto.GameEventMessage;
+import com.monopolyInMatlab.monopoly.persistence.RoomCommits;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Everything sent to /room/{roomId}, and to the player queues of the room's players, goes through here.
+ *
+ * While an inbound action is being handled, the messages it produces (state deltas included) are collected
+ * and go out together when the action is done, so one action costs one STOMP frame and one fan-out to the
+ * room's subscribers instead of one per event. Several messages are wrapped as
+ *   {"messageType":"EVENT_BATCH","data":{"events":[message, message, ...]}}
+ * in the order they were sent, except that the action's room states (see sendState) come first. A single message
+ * goes out unwrapped, and messages sent outside an action (e.g. REST joins) go out straight away.
+ *
+ * Every frame sent to a room is numbered and kept for a while by RoomReplayBuffer, see resume.
+ *
+ * Messages for single players (see PlayerSessionRegistry) are batched the same way per session, and go out
+ * after the room frame so they never arrive ahead of the state they refer to. A player without a subscribed
+ * player queue gets them through the room instead, like before there were player queues.
+ *
+ * Each message is rendered to JSON when it is sent, not when the batch is flushed, so it shows the room
+ * as it was at that point even if the action changes the room again afterwards.
+ *
+ * Frames are held back until the journal writes of the action that sent them are durable (see RoomCommits),
+ * clients never hear of a change a restart could lose. If a write fails, the action's frames are dropped and
+ * its session gets an ERROR instead. A room's frames always go out in the order they were sent, frames sent
+ * after held back ones wait for them. A frame the broker won't take is logged and lost, like one sent while a
+ * client is disconnected, the change it was about is committed all the same.
+ */
+@Component
+public class RoomOutbox {
+    public static final String STREAM_HEADER = "room-stream";
+    public static final String SEQ_HEADER = "room-seq";
+    private static final byte[] BATCH_PREFIX = "{\"messageType\":\"EVENT_BATCH\",\"data\":{\"events\":[".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] BATCH_SUFFIX = "]}}".getBytes(StandardCharsets.UTF_8);
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+    // the batch of the action running on this thread, actions run on their room's writer from start to end
+    private static final ThreadLocal<Batch> currentBatch = new ThreadLocal<>();
+    // GameEvents are written here first, it keeps its segments between events so only the result is allocated
+    private static final ThreadLocal<ByteArrayBuilder> eventBuffer = ThreadLocal.withInitial(ByteArrayBuilder::new);
+
+    private final SimpMessagingTemplate simpMessagingTemplate;
+    // frames for one subscription of one session go here directly, the broker would send them to every subscriber
+    private final MessageChannel clientOutboundChannel;
+    private final ObjectMapper objectMapper;
+    private final PlayerSessionRegistry playerSessionRegistry;
+    private final RoomReplayBuffer roomReplayBuffer;
+    private final RoomCommits roomCommits;
+    private final RoomExecutor roomExecutor;
+    // per room, the frames sent last if they are still held back, the room's next frames go out after them
+    private final ConcurrentMap<UUID, CompletableFuture<Void>> heldBack = new ConcurrentHashMap<>();
+
+    public RoomOutbox(SimpMessagingTemplate simpMessagingTemplate,
+                      @Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel, ObjectMapper objectMapper,
+                      PlayerSessionRegistry playerSessionRegistry, RoomReplayBuffer roomReplayBuffer,
+                      RoomCommits roomCommits, RoomExecutor roomExecutor) {
+        this.simpMessagingTemplate = simpMessagingTemplate;
+        this.clientOutboundChannel = clientOutboundChannel;
+        this.objectMapper = objectMapper;
+        this.playerSessionRegistry = playerSessionRegistry;
+        this.roomReplayBuffer = roomReplayBuffer;
+        this.roomCommits = roomCommits;
+        this.roomExecutor = roomExecutor;
+    }
+
+    /**
+     * Runs one inbound action for a room and publishes everything it sent as one frame, even if it throws.
+     * sessionId is the session the action came from, replies go there, it may be null.
+     */
+    public void batch(UUID roomId, String sessionId, Runnable action) {
+        if (currentBatch.get() != null) {
+            // nested inside another action, its messages join the outer batch
+            action.run();
+            return;
+        }
+
+        Batch batch = new Batch(roomId, sessionId);
+        currentBatch.set(batch);
+        CompletableFuture<Void> written = DONE;
+        try {
+            written = roomCommits.run(action);
+        } finally {
+            currentBatch.remove();
+            sendWhenWritten(roomId, written, () -> flush(batch), failure -> {
+                System.out.println("Dropped the frames of an action in room " + roomId + ", " + failure.getMessage());
+                GameEvent.Error error = new GameEvent.Error("Saving the action failed: " + failure.getMessage());
+                if (sessionId != null && playerSessionRegistry.hasPlayerQueue(sessionId)) {
+                    publishDirect(sessionId, render(roomId, error));
+                } else {
+                    publishToRoom(roomId, render(roomId, error));
+                }
+            });
+        }
+    }
+
+    public void send(UUID roomId, Object message) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(message);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not render message for room " + roomId, e);
+        }
+        enqueue(roomId, json);
+    }
+
+    /**
+     * Sends a STATE_KEYFRAME or STATE_DELTA. Room states are only announced once the action that committed them
+     * is done, inside an action they still go ahead of the action's other messages, so clients apply the state
+     * before the events that refer to it.
+     */
+    public void sendState(UUID roomId, Object message) {
+        Batch batch = currentBatch.get();
+        if (batch == null || !batch.roomId().equals(roomId)) {
+            send(roomId, message);
+            return;
+        }
+        try {
+            batch.states().add(objectMapper.writeValueAsBytes(message));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not render message for room " + roomId, e);
+        }
+    }
+
+    /**
+     * Sends a game event, written by the event itself instead of through the ObjectMapper.
+     */
+    public void send(UUID roomId, GameEvent event) {
+        enqueue(roomId, render(roomId, event));
+    }
+
+    /**
+     * Sends a game event only to the given players of the room. If one of them has no player queue,
+     * it goes to the whole room instead, so that player still gets it.
+     */
+    public void sendToPlayers(UUID roomId, GameEvent event, UUID... playerIds) {
+        Set<String> sessions = new LinkedHashSet<>();
+        for (UUID playerId : playerIds) {
+            Set<String> playerSessions = playerSessionRegistry.sessionsOf(playerId);
+            if (playerSessions.isEmpty()) {
+                send(roomId, event);
+                return;
+            }
+            sessions.addAll(playerSessions);
+        }
+
+        byte[] json = render(roomId, event);
+        for (String sessionId : sessions) {
+            enqueueDirect(roomId, sessionId, json);
+        }
+    }
+
+    /**
+     * Sends a game event only to the session whose action is running, e.g. an error caused by its request.
+     * Goes to the whole room if there is no such session or it has no player queue.
+     */
+    public void reply(UUID roomId, GameEvent event) {
+        Batch batch = currentBatch.get();
+        String sessionId = batch != null ? batch.sessionId() : null;
+        if (sessionId == null || !playerSessionRegistry.hasPlayerQueue(sessionId)) {
+            send(roomId, event);
+            return;
+        }
+        enqueueDirect(roomId, sessionId, render(roomId, event));
+    }
+
+    /**
+     * Catches up the session whose action is running on the room frames it missed since lastSeq of stream,
+     * with the frames themselves while the room still has them and with the snapshot otherwise. They keep
+     * their room-stream and room-seq headers, the snapshot gets the room's latest ones.
+     * Runs on the room's writer, so the snapshot matches the frames sent before it.
+     */
+    public void resume(UUID roomId, String stream, long lastSeq, Supplier<Object> snapshot) {
+        Batch batch = currentBatch.get();
+        String sessionId = batch != null ? batch.sessionId() : null;
+        // without a player queue there is no way to reach the session alone, others drop frames they already have
+        boolean direct = sessionId != null && playerSessionRegistry.hasPlayerQueue(sessionId);
+        String destination = direct ? "/player/" + sessionId + PlayerSessionRegistry.PLAYER_QUEUE : "/room/" + roomId;
+        String target = direct ? sessionId : null;
+
+        if (stream != null && roomReplayBuffer.replay(roomId, stream, lastSeq,
+                (frameStream, seq, frame) -> publish(destination, target, frame, frameStream, seq))) {
+            return;
+        }
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(snapshot.get());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not render snapshot for room " + roomId, e);
+        }
+        // the snapshot may show changes whose frames are still held back, it goes out after them
+        sendInOrder(roomId, () -> {
+            RoomReplayBuffer.Position position = roomReplayBuffer.position(roomId);
+            publish(destination, target, json, position.stream(), position.seq());
+        });
+    }
+
+    /**
+     * Sends the room's latest state as a STATE_KEYFRAME to one session only, e.g. one whose room frames were held
+     * back while it lagged. It goes to the session's player queue, or without one to the session's own subscription
+     * of the room, the one the room frames it missed were for. Runs on the room's writer, like resume.
+     */
+    public void sendKeyframe(GameRoom room, String sessionId, String subscriptionId) {
+        UUID roomId = room.getRoomId();
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(keyframe(room));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not render snapshot for room " + roomId, e);
+        }
+        // like resume, after the frames of the changes it shows
+        sendInOrder(roomId, () -> publishKeyframe(roomId, json, sessionId, subscriptionId));
+    }
+
+    private void publishKeyframe(UUID roomId, byte[] json, String sessionId, String subscriptionId) {
+        RoomReplayBuffer.Position position = roomReplayBuffer.position(roomId);
+        if (playerSessionRegistry.hasPlayerQueue(sessionId)) {
+            publish("/player/" + sessionId + PlayerSessionRegistry.PLAYER_QUEUE, sessionId, json, position.stream(), position.seq());
+            return;
+        }
+
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setDestination("/room/" + roomId);
+        headers.setSessionId(sessionId);
+        headers.setSubscriptionId(subscriptionId);
+        headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        headers.setNativeHeader(STREAM_HEADER, position.stream());
+        headers.setNativeHeader(SEQ_HEADER, Long.toString(position.seq()));
+        headers.setLeaveMutable(true);
+        clientOutboundChannel.send(MessageBuilder.createMessage(json, headers.getMessageHeaders()));
+    }
+
+    /**
+     * The STATE_KEYFRAME of a room, its whole state and the version it is at.
+     */
+    public static GameEventMessage keyframe(GameRoom room) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("version", room.getVersion());
+        data.put("room", room);
+        return GameEventMessage.builder().messageType("STATE_KEYFRAME").data(data).build();
+    }
+
+    private byte[] render(UUID roomId, GameEvent event) {
+        ByteArrayBuilder buffer = eventBuffer.get();
+        buffer.reset();
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(buffer)) {
+            json.writeStartObject();
+            json.writeStringField("messageType", event.messageType());
+            json.writeFieldName("data");
+            json.writeStartObject();
+            event.writeData(json);
+            json.writeEndObject();
+            json.writeEndObject();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not render " + event.messageType() + " for room " + roomId, e);
+        }
+        return buffer.toByteArray();
+    }
+
+    // outside a batch a message still waits for the writes queued so far on this thread, e.g. by a REST join
+    private void enqueue(UUID roomId, byte[] json) {
+        Batch batch = currentBatch.get();
+        if (batch != null && batch.roomId().equals(roomId)) {
+            batch.messages().add(json);
+        } else {
+            sendWhenWritten(roomId, roomCommits.pending(), () -> publishToRoom(roomId, json),
+                    failure -> System.out.println("Dropped a frame of room " + roomId + ", " + failure.getMessage()));
+        }
+    }
+
+    private void enqueueDirect(UUID roomId, String sessionId, byte[] json) {
+        Batch batch = currentBatch.get();
+        if (batch != null && batch.roomId().equals(roomId)) {
+            batch.direct().computeIfAbsent(sessionId, id -> new ArrayList<>()).add(json);
+        } else {
+            sendWhenWritten(roomId, roomCommits.pending(), () -> publishDirect(sessionId, json),
+                    failure -> System.out.println("Dropped a frame of room " + roomId + ", " + failure.getMessage()));
+        }
+    }
+
+    // nothing of its own to wait for, only the room's frames held back before
+    private void sendInOrder(UUID roomId, Runnable send) {
+        sendWhenWritten(roomId, DONE, send, failure -> {
+        });
+    }
+
+    /**
+     * Runs send once written has completed and the room's frames held back before have gone out, or onFailure
+     * if written failed. Straight away when there is nothing to wait for, which without a journal is always.
+     * Otherwise on the room's writer, so frames sent meanwhile by the room's actions queue up behind these.
+     */
+    private void sendWhenWritten(UUID roomId, CompletableFuture<Void> written, Runnable send, Consumer<Throwable> onFailure) {
+        CompletableFuture<Void> sent = new CompletableFuture<>();
+        CompletableFuture<Void> before = heldBack.put(roomId, sent);
+        Runnable sendOrFail = () -> {
+            try {
+                Throwable failure = written.handle((ignored, e) -> e).join();
+                if (failure == null) {
+                    send.run();
+                } else {
+                    onFailure.accept(failure instanceof CompletionException && failure.getCause() != null
+                            ? failure.getCause() : failure);
+                }
+            } finally {
+                sent.complete(null);
+                heldBack.remove(roomId, sent);
+            }
+        };
+        if ((before == null || before.isDone()) && written.isDone()) {
+            sendOrFail.run();
+            return;
+        }
+        // the frames before only ever complete normally, written may not, either way these go next
+        CompletableFuture<Void> ready = before == null ? written : CompletableFuture.allOf(before, written);
+        ready.whenComplete((ignored, e) -> roomExecutor.execute(roomId, sendOrFail));
+    }
+
+    private void flush(Batch batch) {
+        if (!batch.states().isEmpty()) {
+            batch.messages().addAll(0, batch.states());
+        }
+        if (!batch.messages().isEmpty()) {
+            publishToRoom(batch.roomId(), frame(batch.messages()));
+        }
+        for (Map.Entry<String, List<byte[]>> session : batch.direct().entrySet()) {
+            publishDirect(session.getKey(), frame(session.getValue()));
+        }
+    }
+
+    private static byte[] frame(List<byte[]> messages) {
+        if (messages.size() == 1) {
+            return messages.get(0);
+        }
+
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        frame.writeBytes(BATCH_PREFIX);
+        for (int i = 0; i < messages.size(); i++) {
+            if (i > 0) {
+                frame.write(',');
+            }
+            frame.writeBytes(messages.get(i));
+        }
+        frame.writeBytes(BATCH_SUFFIX);
+        return frame.toByteArray();
+    }
+
+    private void publishToRoom(UUID roomId, byte[] json) {
+        roomReplayBuffer.append(roomId, json, (stream, seq, frame) -> publish("/room/" + roomId, null, frame, stream, seq));
+    }
+
+    // sessions have no user name, so the session id stands in for it and is also set as the message's session
+    private void publishDirect(String sessionId, byte[] json) {
+        publish("/player/" + sessionId + PlayerSessionRegistry.PLAYER_QUEUE, sessionId, json, null, 0);
+    }
+
+    // already JSON, so it bypasses the template's converters. Room frames carry their stream and sequence number
+    private void publish(String destination, String sessionId, byte[] json, String stream, long seq) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        if (sessionId != null) {
+            headers.setSessionId(sessionId);
+        }
+        if (stream != null) {
+            headers.setNativeHeader(STREAM_HEADER, stream);
+            headers.setNativeHeader(SEQ_HEADER, Long.toString(seq));
+        }
+        headers.setLeaveMutable(true);
+        try {
+            simpMessagingTemplate.send(destination, MessageBuilder.createMessage(json, headers.getMessageHeaders()));
+        } catch (MessagingException e) {
+            // e.g. the broker relay is down, clients catch up by resuming once it is back
+            System.out.println("Could not send a frame to " + destination + ": " + e.getMessage());
+        }
+    }
+
+    private record Batch(UUID roomId, String sessionId, List<byte[]> states, List<byte[]> messages,
+                         Map<String, List<byte[]>> direct) {
+        Batch(UUID roomId, String sessionId) {
+            this(roomId, sessionId, new ArrayList<>(), new ArrayList<>(), new LinkedHashMap<>());
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.monopolyInMatlab.monopoly.presentation;
+
+import com.monopolyInMatlab.monopoly.persistence.RoomRemovedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Numbers the frames sent to each /room/{roomId} and keeps the most recent ones, so a client that reconnects
+ * can get just the frames it missed instead of the whole room (see RoomOutbox.resume).
+ *
+ * Every frame carries a room-stream and a room-seq header. Sequence numbers go up by one per frame within a
+ * stream. A room gets a new stream whenever its numbering starts over, when this server restarts or the room
+ * moves to another node, so a client can't mistake one stream's numbers for another's.
+ *
+ * Each room keeps at most monopoly.rooms.replay.frames frames and monopoly.rooms.replay.max-bytes bytes of them,
+ * older frames drop out and a client that missed those gets a snapshot instead.
+ */
+@Component
+public class RoomReplayBuffer {
+    private final int maxFrames;
+    private final long maxBytes;
+    private final ConcurrentMap<UUID, Ring> rings = new ConcurrentHashMap<>();
+
+    public RoomReplayBuffer(@Value("${monopoly.rooms.replay.frames:64}") int maxFrames,
+                            @Value("${monopoly.rooms.replay.max-bytes:65536}") long maxBytes) {
+        if (maxFrames < 1) {
+            throw new IllegalStateException("monopoly.rooms.replay.frames must be at least 1");
+        }
+        this.maxFrames = maxFrames;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Numbers a room frame, keeps it and hands it to the sender, all under the room's lock,
+     * so frames are sent in the order they are numbered.
+     */
+    public void append(UUID roomId, byte[] frame, FrameSender sender) {
+        Ring ring = rings.computeIfAbsent(roomId, id -> new Ring(maxFrames));
+        synchronized (ring) {
+            long seq = ring.add(frame, maxBytes);
+            sender.send(ring.stream, seq, frame);
+        }
+    }
+
+    /**
+     * Calls the sender with every frame of the stream after lastSeq, in order, and returns true.
+     * Returns false without sending anything if some of them are gone or the client's stream is not the room's.
+     * Either way the frames sent after this call are numbered from where the sender left off.
+     */
+    public boolean replay(UUID roomId, String stream, long lastSeq, FrameSender sender) {
+        Ring ring = rings.computeIfAbsent(roomId, id -> new Ring(maxFrames));
+        List<byte[]> missed;
+        long firstMissed = lastSeq + 1;
+        synchronized (ring) {
+            if (!ring.stream.equals(stream) || lastSeq > ring.lastSeq || firstMissed < ring.firstSeq) {
+                return false;
+            }
+            missed = ring.since(firstMissed);
+            // sent under the lock, so no new frame gets in between the missed ones
+            for (int i = 0; i < missed.size(); i++) {
+                sender.send(ring.stream, firstMissed + i, missed.get(i));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The room's stream and the number of its last frame, what a snapshot sent now is up to date with.
+     */
+    public Position position(UUID roomId) {
+        Ring ring = rings.computeIfAbsent(roomId, id -> new Ring(maxFrames));
+        synchronized (ring) {
+            return new Position(ring.stream, ring.lastSeq);
+        }
+    }
+
+    // a room that comes back, e.g. handed back to this node, starts a new stream
+    @EventListener
+    public void onRoomRemoved(RoomRemovedEvent event) {
+        rings.remove(event.roomId());
+    }
+
+    @FunctionalInterface
+    public interface FrameSender {
+        void send(String stream, long seq, byte[] frame);
+    }
+
+    public record Position(String stream, long seq) {
+    }
+
+    // frames firstSeq..lastSeq live at seq % capacity, the rest of the slots are empty
+    private static final class Ring {
+        private final String stream = UUID.randomUUID().toString();
+        private final byte[][] frames;
+        private long firstSeq = 1;
+        private long lastSeq = 0;
+        private long bytes;
+
+        Ring(int capacity) {
+            frames = new byte[capacity][];
+        }
+
+        long add(byte[] frame, long maxBytes) {
+            long seq = ++lastSeq;
+            if (seq - firstSeq >= frames.length) {
+                dropOldest();
+            }
+            frames[slot(seq)] = frame;
+            bytes += frame.length;
+            // the newest frame always stays, even if it alone is over the limit
+            while (bytes > maxBytes && firstSeq < seq) {
+                dropOldest();
+            }
+            return seq;
+        }
+
+        List<byte[]> since(long seq) {
+            List<byte[]> result = new ArrayList<>((int) (lastSeq - seq + 1));
+            for (long i = seq; i <= lastSeq; i++) {
+                result.add(frames[slot(i)]);
+            }
+            return result;
+        }
+
+        private void dropOldest() {
+            int slot = slot(firstSeq);
+            bytes -= frames[slot].length;
+            frames[slot] = null;
+            firstSeq++;
+        }
+
+        private int slot(long seq) {
+            return (int) (seq % frames.length);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.monopolyInMatlab.monopoly.presentation;
+
+import com.monopolyInMatlab.monopoly.domain.*;
+import com.monopolyInMatlab.monopoly.dto.GameEventMessage;
+import com.monopolyInMatlab.monopoly.persistence.RoomCommittedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Streams every committed room version to /room/{roomId}, so clients can keep their copy of the room
+ * up to date without fetching the whole room over REST after each event.
+ *
+ * STATE_DELTA carries only what changed since baseVersion: room level fields, changed fields of each player
+ * (new players in full), and the owner/mortgage/building state of changed board spaces. Field names are the
+ * ones the room JSON uses. A client whose version isn't baseVersion has missed a frame and should refetch.
+ *
+ * STATE_KEYFRAME carries the whole room. It is sent for a room's first version, after a gap in versions or when
+ * the version before is no longer at hand, and every keyframe-interval versions, so late subscribers catch up
+ * without a REST call either.
+ *
+ * Chat history isn't part of deltas, new messages already go out as CHAT_MESSAGE.
+ * Nothing is sent for rooms loaded after a restart, clients that come back ask for the room or resume.
+ */
+@Component
+public class RoomStateBroadcaster {
+    private final RoomOutbox roomOutbox;
+    private final int keyframeInterval;
+
+    public RoomStateBroadcaster(RoomOutbox roomOutbox,
+                                @Value("${monopoly.rooms.keyframe-interval:20}") int keyframeInterval) {
+        this.roomOutbox = roomOutbox;
+        this.keyframeInterval = keyframeInterval;
+    }
+
+    // runs on the thread that stored the room once its action is done, the room's writer for game actions,
+    // so frames go out in version order
+    @EventListener
+    public void onRoomCommitted(RoomCommittedEvent event) {
+        if (event.replayed()) {
+            return;
+        }
+        GameRoom room = event.room();
+        long version = event.snapshot().getVersion();
+
+        // the previous version is gone if its snapshot had dropped its bytes, see RoomSnapshots
+        GameRoom previous = event.previous() != null && event.previous().getVersion() == version - 1
+                && (keyframeInterval <= 0 || version % keyframeInterval != 0) ? event.previous().toRoom() : null;
+        if (previous == null) {
+            Map<String, Object> data = new HashMap<>();
+            data.put("version", version);
+            // rendered to JSON as it is sent, before the writer can touch the room again
+            data.put("room", room);
+            send(room.getRoomId(), "STATE_KEYFRAME", data);
+            return;
+        }
+
+        send(room.getRoomId(), "STATE_DELTA", delta(previous, room, version));
+    }
+
+    private Map<String, Object> delta(GameRoom before, GameRoom after, long version) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("baseVersion", version - 1);
+        data.put("version", version);
+
+        Map<String, Object> roomChanges = changedFields(roomState(before), roomState(after));
+        if (!roomChanges.isEmpty()) {
+            data.put("room", roomChanges);
+        }
+
+        List<Object> playerChanges = new ArrayList<>();
+        List<UUID> playerOrder = new ArrayList<>();
+        for (GamePlayer player : after.getGamePlayers()) {
+            playerOrder.add(player.getPlayerId());
+            GamePlayer previous = before.getPlayerById(player.getPlayerId());
+            if (previous == null) {
+                playerChanges.add(player);
+                continue;
+            }
+            Map<String, Object> changes = changedFields(playerState(previous), playerState(player));
+            if (!changes.isEmpty()) {
+                changes.put("playerId", player.getPlayerId());
+                playerChanges.add(changes);
+            }
+        }
+        if (!playerChanges.isEmpty()) {
+            data.put("players", playerChanges);
+        }
+
+        List<UUID> previousOrder = new ArrayList<>();
+        for (GamePlayer player : before.getGamePlayers()) {
+            previousOrder.add(player.getPlayerId());
+        }
+        // currentPlayerIndex points into this list, so clients need the new order whenever it changes
+        if (!playerOrder.equals(previousOrder)) {
+            data.put("playerOrder", playerOrder);
+        }
+
+        List<Object> spaceChanges = new ArrayList<>();
+        int spaceCount = Math.min(before.getBoardSpaces().size(), after.getBoardSpaces().size());
+        for (int i = 0; i < spaceCount; i++) {
+            Map<String, Object> changes = changedFields(spaceState(before.getBoardSpaces().get(i)),
+                    spaceState(after.getBoardSpaces().get(i)));
+            if (!changes.isEmpty()) {
+                changes.put("position", after.getBoardSpaces().get(i).getPosition());
+                spaceChanges.add(changes);
+            }
+        }
+        if (!spaceChanges.isEmpty()) {
+            data.put("spaces", spaceChanges);
+        }
+        return data;
+    }
+
+    private void send(UUID roomId, String eventType, Map<String, Object> data) {
+        GameEventMessage message = GameEventMessage.builder()
+                .messageType(eventType)
+                .data(data)
+                .build();
+
+        roomOutbox.sendState(roomId, message);
+    }
+
+    // the fields of after that differ from before, null values included so clients can clear them
+    private static Map<String, Object> changedFields(Map<String, Object> before, Map<String, Object> after) {
+        Map<String, Object> changes = new HashMap<>();
+        for (Map.Entry<String, Object> field : after.entrySet()) {
+            if (!Objects.equals(before.get(field.getKey()), field.getValue())) {
+                changes.put(field.getKey(), field.getValue());
+            }
+        }
+        return changes;
+    }
+
+    private static Map<String, Object> roomState(GameRoom room) {
+        Map<String, Object> state = new HashMap<>();
+        state.put("roomName", room.getRoomName());
+        state.put("started", room.isStarted());
+        state.put("gamePhase", room.getGamePhase());
+        state.put("currentPlayerIndex", room.getCurrentPlayerIndex());
+        state.put("lastDiceRoll", room.getLastDiceRoll() == null ? null
+                : Arrays.stream(room.getLastDiceRoll()).boxed().toList());
+        state.put("doublesCount", room.getDoublesCount());
+        state.put("chanceCards", room.getChanceCards());
+        state.put("communityChestCards", room.getCommunityChestCards());
+        state.put("chanceCardIndex", room.getChanceCardIndex());
+        state.put("communityChestCardIndex", room.getCommunityChestCardIndex());
+        state.put("currentAuction", room.getCurrentAuction());
+        state.put("currentTrade", room.getCurrentTrade());
+        state.put("winnerId", room.getWinnerId());
+        state.put("totalHousesRemaining", room.getTotalHousesRemaining());
+        state.put("totalHotelsRemaining", room.getTotalHotelsRemaining());
+        state.put("pendingDebtPlayerId", room.getPendingDebtPlayerId());
+        state.put("pendingDebtAmount", room.getPendingDebtAmount());
+        state.put("pendingDebtCreditorId", room.getPendingDebtCreditorId());
+        state.put("pendingDebtReason", room.getPendingDebtReason());
+        return state;
+    }
+
+    private static Map<String, Object> playerState(GamePlayer player) {
+        Map<String, Object> state = new HashMap<>();
+        state.put("playerName", player.getPlayerName());
+        state.put("position", player.getPosition());
+        state.put("money", player.getMoney());
+        state.put("ownedPropertyPositions", player.getOwnedPropertyPositions());
+        state.put("inJail", player.isInJail());
+        state.put("jailTurns", player.getJailTurns());
+        state.put("getOutOfJailCards", player.getGetOutOfJailCards());
+        state.put("bankrupt", player.isBankrupt());
+        state.put("colorGroupCounts", player.getColorGroupCounts());
+        state.put("totalHouses", player.getTotalHouses());
+        state.put("totalHotels", player.getTotalHotels());
+        return state;
+    }
+
+    // only the parts of a space that can change during a game
+    private static Map<String, Object> spaceState(BoardSpace space) {
+        Map<String, Object> state = new HashMap<>();
+        if (space instanceof PropertySpace property) {
+            state.put("ownerId", property.getOwnerId());
+            state.put("mortgaged", property.isMortgaged());
+            state.put("housesBuilt", property.getHousesBuilt());
+            state.put("hasHotel", property.isHasHotel());
+        } else if (space instanceof RailroadSpace railroad) {
+            state.put("ownerId", railroad.getOwnerId());
+            state.put("mortgaged", railroad.isMortgaged());
+        } else if (space instanceof UtilitySpace utility) {
+            state.put("ownerId", utility.getOwnerId());
+            state.put("mortgaged", utility.isMortgaged());
+        }
+        return state;
+    }
+}
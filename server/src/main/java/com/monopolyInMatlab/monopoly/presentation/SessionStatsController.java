@@ -0,0 +1,33 @@
+package com.monopolyInMatlab.monopoly.presentation;
+
+import com.monopolyInMatlab.monopoly.config.ActionRateLimiter;
+import com.monopolyInMatlab.monopoly.config.SlowConsumerPolicy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Comparator;
+import java.util.List;
+
+@RestController
+@RequestMapping("/stats")
+@RequiredArgsConstructor
+public class SessionStatsController {
+    private final SlowConsumerPolicy slowConsumerPolicy;
+    private final ActionRateLimiter actionRateLimiter;
+
+    // this node's sessions with frames waiting to be written, most backed up first
+    @GetMapping("/sessions/outbound")
+    public List<SlowConsumerPolicy.SessionStats> getOutboundQueues() {
+        List<SlowConsumerPolicy.SessionStats> stats = slowConsumerPolicy.getStats();
+        stats.sort(Comparator.comparingInt(SlowConsumerPolicy.SessionStats::queuedFrames).reversed());
+        return stats;
+    }
+
+    // frames each action class let through and rejected since startup
+    @GetMapping("/rate-limits")
+    public List<ActionRateLimiter.ActionStats> getRateLimits() {
+        return actionRateLimiter.getStats();
+    }
+}
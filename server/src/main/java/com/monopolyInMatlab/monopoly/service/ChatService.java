@@ -1,11 +1,17 @@
 package com.monopolyInMatlab.monopoly.service;
 
 import com.monopolyInMatlab.monopoly.domain.ChatMessage;
+import com.monopolyInMatlab.monopoly.dto.ChatPage;
 
-import java.util.List;
+import java.time.Instant;
 import java.util.UUID;
 
 public interface ChatService {
     ChatMessage sendMessage(UUID roomId, UUID playerId, String playerName, String message);
-    List<ChatMessage> getMessageHistory(UUID roomId);
+
+    // the newest messages before seq, or with afterSeq set the oldest ones after it, null for both gives the latest page
+    ChatPage getMessages(UUID roomId, Long beforeSeq, Long afterSeq, int limit);
+
+    // the oldest messages sent from `from` until before `to`, either may be null
+    ChatPage getMessagesBetween(UUID roomId, Instant from, Instant to, int limit);
 }
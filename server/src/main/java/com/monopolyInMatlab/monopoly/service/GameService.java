@@ -1,6 +1,7 @@
 package com.monopolyInMatlab.monopoly.service;
 
 import com.monopolyInMatlab.monopoly.domain.Card;
+import com.monopolyInMatlab.monopoly.domain.GameCommand;
 import com.monopolyInMatlab.monopoly.domain.GameRoom;
 import com.monopolyInMatlab.monopoly.dto.TradeOfferDTO;
 
@@ -54,4 +55,7 @@ public interface GameService {
     // Game state
     GameRoom getGameRoom(UUID roomId);
     void handlePlayerDisconnect(UUID roomId, UUID playerId);
+
+    // Recovery, applies a command read back from the journal to a copy of its room, the journal stores the result
+    void replayCommand(GameRoom room, GameCommand command);
 }
@@ -1,11 +1,17 @@
 package com.monopolyInMatlab.monopoly.service;
 
+import com.monopolyInMatlab.monopoly.config.WireFormat;
 import com.monopolyInMatlab.monopoly.domain.CreateRoomRequest;
+import com.monopolyInMatlab.monopoly.domain.GamePhase;
 import com.monopolyInMatlab.monopoly.domain.GameRoom;
 import com.monopolyInMatlab.monopoly.domain.GamePlayer;
+import com.monopolyInMatlab.monopoly.dto.RoomPage;
+import com.monopolyInMatlab.monopoly.dto.RoomSummary;
+import com.monopolyInMatlab.monopoly.persistence.RoomSnapshot;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 public interface RoomsService {
 
@@ -19,7 +25,21 @@ public interface RoomsService {
 
     GameRoom getGameRoom(UUID roomId);
 
-    void saveGameRoom(GameRoom gameRoom);
+    // Latest committed snapshots rendered as JSON or CBOR, safe to call from any thread without touching live rooms
+    RoomSnapshot getRoomSnapshot(UUID roomId);
+
+    byte[] renderRoom(RoomSnapshot snapshot, WireFormat format);
+
+    byte[] renderAllRooms(WireFormat format);
+
+    // Calls back once the room moves past the given version (null if it is deleted), returns a handle that cancels the wait
+    Runnable onRoomVersionAfter(UUID roomId, long version, Consumer<RoomSnapshot> callback);
+
+    // Lobby listing from the summary projection, phase may be null for every phase
+    RoomPage getRoomSummaries(GamePhase phase, String cursor, int limit);
+
+    // Rooms of this node matching every filter given, by phase, by a player in them and by name prefix, at least one is needed
+    List<RoomSummary> findRooms(GamePhase phase, UUID playerId, String namePrefix, int limit);
 
     void deleteRoom(UUID roomId);
 }
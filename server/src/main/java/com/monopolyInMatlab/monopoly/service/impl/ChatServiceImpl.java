@@ -1,46 +1,181 @@
 package com.monopolyInMatlab.monopoly.service.impl;
 
+import com.monopolyInMatlab.monopoly.concurrency.RoomExecutor;
+import com.monopolyInMatlab.monopoly.domain.ChatHistory;
 import com.monopolyInMatlab.monopoly.domain.ChatMessage;
+import com.monopolyInMatlab.monopoly.domain.GameCommand;
+import com.monopolyInMatlab.monopoly.domain.GameCommandType;
 import com.monopolyInMatlab.monopoly.domain.GameRoom;
+import com.monopolyInMatlab.monopoly.dto.ChatPage;
+import com.monopolyInMatlab.monopoly.persistence.RoomRemovedEvent;
 import com.monopolyInMatlab.monopoly.persistence.RoomRepository;
+import com.monopolyInMatlab.monopoly.persistence.StaleRoomVersionException;
+import com.monopolyInMatlab.monopoly.persistence.chat.ChatLog;
+import com.monopolyInMatlab.monopoly.persistence.chat.ChatSearchIndex;
 import com.monopolyInMatlab.monopoly.service.ChatService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 @Service
 @RequiredArgsConstructor
 public class ChatServiceImpl implements ChatService {
     private final RoomRepository roomRepository;
+    private final RoomExecutor roomExecutor;
+    private final ChatLog chatLog;
+    private final ChatSearchIndex chatSearchIndex;
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    // rooms whose numbering was checked against the log since they came to this node
+    private final Set<UUID> resumedRooms = ConcurrentHashMap.newKeySet();
 
     @Override
     public ChatMessage sendMessage(UUID roomId, UUID playerId, String playerName, String message) {
-        ChatMessage chatMessage = ChatMessage.builder()
-                .playerId(playerId)
-                .playerName(playerName)
-                .message(message)
-                .build();
+        // Get room and add chat message on the room's writer, chat history is room state like everything else
+        return roomExecutor.call(roomId, () -> {
+            GameRoom room = findRoomForUpdate(roomId);
+            long expectedVersion = room.getVersion();
+            if (resumedRooms.add(roomId)) {
+                // a room restored from an older snapshot is behind its log, it must not number messages the log has
+                long logged = chatLog.lastSeq(roomId);
+                if (logged > room.chat().lastSeq()) {
+                    room.chat().continueAfter(logged);
+                }
+            }
+            ChatMessage numbered = room.addChatMessage(ChatMessage.builder()
+                    // stamped on the writer so timestamps go up with seq, in millis, what the room codec keeps of it
+                    .timestamp(Instant.now().truncatedTo(ChronoUnit.MILLIS))
+                    .playerId(playerId)
+                    .playerName(playerName)
+                    .message(message)
+                    .build());
+            // journaled like any game action, with the seq it got, so a recovered room numbers it the way the log does
+            if (!roomRepository.saveGameRoomIfVersion(room, expectedVersion, GameCommand.builder()
+                    .type(GameCommandType.CHAT_MESSAGE)
+                    .playerId(playerId)
+                    .playerName(playerName)
+                    .message(message)
+                    .timestamp(numbered.getTimestamp())
+                    .seq(numbered.getSeq())
+                    .build())) {
+                throw new StaleRoomVersionException(roomId, expectedVersion);
+            }
+            // only queued, written to disk and indexed in the background
+            chatLog.append(roomId, numbered);
+            chatSearchIndex.add(roomId, numbered);
+            return numbered;
+        });
+    }
 
-        // Get room and add chat message
-        GameRoom room = (GameRoom) roomRepository.getAllRooms().stream()
-                .filter(r -> r.getRoomId().equals(roomId))
-                .findFirst()
-                .orElseThrow(() -> new IllegalArgumentException("Room not found"));
+    // a room that comes back, e.g. handed back to this node, may have missed messages logged meanwhile
+    @EventListener
+    public void onRoomRemoved(RoomRemovedEvent event) {
+        resumedRooms.remove(event.roomId());
+    }
+
+    @Override
+    public ChatPage getMessages(UUID roomId, Long beforeSeq, Long afterSeq, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        RecentChat recent = recentChat(roomId, chat -> afterSeq != null
+                ? chat.after(afterSeq, pageSize)
+                : chat.before(beforeSeq != null ? beforeSeq : Long.MAX_VALUE, pageSize));
 
-        room.addChatMessage(chatMessage);
+        // whatever the room no longer keeps comes from the log, read here and not on the room's writer
+        List<ChatMessage> messages = new ArrayList<>(pageSize);
+        if (afterSeq != null) {
+            if (afterSeq + 1 < recent.firstSeq()) {
+                for (ChatMessage message : chatLog.read(roomId, afterSeq + 1, pageSize)) {
+                    if (message.getSeq() < recent.firstSeq()) {
+                        messages.add(message);
+                    }
+                }
+            }
+            List<ChatMessage> kept = recent.messages();
+            messages.addAll(kept.subList(0, Math.min(kept.size(), pageSize - messages.size())));
+        } else {
+            long below = recent.messages().isEmpty()
+                    ? Math.min(beforeSeq != null ? beforeSeq : Long.MAX_VALUE, recent.firstSeq())
+                    : recent.messages().get(0).getSeq();
+            if (recent.messages().size() < pageSize && below > 1) {
+                messages.addAll(chatLog.readBefore(roomId, below, pageSize - recent.messages().size()));
+            }
+            messages.addAll(recent.messages());
+        }
 
-        return chatMessage;
+        ChatPage page = page(roomId, recent, messages);
+        page.setHasMore(!messages.isEmpty() && (afterSeq != null
+                ? messages.get(messages.size() - 1).getSeq() < page.getLastSeq()
+                : messages.get(0).getSeq() > page.getFirstSeq()));
+        return page;
     }
 
     @Override
-    public List<ChatMessage> getMessageHistory(UUID roomId) {
-        GameRoom room = (GameRoom) roomRepository.getAllRooms().stream()
-                .filter(r -> r.getRoomId().equals(roomId))
-                .findFirst()
-                .orElseThrow(() -> new IllegalArgumentException("Room not found"));
+    public ChatPage getMessagesBetween(UUID roomId, Instant from, Instant to, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<ChatMessage> messages = new ArrayList<>(chatLog.readBetween(roomId, from, to, pageSize));
+        // the newest messages may still be on their way to the log, the room has them
+        long logged = messages.isEmpty() ? 0 : messages.get(messages.size() - 1).getSeq();
+        RecentChat recent = recentChat(roomId, chat -> chat.stream()
+                .filter(message -> message.getSeq() > logged && message.getTimestamp() != null
+                        && (from == null || !message.getTimestamp().isBefore(from))
+                        && (to == null || message.getTimestamp().isBefore(to)))
+                .toList());
+        List<ChatMessage> kept = recent.messages();
+        messages.addAll(kept.subList(0, Math.min(kept.size(), pageSize - messages.size())));
+
+        ChatPage page = page(roomId, recent, messages);
+        // a full page may have more of the range after it, ask again with the last timestamp or seq
+        page.setHasMore(messages.size() == pageSize);
+        return page;
+    }
+
+    // copied out on the writer, the history is overwritten in place as messages come in
+    private RecentChat recentChat(UUID roomId, Function<ChatHistory, List<ChatMessage>> select) {
+        RecentChat recent = roomExecutor.call(roomId, () -> {
+            GameRoom room = roomRepository.findGameRoomById(roomId);
+            if (room == null) {
+                return null;
+            }
+            ChatHistory chat = room.chat();
+            return new RecentChat(select.apply(chat), chat.firstSeq(), chat.lastSeq());
+        });
+        if (recent == null) {
+            // a room that is gone still has its log
+            roomExecutor.release(roomId);
+            return new RecentChat(List.of(), Long.MAX_VALUE, chatLog.lastSeq(roomId));
+        }
+        return recent;
+    }
+
+    private ChatPage page(UUID roomId, RecentChat recent, List<ChatMessage> messages) {
+        long logged = chatLog.firstSeq(roomId);
+        long firstSeq = logged > 0 ? Math.min(logged, recent.firstSeq()) : Math.min(recent.firstSeq(), recent.lastSeq() + 1);
+        return ChatPage.builder()
+                .messages(messages)
+                .firstSeq(firstSeq)
+                .lastSeq(recent.lastSeq())
+                .build();
+    }
+
+    private GameRoom findRoomForUpdate(UUID roomId) {
+        GameRoom room = roomRepository.findGameRoomForUpdate(roomId);
+        if (room == null) {
+            throw new IllegalArgumentException("Room not found");
+        }
+        return room;
+    }
 
-        return room.getChatHistory();
+    // what the room's ChatHistory had of a page, and the numbers of the oldest and newest message it keeps
+    private record RecentChat(List<ChatMessage> messages, long firstSeq, long lastSeq) {
     }
 }
@@ -1,41 +1,55 @@
 package com.monopolyInMatlab.monopoly.service.impl;
 
+import com.monopolyInMatlab.monopoly.concurrency.RoomExecutor;
 import com.monopolyInMatlab.monopoly.config.GameConstants;
 import com.monopolyInMatlab.monopoly.domain.*;
 import com.monopolyInMatlab.monopoly.dto.TradeOfferDTO;
 import com.monopolyInMatlab.monopoly.persistence.RoomRepository;
+import com.monopolyInMatlab.monopoly.persistence.StaleRoomVersionException;
 import com.monopolyInMatlab.monopoly.service.GameService;
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Service
-@RequiredArgsConstructor
 public class GameServiceImpl implements GameService {
     private final RoomRepository roomRepository;
+    private final RoomExecutor roomExecutor;
+    // how long an auction stays open after it starts and after each new high bid
+    private final long bidWindowMs;
     private final Random random = new Random();
 
+    public GameServiceImpl(RoomRepository roomRepository, RoomExecutor roomExecutor,
+                           @Value("${monopoly.auction.bid-window-ms:15000}") long bidWindowMs) {
+        this.roomRepository = roomRepository;
+        this.roomExecutor = roomExecutor;
+        this.bidWindowMs = bidWindowMs;
+    }
+
     @Override
     public void initializeGame(UUID roomId) {
-        GameRoom room = roomRepository.findGameRoomById(roomId);
-        if (room == null) {
-            throw new IllegalArgumentException("Room not found");
-        }
+        mutateRoom(roomId, GameCommand.of(GameCommandType.INITIALIZE_GAME, null), room -> initializeGame(room));
+    }
 
+    private void initializeGame(GameRoom room) {
         // Initialize game players with starting values
         for (GamePlayer player : room.getGamePlayers()) {
             player.setPosition(GameConstants.STARTING_POSITION);
             player.setMoney(GameConstants.STARTING_MONEY);
         }
-
-        roomRepository.saveGameRoom(room);
     }
 
     @Override
     public GameRoom startGame(UUID roomId) {
-        GameRoom room = getGameRoom(roomId);
+        return mutateRoomAndGet(roomId, GameCommand.of(GameCommandType.START_GAME, null), room -> startGame(room));
+    }
 
+    private GameRoom startGame(GameRoom room) {
         if (room.getGamePhase() != GamePhase.LOBBY) {
             throw new IllegalStateException("Game already started");
         }
@@ -48,16 +62,24 @@ public class GameServiceImpl implements GameService {
 
     @Override
     public int[] rollDice(UUID roomId, UUID playerId) {
-        GameRoom room = getGameRoom(roomId);
+        int[] dice = rollTwoDice();
+        GameCommand command = GameCommand.builder().type(GameCommandType.ROLL_DICE).playerId(playerId).dice(dice).build();
+        return mutateRoomAndGet(roomId, command, room -> rollDice(room, playerId, dice));
+    }
+
+    private int[] rollTwoDice() {
+        return new int[]{random.nextInt(6) + 1, random.nextInt(6) + 1};
+    }
+
+    private int[] rollDice(GameRoom room, UUID playerId, int[] dice) {
         GamePlayer player = room.getPlayerById(playerId);
 
         if (!room.getCurrentPlayer().getPlayerId().equals(playerId)) {
             throw new IllegalStateException("Not your turn");
         }
 
-        int die1 = random.nextInt(6) + 1;
-        int die2 = random.nextInt(6) + 1;
-        int[] dice = new int[]{die1, die2};
+        int die1 = dice[0];
+        int die2 = dice[1];
         boolean isDoubles = die1 == die2;
 
         room.setLastDiceRoll(dice);
@@ -194,7 +216,11 @@ public class GameServiceImpl implements GameService {
 
     @Override
     public void buyProperty(UUID roomId, UUID playerId, int position) {
-        GameRoom room = getGameRoom(roomId);
+        mutateRoom(roomId, GameCommand.of(GameCommandType.BUY_PROPERTY, playerId, position),
+                room -> buyProperty(room, playerId, position));
+    }
+
+    private void buyProperty(GameRoom room, UUID playerId, int position) {
         GamePlayer player = room.getPlayerById(playerId);
         BoardSpace space = room.getBoardSpaces().get(position);
 
@@ -240,12 +266,19 @@ public class GameServiceImpl implements GameService {
     @Override
     public void declineProperty(UUID roomId, UUID playerId, int position) {
         // Trigger auction
-        startAuction(roomId, position);
+        Instant closesAt = closesAt();
+        GameCommand command = GameCommand.builder().type(GameCommandType.DECLINE_PROPERTY).playerId(playerId)
+                .position(position).closesAt(closesAt).build();
+        mutateRoom(roomId, command, room -> startAuction(room, position, closesAt));
     }
 
     @Override
     public void buildHouse(UUID roomId, UUID playerId, int position) {
-        GameRoom room = getGameRoom(roomId);
+        mutateRoom(roomId, GameCommand.of(GameCommandType.BUILD_HOUSE, playerId, position),
+                room -> buildHouse(room, playerId, position));
+    }
+
+    private void buildHouse(GameRoom room, UUID playerId, int position) {
         GamePlayer player = room.getPlayerById(playerId);
         BoardSpace space = room.getBoardSpaces().get(position);
 
@@ -282,7 +315,11 @@ public class GameServiceImpl implements GameService {
 
     @Override
     public void buildHotel(UUID roomId, UUID playerId, int position) {
-        GameRoom room = getGameRoom(roomId);
+        mutateRoom(roomId, GameCommand.of(GameCommandType.BUILD_HOTEL, playerId, position),
+                room -> buildHotel(room, playerId, position));
+    }
+
+    private void buildHotel(GameRoom room, UUID playerId, int position) {
         GamePlayer player = room.getPlayerById(playerId);
         BoardSpace space = room.getBoardSpaces().get(position);
 
@@ -320,7 +357,11 @@ public class GameServiceImpl implements GameService {
 
     @Override
     public void sellHouse(UUID roomId, UUID playerId, int position) {
-        GameRoom room = getGameRoom(roomId);
+        mutateRoom(roomId, GameCommand.of(GameCommandType.SELL_HOUSE, playerId, position),
+                room -> sellHouse(room, playerId, position));
+    }
+
+    private void sellHouse(GameRoom room, UUID playerId, int position) {
         GamePlayer player = room.getPlayerById(playerId);
         BoardSpace space = room.getBoardSpaces().get(position);
 
@@ -348,7 +389,11 @@ public class GameServiceImpl implements GameService {
 
     @Override
     public void sellHotel(UUID roomId, UUID playerId, int position) {
-        GameRoom room = getGameRoom(roomId);
+        mutateRoom(roomId, GameCommand.of(GameCommandType.SELL_HOTEL, playerId, position),
+                room -> sellHotel(room, playerId, position));
+    }
+
+    private void sellHotel(GameRoom room, UUID playerId, int position) {
         GamePlayer player = room.getPlayerById(playerId);
         BoardSpace space = room.getBoardSpaces().get(position);
 
@@ -377,7 +422,11 @@ public class GameServiceImpl implements GameService {
 
     @Override
     public void mortgageProperty(UUID roomId, UUID playerId, int position) {
-        GameRoom room = getGameRoom(roomId);
+        mutateRoom(roomId, GameCommand.of(GameCommandType.MORTGAGE_PROPERTY, playerId, position),
+                room -> mortgageProperty(room, playerId, position));
+    }
+
+    private void mortgageProperty(GameRoom room, UUID playerId, int position) {
         GamePlayer player = room.getPlayerById(playerId);
         BoardSpace space = room.getBoardSpaces().get(position);
 
@@ -409,7 +458,11 @@ public class GameServiceImpl implements GameService {
 
     @Override
     public void unmortgageProperty(UUID roomId, UUID playerId, int position) {
-        GameRoom room = getGameRoom(roomId);
+        mutateRoom(roomId, GameCommand.of(GameCommandType.UNMORTGAGE_PROPERTY, playerId, position),
+                room -> unmortgageProperty(room, playerId, position));
+    }
+
+    private void unmortgageProperty(GameRoom room, UUID playerId, int position) {
         GamePlayer player = room.getPlayerById(playerId);
         BoardSpace space = room.getBoardSpaces().get(position);
 
@@ -444,7 +497,10 @@ public class GameServiceImpl implements GameService {
 
     @Override
     public void payJailFine(UUID roomId, UUID playerId) {
-        GameRoom room = getGameRoom(roomId);
+        mutateRoom(roomId, GameCommand.of(GameCommandType.PAY_JAIL_FINE, playerId), room -> payJailFine(room, playerId));
+    }
+
+    private void payJailFine(GameRoom room, UUID playerId) {
         GamePlayer player = room.getPlayerById(playerId);
 
         if (!player.isInJail()) {
@@ -460,7 +516,11 @@ public class GameServiceImpl implements GameService {
 
     @Override
     public void useGetOutOfJailCard(UUID roomId, UUID playerId) {
-        GameRoom room = getGameRoom(roomId);
+        mutateRoom(roomId, GameCommand.of(GameCommandType.USE_JAIL_CARD, playerId),
+                room -> useGetOutOfJailCard(room, playerId));
+    }
+
+    private void useGetOutOfJailCard(GameRoom room, UUID playerId) {
         GamePlayer player = room.getPlayerById(playerId);
 
         if (!player.isInJail()) {
@@ -477,15 +537,20 @@ public class GameServiceImpl implements GameService {
 
     @Override
     public boolean rollForJail(UUID roomId, UUID playerId) {
-        GameRoom room = getGameRoom(roomId);
+        int[] dice = rollTwoDice();
+        GameCommand command = GameCommand.builder().type(GameCommandType.ROLL_FOR_JAIL).playerId(playerId).dice(dice).build();
+        return mutateRoomAndGet(roomId, command, room -> rollForJail(room, playerId, dice));
+    }
+
+    private boolean rollForJail(GameRoom room, UUID playerId, int[] dice) {
         GamePlayer player = room.getPlayerById(playerId);
 
         if (!player.isInJail()) {
             throw new IllegalStateException("Player not in jail");
         }
 
-        int die1 = random.nextInt(6) + 1;
-        int die2 = random.nextInt(6) + 1;
+        int die1 = dice[0];
+        int die2 = dice[1];
         boolean isDoubles = die1 == die2;
 
         room.setLastDiceRoll(new int[]{die1, die2});
@@ -501,7 +566,7 @@ public class GameServiceImpl implements GameService {
             if (player.getJailTurns() >= GameConstants.MAX_JAIL_TURNS) {
                 // Must pay fine
                 if (player.getMoney() >= GameConstants.JAIL_FINE) {
-                    payJailFine(roomId, playerId);
+                    payJailFine(room, playerId);
                     return true;
                 } else {
                     // Player can't afford jail fine - check networth
@@ -514,8 +579,6 @@ public class GameServiceImpl implements GameService {
 
     @Override
     public void proposeTrade(UUID roomId, TradeOfferDTO tradeOffer) {
-        GameRoom room = getGameRoom(roomId);
-
         Trade trade = Trade.builder()
                 .tradeId(UUID.randomUUID())
                 .fromPlayerId(tradeOffer.getFromPlayerId())
@@ -526,12 +589,32 @@ public class GameServiceImpl implements GameService {
                 .toPlayerMoney(tradeOffer.getToPlayerMoney())
                 .build();
 
-        room.setCurrentTrade(trade);
+        GameCommand command = GameCommand.builder()
+                .type(GameCommandType.PROPOSE_TRADE)
+                .playerId(trade.getFromPlayerId())
+                .tradeId(trade.getTradeId())
+                .toPlayerId(trade.getToPlayerId())
+                .fromPlayerProperties(trade.getFromPlayerProperties())
+                .fromPlayerMoney(trade.getFromPlayerMoney())
+                .toPlayerProperties(trade.getToPlayerProperties())
+                .toPlayerMoney(trade.getToPlayerMoney())
+                .build();
+
+        mutateRoom(roomId, command, room -> room.setCurrentTrade(trade));
     }
 
     @Override
     public void respondToTrade(UUID roomId, UUID playerId, UUID tradeId, boolean accept) {
-        GameRoom room = getGameRoom(roomId);
+        GameCommand command = GameCommand.builder()
+                .type(GameCommandType.RESPOND_TO_TRADE)
+                .playerId(playerId)
+                .tradeId(tradeId)
+                .accept(accept)
+                .build();
+        mutateRoom(roomId, command, room -> respondToTrade(room, playerId, tradeId, accept));
+    }
+
+    private void respondToTrade(GameRoom room, UUID playerId, UUID tradeId, boolean accept) {
         Trade trade = room.getCurrentTrade();
 
         if (trade == null || !trade.getTradeId().equals(tradeId)) {
@@ -598,11 +681,17 @@ public class GameServiceImpl implements GameService {
 
     @Override
     public void startAuction(UUID roomId, int propertyPosition) {
-        GameRoom room = getGameRoom(roomId);
+        Instant closesAt = closesAt();
+        GameCommand command = GameCommand.builder().type(GameCommandType.START_AUCTION)
+                .position(propertyPosition).closesAt(closesAt).build();
+        mutateRoom(roomId, command, room -> startAuction(room, propertyPosition, closesAt));
+    }
 
+    private void startAuction(GameRoom room, int propertyPosition, Instant closesAt) {
         Auction auction = Auction.builder()
                 .propertyPosition(propertyPosition)
                 .highestBid(0)
+                .closesAt(closesAt)
                 .build();
 
         room.setCurrentAuction(auction);
@@ -610,7 +699,19 @@ public class GameServiceImpl implements GameService {
 
     @Override
     public void placeBid(UUID roomId, UUID playerId, int amount) {
-        GameRoom room = getGameRoom(roomId);
+        Instant closesAt = closesAt();
+        GameCommand command = GameCommand.builder().type(GameCommandType.PLACE_BID).playerId(playerId).amount(amount)
+                .closesAt(closesAt).build();
+        mutateRoom(roomId, command, room -> placeBid(room, playerId, amount, closesAt));
+    }
+
+    // taken when the action comes in and recorded in its command like dice, so replaying it gives the same deadline,
+    // in millis like the room codec keeps it
+    private Instant closesAt() {
+        return Instant.now().plusMillis(bidWindowMs).truncatedTo(ChronoUnit.MILLIS);
+    }
+
+    private void placeBid(GameRoom room, UUID playerId, int amount, Instant closesAt) {
         Auction auction = room.getCurrentAuction();
 
         if (auction == null || !auction.isActive()) {
@@ -622,12 +723,19 @@ public class GameServiceImpl implements GameService {
             throw new IllegalStateException("Cannot afford bid");
         }
 
-        auction.placeBid(playerId, amount);
+        if (!auction.placeBid(playerId, amount)) {
+            throw new IllegalStateException("Bid must be higher than " + auction.getHighestBid());
+        }
+        // every new high bid gives the others another full window to answer it
+        auction.setClosesAt(closesAt);
     }
 
     @Override
     public void endAuction(UUID roomId) {
-        GameRoom room = getGameRoom(roomId);
+        mutateRoom(roomId, GameCommand.of(GameCommandType.END_AUCTION, null), room -> endAuction(room));
+    }
+
+    private void endAuction(GameRoom room) {
         Auction auction = room.getCurrentAuction();
 
         if (auction == null) {
@@ -638,7 +746,7 @@ public class GameServiceImpl implements GameService {
 
         if (auction.getHighestBidderId() != null) {
             // Award property to highest bidder
-            buyProperty(roomId, auction.getHighestBidderId(), auction.getPropertyPosition());
+            buyProperty(room, auction.getHighestBidderId(), auction.getPropertyPosition());
         }
 
         room.setCurrentAuction(null);
@@ -646,7 +754,11 @@ public class GameServiceImpl implements GameService {
 
     @Override
     public Card drawCard(UUID roomId, UUID playerId, String deckType) {
-        GameRoom room = getGameRoom(roomId);
+        GameCommand command = GameCommand.builder().type(GameCommandType.DRAW_CARD).playerId(playerId).deckType(deckType).build();
+        return mutateRoomAndGet(roomId, command, room -> drawCard(room, playerId, deckType));
+    }
+
+    private Card drawCard(GameRoom room, UUID playerId, String deckType) {
         GamePlayer player = room.getPlayerById(playerId);
 
         Card card = deckType.equals("CHANCE")
@@ -742,8 +854,10 @@ public class GameServiceImpl implements GameService {
 
     @Override
     public void endTurn(UUID roomId, UUID playerId) {
-        GameRoom room = getGameRoom(roomId);
+        mutateRoom(roomId, GameCommand.of(GameCommandType.END_TURN, playerId), room -> endTurn(room, playerId));
+    }
 
+    private void endTurn(GameRoom room, UUID playerId) {
         if (!room.getCurrentPlayer().getPlayerId().equals(playerId)) {
             throw new IllegalStateException("Not your turn");
         }
@@ -807,17 +921,162 @@ public class GameServiceImpl implements GameService {
         }
     }
 
+    /**
+     * Runs an action against a room on that room's single writer, then saves the room.
+     * Every mutating entry point goes through here so two messages for the same room never interleave.
+     * The action works on a copy of the room, one that throws halfway leaves the stored room untouched.
+     * The command is journaled along with the save but not waited for, see RoomCommits.
+     */
+    private void mutateRoom(UUID roomId, GameCommand command, Consumer<GameRoom> action) {
+        mutateRoomAndGet(roomId, command, room -> {
+            action.accept(room);
+            return null;
+        });
+    }
+
+    private <T> T mutateRoomAndGet(UUID roomId, GameCommand command, Function<GameRoom, T> action) {
+        return roomExecutor.call(roomId, () -> {
+            GameRoom room = getGameRoomForUpdate(roomId);
+            long expectedVersion = room.getVersion();
+            T result = action.apply(room);
+            // never silently overwrite a save this action didn't see
+            if (!roomRepository.saveGameRoomIfVersion(room, expectedVersion, command)) {
+                throw new StaleRoomVersionException(roomId, expectedVersion);
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public void replayCommand(GameRoom room, GameCommand command) {
+        applyCommand(room, command);
+    }
+
+    private void applyCommand(GameRoom room, GameCommand command) {
+        UUID playerId = command.getPlayerId();
+        switch (command.getType()) {
+            case PLAYER_JOINED:
+                room.getGamePlayers().add(GamePlayer.builder()
+                        .playerId(playerId)
+                        .playerName(command.getPlayerName())
+                        .build());
+                break;
+            case PLAYER_LEFT:
+                room.getGamePlayers().removeIf(player -> player.getPlayerId().equals(playerId));
+                break;
+            case PLAYER_DISCONNECTED:
+                handlePlayerDisconnect(room, playerId);
+                break;
+            case INITIALIZE_GAME:
+                initializeGame(room);
+                break;
+            case START_GAME:
+                startGame(room);
+                break;
+            case ROLL_DICE:
+                rollDice(room, playerId, command.getDice());
+                break;
+            case END_TURN:
+                endTurn(room, playerId);
+                break;
+            case BUY_PROPERTY:
+                buyProperty(room, playerId, command.getPosition());
+                break;
+            case DECLINE_PROPERTY:
+            case START_AUCTION:
+                // commands journaled before auctions had a deadline replay without one
+                startAuction(room, command.getPosition(), command.getClosesAt());
+                break;
+            case BUILD_HOUSE:
+                buildHouse(room, playerId, command.getPosition());
+                break;
+            case BUILD_HOTEL:
+                buildHotel(room, playerId, command.getPosition());
+                break;
+            case SELL_HOUSE:
+                sellHouse(room, playerId, command.getPosition());
+                break;
+            case SELL_HOTEL:
+                sellHotel(room, playerId, command.getPosition());
+                break;
+            case MORTGAGE_PROPERTY:
+                mortgageProperty(room, playerId, command.getPosition());
+                break;
+            case UNMORTGAGE_PROPERTY:
+                unmortgageProperty(room, playerId, command.getPosition());
+                break;
+            case PAY_JAIL_FINE:
+                payJailFine(room, playerId);
+                break;
+            case USE_JAIL_CARD:
+                useGetOutOfJailCard(room, playerId);
+                break;
+            case ROLL_FOR_JAIL:
+                rollForJail(room, playerId, command.getDice());
+                break;
+            case PROPOSE_TRADE:
+                room.setCurrentTrade(Trade.builder()
+                        .tradeId(command.getTradeId())
+                        .fromPlayerId(playerId)
+                        .toPlayerId(command.getToPlayerId())
+                        .fromPlayerProperties(command.getFromPlayerProperties())
+                        .fromPlayerMoney(command.getFromPlayerMoney())
+                        .toPlayerProperties(command.getToPlayerProperties())
+                        .toPlayerMoney(command.getToPlayerMoney())
+                        .build());
+                break;
+            case RESPOND_TO_TRADE:
+                respondToTrade(room, playerId, command.getTradeId(), command.getAccept());
+                break;
+            case PLACE_BID:
+                placeBid(room, playerId, command.getAmount(), command.getClosesAt());
+                break;
+            case END_AUCTION:
+                endAuction(room);
+                break;
+            case DRAW_CARD:
+                drawCard(room, playerId, command.getDeckType());
+                break;
+            case PAY_OFF_DEBT:
+                payOffDebt(room, command);
+                break;
+            case CHAT_MESSAGE:
+                // with the seq it had, which may be past a gap if the room had caught up with its chat log
+                room.chat().add(ChatMessage.builder()
+                        .seq(command.getSeq())
+                        .timestamp(command.getTimestamp())
+                        .playerId(playerId)
+                        .playerName(command.getPlayerName())
+                        .message(command.getMessage())
+                        .build());
+                break;
+        }
+    }
+
     @Override
     public GameRoom getGameRoom(UUID roomId) {
-        return (GameRoom) roomRepository.getAllRooms().stream()
-                .filter(r -> r.getRoomId().equals(roomId))
-                .findFirst()
-                .orElseThrow(() -> new IllegalArgumentException("Room not found"));
+        GameRoom room = roomRepository.findGameRoomById(roomId);
+        if (room == null) {
+            throw new IllegalArgumentException("Room not found");
+        }
+        return room;
+    }
+
+    private GameRoom getGameRoomForUpdate(UUID roomId) {
+        GameRoom room = roomRepository.findGameRoomForUpdate(roomId);
+        if (room == null) {
+            throw new IllegalArgumentException("Room not found");
+        }
+        return room;
     }
 
     @Override
     public void handlePlayerDisconnect(UUID roomId, UUID playerId) {
-        GameRoom room = getGameRoom(roomId);
+        mutateRoom(roomId, GameCommand.of(GameCommandType.PLAYER_DISCONNECTED, playerId),
+                room -> handlePlayerDisconnect(room, playerId));
+    }
+
+    private void handlePlayerDisconnect(GameRoom room, UUID playerId) {
         room.setGamePhase(GamePhase.FINISHED);
         // Game ends on disconnect as per requirements
     }
@@ -826,7 +1085,27 @@ public class GameServiceImpl implements GameService {
     public void payOffDebt(UUID roomId, UUID playerId, List<Integer> housesToSell,
                            List<Integer> hotelsToSell, List<Integer> propertiesToMortgage,
                            UUID creditorId, int amountOwed) {
-        GameRoom room = getGameRoom(roomId);
+        GameCommand command = GameCommand.builder()
+                .type(GameCommandType.PAY_OFF_DEBT)
+                .playerId(playerId)
+                .housesToSell(housesToSell)
+                .hotelsToSell(hotelsToSell)
+                .propertiesToMortgage(propertiesToMortgage)
+                .creditorId(creditorId)
+                .amount(amountOwed)
+                .build();
+        mutateRoom(roomId, command, room -> payOffDebt(room, command));
+    }
+
+    private void payOffDebt(GameRoom room, GameCommand command) {
+        payOffDebt(room, command.getPlayerId(), command.getHousesToSell(), command.getHotelsToSell(),
+                command.getPropertiesToMortgage(), command.getCreditorId(), command.getAmount());
+        room.clearPendingDebt();
+    }
+
+    private void payOffDebt(GameRoom room, UUID playerId, List<Integer> housesToSell,
+                            List<Integer> hotelsToSell, List<Integer> propertiesToMortgage,
+                            UUID creditorId, int amountOwed) {
         GamePlayer player = room.getPlayerById(playerId);
 
         // Sell hotels first
@@ -836,7 +1115,7 @@ public class GameServiceImpl implements GameService {
                 if (space instanceof PropertySpace) {
                     PropertySpace prop = (PropertySpace) space;
                     if (prop.getOwnerId().equals(playerId) && prop.isHasHotel()) {
-                        sellHotel(roomId, playerId, position);
+                        sellHotel(room, playerId, position);
                     }
                 }
             }
@@ -849,7 +1128,7 @@ public class GameServiceImpl implements GameService {
                 if (space instanceof PropertySpace) {
                     PropertySpace prop = (PropertySpace) space;
                     if (prop.getOwnerId().equals(playerId) && prop.getHousesBuilt() > 0) {
-                        sellHouse(roomId, playerId, position);
+                        sellHouse(room, playerId, position);
                     }
                 }
             }
@@ -867,17 +1146,17 @@ public class GameServiceImpl implements GameService {
                         throw new IllegalStateException("Cannot mortgage property with buildings");
                     }
                     if (prop.getOwnerId().equals(playerId) && prop.canMortgage()) {
-                        mortgageProperty(roomId, playerId, position);
+                        mortgageProperty(room, playerId, position);
                     }
                 } else if (space instanceof RailroadSpace) {
                     RailroadSpace rr = (RailroadSpace) space;
                     if (rr.getOwnerId().equals(playerId) && rr.canMortgage()) {
-                        mortgageProperty(roomId, playerId, position);
+                        mortgageProperty(room, playerId, position);
                     }
                 } else if (space instanceof UtilitySpace) {
                     UtilitySpace util = (UtilitySpace) space;
                     if (util.getOwnerId().equals(playerId) && util.canMortgage()) {
-                        mortgageProperty(roomId, playerId, position);
+                        mortgageProperty(room, playerId, position);
                     }
                 }
             }
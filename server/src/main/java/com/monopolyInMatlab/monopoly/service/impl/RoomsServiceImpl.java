@@ -1,37 +1,90 @@
 package com.monopolyInMatlab.monopoly.service.impl;
 
+import com.monopolyInMatlab.monopoly.cluster.RoomOwnership;
+import com.monopolyInMatlab.monopoly.concurrency.RoomExecutor;
+import com.monopolyInMatlab.monopoly.config.WireFormat;
 import com.monopolyInMatlab.monopoly.domain.CreateRoomRequest;
+import com.monopolyInMatlab.monopoly.domain.GameCommand;
+import com.monopolyInMatlab.monopoly.domain.GameCommandType;
+import com.monopolyInMatlab.monopoly.domain.GamePhase;
 import com.monopolyInMatlab.monopoly.domain.GameRoom;
 import com.monopolyInMatlab.monopoly.domain.GamePlayer;
+import com.monopolyInMatlab.monopoly.dto.RoomPage;
+import com.monopolyInMatlab.monopoly.dto.RoomSummary;
+import com.monopolyInMatlab.monopoly.persistence.RoomCommits;
 import com.monopolyInMatlab.monopoly.persistence.RoomRepository;
+import com.monopolyInMatlab.monopoly.persistence.RoomSnapshot;
+import com.monopolyInMatlab.monopoly.persistence.RoomSnapshots;
+import com.monopolyInMatlab.monopoly.persistence.RoomSummaries;
+import com.monopolyInMatlab.monopoly.persistence.StaleRoomVersionException;
 import com.monopolyInMatlab.monopoly.service.RoomsService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @Service
 @RequiredArgsConstructor
 public class RoomsServiceImpl implements RoomsService {
+    private static final int MAX_SAVE_ATTEMPTS = 3;
+
     private final RoomRepository roomsRepository;
+    private final RoomExecutor roomExecutor;
+    private final RoomSnapshots roomSnapshots;
+    private final RoomSummaries roomSummaries;
+    private final RoomOwnership roomOwnership;
+    private final RoomCommits roomCommits;
+
+    // REST callers are answered once the change is in the journal, the room's writer only queues the write
 
     @Override
     public GameRoom createRoom(CreateRoomRequest createRoomRequest) {
-        return roomsRepository.createRoom(createRoomRequest);
+        return RoomCommits.await(roomCommits.call(
+                () -> roomsRepository.createRoom(createRoomRequest, roomOwnership.newRoomId())));
     }
 
     @Override
     public GamePlayer joinRoom(UUID roomId, GamePlayer player) {
-        return roomsRepository.joinRoom(roomId, player);
+        // joining adds to the room's player list, so it has to go through the room's writer like any game action
+        return RoomCommits.await(roomExecutor.call(roomId,
+                () -> roomCommits.call(() -> retryStale(() -> roomsRepository.joinRoom(roomId, player)))));
     }
 
     @Override
     public void leaveRoom(UUID roomId, UUID playerId) {
-        GameRoom room = roomsRepository.findGameRoomById(roomId);
-        if (room != null) {
+        RoomCommits.await(roomExecutor.call(roomId, () -> roomCommits.call(() -> retryStale(() -> {
+            GameRoom room = roomsRepository.findGameRoomForUpdate(roomId);
+            if (room == null) {
+                return null;
+            }
+            long expectedVersion = room.getVersion();
             room.getGamePlayers().removeIf(player -> player.getPlayerId().equals(playerId));
-            roomsRepository.saveGameRoom(room);
+            if (!roomsRepository.saveGameRoomIfVersion(room, expectedVersion,
+                    GameCommand.of(GameCommandType.PLAYER_LEFT, playerId))) {
+                throw new StaleRoomVersionException(roomId, expectedVersion);
+            }
+            return null;
+        }))));
+    }
+
+    // only the room's writer saves the room, so a stale version shouldn't happen, but a failed save changed nothing
+    // and the change is simply made again on a fresh copy, a few times at most
+    private static <T> T retryStale(Supplier<T> change) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return change.get();
+            } catch (StaleRoomVersionException e) {
+                if (attempt == MAX_SAVE_ATTEMPTS) {
+                    throw e;
+                }
+            }
         }
     }
 
@@ -46,12 +99,71 @@ public class RoomsServiceImpl implements RoomsService {
     }
 
     @Override
-    public void saveGameRoom(GameRoom gameRoom) {
-        roomsRepository.saveGameRoom(gameRoom);
+    public RoomSnapshot getRoomSnapshot(UUID roomId) {
+        return roomSnapshots.get(roomId);
+    }
+
+    @Override
+    public byte[] renderRoom(RoomSnapshot snapshot, WireFormat format) {
+        return roomSnapshots.render(snapshot, format);
+    }
+
+    @Override
+    public byte[] renderAllRooms(WireFormat format) {
+        return roomSnapshots.renderArray(roomSnapshots.getAll(), format);
+    }
+
+    @Override
+    public Runnable onRoomVersionAfter(UUID roomId, long version, Consumer<RoomSnapshot> callback) {
+        return roomSnapshots.awaitVersionAfter(roomId, version, callback);
+    }
+
+    @Override
+    public RoomPage getRoomSummaries(GamePhase phase, String cursor, int limit) {
+        return roomSummaries.page(phase, cursor, limit);
+    }
+
+    @Override
+    public List<RoomSummary> findRooms(GamePhase phase, UUID playerId, String namePrefix, int limit) {
+        String prefix = namePrefix == null || namePrefix.isBlank() ? null : namePrefix.trim().toLowerCase(Locale.ROOT);
+        // start from the narrowest index asked for, the other filters are checked on the rooms' summaries
+        Collection<UUID> roomIds;
+        if (playerId != null) {
+            roomIds = roomsRepository.findRoomIdsByPlayerId(playerId);
+        } else if (prefix != null) {
+            roomIds = roomsRepository.findRoomIdsByNamePrefix(prefix);
+        } else if (phase != null) {
+            roomIds = roomsRepository.findRoomIdsByPhase(phase);
+        } else {
+            throw new IllegalArgumentException("Room search needs a phase, a player or a name");
+        }
+
+        List<RoomSummary> rooms = new ArrayList<>();
+        for (UUID roomId : roomIds) {
+            RoomSummary summary = roomSummaries.get(roomId);
+            // a room can be deleted between reading the index and reading its summary
+            if (summary == null
+                    || (phase != null && summary.getGamePhase() != phase)
+                    || (prefix != null && !nameOf(summary).toLowerCase(Locale.ROOT).startsWith(prefix))) {
+                continue;
+            }
+            rooms.add(summary);
+            if (rooms.size() == limit) {
+                break;
+            }
+        }
+        rooms.sort(Comparator.comparing(RoomsServiceImpl::nameOf, String.CASE_INSENSITIVE_ORDER)
+                .thenComparing(RoomSummary::getRoomId));
+        return rooms;
     }
 
     @Override
     public void deleteRoom(UUID roomId) {
-        roomsRepository.deleteRoom(roomId);
+        roomExecutor.run(roomId, () -> roomsRepository.deleteRoom(roomId));
+        roomExecutor.release(roomId);
+    }
+
+    private static String nameOf(RoomSummary summary) {
+        return summary.getRoomName() != null ? summary.getRoomName() : "";
     }
 }
@@ -0,0 +1,303 @@
+package com.monopolyInMatlab.monopoly.cluster;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.monopolyInMatlab.monopoly.MonopolyApplication;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Runs server nodes as separate processes on this machine, relayed through one StompBrokerStandIn, for the
+ * cluster checks. Every node gets its own port and data directories under a temp directory, its output goes to
+ * node-{id}.log there, which is kept when a check fails.
+ *
+ * The checks are main classes, not tests, run them with the test classpath:
+ *
+ *   ./mvnw -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *   java -cp target/test-classes:target/classes:$(cat target/cp.txt) com.monopolyInMatlab.monopoly.cluster.RelayCheck
+ */
+class ClusterHarness implements AutoCloseable {
+    static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    final ObjectMapper json = new ObjectMapper();
+    private final StompBrokerStandIn broker;
+    private final Path directory;
+    // node id to port, every node that may join is listed up front like monopoly.cluster.nodes wants
+    private final Map<String, Integer> ports = new LinkedHashMap<>();
+    private final Map<String, Process> processes = new LinkedHashMap<>();
+    private final List<StompSession> sessions = new ArrayList<>();
+    private final HttpClient http = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NEVER).build();
+    private final HttpClient followingHttp = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NORMAL).build();
+    private final WebSocketStompClient stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+    private boolean passed;
+
+    ClusterHarness(String... nodeIds) throws IOException {
+        broker = new StompBrokerStandIn();
+        directory = Files.createTempDirectory("monopoly-cluster-");
+        for (String nodeId : nodeIds) {
+            ports.put(nodeId, freePort());
+        }
+        stompClient.setMessageConverter(new RawBytes());
+        System.out.println("Broker stand-in on port " + broker.getPort() + ", node logs in " + directory);
+    }
+
+    /**
+     * Starts a node and waits until it answers HTTP.
+     */
+    void start(String nodeId) throws IOException {
+        Path data = directory.resolve(nodeId);
+        StringBuilder nodes = new StringBuilder();
+        ports.forEach((id, port) -> nodes.append(nodes.isEmpty() ? "" : ",").append(id).append("=").append(url(id)));
+        List<String> command = List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                MonopolyApplication.class.getName(),
+                "--server.port=" + ports.get(nodeId),
+                "--monopoly.broker.mode=relay",
+                "--monopoly.broker.relay.port=" + broker.getPort(),
+                "--monopoly.cluster.node-id=" + nodeId,
+                "--monopoly.cluster.nodes=" + nodes,
+                "--monopoly.cluster.heartbeat-interval-ms=500",
+                "--monopoly.rooms.cold.directory=" + data.resolve("cold"),
+                "--monopoly.chat.log.directory=" + data.resolve("chat"));
+        File log = directory.resolve("node-" + nodeId + ".log").toFile();
+        processes.put(nodeId, new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start());
+        await("node " + nodeId + " to start", () -> get(nodeId, "/menu/lobby").statusCode() == 200);
+    }
+
+    String url(String nodeId) {
+        return "http://localhost:" + ports.get(nodeId);
+    }
+
+    HttpResponse<String> get(String nodeId, String path) {
+        return send(http, HttpRequest.newBuilder(URI.create(url(nodeId) + path)).GET().build());
+    }
+
+    HttpResponse<String> post(String nodeId, String path, String body) {
+        return post(http, nodeId, path, body);
+    }
+
+    /**
+     * POSTs and follows redirects, 307s are repeated as POSTs to where they point.
+     */
+    HttpResponse<String> postFollowing(String nodeId, String path, String body) {
+        return post(followingHttp, nodeId, path, body);
+    }
+
+    JsonNode parse(HttpResponse<String> response) {
+        try {
+            return json.readTree(response.body());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Creates a room on the node and joins it with one player, returns the room id and the player id.
+     */
+    String[] createRoom(String nodeId, String name) {
+        HttpResponse<String> created = post(nodeId, "/menu/createroom", "{\"roomName\":\"" + name + "\"}");
+        check(created.statusCode() == 200, "creating a room on node " + nodeId + " answered " + created.statusCode());
+        String roomId = parse(created).get("roomId").asText();
+        HttpResponse<String> joined = post(nodeId, "/menu/rooms/" + roomId + "/join", "{\"playerName\":\"ann\"}");
+        check(joined.statusCode() == 200, "joining room " + roomId + " on node " + nodeId + " answered " + joined.statusCode());
+        return new String[]{roomId, parse(joined).get("playerId").asText()};
+    }
+
+    /**
+     * Connects a websocket STOMP session to the node.
+     */
+    StompSession connect(String nodeId) throws Exception {
+        StompSession session = stompClient.connectAsync("ws://localhost:" + ports.get(nodeId) + "/ws",
+                new StompSessionHandlerAdapter() {
+                }).get(TIMEOUT.toSeconds(), TimeUnit.SECONDS);
+        sessions.add(session);
+        return session;
+    }
+
+    /**
+     * Subscribes the session to a destination, every frame that arrives there is put in the returned queue.
+     */
+    BlockingQueue<String> subscribe(StompSession session, String destination) {
+        BlockingQueue<String> frames = new LinkedBlockingQueue<>();
+        session.subscribe(destination, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return byte[].class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                frames.add(new String((byte[]) payload, StandardCharsets.UTF_8));
+            }
+        });
+        return frames;
+    }
+
+    void send(StompSession session, String destination, String body) {
+        StompHeaders headers = new StompHeaders();
+        headers.setDestination(destination);
+        headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        session.send(headers, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Waits for a frame the predicate accepts, dropping the ones before it. Fails the check after TIMEOUT.
+     */
+    String awaitFrame(BlockingQueue<String> frames, String what, Predicate<String> wanted) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (true) {
+            String frame = frames.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            check(frame != null, "no frame with " + what + " within " + TIMEOUT.toSeconds() + "s");
+            if (wanted.test(frame)) {
+                return frame;
+            }
+        }
+    }
+
+    /**
+     * Polls until the condition holds, fails the check after TIMEOUT.
+     */
+    void await(String what, BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (true) {
+            try {
+                if (condition.getAsBoolean()) {
+                    return;
+                }
+            } catch (UncheckedIOException e) {
+                // not up yet
+            }
+            check(System.nanoTime() < deadline, "timed out waiting for " + what);
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted waiting for " + what, e);
+            }
+        }
+    }
+
+    void check(boolean condition, String failure) {
+        if (!condition) {
+            throw new IllegalStateException(failure);
+        }
+    }
+
+    void pass(String step) {
+        System.out.println("ok   " + step);
+    }
+
+    void passed() {
+        passed = true;
+    }
+
+    /**
+     * Stops every node and the broker, and deletes the temp directory unless the check failed.
+     */
+    @Override
+    public void close() throws IOException {
+        for (StompSession session : sessions) {
+            if (session.isConnected()) {
+                session.disconnect();
+            }
+        }
+        for (Process process : processes.values()) {
+            process.destroy();
+        }
+        for (Process process : processes.values()) {
+            try {
+                if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                process.destroyForcibly();
+            }
+        }
+        broker.close();
+        if (passed) {
+            try (var files = Files.walk(directory)) {
+                files.sorted((a, b) -> b.compareTo(a)).forEach(file -> file.toFile().delete());
+            }
+        }
+    }
+
+    private HttpResponse<String> post(HttpClient client, String nodeId, String path, String body) {
+        return send(client, HttpRequest.newBuilder(URI.create(url(nodeId) + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build());
+    }
+
+    private static HttpResponse<String> send(HttpClient client, HttpRequest request) {
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted calling " + request.uri(), e);
+        }
+    }
+
+    // frames are compared as text, whatever their content type
+    private static final class RawBytes extends AbstractMessageConverter {
+        private RawBytes() {
+            super(MimeTypeUtils.APPLICATION_JSON, MimeType.valueOf("application/cbor"), MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        }
+
+        @Override
+        protected boolean supports(Class<?> type) {
+            return type == byte[].class;
+        }
+
+        @Override
+        protected Object convertFromInternal(Message<?> message, Class<?> targetClass, Object conversionHint) {
+            return message.getPayload();
+        }
+
+        @Override
+        protected Object convertToInternal(Object payload, MessageHeaders headers, Object conversionHint) {
+            return payload;
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.monopolyInMatlab.monopoly.cluster;
+
+import org.springframework.messaging.simp.stomp.StompSession;
+
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Starts nodes a and b relayed through one broker and checks that a chat message sent on node a reaches a
+ * client subscribed to the room on node b, i.e. that room topics fan out across nodes through the broker
+ * and not only to the node's own clients. Not a test, see ClusterHarness for how to run it.
+ * Prints PASS or the failed step, and exits with 1 on a failure.
+ */
+public class RelayCheck {
+
+    public static void main(String[] args) throws Exception {
+        boolean passed = false;
+        try (ClusterHarness cluster = new ClusterHarness("a", "b")) {
+            try {
+                run(cluster);
+                cluster.passed();
+                passed = true;
+            } catch (IllegalStateException e) {
+                System.out.println("FAIL " + e.getMessage());
+            }
+        }
+        System.out.println(passed ? "PASS" : "FAIL, node logs were kept");
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static void run(ClusterHarness cluster) throws Exception {
+        cluster.start("a");
+        cluster.start("b");
+        cluster.pass("nodes a and b started against the broker stand-in");
+
+        // new rooms are always owned by the node that creates them
+        String[] room = cluster.createRoom("a", "relay check");
+        String roomId = room[0];
+        String playerId = room[1];
+        cluster.await("node b to see node a on the ring",
+                () -> cluster.get("b", "/menu/room/" + roomId).statusCode() == 307);
+        cluster.pass("room " + roomId + " created on a, b redirects to it");
+
+        StompSession onB = cluster.connect("b");
+        BlockingQueue<String> framesOnB = cluster.subscribe(onB, "/room/" + roomId);
+        StompSession onA = cluster.connect("a");
+        // the subscription has to reach the broker before anything is sent, there is no receipt for it here
+        Thread.sleep(500);
+
+        String text = "hello from a " + System.nanoTime();
+        cluster.send(onA, "/monopoly/room/" + roomId + "/chat",
+                "{\"playerId\":\"" + playerId + "\",\"playerName\":\"ann\",\"message\":\"" + text + "\"}");
+        String frame = cluster.awaitFrame(framesOnB, "the chat message",
+                body -> body.contains("CHAT_MESSAGE") && body.contains(text));
+        cluster.check(frame.contains(playerId), "the chat frame on b is not from the sender: " + frame);
+        cluster.pass("chat message sent on a reached the subscriber on b");
+    }
+}
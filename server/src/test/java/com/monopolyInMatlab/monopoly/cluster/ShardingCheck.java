@@ -0,0 +1,118 @@
+package com.monopolyInMatlab.monopoly.cluster;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.messaging.simp.stomp.StompSession;
+
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Checks room sharding across processes: starts node a alone and creates rooms on it, then starts node b and
+ * checks that the rooms the ring gives b are handed over to it with their players, that each node redirects
+ * REST requests for the other's rooms, and that a STOMP action sent to the wrong node is forwarded to the owner
+ * and its frame reaches the sender. Not a test, see ClusterHarness for how to run it.
+ * Prints PASS or the failed step, and exits with 1 on a failure.
+ */
+public class ShardingCheck {
+    private static final int ROOMS = 20;
+
+    public static void main(String[] args) throws Exception {
+        boolean passed = false;
+        try (ClusterHarness cluster = new ClusterHarness("a", "b")) {
+            try {
+                run(cluster);
+                cluster.passed();
+                passed = true;
+            } catch (IllegalStateException e) {
+                System.out.println("FAIL " + e.getMessage());
+            }
+        }
+        System.out.println(passed ? "PASS" : "FAIL, node logs were kept");
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static void run(ClusterHarness cluster) throws Exception {
+        cluster.start("a");
+        // alone on the ring, a owns every room it creates
+        List<String> roomIds = new ArrayList<>();
+        for (int i = 0; i < ROOMS; i++) {
+            roomIds.add(cluster.createRoom("a", "sharding check " + i)[0]);
+        }
+        cluster.pass(ROOMS + " rooms created on a while it was alone");
+
+        ConsistentHashRing ring = new ConsistentHashRing(Set.of("a", "b"), ConsistentHashRing.DEFAULT_VIRTUAL_NODES);
+        List<String> movedRooms = new ArrayList<>();
+        List<String> keptRooms = new ArrayList<>();
+        for (String roomId : roomIds) {
+            (ring.ownerOf(UUID.fromString(roomId)).equals("b") ? movedRooms : keptRooms).add(roomId);
+        }
+        cluster.check(!movedRooms.isEmpty() && !keptRooms.isEmpty(),
+                "the ring put all " + ROOMS + " rooms on one node, the check needs some on each");
+
+        cluster.start("b");
+        for (String roomId : movedRooms) {
+            cluster.await("room " + roomId + " to be handed over to b", () -> servedBy(cluster, "b", roomId));
+            redirects(cluster, "a", roomId, "b");
+        }
+        cluster.pass(movedRooms.size() + " rooms handed over to b with their players, a redirects to b for them");
+        for (String roomId : keptRooms) {
+            cluster.await("b to redirect room " + roomId + " to a", () -> cluster.get("b", "/menu/room/" + roomId).statusCode() == 307);
+            redirects(cluster, "b", roomId, "a");
+            cluster.check(servedBy(cluster, "a", roomId), "room " + roomId + " left a when b joined");
+        }
+        cluster.pass(keptRooms.size() + " rooms stayed on a, b redirects to a for them");
+
+        // a REST join sent to the wrong node follows the redirect to the owner
+        String movedRoom = movedRooms.get(0);
+        HttpResponse<String> joined = cluster.postFollowing("a", "/menu/rooms/" + movedRoom + "/join", "{\"playerName\":\"bob\"}");
+        cluster.check(joined.statusCode() == 200, "joining room " + movedRoom + " through a answered " + joined.statusCode());
+        String bobId = cluster.parse(joined).get("playerId").asText();
+        cluster.check(players(cluster, "b", movedRoom).contains("bob"), "bob's join through a didn't reach room " + movedRoom + " on b");
+        cluster.pass("a join posted to a was redirected to b and applied there");
+
+        // an action sent to a for b's room is forwarded to b, and the frame comes back through the broker
+        StompSession onA = cluster.connect("a");
+        BlockingQueue<String> framesOnA = cluster.subscribe(onA, "/room/" + movedRoom);
+        // the subscription has to reach the broker before anything is sent, there is no receipt for it here
+        Thread.sleep(500);
+        String text = "forwarded by a " + System.nanoTime();
+        cluster.send(onA, "/monopoly/room/" + movedRoom + "/chat",
+                "{\"playerId\":\"" + bobId + "\",\"playerName\":\"bob\",\"message\":\"" + text + "\"}");
+        cluster.awaitFrame(framesOnA, "the forwarded chat message", body -> body.contains("CHAT_MESSAGE") && body.contains(text));
+        HttpResponse<String> chat = cluster.get("b", "/menu/room/" + movedRoom + "/chat");
+        cluster.check(chat.statusCode() == 200 && chat.body().contains(text),
+                "the chat message sent to a is not in room " + movedRoom + "'s history on b: " + chat.body());
+        cluster.pass("a chat message sent to a was forwarded to b, applied there and sent back to a's subscriber");
+    }
+
+    // the node has the room and ann, who joined it on a, is still in it
+    private static boolean servedBy(ClusterHarness cluster, String nodeId, String roomId) {
+        HttpResponse<String> response = cluster.get(nodeId, "/menu/room/" + roomId);
+        return response.statusCode() == 200 && !response.body().isEmpty() && players(response, cluster).contains("ann");
+    }
+
+    private static void redirects(ClusterHarness cluster, String nodeId, String roomId, String owner) {
+        HttpResponse<String> response = cluster.get(nodeId, "/menu/room/" + roomId);
+        String location = response.headers().firstValue("Location").orElse("");
+        cluster.check(response.statusCode() == 307 && location.equals(cluster.url(owner) + "/menu/room/" + roomId),
+                nodeId + " answered " + response.statusCode() + " " + location + " for room " + roomId + " owned by " + owner);
+    }
+
+    private static List<String> players(ClusterHarness cluster, String nodeId, String roomId) {
+        return players(cluster.get(nodeId, "/menu/room/" + roomId), cluster);
+    }
+
+    private static List<String> players(HttpResponse<String> room, ClusterHarness cluster) {
+        List<String> names = new ArrayList<>();
+        if (room.statusCode() == 200 && !room.body().isEmpty()) {
+            for (JsonNode player : cluster.parse(room).path("gamePlayers")) {
+                names.add(player.path("playerName").asText());
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,219 @@
+package com.monopolyInMatlab.monopoly.cluster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A STOMP 1.2 broker just big enough for the cluster checks, in place of RabbitMQ or ActiveMQ.
+ * Every SEND goes to every subscription of exactly its destination, there are no wildcards, acks or
+ * persistent queues. That is all the relay and ClusterLink rely on: each node queue has one subscriber,
+ * the cluster topic and room topics have one per node. Receipts are sent for every frame that asks for one.
+ */
+class StompBrokerStandIn implements AutoCloseable {
+    private final ServerSocket serverSocket;
+    private final ConcurrentMap<String, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicLong messageIds = new AtomicLong();
+
+    StompBrokerStandIn() throws IOException {
+        serverSocket = new ServerSocket(0);
+        Thread.ofVirtual().name("stomp-broker-accept").start(this::acceptLoop);
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Connection connection : connections) {
+            connection.close();
+        }
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread.ofVirtual().name("stomp-broker-connection").start(() -> serve(socket));
+            } catch (IOException e) {
+                // closed
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        Connection connection;
+        try {
+            connection = new Connection(socket);
+        } catch (IOException e) {
+            return;
+        }
+        connections.add(connection);
+        try {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            while (true) {
+                Frame frame = readFrame(in);
+                if (frame == null) {
+                    return;
+                }
+                switch (frame.command()) {
+                    case "CONNECT", "STOMP" -> connection.write("CONNECTED", Map.of("version", "1.2", "heart-beat", "0,0"), new byte[0]);
+                    case "SUBSCRIBE" -> {
+                        Subscription subscription = new Subscription(connection, frame.headers().get("id"));
+                        String destination = frame.headers().get("destination");
+                        subscriptions.computeIfAbsent(destination, d -> ConcurrentHashMap.newKeySet()).add(subscription);
+                        connection.destinations.put(subscription.id(), destination);
+                    }
+                    case "UNSUBSCRIBE" -> {
+                        String id = frame.headers().get("id");
+                        String destination = connection.destinations.remove(id);
+                        if (destination != null) {
+                            subscriptions.getOrDefault(destination, Set.of()).remove(new Subscription(connection, id));
+                        }
+                    }
+                    case "SEND" -> deliver(frame);
+                    default -> {
+                    }
+                }
+                String receipt = frame.headers().get("receipt");
+                if (receipt != null) {
+                    connection.write("RECEIPT", Map.of("receipt-id", receipt), new byte[0]);
+                }
+                if (frame.command().equals("DISCONNECT")) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            // the node went away
+        } finally {
+            for (Set<Subscription> destination : subscriptions.values()) {
+                destination.removeIf(subscription -> subscription.connection() == connection);
+            }
+            connections.remove(connection);
+            connection.close();
+        }
+    }
+
+    private void deliver(Frame send) {
+        String destination = send.headers().get("destination");
+        for (Subscription subscription : subscriptions.getOrDefault(destination, Set.of())) {
+            Map<String, String> headers = new LinkedHashMap<>();
+            headers.put("destination", destination);
+            headers.put("subscription", subscription.id());
+            headers.put("message-id", Long.toString(messageIds.incrementAndGet()));
+            // the sender's own headers, room-stream and room-seq among them, go along with the message
+            send.headers().forEach((name, value) -> {
+                if (!name.equals("receipt") && !name.equals("content-length")) {
+                    headers.putIfAbsent(name, value);
+                }
+            });
+            try {
+                subscription.connection().write("MESSAGE", headers, send.body());
+            } catch (IOException e) {
+                // that subscriber is going away, its connection cleans up after itself
+            }
+        }
+    }
+
+    // null once the connection is closed, heart-beat EOLs between frames are skipped
+    private static Frame readFrame(InputStream in) throws IOException {
+        String command;
+        do {
+            command = readLine(in);
+            if (command == null) {
+                return null;
+            }
+        } while (command.isEmpty());
+
+        Map<String, String> headers = new LinkedHashMap<>();
+        String line;
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+            int colon = line.indexOf(':');
+            // the first occurrence of a repeated header wins
+            headers.putIfAbsent(line.substring(0, colon), line.substring(colon + 1));
+        }
+        if (line == null) {
+            return null;
+        }
+
+        byte[] body;
+        String contentLength = headers.get("content-length");
+        if (contentLength != null) {
+            body = in.readNBytes(Integer.parseInt(contentLength));
+            in.read();
+        } else {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) > 0) {
+                bytes.write(b);
+            }
+            body = bytes.toByteArray();
+        }
+        return new Frame(command, headers, body);
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b == -1) {
+                return null;
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    private record Frame(String command, Map<String, String> headers, byte[] body) {
+    }
+
+    private record Subscription(Connection connection, String id) {
+    }
+
+    private static final class Connection {
+        private final Socket socket;
+        private final OutputStream out;
+        // subscription id to destination
+        private final Map<String, String> destinations = new ConcurrentHashMap<>();
+
+        private Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = new BufferedOutputStream(socket.getOutputStream());
+        }
+
+        private synchronized void write(String command, Map<String, String> headers, byte[] body) throws IOException {
+            StringBuilder frame = new StringBuilder(command).append('\n');
+            headers.forEach((name, value) -> frame.append(name).append(':').append(value).append('\n'));
+            frame.append("content-length:").append(body.length).append("\n\n");
+            out.write(frame.toString().getBytes(StandardCharsets.UTF_8));
+            out.write(body);
+            out.write(0);
+            out.flush();
+        }
+
+        private void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+    }
+}
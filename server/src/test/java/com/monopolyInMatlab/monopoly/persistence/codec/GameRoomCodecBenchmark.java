@@ -0,0 +1,191 @@
+package com.monopolyInMatlab.monopoly.persistence.codec;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.monopolyInMatlab.monopoly.domain.Auction;
+import com.monopolyInMatlab.monopoly.domain.BoardSpace;
+import com.monopolyInMatlab.monopoly.domain.ChatMessage;
+import com.monopolyInMatlab.monopoly.domain.CreateRoomRequest;
+import com.monopolyInMatlab.monopoly.domain.GamePhase;
+import com.monopolyInMatlab.monopoly.domain.GamePlayer;
+import com.monopolyInMatlab.monopoly.domain.GameRoom;
+import com.monopolyInMatlab.monopoly.domain.PropertySpace;
+import com.monopolyInMatlab.monopoly.persistence.RoomFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Round-trip benchmark of GameRoomCodec against the Jackson JSON encoding of the same rooms, for a bulk save
+ * and load of many rooms like a journal snapshot and its recovery. Not a test, run it by hand:
+ *
+ *   ./mvnw -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *   java -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *       com.monopolyInMatlab.monopoly.persistence.codec.GameRoomCodecBenchmark [rooms] [rounds]
+ *
+ * Rooms are a mix of lobbies and games in progress with owned and built properties, an auction and chat.
+ * Jackson can't bind a GameRoom back (it has builders, no setters for the board), so its load parses into a tree,
+ * which is about what binding would cost. Every codec round trip is checked to give the same JSON as the original.
+ */
+public class GameRoomCodecBenchmark {
+    private static final int WARMUP_ROUNDS = 3;
+
+    public static void main(String[] args) {
+        int roomCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        ObjectMapper json = Jackson2ObjectMapperBuilder.json().build();
+
+        Random random = new Random(42);
+        // the codec keeps milliseconds, like the game and chat services do
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        List<GameRoom> rooms = new ArrayList<>(roomCount);
+        for (int i = 0; i < roomCount; i++) {
+            rooms.add(room(i, random, now));
+        }
+        checkRoundTrip(rooms, json);
+
+        System.out.printf("%d rooms, best of %d rounds after %d warmup rounds%n", roomCount, rounds, WARMUP_ROUNDS);
+        System.out.printf("%-14s %12s %12s %12s %14s%n", "encoding", "save ms", "load ms", "total MB", "bytes/room");
+        Result codec = measure(rounds, rooms, GameRoomCodec::encode, GameRoomCodec::decode);
+        Result jackson = measure(rounds, rooms, room -> write(json, room), bytes -> read(json, bytes));
+        print("GameRoomCodec", codec, roomCount);
+        print("Jackson JSON", jackson, roomCount);
+        System.out.printf("codec is %.1fx smaller, saves %.1fx and loads %.1fx faster%n",
+                (double) jackson.bytes() / codec.bytes(), jackson.saveNanos() / (double) codec.saveNanos(),
+                jackson.loadNanos() / (double) codec.loadNanos());
+    }
+
+    private static Result measure(int rounds, List<GameRoom> rooms, Encoder encoder, Decoder decoder) {
+        long bestSave = Long.MAX_VALUE;
+        long bestLoad = Long.MAX_VALUE;
+        long bytes = 0;
+        // kept so the JIT can't drop the decoding
+        long sink = 0;
+        byte[][] encoded = new byte[rooms.size()][];
+        for (int round = 0; round < WARMUP_ROUNDS + rounds; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < encoded.length; i++) {
+                encoded[i] = encoder.encode(rooms.get(i));
+            }
+            long saved = System.nanoTime();
+            for (byte[] room : encoded) {
+                sink += decoder.decode(room) != null ? 1 : 0;
+            }
+            long loaded = System.nanoTime();
+            if (round >= WARMUP_ROUNDS) {
+                bestSave = Math.min(bestSave, saved - start);
+                bestLoad = Math.min(bestLoad, loaded - saved);
+            }
+        }
+        for (byte[] room : encoded) {
+            bytes += room.length;
+        }
+        if (sink == 0) {
+            throw new IllegalStateException("Nothing was decoded");
+        }
+        return new Result(bestSave, bestLoad, bytes);
+    }
+
+    // the codec has to give back a room that renders to exactly the same JSON as the one it was given
+    private static void checkRoundTrip(List<GameRoom> rooms, ObjectMapper json) {
+        for (GameRoom room : rooms) {
+            byte[] encoded = GameRoomCodec.encode(room);
+            if (!Arrays.equals(write(json, room), write(json, GameRoomCodec.decode(encoded)))) {
+                throw new IllegalStateException("Room " + room.getRoomId() + " changed in a codec round trip");
+            }
+        }
+    }
+
+    private static GameRoom room(int number, Random random, Instant now) {
+        CreateRoomRequest request = new CreateRoomRequest();
+        request.setRoomName("room " + number);
+        GameRoom room = RoomFactory.newRoom(request, UUID.randomUUID());
+        int playerCount = 2 + random.nextInt(7);
+        for (int i = 0; i < playerCount; i++) {
+            room.getGamePlayers().add(GamePlayer.builder().playerName("player " + i).build());
+        }
+        room.setVersion(1 + random.nextInt(500));
+        for (int i = 0; i < random.nextInt(40); i++) {
+            GamePlayer player = room.getGamePlayers().get(random.nextInt(playerCount));
+            room.getChatHistory().add(ChatMessage.builder()
+                    .seq(i + 1)
+                    .timestamp(now.plusMillis(i))
+                    .playerId(player.getPlayerId())
+                    .playerName(player.getPlayerName())
+                    .message("message " + i + " from " + player.getPlayerName())
+                    .build());
+        }
+        // a quarter of the rooms are still lobbies
+        if (number % 4 == 0) {
+            return room;
+        }
+
+        room.setStarted(true);
+        room.setGamePhase(GamePhase.IN_PROGRESS);
+        room.setCurrentPlayerIndex(random.nextInt(playerCount));
+        room.setLastDiceRoll(new int[]{1 + random.nextInt(6), 1 + random.nextInt(6)});
+        room.setChanceCardIndex(random.nextInt(room.getChanceCards().size()));
+        for (GamePlayer player : room.getGamePlayers()) {
+            player.setPosition(random.nextInt(40));
+            player.setMoney(random.nextInt(3000));
+        }
+        for (BoardSpace space : room.getBoardSpaces()) {
+            if (space instanceof PropertySpace property && random.nextInt(3) > 0) {
+                GamePlayer owner = room.getGamePlayers().get(random.nextInt(playerCount));
+                property.setOwnerId(owner.getPlayerId());
+                property.setHousesBuilt(random.nextInt(5));
+                owner.getOwnedPropertyPositions().add(property.getPosition());
+            }
+        }
+        if (number % 5 == 0) {
+            GamePlayer bidder = room.getGamePlayers().get(0);
+            Auction auction = Auction.builder()
+                    .propertyPosition(room.getBoardSpaces().get(1).getPosition())
+                    .closesAt(now.plusSeconds(15))
+                    .build();
+            auction.placeBid(bidder.getPlayerId(), 10 + random.nextInt(200));
+            room.setCurrentAuction(auction);
+        }
+        return room;
+    }
+
+    private static void print(String name, Result result, int roomCount) {
+        System.out.printf("%-14s %12.1f %12.1f %12.2f %14d%n", name, result.saveNanos() / 1e6, result.loadNanos() / 1e6,
+                result.bytes() / 1e6, result.bytes() / roomCount);
+    }
+
+    private static byte[] write(ObjectMapper json, GameRoom room) {
+        try {
+            return json.writeValueAsBytes(room);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static JsonNode read(ObjectMapper json, byte[] bytes) {
+        try {
+            return json.readTree(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private interface Encoder {
+        byte[] encode(GameRoom room);
+    }
+
+    private interface Decoder {
+        Object decode(byte[] bytes);
+    }
+
+    private record Result(long saveNanos, long loadNanos, long bytes) {
+    }
+}